@@ -75,6 +75,7 @@ public class InfinitestPlugin extends AbstractUIPlugin {
 	{
 		super.start(context);
 		sharedInstance = this;
+		InfinitestGlobalSettings.setIndexSnapshotDirectory(getStateLocation().append("index").toFile());
 	}
 
 	@Override
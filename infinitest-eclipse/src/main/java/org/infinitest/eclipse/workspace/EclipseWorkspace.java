@@ -46,6 +46,8 @@ import java.util.Set;
 import org.eclipse.core.resources.IResource;
 import org.eclipse.core.runtime.CoreException;
 import org.infinitest.InfinitestCore;
+import org.infinitest.UpdateScheduler;
+import org.infinitest.eclipse.CoreLifecycleListener;
 import org.infinitest.eclipse.InfinitestJarsLocator;
 import org.infinitest.eclipse.UpdateListener;
 import org.infinitest.eclipse.status.WorkspaceStatus;
@@ -65,6 +67,15 @@ class EclipseWorkspace implements WorkspaceFacade {
 	private final Events<UpdateListener> updateEvent = eventFor(UpdateListener.class);
 	private final ProjectSet projectSet;
 	private final InfinitestJarsLocator infinitestJarsClasspathProvider;
+	/**
+	 * Each core is updated once the changes of a build settle, rather than
+	 * on every change notified meanwhile
+	 */
+	private final Map<InfinitestCore, UpdateScheduler> updateSchedulers = new HashMap<>();
+	/**
+	 * The tests queued by the scheduled updates since some were last pending
+	 */
+	private int testsQueuedByUpdates;
 
 	@Autowired
 	EclipseWorkspace(ProjectSet projectSet, 
@@ -75,6 +86,23 @@ class EclipseWorkspace implements WorkspaceFacade {
 		this.coreRegistry = coreRegistry;
 		this.coreFactory = coreFactory;
 		this.infinitestJarsClasspathProvider = infinitestJarsClasspathProvider;
+		coreRegistry.addLifecycleListener(new CoreLifecycleListener() {
+			@Override
+			public void coreCreated(InfinitestCore core) {
+				// Its scheduler is created on its first update
+			}
+
+			@Override
+			public void coreRemoved(InfinitestCore core) {
+				UpdateScheduler scheduler;
+				synchronized (updateSchedulers) {
+					scheduler = updateSchedulers.remove(core);
+				}
+				if (scheduler != null) {
+					scheduler.shutdown();
+				}
+			}
+		});
 	}
 
 	@Autowired
@@ -87,8 +115,8 @@ class EclipseWorkspace implements WorkspaceFacade {
 		if (projectSet.hasErrors()) {
 			setStatus(workspaceErrors());
 		} else {
-			int numberOfTestsToRun = updateProjectsIn(modifiedResources);
-			if (numberOfTestsToRun == 0) {
+			int updatedProjects = updateProjectsIn(modifiedResources);
+			if (updatedProjects == 0) {
 				setStatus(noTestsRun());
 			}
 		}
@@ -121,9 +149,11 @@ class EclipseWorkspace implements WorkspaceFacade {
 		return status;
 	}
 
+	/**
+	 * @return The number of projects whose core update was scheduled
+	 */
 	private int updateProjectsIn(Set<IResource> modifiedResources) throws CoreException {
 		updateEvent.fire();
-		int totalTests = 0;
 		int processedProjects = 0;
 		
 		Map<ProjectFacade, Set<File>> modifiedFilesByProject = groupResourcesByProject(modifiedResources);
@@ -132,23 +162,76 @@ class EclipseWorkspace implements WorkspaceFacade {
 			ProjectFacade project = entry.getKey();
 			Set<File> modifiedFiles = entry.getValue();
 			
-			setStatus(findingTests(processedProjects, modifiedFilesByProject.size(), totalTests));
-			totalTests += updateProject(project, modifiedFiles);
+			setStatus(findingTests(processedProjects, modifiedFilesByProject.size(), getTestsQueuedByUpdates()));
+			updateProject(project, modifiedFiles);
 			
 			processedProjects++;
 		}
 		
-		return totalTests;
+		return processedProjects;
 	}
 
-	private int updateProject(ProjectFacade project, Collection<File> changedFiles) throws CoreException {
+	private void updateProject(ProjectFacade project, Collection<File> changedFiles) throws CoreException {
 		RuntimeEnvironment environment = buildRuntimeEnvironment(project);
 		InfinitestCore core = coreRegistry.getCore(project.getLocationURI());
 		if (core == null) {
 			core = createCore(project, environment);
 		}
-		core.setRuntimeEnvironment(environment);
-		return core.update(changedFiles);
+		// Set by the update, the core may still be running the previous one
+		getUpdateScheduler(core).scheduleUpdate(environment, changedFiles);
+	}
+
+	private UpdateScheduler getUpdateScheduler(InfinitestCore core) {
+		synchronized (updateSchedulers) {
+			return updateSchedulers.computeIfAbsent(core, each -> new UpdateScheduler(each, this::coreUpdated));
+		}
+	}
+
+	/**
+	 * Once the last pending update is done, tells if none of the updates
+	 * since the previous ones queued a test.
+	 */
+	private void coreUpdated(int testsToRun) {
+		synchronized (this) {
+			testsQueuedByUpdates += testsToRun;
+			if (isUpdatePending()) {
+				return;
+			}
+			testsToRun = testsQueuedByUpdates;
+			testsQueuedByUpdates = 0;
+		}
+		if (testsToRun == 0) {
+			setStatus(noTestsRun());
+		}
+	}
+
+	private synchronized int getTestsQueuedByUpdates() {
+		return testsQueuedByUpdates;
+	}
+
+	private boolean isUpdatePending() {
+		synchronized (updateSchedulers) {
+			for (UpdateScheduler each : updateSchedulers.values()) {
+				if (each.isUpdatePending()) {
+					return true;
+				}
+			}
+			return false;
+		}
+	}
+
+	/**
+	 * Updates now the cores whose update is waiting for the changes to
+	 * settle.
+	 */
+	void flushScheduledUpdates() {
+		List<UpdateScheduler> schedulers;
+		synchronized (updateSchedulers) {
+			schedulers = new ArrayList<>(updateSchedulers.values());
+		}
+		for (UpdateScheduler each : schedulers) {
+			each.flush();
+		}
 	}
 
 	public RuntimeEnvironment buildRuntimeEnvironment(ProjectFacade project) throws CoreException {
@@ -66,6 +66,7 @@ class InfinitestCoreRegistry implements CoreRegistry {
 		if (core != null) {
 			fireRemovedEvent(core);
 			log("Removing core " + core.getName());
+			core.close();
 		}
 	}
 
@@ -64,6 +64,16 @@ class WhenCreatingAndRemovingCores implements CoreLifecycleListener {
 		assertSame(coreRemoved, mockCore);
 	}
 
+	@Test
+	void shouldCloseRemovedCores() throws URISyntaxException {
+		InfinitestCore mockCore = mock(InfinitestCore.class);
+		registry.addCore(new URI("//someProject"), mockCore);
+
+		registry.removeCore(new URI("//someProject"));
+
+		verify(mockCore).close();
+	}
+
 	@Override
 	public void coreCreated(InfinitestCore core) {
 		coreAdded = core;
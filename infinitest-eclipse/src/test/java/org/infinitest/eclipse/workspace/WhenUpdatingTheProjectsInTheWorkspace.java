@@ -119,6 +119,7 @@ class WhenUpdatingTheProjectsInTheWorkspace extends ResourceEventSupport {
 		when(coreRegistry.getCore(projectAUri)).thenReturn(null);
 
 		workspace.updateProjects(Collections.singleton(resource));
+		workspace.flushScheduledUpdates();
 
 		assertStatusIs(noTestsRun());
 		verify(coreRegistry).addCore(eq(projectAUri), any(InfinitestCore.class));
@@ -136,6 +137,7 @@ class WhenUpdatingTheProjectsInTheWorkspace extends ResourceEventSupport {
 		});
 
 		workspace.updateProjects(Collections.singleton(resource));
+		workspace.flushScheduledUpdates();
 		assertEquals(1, updates);
 		verify(core).setRuntimeEnvironment(any(RuntimeEnvironment.class));
 	}
@@ -145,9 +147,11 @@ class WhenUpdatingTheProjectsInTheWorkspace extends ResourceEventSupport {
 		InfinitestCore core = prepareCore(projectAUri(), 10);
 
 		workspace.updateProjects(Collections.singleton(resource));
+		workspace.flushScheduledUpdates();
 
 		assertStatusIs(findingTests(0, projects.size(), 0));
 		verify(core).setRuntimeEnvironment(any(RuntimeEnvironment.class));
+		verify(core).update(anyCollection());
 
 	}
 
@@ -164,6 +168,7 @@ class WhenUpdatingTheProjectsInTheWorkspace extends ResourceEventSupport {
 		InfinitestCore core = prepareCore(projectAUri(), 0);
 
 		workspace.updateProjects(Collections.singleton(resource));
+		workspace.flushScheduledUpdates();
 
 		assertStatusIs(noTestsRun());
 		verify(core).setRuntimeEnvironment(any(RuntimeEnvironment.class));
@@ -192,6 +197,17 @@ class WhenUpdatingTheProjectsInTheWorkspace extends ResourceEventSupport {
 		assertThat(updatedStatus, equalsStatus(noTestsRun()));
 	}
 
+	@Test
+	void shouldMergeTheUpdatesOfABuildIntoOne() throws CoreException {
+		InfinitestCore core = prepareCore(projectAUri(), 10);
+
+		workspace.updateProjects(Collections.singleton(resource));
+		workspace.updateProjects(Collections.singleton(resource));
+		workspace.flushScheduledUpdates();
+
+		verify(core).update(anyCollection());
+	}
+
 	@Test
 	void shouldUpdateAllCoresWhenOneChanges() throws CoreException {
 		String projectBName = "/projectB";
@@ -203,6 +219,7 @@ class WhenUpdatingTheProjectsInTheWorkspace extends ResourceEventSupport {
 		InfinitestCore coreB = prepareCore(projectBUri, 10);
 
 		workspace.updateProjects(Collections.singleton(resource));
+		workspace.flushScheduledUpdates();
 		verify(coreA).setRuntimeEnvironment(any(RuntimeEnvironment.class));
 		verify(coreB).setRuntimeEnvironment(any(RuntimeEnvironment.class));
 	}
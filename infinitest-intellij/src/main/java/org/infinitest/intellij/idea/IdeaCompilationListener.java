@@ -27,7 +27,6 @@
  */
 package org.infinitest.intellij.idea;
 
-import org.infinitest.InfinitestCore;
 import org.infinitest.TestControl;
 import org.infinitest.environment.RuntimeEnvironment;
 import org.infinitest.intellij.ModuleSettings;
@@ -68,10 +67,8 @@ public class IdeaCompilationListener implements ProjectTaskListener {
 
 					RuntimeEnvironment runtimeEnvironment = moduleSettings.getRuntimeEnvironment();
 					if (runtimeEnvironment != null) {
-						InfinitestCore core = launcher.getCore();
-
-						core.setRuntimeEnvironment(runtimeEnvironment);
-						core.update();
+						// Set by the update, the core may still be running the previous one
+						launcher.getUpdateScheduler().scheduleUpdate(runtimeEnvironment);
 					}
 				}
 			}
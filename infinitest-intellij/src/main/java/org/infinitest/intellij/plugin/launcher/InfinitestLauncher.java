@@ -29,9 +29,15 @@ package org.infinitest.intellij.plugin.launcher;
 
 import org.infinitest.InfinitestCore;
 import org.infinitest.ResultCollector;
+import org.infinitest.UpdateScheduler;
 
 public interface InfinitestLauncher {
 	InfinitestCore getCore();
 
 	ResultCollector getResultCollector();
+
+	/**
+	 * Updates the core once the changes of a build settle.
+	 */
+	UpdateScheduler getUpdateScheduler();
 }
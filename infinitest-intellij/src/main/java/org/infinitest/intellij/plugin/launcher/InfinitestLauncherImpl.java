@@ -27,27 +27,36 @@
  */
 package org.infinitest.intellij.plugin.launcher;
 
+import java.io.File;
+
 import org.infinitest.InfinitestCore;
 import org.infinitest.InfinitestCoreBuilder;
 import org.infinitest.ResultCollector;
+import org.infinitest.UpdateScheduler;
 import org.infinitest.intellij.InfinitestTopics;
 import org.infinitest.intellij.ModuleSettings;
 import org.infinitest.intellij.plugin.swingui.SwingEventQueue;
+import org.infinitest.util.InfinitestGlobalSettings;
 
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.application.PathManager;
 import com.intellij.openapi.module.Module;
 
-public class InfinitestLauncherImpl implements InfinitestLauncher {
+public class InfinitestLauncherImpl implements InfinitestLauncher, Disposable {
 	private final InfinitestCore core;
 	private final ResultCollector resultCollector;
+	private final UpdateScheduler updateScheduler;
 	
 	/**
 	 * @param module Injected by the platform
 	 */
 	public InfinitestLauncherImpl(Module module) {
 		ModuleSettings moduleSettings = module.getService(ModuleSettings.class);
+		InfinitestGlobalSettings.setIndexSnapshotDirectory(new File(PathManager.getSystemPath(), "infinitest/index"));
 		InfinitestCoreBuilder coreBuilder = new InfinitestCoreBuilder(moduleSettings.getRuntimeEnvironment(), new SwingEventQueue(), moduleSettings.getName());
 		core = coreBuilder.createCore();
 		resultCollector = new ResultCollector(core);
+		updateScheduler = new UpdateScheduler(core);
 		
 		core.addConsoleOutputListener(module.getProject().getMessageBus().syncPublisher(InfinitestTopics.CONSOLE_TOPIC));
 		core.addDisabledTestListener(module.getProject().getMessageBus().syncPublisher(InfinitestTopics.DISABLED_TEST_TOPIC));
@@ -67,4 +76,18 @@ public class InfinitestLauncherImpl implements InfinitestLauncher {
 	public ResultCollector getResultCollector() {
 		return resultCollector;
 	}
+
+	@Override
+	public UpdateScheduler getUpdateScheduler() {
+		return updateScheduler;
+	}
+
+	/**
+	 * Called by the platform when the module is disposed.
+	 */
+	@Override
+	public void dispose() {
+		updateScheduler.shutdown();
+		core.close();
+	}
 }
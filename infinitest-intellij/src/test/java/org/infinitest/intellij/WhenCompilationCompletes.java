@@ -34,6 +34,7 @@ import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import org.infinitest.InfinitestCore;
+import org.infinitest.UpdateScheduler;
 import org.infinitest.environment.RuntimeEnvironment;
 import org.infinitest.intellij.idea.IdeaCompilationListener;
 import org.junit.jupiter.api.BeforeEach;
@@ -45,6 +46,7 @@ import com.intellij.task.ProjectTaskManager.Result;
 class WhenCompilationCompletes extends IntellijMockBase {
 	private final ModuleSettings moduleSettings = new FakeModuleSettings("test");
 	private InfinitestCore core;
+	private UpdateScheduler updateScheduler;
 	private Result result;
 
 	@BeforeEach
@@ -54,16 +56,18 @@ class WhenCompilationCompletes extends IntellijMockBase {
 		
 		when(module.getService(ModuleSettings.class)).thenReturn(moduleSettings);
 		when(launcher.getCore()).thenReturn(core);
+		updateScheduler = mock(UpdateScheduler.class);
+		when(launcher.getUpdateScheduler()).thenReturn(updateScheduler);
 	}
 
 	@Test
-	void shouldInvokeUpdateOnCore() {
+	void shouldScheduleAnUpdateOfTheCore() {
 		ProjectTaskListener listener = new IdeaCompilationListener(project);
 		when(result.isAborted()).thenReturn(false);
 		listener.finished(result);
 
-		verify(core).setRuntimeEnvironment(any(RuntimeEnvironment.class));
-		verify(core).update();
+		verify(updateScheduler).scheduleUpdate(any(RuntimeEnvironment.class));
+		verify(core, never()).setRuntimeEnvironment(any(RuntimeEnvironment.class));
 	}
 
 	@Test
@@ -73,7 +77,7 @@ class WhenCompilationCompletes extends IntellijMockBase {
 		listener.finished(result);
 
 		verify(core, never()).setRuntimeEnvironment(any(RuntimeEnvironment.class));
-		verify(core, never()).update();
+		verify(updateScheduler, never()).scheduleUpdate(any(RuntimeEnvironment.class));
 	}
 
 	@Test
@@ -84,6 +88,6 @@ class WhenCompilationCompletes extends IntellijMockBase {
 		listener.finished(result);
 
 		verify(core, never()).setRuntimeEnvironment(any(RuntimeEnvironment.class));
-		verify(core, never()).update();
+		verify(updateScheduler, never()).scheduleUpdate(any(RuntimeEnvironment.class));
 	}
 }
@@ -28,6 +28,8 @@
 package org.infinitest;
 
 import static com.google.common.collect.Sets.*;
+import static java.nio.charset.StandardCharsets.*;
+import static java.util.Collections.*;
 import static java.util.logging.Level.*;
 import static org.infinitest.util.InfinitestUtils.*;
 
@@ -39,6 +41,9 @@ import org.infinitest.environment.RuntimeEnvironment;
 import org.infinitest.parser.*;
 import org.infinitest.testrunner.*;
 import org.infinitest.testrunner.queue.*;
+import org.infinitest.util.InfinitestGlobalSettings;
+
+import com.google.common.hash.Hashing;
 
 /**
  * @author <a href="mailto:benrady@gmail.com">Ben Rady</a>
@@ -54,6 +59,7 @@ class DefaultInfinitestCore implements InfinitestCore {
 	private final List<ReloadListener> reloadListeners;
 	private final List<DisabledTestListener> disabledTestListeners;
 	private final RunStatistics stats;
+	private File statisticsFile;
 	/**
 	 * For the first run we need to run every test (and index every class), not just the modified classes
 	 */
@@ -68,6 +74,8 @@ class DefaultInfinitestCore implements InfinitestCore {
 
 		stats = new RunStatistics();
 		runner.addTestResultsListener(stats);
+		runner.addTestResultsListener(new ClassUsageListener());
+		runner.addTestQueueListener(new StatisticsSaver());
 		runner.setTestPriority(new TestComparator(stats));
 	}
 
@@ -86,6 +94,7 @@ class DefaultInfinitestCore implements InfinitestCore {
 			firstRunSinceReload = false;
 			return update();
 		} else {
+			prepareTestRunIfNeeded(changedFiles, Collections.<String> emptySet());
 			int testsRun = runOptimizedTestSet(changedFiles);
 			caughtExceptions.clear();
 			return testsRun;
@@ -105,9 +114,18 @@ class DefaultInfinitestCore implements InfinitestCore {
 	@Override
 	public synchronized int update() {
 		try {
-			boolean lookForRemovedFiles = !firstRunSinceReload;
+			boolean firstRun = firstRunSinceReload;
 			firstRunSinceReload = false;
-			int testsRun = runOptimizedTestSet(findChangedClassFiles(lookForRemovedFiles));
+			Collection<File> changedFiles = findChangedClassFiles();
+			removeClassFiles();
+			Collection<String> changedJarClasses = findChangedJarClasses();
+			prepareTestRunIfNeeded(changedFiles, changedJarClasses);
+			int testsRun;
+			if (firstRun && InfinitestGlobalSettings.isTestsRunWhileIndexing()) {
+				testsRun = runTestsWhileIndexing(changedFiles, changedJarClasses);
+			} else {
+				testsRun = runOptimizedTestSet(changedFiles, changedJarClasses);
+			}
 			caughtExceptions.clear();
 			return testsRun;
 		} catch (IOException e) {
@@ -117,7 +135,7 @@ class DefaultInfinitestCore implements InfinitestCore {
 	}
 
 	@Override
-	public void reload() {
+	public synchronized void reload() {
 		log("Reloading core " + name);
 		testDetector.clear();
 		changeDetector.clear();
@@ -127,19 +145,47 @@ class DefaultInfinitestCore implements InfinitestCore {
 	}
 
 	@Override
-	public void setRuntimeEnvironment(RuntimeEnvironment environment) {
-		if ((currentEnvironment == null) || !environment.equals(currentEnvironment)) {
-			currentEnvironment = environment;
-			runner.setRuntimeEnvironment(environment);
+	public synchronized void setRuntimeEnvironment(RuntimeEnvironment environment) {
+		if ((currentEnvironment != null) && environment.equals(currentEnvironment)) {
+			return;
+		}
+
+		RuntimeEnvironment previousEnvironment = currentEnvironment;
+		currentEnvironment = environment;
+		runner.setRuntimeEnvironment(environment);
+		if (previousEnvironment == null) {
+			changeDetector.setClasspathProvider(environment);
+			testDetector.setClasspathProvider(environment);
+			reload();
+		} else if (environment.hasSameClasspathAs(previousEnvironment)) {
+			// The next tests run in a runner process started with the new arguments
+			log(name + " JVM arguments changed");
+		} else if (environment.differsOnlyByJarsFrom(previousEnvironment)) {
+			// The classes of the jars added or removed are found changed by the next update
+			log(name + " Jars of the classpath changed");
+			changeDetector.updateClasspathProvider(environment);
+			testDetector.updateClasspathProvider(environment);
+		} else {
 			changeDetector.setClasspathProvider(environment);
 			testDetector.setClasspathProvider(environment);
 			reload();
 		}
 	}
 
+	private void prepareTestRunIfNeeded(Collection<File> changedFiles, Collection<String> changedJarClasses) {
+		// Before the dependencies are analyzed, which may take a while
+		if (!changedFiles.isEmpty() || !changedJarClasses.isEmpty()) {
+			runner.prepareTestRun();
+		}
+	}
+
 	protected int runOptimizedTestSet(Collection<File> changedFiles) {
+		return runOptimizedTestSet(changedFiles, Collections.<String> emptySet());
+	}
+
+	private int runOptimizedTestSet(Collection<File> changedFiles, Collection<String> changedJarClasses) {
 		Set<String> oldTests = testDetector.getCurrentTests();
-		Collection<JavaClass> testsToRun = testDetector.findTestsToRun(changedFiles);
+		Collection<JavaClass> testsToRun = testDetector.findTestsToRun(changedFiles, changedJarClasses);
 		Set<String> newTests = testDetector.getCurrentTests();
 		fireDisabledTestEvents(difference(oldTests, newTests));
 		if (!testsToRun.isEmpty()) {
@@ -149,14 +195,47 @@ class DefaultInfinitestCore implements InfinitestCore {
 		return testsToRun.size();
 	}
 
-	private Collection<File> findChangedClassFiles(boolean lookForRemovedFiles) throws IOException {
-		if (lookForRemovedFiles && changeDetector.filesWereRemoved()) {
-			// Instead of reloading the core when a file is removed,
-			// we should ask the test detector to remove it from the dependency
-			// graph
-			log("Files removed. Reloading " + name);
-			reload();
+	/**
+	 * After a reload every class is indexed again, which takes a while on
+	 * large projects. The tests are streamed to the runner as soon as they are
+	 * parsed instead of once every class is indexed.
+	 * <p>
+	 * The tests are streamed while the test detector is locked, the runner
+	 * only queues them and starts its processes in the background.
+	 */
+	private int runTestsWhileIndexing(Collection<File> changedFiles, Collection<String> changedJarClasses) {
+		Set<String> oldTests = testDetector.getCurrentTests();
+		Set<String> streamedTests = new HashSet<>();
+		Collection<JavaClass> testsToRun;
+		getRunner().openTestStream();
+		try {
+			testsToRun = testDetector.findTestsToRun(changedFiles, changedJarClasses, test -> streamTests(singleton(test), streamedTests));
+			// Some tests may only be found once every class is indexed
+			streamTests(testsToRun, streamedTests);
+		} finally {
+			getRunner().closeTestStream();
+		}
+		Set<String> newTests = testDetector.getCurrentTests();
+		fireDisabledTestEvents(difference(oldTests, newTests));
+		return testsToRun.size();
+	}
+
+	private void streamTests(Collection<JavaClass> tests, Set<String> streamedTests) {
+		synchronized (streamedTests) {
+			List<String> newTests = new ArrayList<>();
+			for (String each : classesToNames(tests)) {
+				if (streamedTests.add(each)) {
+					newTests.add(each);
+				}
+			}
+			if (!newTests.isEmpty()) {
+				log(name + " Running tests: " + newTests);
+				getRunner().streamTests(newTests);
+			}
 		}
+	}
+
+	private Collection<File> findChangedClassFiles() throws IOException {
 		Collection<File> changedFiles = changeDetector.findChangedFiles();
 		if (!changedFiles.isEmpty()) {
 			log(name + " Files changed: " + changedFiles);
@@ -164,6 +243,26 @@ class DefaultInfinitestCore implements InfinitestCore {
 		return changedFiles;
 	}
 
+	/**
+	 * The removed classes are removed from the index, the tests depending on
+	 * them run with the changed tests.
+	 */
+	private void removeClassFiles() throws IOException {
+		Collection<File> removedFiles = changeDetector.findRemovedFiles();
+		if (!removedFiles.isEmpty()) {
+			log(name + " Files removed: " + removedFiles);
+			remove(removedFiles, new HashSet<JavaClass>());
+		}
+	}
+
+	private Collection<String> findChangedJarClasses() throws IOException {
+		Collection<String> changedClasses = changeDetector.findChangedJarClasses();
+		if (!changedClasses.isEmpty()) {
+			log(name + " Jar classes changed: " + changedClasses);
+		}
+		return changedClasses;
+	}
+
 	public RunStatistics getRunStatistics() {
 		return stats;
 	}
@@ -202,6 +301,36 @@ class DefaultInfinitestCore implements InfinitestCore {
 
 	public void setName(String name) {
 		this.name = name;
+		loadStatistics();
+	}
+
+	/**
+	 * The statistics of the tests are stored per core name, next to the index
+	 * snapshots, so that the tests are ordered by their previous durations
+	 * right after a restart.
+	 */
+	private void loadStatistics() {
+		File directory = InfinitestGlobalSettings.getIndexSnapshotDirectory();
+		if ((directory == null) || (name == null)) {
+			statisticsFile = null;
+			return;
+		}
+		statisticsFile = new File(directory, "statistics-" + Hashing.sha1().hashString(name, UTF_8) + ".bin");
+		try {
+			stats.load(statisticsFile);
+		} catch (IOException e) {
+			log(WARNING, "Could not read the test statistics of " + name + ": " + e);
+		}
+	}
+
+	private void saveStatistics() {
+		if (statisticsFile != null) {
+			try {
+				stats.save(statisticsFile);
+			} catch (IOException e) {
+				log(WARNING, "Could not save the test statistics of " + name + ": " + e);
+			}
+		}
 	}
 
 	@Override
@@ -214,6 +343,16 @@ class DefaultInfinitestCore implements InfinitestCore {
 		getRunner().removeConsoleOutputListener(normalizer.consoleEventNormalizer(listener));
 	}
 
+	@Override
+	public String getConsoleOutput(String testName) {
+		return getRunner().getConsoleOutput(testName);
+	}
+
+	@Override
+	public void close() {
+		getRunner().close();
+	}
+
 	@Override
 	public void addDisabledTestListener(DisabledTestListener listener) {
 		disabledTestListeners.add(listener);
@@ -267,4 +406,29 @@ class DefaultInfinitestCore implements InfinitestCore {
 			each.reloading();
 		}
 	}
+
+	/**
+	 * Gives the classes each test loaded, when the runner records them, to
+	 * the test detector.
+	 */
+	private class ClassUsageListener implements TestResultsListener {
+		@Override
+		public void testCaseStarting(TestEvent event) {
+			// Nothing is recorded yet
+		}
+
+		@Override
+		public void testCaseComplete(TestCaseEvent event) {
+			if (InfinitestGlobalSettings.isClassUsageRecording() && (testDetector != null)) {
+				testDetector.recordClassUsage(event.getTestName(), event.getLoadedClasses(), event.getClassesLoadedBefore());
+			}
+		}
+	}
+
+	private class StatisticsSaver extends TestQueueAdapter {
+		@Override
+		public void testRunComplete() {
+			saveStatistics();
+		}
+	}
 }
@@ -112,4 +112,15 @@ public interface InfinitestCore {
 
 	void removeConsoleOutputListener(ConsoleOutputListener listener);
 
+	/**
+	 * The end of the console output written while the test last ran, or an
+	 * empty string if it wrote nothing or if its output was not kept.
+	 */
+	String getConsoleOutput(String testName);
+
+	/**
+	 * Stops the runner processes kept by this core. Called when the core is
+	 * no longer used, for instance when its project is closed.
+	 */
+	void close();
 }
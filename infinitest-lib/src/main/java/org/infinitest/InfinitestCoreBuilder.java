@@ -29,7 +29,9 @@ package org.infinitest;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
+import org.infinitest.changedetect.ChangeDetector;
 import org.infinitest.changedetect.FileChangeDetector;
+import org.infinitest.changedetect.WatchingChangeDetector;
 import org.infinitest.config.FileBasedInfinitestConfigurationSource;
 import org.infinitest.config.InfinitestConfigurationSource;
 import org.infinitest.environment.RuntimeEnvironment;
@@ -52,6 +54,7 @@ public class InfinitestCoreBuilder {
 	private final EventQueue eventQueue;
 	private String coreName;
 	private ConcurrencyController controller;
+	private boolean watchFileSystem;
 
 	public InfinitestCoreBuilder(RuntimeEnvironment environment, EventQueue eventQueue, String coreName) {
 		checkNotNull(environment, "No runtime environment is configured. Maybe because " + coreName + " has no jdk.");
@@ -74,12 +77,19 @@ public class InfinitestCoreBuilder {
 		runner.setConcurrencyController(controller);
 		DefaultInfinitestCore core = new DefaultInfinitestCore(runner, eventQueue);
 		core.setName(coreName);
-		core.setChangeDetector(new FileChangeDetector());
+		core.setChangeDetector(createChangeDetector());
 		core.setTestDetector(createTestDetector(filterList));
 		core.setRuntimeEnvironment(runtimeEnvironment);
 		return core;
 	}
 
+	protected ChangeDetector createChangeDetector() {
+		if (watchFileSystem) {
+			return new WatchingChangeDetector();
+		}
+		return new FileChangeDetector();
+	}
+
 	protected TestDetector createTestDetector(TestFilter testFilterList) {
 		return new ClassFileTestDetector(testFilterList);
 	}
@@ -93,6 +103,16 @@ public class InfinitestCoreBuilder {
 		filterList = testFilter;
 	}
 
+	/**
+	 * When enabled, the changed class files are found from the notifications
+	 * of the file system rather than by scanning the class directories on each
+	 * update. Some platforms only poll for changes, so this is disabled by
+	 * default.
+	 */
+	public void setWatchFileSystem(boolean watch) {
+		watchFileSystem = watch;
+	}
+
 	private TestRunner createRunner() {
 		try {
 			return runnerClass.newInstance();
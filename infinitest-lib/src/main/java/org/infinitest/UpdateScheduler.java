@@ -0,0 +1,235 @@
+/*
+ * Infinitest, a Continuous Test Runner.
+ *
+ * Copyright (C) 2010-2013
+ * "Ben Rady" <benrady@gmail.com>,
+ * "Rod Coffin" <rfciii@gmail.com>,
+ * "Ryan Breidenbach" <ryan.breidenbach@gmail.com>
+ * "David Gageot" <david@gageot.net>, et al.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.infinitest;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.logging.Level.FINE;
+import static org.infinitest.util.InfinitestUtils.log;
+
+import java.io.File;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.function.IntConsumer;
+
+import org.infinitest.environment.RuntimeEnvironment;
+
+/**
+ * Updates a core once the changes stop arriving. A build writes class files
+ * over several seconds and may notify several changes meanwhile: the
+ * notifications which arrive within the quiet period of each other are merged
+ * into a single update, so that the tests are not started, stopped and
+ * started again. The update is never delayed more than the maximum delay
+ * after the first notification, so that the feedback still arrives during
+ * long builds.
+ * <p>
+ * The runtime environment notified with the changes is set on the core by
+ * the update, so that the core is not reloaded while it is being updated.
+ */
+public class UpdateScheduler {
+	public static final long DEFAULT_QUIET_PERIOD = 500;
+	public static final long DEFAULT_MAX_DELAY = 5000;
+
+	private final InfinitestCore core;
+	private final long quietPeriod;
+	private final long maxDelay;
+	private final ScheduledExecutorService executor;
+	private final IntConsumer updateListener;
+	private ScheduledFuture<?> pendingUpdate;
+	private int pendingNotifications;
+	private long firstNotificationTime;
+	private boolean fullUpdate;
+	private final Set<File> changedFiles = new HashSet<>();
+	private RuntimeEnvironment pendingEnvironment;
+	private int mergedNotifications;
+
+	public UpdateScheduler(InfinitestCore core) {
+		this(core, DEFAULT_QUIET_PERIOD, DEFAULT_MAX_DELAY);
+	}
+
+	/**
+	 * @param updateListener
+	 *            Told, on the thread which updated the core, how many tests
+	 *            each update queued
+	 */
+	public UpdateScheduler(InfinitestCore core, IntConsumer updateListener) {
+		this(core, DEFAULT_QUIET_PERIOD, DEFAULT_MAX_DELAY, updateListener);
+	}
+
+	/**
+	 * @param quietPeriod
+	 *            How long, in milliseconds, no change must be notified
+	 *            before the core is updated
+	 * @param maxDelay
+	 *            How long, in milliseconds, the update may be delayed after
+	 *            the first notification
+	 */
+	public UpdateScheduler(InfinitestCore core, long quietPeriod, long maxDelay) {
+		this(core, quietPeriod, maxDelay, testsToRun -> {
+			// Nobody is interested
+		});
+	}
+
+	public UpdateScheduler(InfinitestCore core, long quietPeriod, long maxDelay, IntConsumer updateListener) {
+		this.core = core;
+		this.quietPeriod = quietPeriod;
+		this.maxDelay = maxDelay;
+		this.updateListener = updateListener;
+		executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "Infinitest update scheduler for " + core.getName());
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	/**
+	 * Schedules an update of the core, which finds the changed files itself.
+	 */
+	public synchronized void scheduleUpdate() {
+		fullUpdate = true;
+		schedule();
+	}
+
+	/**
+	 * Schedules an update of the core with the files known to have changed.
+	 * The files of the merged notifications are updated together.
+	 */
+	public synchronized void scheduleUpdate(Collection<File> files) {
+		changedFiles.addAll(files);
+		schedule();
+	}
+
+	/**
+	 * Schedules an update of the core, which finds the changed files itself,
+	 * in the environment. The last environment of the merged notifications is
+	 * used.
+	 */
+	public synchronized void scheduleUpdate(RuntimeEnvironment environment) {
+		pendingEnvironment = environment;
+		scheduleUpdate();
+	}
+
+	/**
+	 * Schedules an update of the core with the files known to have changed,
+	 * in the environment.
+	 */
+	public synchronized void scheduleUpdate(RuntimeEnvironment environment, Collection<File> files) {
+		pendingEnvironment = environment;
+		scheduleUpdate(files);
+	}
+
+	private void schedule() {
+		long now = System.currentTimeMillis();
+		if (pendingNotifications == 0) {
+			firstNotificationTime = now;
+		} else {
+			pendingUpdate.cancel(false);
+		}
+		pendingNotifications++;
+
+		long delay = Math.min(quietPeriod, (firstNotificationTime + maxDelay) - now);
+		pendingUpdate = executor.schedule(this::update, Math.max(0, delay), MILLISECONDS);
+	}
+
+	private void update() {
+		boolean updateEverything;
+		Set<File> files;
+		RuntimeEnvironment environment;
+		synchronized (this) {
+			if (pendingNotifications == 0) {
+				// Already done by an update which was cancelled too late
+				return;
+			}
+			if (pendingNotifications > 1) {
+				log(FINE, "Merged " + pendingNotifications + " change notifications into one update of " + core.getName());
+				mergedNotifications += pendingNotifications - 1;
+			}
+			updateEverything = fullUpdate;
+			files = new HashSet<>(changedFiles);
+			environment = pendingEnvironment;
+			pendingEnvironment = null;
+			pendingNotifications = 0;
+			fullUpdate = false;
+			changedFiles.clear();
+		}
+
+		int testsToRun;
+		try {
+			if (environment != null) {
+				core.setRuntimeEnvironment(environment);
+			}
+			if (updateEverything) {
+				testsToRun = core.update();
+			} else {
+				testsToRun = core.update(files);
+			}
+		} catch (RuntimeException e) {
+			log("Error while updating " + core.getName(), e);
+			return;
+		}
+		updateListener.accept(testsToRun);
+	}
+
+	/**
+	 * Updates the core now, on the calling thread, if an update is pending.
+	 */
+	public void flush() {
+		synchronized (this) {
+			if (pendingNotifications > 0) {
+				pendingUpdate.cancel(false);
+			}
+		}
+		update();
+	}
+
+	/**
+	 * @return How many notifications were merged into the update of an
+	 *         earlier one so far
+	 */
+	public synchronized int getMergedNotificationCount() {
+		return mergedNotifications;
+	}
+
+	/**
+	 * @return <code>true</code> if an update is waiting for the changes to
+	 *         settle
+	 */
+	public synchronized boolean isUpdatePending() {
+		return pendingNotifications > 0;
+	}
+
+	/**
+	 * Stops updating the core. The pending update is dropped.
+	 */
+	public void shutdown() {
+		executor.shutdownNow();
+	}
+}
@@ -36,9 +36,31 @@ import org.infinitest.environment.ClasspathProvider;
 public interface ChangeDetector {
 	Set<File> findChangedFiles() throws IOException;
 
-	void clear();
+	/**
+	 * Jars are not watched entry by entry, but compared with the previous
+	 * version of the jar when their timestamp changes. The first time a jar
+	 * is seen, none of its classes is considered changed.
+	 * 
+	 * @return The names of the classes which were added, removed or modified
+	 *         in the jars of the classpath since the last call
+	 */
+	Set<String> findChangedJarClasses() throws IOException;
+
+	/**
+	 * @return The class files which were removed since the last call, among
+	 *         those found by {@link #findChangedFiles()}
+	 */
+	Set<File> findRemovedFiles() throws IOException;
 
-	boolean filesWereRemoved();
+	void clear();
 
 	void setClasspathProvider(ClasspathProvider classpath);
+
+	/**
+	 * Switches to a classpath with the same class directories, whose jars
+	 * differ. The class files found so far are not reported again, the
+	 * classes of the jars added or removed are reported by the next call to
+	 * {@link #findChangedJarClasses()}.
+	 */
+	void updateClasspathProvider(ClasspathProvider classpath);
 }
\ No newline at end of file
@@ -36,6 +36,7 @@ import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -48,11 +49,19 @@ import org.infinitest.util.InfinitestUtils;
 
 public class FileChangeDetector implements ChangeDetector {
 	private Map<Path, Long> timestampIndex;
+	private final Set<Path> removedFiles;
 	private List<Path> classDirectories;
+	private final Map<Path, JarSnapshot> jarIndex;
+	private List<Path> jars;
+	private final Set<String> classesOfChangedJars;
 
 	public FileChangeDetector() {
 		classDirectories = new ArrayList<>();
 		timestampIndex = new HashMap<>();
+		removedFiles = new HashSet<>();
+		jarIndex = new HashMap<>();
+		jars = new ArrayList<>();
+		classesOfChangedJars = new HashSet<>();
 	}
 
 	@Override
@@ -60,21 +69,101 @@ public class FileChangeDetector implements ChangeDetector {
 		clear();
 		List<File> classDirs = classpath.classDirectoriesInClasspath();
 		classDirectories = classDirs.stream().map(File::toPath).collect(Collectors.toList());
+		jars = classpath.jarsInClasspath().stream().map(File::toPath).collect(Collectors.toList());
+	}
+
+	@Override
+	public synchronized void updateClasspathProvider(ClasspathProvider classpath) {
+		List<Path> newJars = classpath.jarsInClasspath().stream().map(File::toPath).collect(Collectors.toList());
+		for (Path jar : jars) {
+			JarSnapshot snapshot = jarIndex.get(jar);
+			if (!newJars.contains(jar) && (snapshot != null)) {
+				classesOfChangedJars.addAll(snapshot.getClassNames());
+				jarIndex.remove(jar);
+			}
+		}
+		for (Path jar : newJars) {
+			if (!jars.contains(jar) && Files.isRegularFile(jar)) {
+				JarSnapshot snapshot = readJar(jar, null);
+				if (snapshot != null) {
+					classesOfChangedJars.addAll(snapshot.getClassNames());
+					jarIndex.put(jar, snapshot);
+				}
+			}
+		}
+		jars = newJars;
 	}
 
 	@Override
 	public synchronized Set<File> findChangedFiles() throws IOException {
 		Set<Path> changedFiles = new HashSet<>();
+		Set<Path> unseenFiles = getIndexedFiles();
 		
 		for (Path root : classDirectories) {
 			try (Stream<Path> stream = Files.walk(root, Integer.MAX_VALUE, FileVisitOption.FOLLOW_LINKS)) {
-				stream.forEach(path -> processFile(path, changedFiles));
+				stream.forEach(path -> {
+					unseenFiles.remove(path);
+					processFile(path, changedFiles);
+				});
 			}
 		}
 		
+		// The indexed files the walk did not find were removed
+		for (Path each : unseenFiles) {
+			forgetFile(each);
+		}
 		return changedFiles.stream().map(Path::toFile).collect(Collectors.toSet());
 	}
 
+	/**
+	 * @return The class directories of the classpath, as given by the last
+	 *         classpath provider
+	 */
+	protected synchronized List<Path> getClassDirectories() {
+		return classDirectories;
+	}
+
+	/**
+	 * @return A copy of the class files found so far
+	 */
+	protected synchronized Set<Path> getIndexedFiles() {
+		return new HashSet<>(timestampIndex.keySet());
+	}
+
+	/**
+	 * Forgets a class file which was removed. It is reported by the next call
+	 * to {@link #findRemovedFiles()}.
+	 * 
+	 * @return <code>true</code> if the file was found before
+	 */
+	protected synchronized boolean forgetFile(Path removedFile) {
+		if (timestampIndex.remove(removedFile) == null) {
+			return false;
+		}
+		removedFiles.add(removedFile);
+		return true;
+	}
+
+	/**
+	 * Forgets every class file under a directory which was removed. They are
+	 * reported by the next call to {@link #findRemovedFiles()}.
+	 * 
+	 * @return The forgotten class files
+	 */
+	protected synchronized Set<Path> forgetDirectory(Path removedDirectory) {
+		Set<Path> forgottenFiles = new HashSet<>();
+		Iterator<Path> indexedFiles = timestampIndex.keySet().iterator();
+		while (indexedFiles.hasNext()) {
+			Path indexedFile = indexedFiles.next();
+			if (indexedFile.startsWith(removedDirectory)) {
+				forgottenFiles.add(indexedFile);
+				indexedFiles.remove();
+			}
+		}
+		removedFiles.addAll(forgottenFiles);
+		return forgottenFiles;
+	}
+
 	protected void processFile(Path classFile, Set<Path> changedFiles) {
 		try {
 			BasicFileAttributes attributes = readFileAttributes(classFile);
@@ -86,6 +175,8 @@ public class FileChangeDetector implements ChangeDetector {
 				if ((timestamp == null) || (lastModifiedTime != timestamp)) {
 					timestampIndex.put(classFile, lastModifiedTime);
 					changedFiles.add(classFile);
+					// Written again since it was removed
+					removedFiles.remove(classFile);
 					InfinitestUtils.log(Level.FINEST, "Class file added to changelist " + classFile);
 				}
 			}
@@ -94,17 +185,69 @@ public class FileChangeDetector implements ChangeDetector {
 		}
 	}
 
+	@Override
+	public synchronized Set<String> findChangedJarClasses() {
+		Set<String> changedClasses = new HashSet<>(classesOfChangedJars);
+		classesOfChangedJars.clear();
+
+		for (Path jar : jars) {
+			JarSnapshot snapshot = jarIndex.get(jar);
+			if (Files.isRegularFile(jar)) {
+				JarSnapshot newSnapshot = readJar(jar, snapshot);
+				if ((snapshot != null) && (newSnapshot != snapshot)) {
+					changedClasses.addAll(snapshot.findChangedClasses(newSnapshot));
+				}
+				if (newSnapshot != null) {
+					jarIndex.put(jar, newSnapshot);
+				}
+			} else if (snapshot != null) {
+				// Probably being rebuilt, every class of the jar is gone for now
+				changedClasses.addAll(snapshot.getClassNames());
+				jarIndex.put(jar, JarSnapshot.missing());
+			}
+		}
+
+		if (!changedClasses.isEmpty()) {
+			InfinitestUtils.log(Level.FINEST, "Jar classes added to changelist " + changedClasses);
+		}
+		return changedClasses;
+	}
+
+	/**
+	 * @return The previous snapshot if the jar was not modified or could not
+	 *         be read, a new one otherwise
+	 */
+	private JarSnapshot readJar(Path jar, JarSnapshot snapshot) {
+		try {
+			BasicFileAttributes attributes = readFileAttributes(jar);
+			long lastModified = attributes.lastModifiedTime().toMillis();
+			if ((snapshot != null) && snapshot.sameSizeAndTimestamp(lastModified, attributes.size())) {
+				return snapshot;
+			}
+			return JarSnapshot.read(jar.toFile(), lastModified, attributes.size());
+		} catch (IOException e) {
+			// The jar may still be being written, it will be read again next time
+			InfinitestUtils.log(Level.FINE, "Could not read jar " + jar + ": " + e.getMessage());
+			return snapshot;
+		}
+	}
+
 	protected BasicFileAttributes readFileAttributes(Path path) throws IOException {
 		return Files.readAttributes(path, BasicFileAttributes.class);
 	}
 
 	@Override
-	public synchronized void clear() {
-		timestampIndex.clear();
+	public synchronized Set<File> findRemovedFiles() throws IOException {
+		Set<File> files = removedFiles.stream().map(Path::toFile).collect(Collectors.toSet());
+		removedFiles.clear();
+		return files;
 	}
 
 	@Override
-	public synchronized boolean filesWereRemoved() {
-		return timestampIndex.keySet().stream().anyMatch(Files::notExists);
+	public synchronized void clear() {
+		timestampIndex.clear();
+		removedFiles.clear();
+		jarIndex.clear();
+		classesOfChangedJars.clear();
 	}
 }
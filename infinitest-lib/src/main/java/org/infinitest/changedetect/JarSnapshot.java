@@ -0,0 +1,155 @@
+/*
+ * Infinitest, a Continuous Test Runner.
+ *
+ * Copyright (C) 2010-2013
+ * "Ben Rady" <benrady@gmail.com>,
+ * "Rod Coffin" <rfciii@gmail.com>,
+ * "Ryan Breidenbach" <ryan.breidenbach@gmail.com>
+ * "David Gageot" <david@gageot.net>, et al.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.infinitest.changedetect;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * The CRC32 of every class in a jar, as recorded in the central directory of
+ * the jar. Reading it does not inflate any entry, so comparing two snapshots
+ * of a jar is cheap even for large jars.
+ */
+final class JarSnapshot {
+	private static final String CLASS_EXTENSION = ".class";
+	private static final String META_INF = "META-INF/";
+
+	private final long lastModified;
+	private final long size;
+	/**
+	 * Sorted, so that two snapshots are compared in a single pass
+	 */
+	private final String[] classNames;
+	private final long[] checksums;
+
+	private JarSnapshot(long lastModified, long size, String[] classNames, long[] checksums) {
+		this.lastModified = lastModified;
+		this.size = size;
+		this.classNames = classNames;
+		this.checksums = checksums;
+	}
+
+	/**
+	 * @return The snapshot of a jar which is missing, for instance while it
+	 *         is rebuilt, so that all its classes are found changed when it
+	 *         comes back
+	 */
+	static JarSnapshot missing() {
+		return new JarSnapshot(-1, -1, new String[0], new long[0]);
+	}
+
+	static JarSnapshot read(File jar, long lastModified, long size) throws IOException {
+		Map<String, Long> checksumsByClass = new TreeMap<>();
+		try (ZipFile zipFile = new ZipFile(jar)) {
+			Enumeration<? extends ZipEntry> entries = zipFile.entries();
+			while (entries.hasMoreElements()) {
+				ZipEntry entry = entries.nextElement();
+				String className = toClassName(entry);
+				if (className != null) {
+					checksumsByClass.put(className, entry.getCrc());
+				}
+			}
+		}
+
+		String[] classNames = new String[checksumsByClass.size()];
+		long[] checksums = new long[checksumsByClass.size()];
+		int index = 0;
+		for (Map.Entry<String, Long> each : checksumsByClass.entrySet()) {
+			classNames[index] = each.getKey();
+			checksums[index] = each.getValue();
+			index++;
+		}
+		return new JarSnapshot(lastModified, size, classNames, checksums);
+	}
+
+	/**
+	 * @return The name of the class in this entry, or null if it is not a
+	 *         class of the jar. Versioned classes of multi-release jars are
+	 *         ignored.
+	 */
+	private static String toClassName(ZipEntry entry) {
+		String name = entry.getName();
+		if (entry.isDirectory() || !name.endsWith(CLASS_EXTENSION) || name.startsWith(META_INF) || name.endsWith("module-info.class")) {
+			return null;
+		}
+		return name.substring(0, name.length() - CLASS_EXTENSION.length()).replace('/', '.');
+	}
+
+	boolean sameSizeAndTimestamp(long lastModified, long size) {
+		return (this.lastModified == lastModified) && (this.size == size);
+	}
+
+	/**
+	 * @return The classes which were added, removed or whose checksum changed
+	 *         between this snapshot and the newer one
+	 */
+	Set<String> findChangedClasses(JarSnapshot newer) {
+		Set<String> changedClasses = new HashSet<>();
+		int oldIndex = 0;
+		int newIndex = 0;
+		while ((oldIndex < classNames.length) && (newIndex < newer.classNames.length)) {
+			int comparison = classNames[oldIndex].compareTo(newer.classNames[newIndex]);
+			if (comparison < 0) {
+				changedClasses.add(classNames[oldIndex++]);
+			} else if (comparison > 0) {
+				changedClasses.add(newer.classNames[newIndex++]);
+			} else {
+				if (checksums[oldIndex] != newer.checksums[newIndex]) {
+					changedClasses.add(classNames[oldIndex]);
+				}
+				oldIndex++;
+				newIndex++;
+			}
+		}
+		while (oldIndex < classNames.length) {
+			changedClasses.add(classNames[oldIndex++]);
+		}
+		while (newIndex < newer.classNames.length) {
+			changedClasses.add(newer.classNames[newIndex++]);
+		}
+		return changedClasses;
+	}
+
+	/**
+	 * @return Every class of the jar
+	 */
+	Set<String> getClassNames() {
+		Set<String> names = new HashSet<>();
+		for (String each : classNames) {
+			names.add(each);
+		}
+		return names;
+	}
+}
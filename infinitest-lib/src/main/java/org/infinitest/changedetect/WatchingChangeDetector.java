@@ -0,0 +1,266 @@
+/*
+ * Infinitest, a Continuous Test Runner.
+ *
+ * Copyright (C) 2010-2013
+ * "Ben Rady" <benrady@gmail.com>,
+ * "Rod Coffin" <rfciii@gmail.com>,
+ * "Ryan Breidenbach" <ryan.breidenbach@gmail.com>
+ * "David Gageot" <david@gageot.net>, et al.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.infinitest.changedetect;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.stream.Collectors;
+
+import org.infinitest.util.InfinitestUtils;
+
+/**
+ * Finds the changed class files from the notifications of the file system
+ * rather than by scanning the class directories on each update. The class
+ * directories are only scanned the first time, after {@link #clear()} and when
+ * the file system lost notifications.
+ * <p>
+ * The notifications arrive asynchronously, so each update waits until they
+ * settle before reporting the changes. They are polled once per update, by
+ * {@link #findChangedFiles()}.
+ * <p>
+ * Jars are still checked by timestamp, there are only a few of them.
+ */
+public class WatchingChangeDetector extends FileChangeDetector {
+	private static final WatchEvent.Kind<?>[] WATCHED_EVENTS = { ENTRY_CREATE, ENTRY_DELETE, ENTRY_MODIFY };
+	/**
+	 * Milliseconds without notifications after which the file system is
+	 * considered to have reported the files written before the update
+	 */
+	static final long SETTLE_DELAY = 50;
+	/**
+	 * Milliseconds after which an update stops waiting for the notifications
+	 * of files still being written, the next update reports them
+	 */
+	static final long MAX_SETTLE_TIME = 1000;
+
+	private WatchService watchService;
+	private final Map<WatchKey, Path> watchedDirectories = new HashMap<>();
+	/**
+	 * Every directory watched, kept until its removal is notified even if its
+	 * watch key is cancelled first
+	 */
+	private final Set<Path> knownDirectories = new HashSet<>();
+	private final List<Path> missingDirectories = new ArrayList<>();
+	private final Set<Path> changedFiles = new HashSet<>();
+	private boolean rescanNeeded = true;
+
+	@Override
+	public synchronized Set<File> findChangedFiles() throws IOException {
+		if (rescanNeeded) {
+			rescan();
+		} else {
+			pollEvents();
+			watchCreatedDirectories();
+		}
+
+		Set<File> files = changedFiles.stream().map(Path::toFile).collect(Collectors.toSet());
+		changedFiles.clear();
+		return files;
+	}
+
+	@Override
+	public synchronized void clear() {
+		super.clear();
+		closeWatchService();
+		changedFiles.clear();
+		rescanNeeded = true;
+	}
+
+	/**
+	 * Directories are watched before being scanned, so that a file written
+	 * during the scan is not missed. The files found before which are not
+	 * found by the scan were removed.
+	 */
+	private void rescan() throws IOException {
+		closeWatchService();
+		watchService = FileSystems.getDefault().newWatchService();
+		rescanNeeded = false;
+		missingDirectories.clear();
+		Set<Path> unseenFiles = getIndexedFiles();
+		for (Path each : getClassDirectories()) {
+			if (Files.isDirectory(each)) {
+				watchTree(each, unseenFiles);
+			} else {
+				missingDirectories.add(each);
+			}
+		}
+		for (Path each : unseenFiles) {
+			forgetFile(each);
+		}
+	}
+
+	private void watchCreatedDirectories() throws IOException {
+		for (Path each : new ArrayList<>(missingDirectories)) {
+			if (Files.isDirectory(each)) {
+				missingDirectories.remove(each);
+				watchTree(each, new HashSet<>());
+			}
+		}
+	}
+
+	private void watchTree(Path root, Set<Path> unseenFiles) throws IOException {
+		Files.walkFileTree(root, EnumSet.of(FileVisitOption.FOLLOW_LINKS), Integer.MAX_VALUE, new SimpleFileVisitor<Path>() {
+			@Override
+			public FileVisitResult preVisitDirectory(Path directory, BasicFileAttributes attributes) throws IOException {
+				watchedDirectories.put(directory.register(watchService, WATCHED_EVENTS), directory);
+				knownDirectories.add(directory);
+				return FileVisitResult.CONTINUE;
+			}
+
+			@Override
+			public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) {
+				unseenFiles.remove(file);
+				fileWritten(file);
+				return FileVisitResult.CONTINUE;
+			}
+		});
+	}
+
+	private void pollEvents() throws IOException {
+		if (watchService == null) {
+			return;
+		}
+
+		long deadline = System.currentTimeMillis() + MAX_SETTLE_TIME;
+		WatchKey key;
+		while ((key = awaitEvents(deadline)) != null) {
+			Path directory = watchedDirectories.get(key);
+			for (WatchEvent<?> event : key.pollEvents()) {
+				if (event.kind() == OVERFLOW) {
+					eventsLost();
+				} else if (directory != null) {
+					processEvent(event.kind(), directory.resolve((Path) event.context()));
+				}
+			}
+			if (!key.reset()) {
+				watchedDirectories.remove(key);
+				if (getClassDirectories().contains(directory)) {
+					// Nothing tells what happened to the files of a removed class directory
+					eventsLost();
+				}
+			}
+		}
+
+		if (rescanNeeded) {
+			rescan();
+		}
+	}
+
+	private WatchKey awaitEvents(long deadline) {
+		if (System.currentTimeMillis() >= deadline) {
+			return watchService.poll();
+		}
+		try {
+			return watchService.poll(SETTLE_DELAY, MILLISECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return watchService.poll();
+		}
+	}
+
+	private void processEvent(WatchEvent.Kind<?> kind, Path path) throws IOException {
+		if (kind == ENTRY_DELETE) {
+			fileRemoved(path);
+		} else if (Files.isDirectory(path)) {
+			if (kind == ENTRY_CREATE) {
+				// Files may have been written before the directory was watched
+				watchTree(path, new HashSet<>());
+			}
+		} else {
+			fileWritten(path);
+		}
+	}
+
+	/**
+	 * Only the class files under a removed directory are looked for among the
+	 * indexed files, the removal of other files is ignored.
+	 */
+	private void fileRemoved(Path path) {
+		if (knownDirectories.remove(path)) {
+			knownDirectories.removeIf(each -> each.startsWith(path));
+			changedFiles.removeAll(forgetDirectory(path));
+		} else if (ClassFileFilter.isClassFile(path) && forgetFile(path)) {
+			changedFiles.remove(path);
+		}
+	}
+
+	private void fileWritten(Path file) {
+		try {
+			processFile(file, changedFiles);
+		} catch (IllegalArgumentException e) {
+			// Already removed, a removal event follows
+			InfinitestUtils.log(Level.FINEST, "Class file removed before it was read " + file);
+		}
+	}
+
+	/**
+	 * The file system could not tell every change, the class directories are
+	 * scanned again.
+	 */
+	void eventsLost() {
+		InfinitestUtils.log(Level.FINE, "File system events were lost, scanning the class directories again");
+		rescanNeeded = true;
+	}
+
+	private void closeWatchService() {
+		if (watchService != null) {
+			try {
+				watchService.close();
+			} catch (IOException e) {
+				InfinitestUtils.log(Level.FINE, "Could not stop watching the class directories: " + e.getMessage());
+			}
+			watchService = null;
+		}
+		watchedDirectories.clear();
+		knownDirectories.clear();
+	}
+}
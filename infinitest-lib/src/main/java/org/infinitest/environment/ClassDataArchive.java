@@ -0,0 +1,283 @@
+/*
+ * Infinitest, a Continuous Test Runner.
+ *
+ * Copyright (C) 2010-2013
+ * "Ben Rady" <benrady@gmail.com>,
+ * "Rod Coffin" <rfciii@gmail.com>,
+ * "Ryan Breidenbach" <ryan.breidenbach@gmail.com>
+ * "David Gageot" <david@gageot.net>, et al.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.infinitest.environment;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.util.logging.Level.CONFIG;
+import static java.util.logging.Level.WARNING;
+import static org.infinitest.util.InfinitestUtils.log;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.infinitest.testrunner.ClassListLoader;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.hash.Hashing;
+
+/**
+ * The class data sharing archive of the jars of the runner processes, which
+ * their JVM maps instead of loading and verifying these classes again.
+ * <p>
+ * The first process records the classes it loads. Once it exited, the next
+ * one starts without the archive while another JVM archives those of the
+ * jars: with <code>-XX:ArchiveClassesAtExit</code> from Java 13, with
+ * <code>-Xshare:dump</code> before. The processes started afterwards map the
+ * archive.
+ * <p>
+ * The archive is named after a hash of the JVM and of the jars, their size
+ * and date included: when one of them changes another archive is created,
+ * and those of the previous classpath of the project are deleted.
+ */
+class ClassDataArchive {
+	/**
+	 * Java 10 only archives the classes of the jars with
+	 * <code>-XX:+UseAppCDS</code>, which Java 11 no longer needs
+	 */
+	static final int MINIMUM_JAVA_VERSION = 11;
+	static final int ARCHIVE_AT_EXIT_JAVA_VERSION = 13;
+	private static final String DUMP_LOADED_CLASS_LIST = "-XX:DumpLoadedClassList=";
+
+	/**
+	 * The class lists and archives already being written, so that the
+	 * processes started meanwhile do not write them again. A class list is
+	 * written until the process recording it exits.
+	 */
+	private static final Set<File> filesBeingWritten = ConcurrentHashMap.newKeySet();
+
+	private final RuntimeEnvironment environment;
+	private final File directory;
+	private final int javaVersion;
+	private final List<String> jars;
+	private final String projectPrefix;
+	private final String name;
+
+	/**
+	 * @param jars
+	 *            The entries of the classpath which are not directories, in
+	 *            the order they start the classpath
+	 */
+	ClassDataArchive(RuntimeEnvironment environment, File directory, int javaVersion, List<String> jars) {
+		this.environment = environment;
+		this.directory = directory;
+		this.javaVersion = javaVersion;
+		this.jars = jars;
+		projectPrefix = "infinitest-" + Hashing.sha1().hashString(environment.getWorkingDirectory().getAbsolutePath(), UTF_8).toString().substring(0, 8) + "-";
+		name = projectPrefix + fingerprint();
+	}
+
+	private String fingerprint() {
+		StringBuilder key = new StringBuilder(environment.getJavaExecutable()).append('\n').append(javaVersion);
+		for (String each : jars) {
+			File jar = resolve(each);
+			key.append('\n').append(each).append(':').append(jar.length()).append(':').append(jar.lastModified());
+		}
+		return Hashing.sha1().hashString(key, UTF_8).toString();
+	}
+
+	private File resolve(String entry) {
+		File file = new File(entry);
+		return file.isAbsolute() ? file : new File(environment.getWorkingDirectory(), entry);
+	}
+
+	File getArchiveFile() {
+		return new File(directory, name + ".jsa");
+	}
+
+	File getClassListFile() {
+		return new File(directory, name + ".classlist");
+	}
+
+	private File getLogFile() {
+		return new File(directory, name + ".log");
+	}
+
+	/**
+	 * @return The arguments mapping the archive if it was created, those
+	 *         recording the classes to archive if they were not recorded yet
+	 */
+	List<String> processArguments() {
+		if (getArchiveFile().isFile()) {
+			return Collections.singletonList("-XX:SharedArchiveFile=" + getArchiveFile().getAbsolutePath());
+		}
+		if (isRecording()) {
+			return Collections.emptyList();
+		}
+		if (getClassListFile().isFile()) {
+			// The log of a failed creation is kept, it is not attempted again
+			if (!getLogFile().exists()) {
+				createInBackground();
+			}
+			return Collections.emptyList();
+		}
+		if (!filesBeingWritten.add(getClassListFile())) {
+			return Collections.emptyList();
+		}
+		directory.mkdirs();
+		deleteArchivesOfOtherClasspaths();
+		return Collections.singletonList(DUMP_LOADED_CLASS_LIST + getClassListFile().getAbsolutePath());
+	}
+
+	/**
+	 * @return true while a runner process records the classes it loads in the
+	 *         class list
+	 */
+	boolean isRecording() {
+		return filesBeingWritten.contains(getClassListFile());
+	}
+
+	/**
+	 * The JVM appends to the class list as it loads classes, it is only
+	 * archived once the process recording it exited.
+	 */
+	static void runnerProcessStarted(List<String> arguments, Process process) {
+		File classList = recordedClassList(arguments);
+		if (classList == null) {
+			return;
+		}
+		Thread thread = new Thread(() -> {
+			try {
+				process.waitFor();
+				filesBeingWritten.remove(classList);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}, "Infinitest class list recording");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * The classes are recorded by the next process instead.
+	 */
+	static void runnerProcessNotStarted(List<String> arguments) {
+		File classList = recordedClassList(arguments);
+		if (classList != null) {
+			filesBeingWritten.remove(classList);
+		}
+	}
+
+	private static File recordedClassList(List<String> arguments) {
+		for (String each : arguments) {
+			if (each.startsWith(DUMP_LOADED_CLASS_LIST)) {
+				return new File(each.substring(DUMP_LOADED_CLASS_LIST.length()));
+			}
+		}
+		return null;
+	}
+
+	private void deleteArchivesOfOtherClasspaths() {
+		File[] files = directory.listFiles();
+		if (files == null) {
+			return;
+		}
+		for (File each : files) {
+			if (each.getName().startsWith(projectPrefix) && !each.getName().startsWith(name)) {
+				log(CONFIG, "Deleting the stale class data archive file " + each);
+				each.delete();
+			}
+		}
+	}
+
+	private void createInBackground() {
+		if (!filesBeingWritten.add(getArchiveFile())) {
+			return;
+		}
+		Thread thread = new Thread(() -> {
+			try {
+				create();
+			} finally {
+				filesBeingWritten.remove(getArchiveFile());
+			}
+		}, "Infinitest class data archive");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * Creates the archive from the recorded class list.
+	 * 
+	 * @return true if the archive was created
+	 */
+	@VisibleForTesting
+	boolean create() {
+		File temporaryArchive = new File(directory, name + ".jsa.tmp");
+		File classpathFile = new File(directory, name + ".classpath");
+		try {
+			Files.write(classpathFile.toPath(), Collections.singleton(environment.escapeClassPathFileContent(String.join(File.pathSeparator, jars))), UTF_8);
+			ProcessBuilder builder = new ProcessBuilder(dumpArguments(temporaryArchive, classpathFile));
+			builder.directory(environment.getWorkingDirectory());
+			builder.redirectErrorStream(true);
+			builder.redirectOutput(getLogFile());
+			int exitCode = builder.start().waitFor();
+			if ((exitCode != 0) || !temporaryArchive.isFile()) {
+				log(WARNING, "Could not create the class data archive of the runner processes, see " + getLogFile());
+				return false;
+			}
+			Files.move(temporaryArchive.toPath(), getArchiveFile().toPath(), REPLACE_EXISTING);
+			getLogFile().delete();
+			log(CONFIG, "Created the class data archive " + getArchiveFile());
+			return true;
+		} catch (IOException e) {
+			log("Error while creating the class data archive of the runner processes", e);
+			return false;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
+		} finally {
+			classpathFile.delete();
+			temporaryArchive.delete();
+		}
+	}
+
+	private List<String> dumpArguments(File archive, File classpathFile) {
+		List<String> args = new ArrayList<>();
+		args.add(environment.getJavaExecutable());
+		if (javaVersion >= ARCHIVE_AT_EXIT_JAVA_VERSION) {
+			args.add("-XX:ArchiveClassesAtExit=" + archive.getAbsolutePath());
+			args.add("-cp");
+			args.add("@" + classpathFile.getAbsolutePath());
+			args.add(ClassListLoader.class.getName());
+			args.add(getClassListFile().getAbsolutePath());
+		} else {
+			args.add("-Xshare:dump");
+			args.add("-XX:SharedClassListFile=" + getClassListFile().getAbsolutePath());
+			args.add("-XX:SharedArchiveFile=" + archive.getAbsolutePath());
+			args.add("-cp");
+			args.add("@" + classpathFile.getAbsolutePath());
+		}
+		return args;
+	}
+}
@@ -44,4 +44,10 @@ public interface ClasspathProvider {
 	String getRunnerFullClassPath();
 
 	List<File> classDirectoriesInClasspath();
+
+	/**
+	 * Jars of the classpath, which may be rebuilt by another module of the
+	 * project.
+	 */
+	List<File> jarsInClasspath();
 }
\ No newline at end of file
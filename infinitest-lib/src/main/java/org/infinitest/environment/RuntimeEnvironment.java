@@ -41,6 +41,7 @@ import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
@@ -50,6 +51,7 @@ import java.util.logging.Level;
 
 import org.infinitest.classloader.ClassPathFileClassLoader;
 import org.infinitest.testrunner.TestRunnerProcess;
+import org.infinitest.util.InfinitestGlobalSettings;
 import org.infinitest.util.InfinitestUtils;
 
 import com.google.common.annotations.VisibleForTesting;
@@ -96,6 +98,7 @@ public class RuntimeEnvironment implements ClasspathProvider {
 	private final List<String> additionalArgs;
 	private final String runnerProcessClassPath;
 	private List<File> classDirs;
+	private List<File> jars;
 	private final CustomJvmArgumentsReader customArgumentsReader;
 	private final String runnerBootstrapClassPath;
 
@@ -140,11 +143,138 @@ public class RuntimeEnvironment implements ClasspathProvider {
 		args.add(getJavaExecutable());
 		args.add(memorySetting);
 		args.addAll(additionalArgs);
+		args.addAll(classDataArchiveArguments());
+		args.addAll(classUsageAgentArguments());
+		args.addAll(persistentProcessArguments());
+		args.addAll(stackTraceArguments());
 		args.addAll(classpathArgumentBuilder.buildArguments());
 		args.addAll(addCustomArguments());
 		return args;
 	}
 
+	/**
+	 * Tells the environment a runner process started with the arguments it
+	 * created, so that it knows when the classes it records can be archived.
+	 */
+	public void runnerProcessStarted(List<String> arguments, Process process) {
+		ClassDataArchive.runnerProcessStarted(arguments, process);
+	}
+
+	/**
+	 * Tells the environment the arguments it created were not used.
+	 */
+	public void runnerProcessNotStarted(List<String> arguments) {
+		ClassDataArchive.runnerProcessNotStarted(arguments);
+	}
+
+	private List<String> classDataArchiveArguments() {
+		ClassDataArchive archive = getClassDataArchive();
+		if (archive == null) {
+			return Collections.emptyList();
+		}
+		return archive.processArguments();
+	}
+
+	/**
+	 * @return The archive of the jars of the runner processes, or null if they
+	 *         do not share their class data
+	 */
+	ClassDataArchive getClassDataArchive() {
+		File directory = InfinitestGlobalSettings.getClassDataArchiveDirectory();
+		if (directory == null) {
+			return null;
+		}
+		Integer javaVersion = getJavaVersion();
+		if ((javaVersion == null) || (javaVersion < ClassDataArchive.MINIMUM_JAVA_VERSION)) {
+			log(CONFIG, "Class data cannot be shared, the runner processes run on Java " + javaVersion);
+			return null;
+		}
+		if (!findInfinitestRunnerJar().endsWith(".jar")) {
+			log(CONFIG, "Class data cannot be shared, the runner is not a jar: " + findInfinitestRunnerJar());
+			return null;
+		}
+		return new ClassDataArchive(this, directory, javaVersion, withoutClassDirectories(getRunnerFullClassPathEntries()));
+	}
+
+	/**
+	 * The classpath of the runner processes. When they share their class
+	 * data, the jars come first: the JVM only maps an archive when the
+	 * classpath starts with the jars it was created from, and refuses to
+	 * archive the classes of a directory. Persistent runner processes load the
+	 * class directories themselves, so they are left out.
+	 */
+	private String getRunnerProcessClassPath() {
+		boolean persistent = InfinitestGlobalSettings.isPersistentRunnerProcesses();
+		if (!persistent && (getClassDataArchive() == null)) {
+			return getRunnerFullClassPath();
+		}
+		List<String> entries = getRunnerFullClassPathEntries();
+		if (persistent) {
+			// The application class loader would keep the classes of the first run
+			String runnerEntry = findInfinitestRunnerJar();
+			entries.removeIf(each -> !each.equals(runnerEntry) && classDirectoriesInClasspath().contains(new File(each)));
+		}
+		if (getClassDataArchive() != null) {
+			List<String> orderedEntries = withoutClassDirectories(entries);
+			entries.removeAll(orderedEntries);
+			orderedEntries.addAll(entries);
+			entries = orderedEntries;
+		}
+		return String.join(pathSeparator, entries);
+	}
+
+	private List<String> withoutClassDirectories(List<String> entries) {
+		List<String> otherEntries = new ArrayList<>();
+		for (String each : entries) {
+			if (!(new File(each).isDirectory() || new File(getWorkingDirectory(), each).isDirectory())) {
+				otherEntries.add(each);
+			}
+		}
+		return otherEntries;
+	}
+
+	/**
+	 * The runner jar is also the agent which records the classes loaded by
+	 * each test.
+	 */
+	private List<String> classUsageAgentArguments() {
+		if (!InfinitestGlobalSettings.isClassUsageRecording()) {
+			return Collections.emptyList();
+		}
+		String runnerJar = findInfinitestRunnerJar();
+		if (!runnerJar.endsWith(".jar")) {
+			log(CONFIG, "Class usage cannot be recorded, the runner is not a jar: " + runnerJar);
+			return Collections.emptyList();
+		}
+		return Collections.singletonList("-javaagent:" + runnerJar);
+	}
+
+	/**
+	 * A runner process which runs several runs loads the class directories
+	 * itself for each run, they are not on its classpath.
+	 */
+	private List<String> persistentProcessArguments() {
+		if (!InfinitestGlobalSettings.isPersistentRunnerProcesses()) {
+			return Collections.emptyList();
+		}
+		List<String> classDirectories = new ArrayList<>();
+		for (File each : classDirectoriesInClasspath()) {
+			classDirectories.add(each.getAbsolutePath());
+		}
+		return Collections.singletonList("-D" + TestRunnerProcess.CLASS_DIRECTORIES_PROPERTY + "=" + String.join(pathSeparator, classDirectories));
+	}
+
+	private List<String> stackTraceArguments() {
+		List<String> args = new ArrayList<>();
+		if (InfinitestGlobalSettings.getStackTraceDepth() > 0) {
+			args.add("-D" + TestRunnerProcess.STACK_TRACE_DEPTH_PROPERTY + "=" + InfinitestGlobalSettings.getStackTraceDepth());
+		}
+		if (InfinitestGlobalSettings.getStackFrameFilter() != null) {
+			args.add("-D" + TestRunnerProcess.STACK_FRAME_FILTER_PROPERTY + "=" + InfinitestGlobalSettings.getStackFrameFilter());
+		}
+		return args;
+	}
+
 	public Map<String, String> createProcessEnvironment() {
 		Map<String, String> environment = new HashMap<>();
 		// Put only Infinitest runner jar in classpath just to be able to load
@@ -198,7 +328,7 @@ public class RuntimeEnvironment implements ClasspathProvider {
 		return newArrayList(classpath.split(pathSeparator));
 	}
 
-	private String getJavaExecutable() {
+	String getJavaExecutable() {
 		File javaExecutable = createJavaExecutableFile("java");
 		if (!javaExecutable.exists()) {
 			javaExecutable = createJavaExecutableFile("java.exe");
@@ -248,6 +378,63 @@ public class RuntimeEnvironment implements ClasspathProvider {
 		return false;
 	}
 
+	/**
+	 * @return What the runner processes of this environment are started
+	 *         with. Environments with the same key, even with other class
+	 *         directories, start the same processes.
+	 */
+	public List<Object> getRunnerProcessKey() {
+		return Arrays.<Object> asList(javaHome, workingDirectory, getHeapSize(), additionalArgs, addCustomArguments(), InfinitestGlobalSettings.isClassUsageRecording(), InfinitestGlobalSettings.isPersistentRunnerProcesses(), InfinitestGlobalSettings.getStackTraceDepth(), InfinitestGlobalSettings.getStackFrameFilter(), InfinitestGlobalSettings.getClassDataArchiveDirectory(), runnerBootstrapClassPath, runnerProcessClassPath, projectUnderTestClassPath);
+	}
+
+	/**
+	 * @return true if the other environment only differs by the arguments of
+	 *         the JVM running the tests
+	 */
+	public boolean hasSameClasspathAs(RuntimeEnvironment other) {
+		return hasSameClassDirectoriesAs(other) && other.projectUnderTestClassPath.equals(projectUnderTestClassPath);
+	}
+
+	/**
+	 * @return true if the other environment only differs by the arguments of
+	 *         the JVM and by the jars of the classpath, the jars found in both
+	 *         classpaths keeping their order. Only the classes of the jars added
+	 *         or removed may then be found in another place of the classpath.
+	 */
+	public boolean differsOnlyByJarsFrom(RuntimeEnvironment other) {
+		if (!hasSameClassDirectoriesAs(other)) {
+			return false;
+		}
+
+		List<String> entries = getClasspathEntries(projectUnderTestClassPath);
+		List<String> otherEntries = getClasspathEntries(other.projectUnderTestClassPath);
+		return withoutJars(entries).equals(withoutJars(otherEntries)) && jarsAlsoIn(entries, otherEntries).equals(jarsAlsoIn(otherEntries, entries));
+	}
+
+	private boolean hasSameClassDirectoriesAs(RuntimeEnvironment other) {
+		return other.classOutputDirs.equals(classOutputDirs) && other.workingDirectory.equals(workingDirectory) && other.javaHome.equals(javaHome);
+	}
+
+	private static List<String> withoutJars(List<String> entries) {
+		List<String> directories = new ArrayList<>();
+		for (String each : entries) {
+			if (!each.endsWith(".jar")) {
+				directories.add(each);
+			}
+		}
+		return directories;
+	}
+
+	private static List<String> jarsAlsoIn(List<String> entries, List<String> otherEntries) {
+		List<String> jarsInBoth = new ArrayList<>();
+		for (String each : entries) {
+			if (each.endsWith(".jar") && otherEntries.contains(each)) {
+				jarsInBoth.add(each);
+			}
+		}
+		return jarsInBoth;
+	}
+
 	@Override
 	public int hashCode() {
 		// CHECKSTYLE:OFF
@@ -279,6 +466,20 @@ public class RuntimeEnvironment implements ClasspathProvider {
 		return classDirs;
 	}
 
+	@Override
+	public List<File> jarsInClasspath() {
+		if (jars == null) {
+			jars = new ArrayList<>();
+			for (String each : getClasspathEntries(projectUnderTestClassPath)) {
+				File classEntry = new File(each);
+				if (each.endsWith(".jar") && !classEntry.isDirectory()) {
+					jars.add(classEntry);
+				}
+			}
+		}
+		return jars;
+	}
+
 	public List<String> getRunnerFullClassPathEntries() {
 		return getClasspathEntries(getRunnerFullClassPath());
 	}
@@ -293,7 +494,7 @@ public class RuntimeEnvironment implements ClasspathProvider {
 			return new FileClasspathArgumentBuilder(classpathFile);
 		} else {
 			// We are below Java 9 or could not find the version
-			String classpath = getRunnerFullClassPath();
+			String classpath = getRunnerProcessClassPath();
 			
 			return new SimpleClasspathArgumentBuilder(classpath);
 		}
@@ -302,7 +503,7 @@ public class RuntimeEnvironment implements ClasspathProvider {
 	/**
 	 * @return The Java major version (e.g 8 for 8.xyz) or null if we could not get the version
 	 */
-	private Integer getJavaVersion() {
+	public Integer getJavaVersion() {
 		String javaVersion = null;
 		
 		try (FileInputStream in = new FileInputStream(new File(javaHome, "release"))) {
@@ -342,7 +543,7 @@ public class RuntimeEnvironment implements ClasspathProvider {
 		try {
 			File argumentFile = InfinitestUtils.createTempFile("infinitest-", ".cp-argument");
 			argumentFile.deleteOnExit();
-			String escapedRunnerFullClassPath = escapeClassPathFileContent(getRunnerFullClassPath());
+			String escapedRunnerFullClassPath = escapeClassPathFileContent(getRunnerProcessClassPath());
 			Files.write(argumentFile.toPath(), Collections.singleton(escapedRunnerFullClassPath), StandardCharsets.UTF_8);
 			return argumentFile;
 		} catch (IOException e) {
@@ -27,29 +27,57 @@
  */
 package org.infinitest.parser;
 
-import static org.jgrapht.Graphs.predecessorListOf;
+import static java.util.logging.Level.CONFIG;
+import static java.util.logging.Level.FINE;
+import static java.util.logging.Level.WARNING;
+import static java.util.stream.Collectors.toList;
+import static org.infinitest.util.InfinitestUtils.log;
 
 import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
 import org.infinitest.environment.ClasspathProvider;
-import org.jgrapht.DirectedGraph;
-import org.jgrapht.graph.DefaultDirectedGraph;
-import org.jgrapht.graph.DefaultEdge;
+import org.infinitest.parser.ClassParser.CacheEntry;
+import org.infinitest.util.InfinitestGlobalSettings;
 
 import com.google.common.annotations.VisibleForTesting;
-import com.google.common.collect.Sets;
+import com.google.common.base.Throwables;
+import com.google.common.cache.CacheStats;
 
 public class ClassFileIndex {
+	/**
+	 * Below this many files, parsing in parallel costs more than it saves.
+	 */
+	private static final int MIN_PARALLEL_SIZE = 32;
+
 	private final JavaClassBuilder builder;
-	private DirectedGraph<JavaClass, DefaultEdge> graph;
-	private Map<String, JavaClass> classesByName;
+	private DependencyGraph graph;
+	private RuntimeDependencies runtimeDependencies;
+	/**
+	 * The classes which depended on each removed class, linked to it again if
+	 * it comes back
+	 */
+	private Map<String, Set<String>> dependentsOfRemovedClasses;
+	/**
+	 * The classes which depended on classes removed since the last search for
+	 * changed classes
+	 */
+	private Set<String> classesWithRemovedDependencies;
+	private boolean changedSinceSnapshot;
 
 	public ClassFileIndex(ClasspathProvider classpath) {
 		this(new JavaClassBuilder(classpath));
@@ -58,47 +86,300 @@ public class ClassFileIndex {
 	@VisibleForTesting
 	ClassFileIndex(JavaClassBuilder classBuilder) {
 		builder = classBuilder;
-		graph = new DefaultDirectedGraph<>(DefaultEdge.class);
-		classesByName = new HashMap<>();
+		graph = new DependencyGraph();
+		runtimeDependencies = new RuntimeDependencies();
+		dependentsOfRemovedClasses = new HashMap<>();
+		classesWithRemovedDependencies = new HashSet<>();
 	}
 	
+	/**
+	 * Removes the classes of the removed files from the index and from the
+	 * parser caches. The classes which depended on them are reported as
+	 * changed by the next call to {@link #findClasses(Collection)}.
+	 * 
+	 * @return The removed classes
+	 */
 	public Set<JavaClass> removeClasses(Collection<File> removedFiles) {
 		Set<JavaClass> removedClasses = new HashSet<>();
 		
 		for (File removedFile : removedFiles) {
-			JavaClass removedClass = builder.getClass(removedFile);
+			JavaClass removedClass = findRemovedClass(removedFile);
+			builder.classFileRemoved(removedFile);
 			if (removedClass != null) {
-				graph.removeVertex(removedClass);
 				removedClasses.add(removedClass);
 			}
 		}
+
+		for (JavaClass each : removedClasses) {
+			Set<String> dependents = new HashSet<>();
+			for (JavaClass parent : graph.getParents(each)) {
+				dependents.add(parent.getName());
+			}
+			dependentsOfRemovedClasses.computeIfAbsent(each.getName(), name -> new HashSet<>()).addAll(dependents);
+			classesWithRemovedDependencies.addAll(dependents);
+			runtimeDependencies.forget(graph.findId(each.getName()));
+		}
+		for (JavaClass each : removedClasses) {
+			graph.removeVertex(each);
+			classesWithRemovedDependencies.remove(each.getName());
+			changedSinceSnapshot = true;
+		}
 		
 		return removedClasses;
 	}
 
+	private JavaClass findRemovedClass(File removedFile) {
+		JavaClass removedClass = builder.getClass(removedFile);
+		if (removedClass == null) {
+			// The parsed class may have been evicted from the parser cache
+			String classname = builder.getClassName(removedFile);
+			if (classname != null) {
+				removedClass = graph.findClass(classname);
+			}
+		}
+		return removedClass;
+	}
+
 	public Set<JavaClass> findClasses(Collection<File> changedFiles) {
+		return findClasses(changedFiles, javaClass -> {
+			// Only the complete set of classes is needed
+		});
+	}
+
+	/**
+	 * @param parsedClassListener
+	 *            Given each changed class as soon as it is parsed, before it
+	 *            is indexed. Called from several threads when the classes
+	 *            are parsed in parallel.
+	 */
+	public Set<JavaClass> findClasses(Collection<File> changedFiles, Consumer<JavaClass> parsedClassListener) {
 		// First update class index
 		List<String> changedClassesNames = new ArrayList<>();
-		for (File changedFile : changedFiles) {
-			String changedClassname = builder.classFileChanged(changedFile);
+		for (String changedClassname : inParallel(changedFiles, builder::classFileChanged)) {
 			if (changedClassname != null) {
 				changedClassesNames.add(changedClassname);
 			}
 		}
 
-		// Then find dependencies
+		// Then parse the changed classes and their dependencies
+		List<JavaClass> parsedClasses = inParallel(changedClassesNames, classname -> parseWithDependencies(classname, parsedClassListener));
+
+		// Finally merge them into the graph, where they are already parsed
 		Set<JavaClass> changedClasses = new HashSet<>();
-		for (String changedClassesName : changedClassesNames) {
-			JavaClass javaClass = builder.getClass(changedClassesName);
+		for (JavaClass javaClass : parsedClasses) {
 			if (javaClass != null) {
 				addToIndex(javaClass);
 				changedClasses.add(javaClass);
 			}
 		}
+		changedClasses.addAll(takeClassesWithRemovedDependencies());
 		builder.clear();
+		if (!changedClasses.isEmpty()) {
+			changedSinceSnapshot = true;
+		}
+		log(FINE, "Parser cache: " + getParserCacheStats());
+		log(FINE, "Dependency graph: " + graph.describeMemoryUsage());
 		return changedClasses;
 	}
 
+	private Set<JavaClass> takeClassesWithRemovedDependencies() {
+		Set<JavaClass> classes = new HashSet<>();
+		for (String each : classesWithRemovedDependencies) {
+			JavaClass javaClass = graph.findClass(each);
+			if (javaClass != null) {
+				classes.add(javaClass);
+			}
+		}
+		classesWithRemovedDependencies.clear();
+		return classes;
+	}
+
+	/**
+	 * Parses again the classes which changed in the jars of the classpath.
+	 * Jar classes are only indexed when classes of the class directories
+	 * depend on them, the others are ignored.
+	 * 
+	 * @return The indexed jar classes which changed, and the classes which
+	 *         could not find a class added to the jars until now
+	 */
+	public Set<JavaClass> findChangedJarClasses(Collection<String> changedClassNames) {
+		Set<JavaClass> changedClasses = new HashSet<>();
+		if (changedClassNames.isEmpty()) {
+			return changedClasses;
+		}
+
+		builder.jarClassesChanged(changedClassNames);
+		Set<String> classesNotIndexed = new HashSet<>();
+		for (String each : changedClassNames) {
+			JavaClass indexedClass = graph.findClass(each);
+			if ((indexedClass != null) && graph.containsVertex(indexedClass)) {
+				// Removed classes become unparsable, their dependents must still run
+				JavaClass javaClass = builder.getClass(each);
+				graph.addVertex(javaClass);
+				changedClasses.add(javaClass);
+			} else {
+				classesNotIndexed.add(each);
+			}
+		}
+		changedClasses.addAll(linkClassesImporting(classesNotIndexed));
+		return changedClasses;
+	}
+
+	/**
+	 * A class imported by indexed classes is only missing from the index when
+	 * it could not be found. Once added to the jars, these classes are linked
+	 * to it.
+	 * 
+	 * @return The classes importing one of the given classes
+	 */
+	private Set<JavaClass> linkClassesImporting(Set<String> classNames) {
+		Set<JavaClass> importingClasses = new HashSet<>();
+		if (classNames.isEmpty()) {
+			return importingClasses;
+		}
+
+		for (JavaClass each : graph.getClasses()) {
+			if (each.locatedInClassFile() && importsAnyOf(each, classNames)) {
+				importingClasses.add(each);
+			}
+		}
+		for (JavaClass each : importingClasses) {
+			updateParentReferences(each);
+		}
+		return importingClasses;
+	}
+
+	private static boolean importsAnyOf(JavaClass javaClass, Set<String> classNames) {
+		for (String each : javaClass.getImports()) {
+			if (classNames.contains(each)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Switches to a classpath whose jars differ, keeping the index. The
+	 * classes of the jars added or removed must then be given to
+	 * {@link #findChangedJarClasses(Collection)}.
+	 */
+	public void classpathChanged(ClasspathProvider classpath) {
+		builder.classpathChanged(classpath);
+		changedSinceSnapshot = true;
+	}
+
+	/**
+	 * Parses a class and the classes it depends on which are not indexed yet,
+	 * so that adding it to the graph only hits the parser cache. The index
+	 * itself is only read.
+	 */
+	private JavaClass parseWithDependencies(String classname, Consumer<JavaClass> parsedClassListener) {
+		JavaClass javaClass = builder.getClass(classname);
+		if (javaClass != null) {
+			parsedClassListener.accept(javaClass);
+			for (String each : javaClass.getImports()) {
+				if (graph.findClass(each) == null) {
+					builder.getClass(each);
+				}
+			}
+		}
+		return javaClass;
+	}
+
+	/**
+	 * Applies the function to each element, in parallel when there are enough
+	 * elements. The results are in the same order as the elements.
+	 */
+	private <T, R> List<R> inParallel(Collection<T> elements, Function<T, R> function) {
+		int parallelism = InfinitestGlobalSettings.getParserParallelism();
+		if ((parallelism <= 1) || (elements.size() < MIN_PARALLEL_SIZE)) {
+			List<R> results = new ArrayList<>(elements.size());
+			for (T each : elements) {
+				results.add(function.apply(each));
+			}
+			return results;
+		}
+
+		ForkJoinPool pool = new ForkJoinPool(parallelism);
+		try {
+			// Parallel streams run in the pool of the task which starts them
+			return pool.submit(() -> elements.parallelStream().map(function).collect(toList())).get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while parsing classes", e);
+		} catch (ExecutionException e) {
+			throw Throwables.propagate(e.getCause());
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	/**
+	 * Puts the classes saved in the snapshot back in the parser caches. Class
+	 * files which no longer exist or whose size changed are ignored so that
+	 * they are parsed again.
+	 */
+	public void restoreSnapshot(IndexSnapshot snapshot) {
+		try {
+			IndexSnapshot.Content content = snapshot.read();
+			if (content == null) {
+				return;
+			}
+
+			int restored = 0;
+			for (IndexSnapshot.Entry entry : content.entries) {
+				if (entry.file.isFile() && entry.file.length() == entry.cacheEntry.size) {
+					builder.restore(entry.file, entry.cacheEntry, entry.javaClass);
+					restored++;
+				}
+			}
+			for (String each : content.externalClasses) {
+				builder.restoreExternalClass(each);
+			}
+			log(CONFIG, "Restored " + restored + " of " + content.entries.size() + " classes from " + snapshot.getFile());
+		} catch (IOException e) {
+			log(WARNING, "Could not read index snapshot " + snapshot.getFile() + ": " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Saves the indexed classes, if they changed since the last time the
+	 * snapshot was saved or restored.
+	 */
+	public void saveSnapshot(IndexSnapshot snapshot) {
+		if (!changedSinceSnapshot) {
+			return;
+		}
+
+		List<IndexSnapshot.Entry> entries = new ArrayList<>();
+		Set<String> externalClasses = new LinkedHashSet<>();
+		for (JavaClass each : graph.getClasses()) {
+			CacheEntry cacheEntry = each.locatedInClassFile() ? builder.getCacheEntry(each.getClassFile()) : null;
+			if (cacheEntry != null) {
+				entries.add(new IndexSnapshot.Entry(each.getClassFile(), cacheEntry, each));
+				addExternalClasses(each, externalClasses);
+			}
+		}
+
+		try {
+			snapshot.write(entries, externalClasses);
+			changedSinceSnapshot = false;
+		} catch (IOException e) {
+			log(WARNING, "Could not write index snapshot " + snapshot.getFile() + ": " + e.getMessage());
+		}
+	}
+
+	private void addExternalClasses(JavaClass javaClass, Set<String> externalClasses) {
+		for (String each : javaClass.getImports()) {
+			if (graph.findClass(each) == null) {
+				JavaClass importedClass = builder.findParsedClass(each);
+				if ((importedClass != null) && !importedClass.locatedInClassFile()) {
+					externalClasses.add(each);
+				}
+			}
+		}
+	}
+
 	public JavaClass findJavaClass(String classname) {
 		JavaClass clazz = findClass(classname);
 		if (clazz == null) {
@@ -111,76 +392,160 @@ public class ClassFileIndex {
 	}
 
 	private JavaClass findClass(String classname) {
-		return classesByName.get(classname);
+		return graph.findClass(classname);
 	}
 
 	private void addToIndex(JavaClass newClass) {
 		addToGraph(newClass);
 		updateParentReferences(newClass);
+		linkDependentsAgain(newClass);
 	}
 
-	private void addToGraph(JavaClass newClass) {
-		if (!graph.addVertex(newClass)) {
-			replaceVertex(newClass);
+	/**
+	 * The classes which depended on a removed class did not keep their edges
+	 * to it, they get them back when the class comes back.
+	 */
+	private void linkDependentsAgain(JavaClass newClass) {
+		Set<String> dependents = dependentsOfRemovedClasses.remove(newClass.getName());
+		if (dependents != null) {
+			for (String each : dependents) {
+				JavaClass dependent = graph.findClass(each);
+				if (dependent != null) {
+					updateParentReferences(dependent);
+				}
+			}
 		}
-		
-		classesByName.put(newClass.getName(), newClass);
 	}
 
-	private List<JavaClass> getParents(JavaClass childClass) {
-		return predecessorListOf(graph, childClass);
-	}
-
-	private void replaceVertex(JavaClass newClass) {
-		List<JavaClass> incomingEdges = getParents(newClass);
-
-		graph.removeVertex(newClass);
+	private void addToGraph(JavaClass newClass) {
 		graph.addVertex(newClass);
-		for (JavaClass each : incomingEdges) {
-			graph.addEdge(each, newClass);
-		}
 	}
 
 	private void updateParentReferences(JavaClass parentClass) {
-		for (String child : parentClass.getImports()) {
+		String[] imports = parentClass.getImports();
+		int[] childIds = new int[imports.length];
+		int childCount = 0;
+		for (String child : imports) {
 			JavaClass childClass = findJavaClass(child);
 			if ((childClass != null) && !childClass.equals(parentClass)) {
+				if (!graph.containsVertex(childClass) && builder.isJarClass(child)) {
+					// Jar classes are leaves, the classes they depend on are
+					// not indexed
+					addToGraph(childClass);
+				}
 				if (graph.containsVertex(childClass)) {
-					graph.addEdge(parentClass, childClass);
+					childIds[childCount++] = graph.findId(child);
 				}
 			}
 		}
+		graph.setDependencies(graph.findId(parentClass.getName()), Arrays.copyOf(childIds, childCount));
 	}
 
-	// Loop through all changed classes, adding their parents (and their
-	// parents)
-	// to another set of changed classes
+	/**
+	 * @return The given classes and all the classes depending on them,
+	 *         directly or not
+	 */
 	public Set<JavaClass> findChangedParents(Set<JavaClass> classes) {
-		Set<JavaClass> changedParents = Sets.newHashSet(classes);
-		for (JavaClass jclass : classes) {
-			findParents(jclass, changedParents);
+		return graph.findParents(classes);
+	}
+
+	/**
+	 * Faster than looking for tests among {@link #findChangedParents(Set)}:
+	 * the tests depending on each class are remembered until its dependencies
+	 * change.
+	 * 
+	 * @return The tests among the given classes and the classes depending on
+	 *         them, directly or not
+	 */
+	public Set<JavaClass> findChangedTests(Set<JavaClass> classes) {
+		Set<JavaClass> staticTests = graph.findTests(classes);
+		if (runtimeDependencies.isEmpty()) {
+			return staticTests;
+		}
+
+		// Tests which ran only depend on the classes they used
+		Set<JavaClass> tests = new HashSet<>();
+		for (JavaClass each : staticTests) {
+			if (!runtimeDependencies.isRecorded(graph.findId(each.getName()))) {
+				tests.add(each);
+			}
+		}
+		BitSet changedIds = new BitSet();
+		for (JavaClass each : classes) {
+			int id = graph.findId(each.getName());
+			if (id != -1) {
+				changedIds.set(id);
+			}
 		}
-		return changedParents;
+		runtimeDependencies.forEachTestUsing(changedIds, id -> {
+			if (graph.isATest(id)) {
+				tests.add(graph.classAt(id));
+			}
+		});
+		return tests;
 	}
 
-	private void findParents(JavaClass jclass, Set<JavaClass> changedParents) {
-		for (JavaClass parent : getParents(jclass)) {
-			if (changedParents.add(parent)) {
-				findParents(parent, changedParents);
+	/**
+	 * Remembers the classes a test used when it ran, so that it only runs
+	 * again when one of them changes.
+	 * 
+	 * @param loadedClasses
+	 *            The classes of the class directories the test loaded, or
+	 *            null if they were not recorded
+	 * @param classesLoadedBefore
+	 *            The classes of the class directories loaded before by the
+	 *            same runner process. The test may have used those whose
+	 *            loading it would have caused.
+	 */
+	public void recordClassUsage(String testName, Set<String> loadedClasses, Set<String> classesLoadedBefore) {
+		int testId = graph.findId(testName);
+		if ((testId == -1) || !graph.isATest(testId)) {
+			return;
+		}
+		if (loadedClasses == null) {
+			runtimeDependencies.forget(testId);
+			return;
+		}
+
+		BitSet usedIds = new BitSet();
+		for (String each : loadedClasses) {
+			int id = graph.findId(each);
+			if (id != -1) {
+				usedIds.set(id);
+			}
+		}
+		BitSet staticIds = graph.findDependencyIds(testId);
+		for (int id = staticIds.nextSetBit(0); id >= 0; id = staticIds.nextSetBit(id + 1)) {
+			JavaClass javaClass = graph.classAt(id);
+			// Classes of jars are never recorded
+			if (!javaClass.locatedInClassFile() || (classesLoadedBefore == null) || classesLoadedBefore.contains(javaClass.getName())) {
+				usedIds.set(id);
 			}
 		}
+		usedIds.set(testId);
+		runtimeDependencies.record(testId, usedIds);
 	}
 
 	public void clear() {
-		graph = new DefaultDirectedGraph<>(DefaultEdge.class);
-		classesByName.clear();
+		graph = new DependencyGraph();
+		runtimeDependencies = new RuntimeDependencies();
+		dependentsOfRemovedClasses = new HashMap<>();
+		classesWithRemovedDependencies = new HashSet<>();
 	}
 
 	public boolean isIndexed(Class<Object> clazz) {
-		return classesByName.containsKey(clazz.getName());
+		return graph.findClass(clazz.getName()) != null;
+	}
+
+	/**
+	 * @return The hits, misses and evictions of the cache of parsed classes,
+	 *         shared with the other indexes of the same classpath
+	 */
+	public CacheStats getParserCacheStats() {
+		return builder.getCacheStats();
 	}
 
 	public Set<String> getIndexedClasses() {
-		return classesByName.keySet();
+		return graph.getClassNames();
 	}
 }
@@ -0,0 +1,403 @@
+/*
+ * Infinitest, a Continuous Test Runner.
+ *
+ * Copyright (C) 2010-2013
+ * "Ben Rady" <benrady@gmail.com>,
+ * "Rod Coffin" <rfciii@gmail.com>,
+ * "Ryan Breidenbach" <ryan.breidenbach@gmail.com>
+ * "David Gageot" <david@gageot.net>, et al.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.infinitest.parser;
+
+import static org.infinitest.parser.DescriptorParser.parseClassNameFromConstantPoolDescriptor;
+
+import java.nio.*;
+import java.util.*;
+
+/**
+ * Reads the facts of a {@link ScannedClass} in a single pass over the bytes of
+ * a class file, without building a Javassist object graph.
+ * <p>
+ * The imports are the same {@link JavaAssistClass} finds: the classes of the
+ * constant pool, the types of the declared fields and the annotations of the
+ * class, its fields and its declared methods and their parameters.
+ */
+final class ClassFileScanner {
+	private static final int MAGIC = 0xCAFEBABE;
+
+	private static final int CONSTANT_UTF8 = 1;
+	private static final int CONSTANT_INTEGER = 3;
+	private static final int CONSTANT_FLOAT = 4;
+	private static final int CONSTANT_LONG = 5;
+	private static final int CONSTANT_DOUBLE = 6;
+	private static final int CONSTANT_CLASS = 7;
+	private static final int CONSTANT_STRING = 8;
+	private static final int CONSTANT_FIELDREF = 9;
+	private static final int CONSTANT_METHODREF = 10;
+	private static final int CONSTANT_INTERFACE_METHODREF = 11;
+	private static final int CONSTANT_NAME_AND_TYPE = 12;
+	private static final int CONSTANT_METHOD_HANDLE = 15;
+	private static final int CONSTANT_METHOD_TYPE = 16;
+	private static final int CONSTANT_DYNAMIC = 17;
+	private static final int CONSTANT_INVOKE_DYNAMIC = 18;
+	private static final int CONSTANT_MODULE = 19;
+	private static final int CONSTANT_PACKAGE = 20;
+
+	private static final int ACC_PUBLIC = 0x0001;
+	private static final int ACC_PRIVATE = 0x0002;
+
+	private static final String VISIBLE_ANNOTATIONS = "RuntimeVisibleAnnotations";
+	private static final String INVISIBLE_ANNOTATIONS = "RuntimeInvisibleAnnotations";
+	private static final String VISIBLE_PARAMETER_ANNOTATIONS = "RuntimeVisibleParameterAnnotations";
+	private static final String INVISIBLE_PARAMETER_ANNOTATIONS = "RuntimeInvisibleParameterAnnotations";
+
+	private static final String ARCHUNIT_ARCHTEST = "com.tngtech.archunit.junit.ArchTest";
+	private static final String[] NO_NAMES = new String[0];
+
+	private final ByteBuffer buffer;
+	private final String source;
+	private byte[] tags;
+	private int[] offsets;
+	private String[] utf8Cache;
+	private char[] chars = new char[128];
+
+	private ClassFileScanner(ByteBuffer buffer, String source) {
+		// duplicate() keeps the caller's position and is always big endian
+		this.buffer = buffer.duplicate();
+		this.source = source;
+	}
+
+	/**
+	 * Reads a class file from the current position to the limit of the
+	 * buffer, which is left untouched.
+	 * 
+	 * @param source
+	 *            Where the bytes come from, used in error messages
+	 */
+	static ScannedClass scan(ByteBuffer buffer, String source) throws MalformedClassFileException {
+		try {
+			return new ClassFileScanner(buffer, source).scan();
+		} catch (BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException e) {
+			throw new MalformedClassFileException(source, "truncated or corrupted class file");
+		}
+	}
+
+	private ScannedClass scan() throws MalformedClassFileException {
+		if (buffer.getInt() != MAGIC) {
+			throw new MalformedClassFileException(source, "not a class file");
+		}
+		buffer.getShort(); // minor version
+		buffer.getShort(); // major version
+		readConstantPool();
+
+		Set<String> imports = new HashSet<>();
+
+		int accessFlags = readUnsignedShort();
+		String name = toJavaName(className(readUnsignedShort())).intern();
+		int superIndex = readUnsignedShort();
+		String superName = superIndex == 0 ? null : toJavaName(className(superIndex));
+		String[] interfaces = new String[readUnsignedShort()];
+		for (int i = 0; i < interfaces.length; i++) {
+			interfaces[i] = toJavaName(className(readUnsignedShort()));
+		}
+
+		boolean archTest = false;
+		int fieldCount = readUnsignedShort();
+		for (int i = 0; i < fieldCount; i++) {
+			readUnsignedShort(); // access flags
+			readUnsignedShort(); // name
+			imports.add(parseClassNameFromConstantPoolDescriptor(utf8(readUnsignedShort())));
+			List<String> annotations = new ArrayList<>();
+			int attributeCount = readUnsignedShort();
+			for (int j = 0; j < attributeCount; j++) {
+				String attributeName = utf8(readUnsignedShort());
+				int end = attributeEnd();
+				if (isAnnotations(attributeName)) {
+					readAnnotations(annotations);
+				}
+				buffer.position(end);
+			}
+			imports.addAll(annotations);
+			archTest |= annotations.contains(ARCHUNIT_ARCHTEST);
+		}
+
+		List<ScannedClass.Method> methods = new ArrayList<>();
+		boolean nonPrivateConstructor = false;
+		boolean junitCompatibleConstructor = false;
+		int methodCount = readUnsignedShort();
+		for (int i = 0; i < methodCount; i++) {
+			int methodAccess = readUnsignedShort();
+			String methodName = utf8(readUnsignedShort());
+			String descriptor = utf8(readUnsignedShort());
+			List<String> annotations = new ArrayList<>();
+			List<String> parameterAnnotations = new ArrayList<>();
+			int attributeCount = readUnsignedShort();
+			for (int j = 0; j < attributeCount; j++) {
+				String attributeName = utf8(readUnsignedShort());
+				int end = attributeEnd();
+				if (isAnnotations(attributeName)) {
+					readAnnotations(annotations);
+				} else if (isParameterAnnotations(attributeName)) {
+					int parameterCount = buffer.get() & 0xFF;
+					for (int k = 0; k < parameterCount; k++) {
+						readAnnotations(parameterAnnotations);
+					}
+				}
+				buffer.position(end);
+			}
+
+			boolean isPrivate = (methodAccess & ACC_PRIVATE) != 0;
+			if ("<init>".equals(methodName)) {
+				nonPrivateConstructor |= !isPrivate;
+				junitCompatibleConstructor |= ((methodAccess & ACC_PUBLIC) != 0) && isJUnitCompatibleConstructor(descriptor);
+			} else if (!"<clinit>".equals(methodName)) {
+				imports.addAll(annotations);
+				imports.addAll(parameterAnnotations);
+				archTest |= annotations.contains(ARCHUNIT_ARCHTEST);
+				if (!isPrivate) {
+					methods.add(new ScannedClass.Method(name, methodName, descriptor, toArray(annotations)));
+				}
+			}
+		}
+
+		List<String> visibleAnnotations = new ArrayList<>();
+		List<String> invisibleAnnotations = new ArrayList<>();
+		int attributeCount = readUnsignedShort();
+		for (int i = 0; i < attributeCount; i++) {
+			String attributeName = utf8(readUnsignedShort());
+			int end = attributeEnd();
+			if (VISIBLE_ANNOTATIONS.equals(attributeName)) {
+				readAnnotations(visibleAnnotations);
+			} else if (INVISIBLE_ANNOTATIONS.equals(attributeName)) {
+				readAnnotations(invisibleAnnotations);
+			}
+			buffer.position(end);
+		}
+		imports.addAll(visibleAnnotations);
+		imports.addAll(invisibleAnnotations);
+
+		addConstantPoolClasses(imports);
+
+		return new ScannedClass(name, superName, interfaces, accessFlags, toArray(visibleAnnotations), toArray(invisibleAnnotations), methods.toArray(new ScannedClass.Method[methods.size()]), archTest, nonPrivateConstructor, junitCompatibleConstructor, toArray(imports));
+	}
+
+	private void readConstantPool() throws MalformedClassFileException {
+		int count = readUnsignedShort();
+		tags = new byte[count];
+		offsets = new int[count];
+		utf8Cache = new String[count];
+		for (int index = 1; index < count; index++) {
+			int tag = buffer.get();
+			tags[index] = (byte) tag;
+			offsets[index] = buffer.position();
+			switch (tag) {
+			case CONSTANT_UTF8:
+				skip(readUnsignedShort());
+				break;
+			case CONSTANT_CLASS:
+			case CONSTANT_STRING:
+			case CONSTANT_METHOD_TYPE:
+			case CONSTANT_MODULE:
+			case CONSTANT_PACKAGE:
+				skip(2);
+				break;
+			case CONSTANT_METHOD_HANDLE:
+				skip(3);
+				break;
+			case CONSTANT_INTEGER:
+			case CONSTANT_FLOAT:
+			case CONSTANT_FIELDREF:
+			case CONSTANT_METHODREF:
+			case CONSTANT_INTERFACE_METHODREF:
+			case CONSTANT_NAME_AND_TYPE:
+			case CONSTANT_DYNAMIC:
+			case CONSTANT_INVOKE_DYNAMIC:
+				skip(4);
+				break;
+			case CONSTANT_LONG:
+			case CONSTANT_DOUBLE:
+				skip(8);
+				// Longs and doubles take two entries
+				index++;
+				break;
+			default:
+				throw new MalformedClassFileException(source, "unknown constant pool tag " + tag + " at index " + index);
+			}
+		}
+	}
+
+	private void addConstantPoolClasses(Set<String> imports) {
+		for (int index = 1; index < tags.length; index++) {
+			if (tags[index] == CONSTANT_CLASS) {
+				imports.add(toJavaName(utf8(buffer.getShort(offsets[index]) & 0xFFFF)));
+			}
+		}
+	}
+
+	/**
+	 * Adds the type names of an annotations attribute and skips the
+	 * annotation values.
+	 */
+	private void readAnnotations(List<String> annotations) {
+		int count = readUnsignedShort();
+		for (int i = 0; i < count; i++) {
+			annotations.add(readAnnotation());
+		}
+	}
+
+	private String readAnnotation() {
+		String typeName = annotationTypeName(utf8(readUnsignedShort()));
+		int pairCount = readUnsignedShort();
+		for (int i = 0; i < pairCount; i++) {
+			skip(2); // element name
+			skipElementValue();
+		}
+		return typeName;
+	}
+
+	private void skipElementValue() {
+		int tag = buffer.get();
+		switch (tag) {
+		case 'e':
+			skip(4);
+			break;
+		case '@':
+			readAnnotation();
+			break;
+		case '[':
+			int count = readUnsignedShort();
+			for (int i = 0; i < count; i++) {
+				skipElementValue();
+			}
+			break;
+		default:
+			// Constants and classes
+			skip(2);
+		}
+	}
+
+	private String className(int index) throws MalformedClassFileException {
+		if (tags[index] != CONSTANT_CLASS) {
+			throw new MalformedClassFileException(source, "expected a class at constant pool index " + index);
+		}
+		return utf8(buffer.getShort(offsets[index]) & 0xFFFF);
+	}
+
+	/**
+	 * Decodes a modified UTF-8 entry of the constant pool on first use.
+	 */
+	private String utf8(int index) {
+		String value = utf8Cache[index];
+		if (value == null) {
+			if (tags[index] != CONSTANT_UTF8) {
+				throw new IllegalArgumentException("Not an utf8 constant: " + index);
+			}
+			value = decodeUtf8(offsets[index] + 2, buffer.getShort(offsets[index]) & 0xFFFF);
+			utf8Cache[index] = value;
+		}
+		return value;
+	}
+
+	private String decodeUtf8(int offset, int length) {
+		if (chars.length < length) {
+			chars = new char[Math.max(length, chars.length * 2)];
+		}
+		int end = offset + length;
+		int count = 0;
+		int position = offset;
+		// Most names are plain ASCII
+		while (position < end) {
+			int c = buffer.get(position);
+			if (c < 0) {
+				break;
+			}
+			chars[count++] = (char) c;
+			position++;
+		}
+		while (position < end) {
+			int c = buffer.get(position++) & 0xFF;
+			if (c < 0x80) {
+				chars[count++] = (char) c;
+			} else if ((c & 0xE0) == 0xC0) {
+				chars[count++] = (char) (((c & 0x1F) << 6) | (buffer.get(position++) & 0x3F));
+			} else if ((c & 0xF0) == 0xE0) {
+				chars[count++] = (char) (((c & 0x0F) << 12) | ((buffer.get(position++) & 0x3F) << 6) | (buffer.get(position++) & 0x3F));
+			} else {
+				throw new IllegalArgumentException("Invalid modified UTF-8 at " + (position - 1));
+			}
+		}
+		if (position != end) {
+			throw new IllegalArgumentException("Invalid modified UTF-8 length at " + offset);
+		}
+		return new String(chars, 0, count);
+	}
+
+	private int attributeEnd() {
+		int length = buffer.getInt();
+		if (length < 0 || length > buffer.remaining()) {
+			throw new BufferUnderflowException();
+		}
+		return buffer.position() + length;
+	}
+
+	private int readUnsignedShort() {
+		return buffer.getShort() & 0xFFFF;
+	}
+
+	private void skip(int length) {
+		buffer.position(buffer.position() + length);
+	}
+
+	private static boolean isAnnotations(String attributeName) {
+		return VISIBLE_ANNOTATIONS.equals(attributeName) || INVISIBLE_ANNOTATIONS.equals(attributeName);
+	}
+
+	private static boolean isParameterAnnotations(String attributeName) {
+		return VISIBLE_PARAMETER_ANNOTATIONS.equals(attributeName) || INVISIBLE_PARAMETER_ANNOTATIONS.equals(attributeName);
+	}
+
+	private static boolean isJUnitCompatibleConstructor(String descriptor) {
+		return "()V".equals(descriptor) || "(Ljava/lang/String;)V".equals(descriptor);
+	}
+
+	private static String annotationTypeName(String descriptor) {
+		if (descriptor.startsWith("L") && descriptor.endsWith(";")) {
+			return toJavaName(descriptor.substring(1, descriptor.length() - 1));
+		}
+		return toJavaName(descriptor);
+	}
+
+	private static String toJavaName(String internalName) {
+		return internalName.replace('/', '.');
+	}
+
+	private static String[] toArray(Collection<String> names) {
+		if (names.isEmpty()) {
+			return NO_NAMES;
+		}
+		String[] array = new String[names.size()];
+		int index = 0;
+		for (String each : names) {
+			array[index++] = each.intern(); // Use less memory
+		}
+		return array;
+	}
+}
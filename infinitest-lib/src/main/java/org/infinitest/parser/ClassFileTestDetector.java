@@ -27,37 +27,59 @@
  */
 package org.infinitest.parser;
 
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
 import static org.infinitest.util.InfinitestUtils.log;
 
 import java.io.File;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.function.Consumer;
 import java.util.logging.Level;
 
 import org.infinitest.environment.ClasspathProvider;
 import org.infinitest.filter.TestFilter;
+import org.infinitest.util.InfinitestGlobalSettings;
 
 /**
  * @author <a href="mailto:benrady@gmail.com"Ben Rady</a>
  */
 public class ClassFileTestDetector implements TestDetector {
+	/**
+	 * Milliseconds without changes before the index snapshot is saved, so a
+	 * burst of changes costs a single write off the feedback path
+	 */
+	static final long SNAPSHOT_SAVE_DELAY = 1000;
+
+	private static final ScheduledExecutorService SNAPSHOT_SAVER = Executors.newSingleThreadScheduledExecutor(runnable -> {
+		Thread thread = new Thread(runnable, "Infinitest index snapshot");
+		thread.setDaemon(true);
+		return thread;
+	});
+
 	private final TestFilter filters;
 	private ClassFileIndex index;
 	private ClasspathProvider classpath;
+	private IndexSnapshot snapshot;
+	private ScheduledFuture<?> scheduledSave;
 
 	public ClassFileTestDetector(TestFilter testFilterList) {
 		filters = testFilterList;
 	}
 
 	@Override
-	public void clear() {
+	public synchronized void clear() {
 		index.clear();
 	}
 	
 	@Override
-	public Set<JavaClass> removeClasses(Collection<File> removedFiles) {
+	public synchronized Set<JavaClass> removeClasses(Collection<File> removedFiles) {
 		Set<JavaClass> removeClasses = index.removeClasses(removedFiles);
+		scheduleSnapshotSave();
 		
 		return filterTests(removeClasses);
 	}
@@ -67,19 +89,41 @@ public class ClassFileTestDetector implements TestDetector {
 	 * of tests that need to be run.
 	 */
 	@Override
-	public synchronized Set<JavaClass> findTestsToRun(Collection<File> changedFiles) {
+	public Set<JavaClass> findTestsToRun(Collection<File> changedFiles) {
+		return findTestsToRun(changedFiles, Collections.<String> emptySet());
+	}
+
+	@Override
+	public Set<JavaClass> findTestsToRun(Collection<File> changedFiles, Collection<String> changedJarClasses) {
+		return findTestsToRun(changedFiles, changedJarClasses, test -> {
+			// Only the complete set of tests is needed
+		});
+	}
+
+	@Override
+	public synchronized Set<JavaClass> findTestsToRun(Collection<File> changedFiles, Collection<String> changedJarClasses, Consumer<JavaClass> testListener) {
 		filters.updateFilterList();
 
-		// Find changed classes
-		Set<JavaClass> changedClasses = index.findClasses(changedFiles);
-		Set<JavaClass> changedParents = index.findChangedParents(changedClasses);
+		// Find changed classes, jars first since it resets the class pool
+		Set<JavaClass> changedClasses = index.findChangedJarClasses(changedJarClasses);
+		changedClasses.addAll(index.findClasses(changedFiles, javaClass -> {
+			if (isATest(javaClass) && inCurrentProject(javaClass)) {
+				testListener.accept(javaClass);
+			}
+		}));
+		Set<JavaClass> changedTests = index.findChangedTests(changedClasses);
+		scheduleSnapshotSave();
 
-		// combine two sets
-		changedClasses.addAll(changedParents);
+		// The filters only need to look at the tests, not at every changed class
+		log(Level.FINE, "Tests depending on changes: " + changedTests);
+		return filterTests(changedTests);
+	}
 
-		// run through total set, and pick out tests to run
-		log(Level.FINE, "Total changeset: " + changedParents);
-		return filterTests(changedClasses);
+	@Override
+	public synchronized void recordClassUsage(String testName, Set<String> loadedClasses, Set<String> classesLoadedBefore) {
+		if (index != null) {
+			index.recordClassUsage(testName, loadedClasses, classesLoadedBefore);
+		}
 	}
 
 	private Set<JavaClass> filterTests(Set<JavaClass> changedClasses) {
@@ -126,9 +170,55 @@ public class ClassFileTestDetector implements TestDetector {
 	}
 
 	@Override
-	public void setClasspathProvider(ClasspathProvider classpath) {
+	public synchronized void setClasspathProvider(ClasspathProvider classpath) {
 		this.classpath = classpath;
 		index = new ClassFileIndex(classpath);
+		snapshot = createSnapshot(classpath);
+		if (snapshot != null) {
+			index.restoreSnapshot(snapshot);
+		}
+	}
+
+	@Override
+	public synchronized void updateClasspathProvider(ClasspathProvider classpath) {
+		// Changes already made belong to the snapshot of the previous classpath
+		saveScheduledSnapshot();
+		this.classpath = classpath;
+		index.classpathChanged(classpath);
+		// The snapshots are saved per classpath
+		snapshot = createSnapshot(classpath);
+	}
+
+	private IndexSnapshot createSnapshot(ClasspathProvider classpath) {
+		File directory = InfinitestGlobalSettings.getIndexSnapshotDirectory();
+		if (directory == null) {
+			return null;
+		}
+		return IndexSnapshot.forClasspath(directory, classpath);
+	}
+
+	private void scheduleSnapshotSave() {
+		if (snapshot == null) {
+			return;
+		}
+		if (scheduledSave != null) {
+			scheduledSave.cancel(false);
+		}
+		scheduledSave = SNAPSHOT_SAVER.schedule(this::saveScheduledSnapshot, SNAPSHOT_SAVE_DELAY, MILLISECONDS);
+	}
+
+	/**
+	 * Saves the index snapshot now if a save is scheduled.
+	 */
+	synchronized void saveScheduledSnapshot() {
+		if (scheduledSave == null) {
+			return;
+		}
+		scheduledSave.cancel(false);
+		scheduledSave = null;
+		if (snapshot != null) {
+			index.saveSnapshot(snapshot);
+		}
 	}
 
 	@Override
@@ -0,0 +1,413 @@
+/*
+ * Infinitest, a Continuous Test Runner.
+ *
+ * Copyright (C) 2010-2013
+ * "Ben Rady" <benrady@gmail.com>,
+ * "Rod Coffin" <rfciii@gmail.com>,
+ * "Ryan Breidenbach" <ryan.breidenbach@gmail.com>
+ * "David Gageot" <david@gageot.net>, et al.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.infinitest.parser;
+
+import static com.google.common.base.Splitter.*;
+import static java.io.File.*;
+
+import java.io.*;
+import java.net.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.*;
+import java.nio.file.attribute.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.zip.*;
+
+import javassist.*;
+
+import org.infinitest.*;
+
+import com.google.common.cache.CacheStats;
+
+/**
+ * Parses class files into {@link JavaClass} instances and caches them, so that
+ * a class file is only parsed again when its content changes. Parsers of the
+ * same classpath share their cache.
+ * <p>
+ * Class files can be read and classes parsed from several threads at the same
+ * time.
+ */
+public abstract class ClassParser {
+	static final long UNKNOWN_MODIFICATION_TIME = -1;
+	private static final long RACY_TIMESTAMP_WINDOW = 2000;
+	private static final long MIN_MAPPED_SIZE = 64 * 1024;
+	private static final int MAX_POOLED_CLASSES = 2000;
+
+	private String classpath;
+	private final ParseCache cache;
+	private final Map<String, Boolean> jarClasses = new ConcurrentHashMap<>();
+	private Set<File> jars;
+	private PrunableClassPool classPool;
+	private IndexedClassPath indexedClassPath;
+
+	protected ClassParser(String classpath) {
+		this.classpath = classpath;
+		cache = ParseCache.forClasspath(classpath);
+	}
+
+	/**
+	 * Called once the changed classes are parsed. Parsed classes are cached,
+	 * so the class pool is pruned once it holds many classes.
+	 */
+	public void clear() {
+		pruneClassPool(MAX_POOLED_CLASSES);
+	}
+
+	synchronized void pruneClassPool(int maxClasses) {
+		if ((classPool != null) && (classPool.size() > maxClasses)) {
+			classPool = null;
+		}
+	}
+
+	/**
+	 * The class pool is used to locate classes in the classpath.
+	 */
+	protected synchronized ClassPool getClassPool() {
+		if (classPool == null) {
+			// This is used primarily for getting Java core objects like String
+			// and Integer,
+			// so if we don't have the project's JDK classpath, it's probably
+			// OK.
+			classPool = new PrunableClassPool();
+			classPool.appendSystemPath();
+			classPool.appendClassPath(getIndexedClassPath());
+		}
+		return classPool;
+	}
+
+	/**
+	 * The jars of the classpath are only indexed once, even when the class
+	 * pool is created again.
+	 */
+	private synchronized IndexedClassPath getIndexedClassPath() {
+		if (indexedClassPath == null) {
+			indexedClassPath = new IndexedClassPath(on(pathSeparator).omitEmptyStrings().split(classpath));
+		}
+		return indexedClassPath;
+	}
+
+	/**
+	 * A class pool which tells how many classes it holds.
+	 */
+	private static class PrunableClassPool extends ClassPool {
+		int size() {
+			return classes.size();
+		}
+
+		void forget(String className) {
+			removeCached(className);
+		}
+	}
+
+	/**
+	 * @return true if the class is located in one of the jars of the
+	 *         classpath, rather than in a class directory or in the JDK
+	 */
+	public boolean isJarClass(String className) {
+		return jarClasses.computeIfAbsent(className, this::locatedInJar);
+	}
+
+	private boolean locatedInJar(String className) {
+		URL url = getClassPool().find(className);
+		if ((url == null) || !url.getProtocol().equals("jar")) {
+			return false;
+		}
+		// jar:file:/path/to/the.jar!/path/to/the/Class.class
+		String path = url.getPath();
+		int separator = path.indexOf("!/");
+		if (separator == -1) {
+			return false;
+		}
+		try {
+			return getJars().contains(new File(new URI(path.substring(0, separator))).getCanonicalFile());
+		} catch (URISyntaxException | IllegalArgumentException | IOException e) {
+			return false;
+		}
+	}
+
+	private synchronized Set<File> getJars() throws IOException {
+		if (jars == null) {
+			Set<File> classpathJars = new HashSet<>();
+			for (String each : on(pathSeparator).split(classpath)) {
+				if (each.endsWith(".jar")) {
+					classpathJars.add(new File(each).getCanonicalFile());
+				}
+			}
+			jars = classpathJars;
+		}
+		return jars;
+	}
+
+	/**
+	 * Forgets the classes of jars which were rebuilt, so that they are parsed
+	 * again from the new jars. The class pool is created again since it
+	 * remembers the content of the jars.
+	 */
+	public void jarClassesChanged(Collection<String> classNames) {
+		synchronized (this) {
+			classPool = null;
+			if (indexedClassPath != null) {
+				indexedClassPath.refresh();
+			}
+		}
+		for (String each : classNames) {
+			cache.remove(each);
+			jarClasses.remove(each);
+			classChanged(each);
+		}
+	}
+
+	/**
+	 * Switches to a classpath whose jars differ, keeping the parsed classes.
+	 * The classes of the jars added or removed must then be given to
+	 * {@link #jarClassesChanged(Collection)}.
+	 */
+	public synchronized void classpathChanged(String newClasspath) {
+		classpath = newClasspath;
+		classPool = null;
+		indexedClassPath = null;
+		jars = null;
+		cache.shareWith(newClasspath);
+	}
+
+	/**
+	 * Forgets a removed class file and the class it defined, so that the class
+	 * is looked up in the classpath again if it is still referenced.
+	 */
+	public void classFileRemoved(File file) {
+		CacheEntry entry = cache.removeEntry(file.getAbsolutePath());
+		if (entry == null) {
+			return;
+		}
+
+		synchronized (this) {
+			if (classPool != null) {
+				synchronized (classPool) {
+					classPool.forget(entry.classname);
+				}
+			}
+		}
+		cache.remove(entry.classname);
+		jarClasses.remove(entry.classname);
+		classChanged(entry.classname);
+	}
+
+	/**
+	 * Called when a class must be read again from the classpath.
+	 */
+	protected void classChanged(String className) {
+		// Nothing is remembered by default
+	}
+
+	public JavaClass getClass(String className) {
+		JavaClass clazz = cache.lookup(className);
+		if (clazz == null) {
+			clazz = parseClass(className);
+			// Another thread may have parsed the same class meanwhile
+			JavaClass parsedClass = cache.putIfAbsent(className, clazz);
+			if (parsedClass != null) {
+				clazz = parsedClass;
+			}
+		}
+
+		return clazz;
+	}
+
+	/**
+	 * Finds the class in the classpath and parses it. May be called from
+	 * several threads.
+	 * 
+	 * @throws MissingClassException
+	 *             if the class cannot be found
+	 */
+	protected abstract JavaClass parseClass(String className);
+
+	/**
+	 * Reads a new version of a class file. The {@link JavaClass} itself is
+	 * created later on by {@link #parseClass(String)}, once every changed
+	 * class file was read. May be called from several threads.
+	 * 
+	 * @return The name of the class defined in the file
+	 */
+	protected abstract String readClassFile(File file) throws IOException;
+
+	public static class CacheEntry {
+		final long checksum;
+		final String classname;
+		final long size;
+		/**
+		 * {@link #UNKNOWN_MODIFICATION_TIME} when the timestamp cannot be
+		 * trusted
+		 */
+		final long lastModified;
+
+		public CacheEntry(long checksum, String classname, long size, long lastModified) {
+			this.checksum = checksum;
+			this.classname = classname;
+			this.size = size;
+			this.lastModified = lastModified;
+		}
+
+		boolean sameSizeAndTimestamp(long size, long lastModified) {
+			return (this.size == size) && (this.lastModified == lastModified) && (lastModified != UNKNOWN_MODIFICATION_TIME);
+		}
+	}
+	
+	/**
+	 * @return The {@link JavaClass} corresponding to this file or null if it
+	 *         was not parsed, does not exist or was evicted from the cache
+	 */
+	public JavaClass getClass(File file) {
+		CacheEntry entry = cache.getEntry(file.getAbsolutePath());
+		
+		if (entry != null) {
+			String classname = entry.classname;
+			
+			return cache.peek(classname);
+		}
+		
+		return null;
+	}
+
+	/**
+	 * @return The name of the class defined in this file or null if it was not
+	 *         parsed
+	 */
+	public String getClassName(File file) {
+		CacheEntry entry = cache.getEntry(file.getAbsolutePath());
+		return entry == null ? null : entry.classname;
+	}
+
+	/**
+	 * @return The hits, misses and evictions of the cache of parsed classes
+	 */
+	public CacheStats getCacheStats() {
+		return cache.stats();
+	}
+
+	/**
+	 * Reads the class file again if its content changed since it was last
+	 * read. Files whose size and modification time did not change are not even
+	 * read, the others are compared by checksum first.
+	 * 
+	 * @return The name of the class defined in the file
+	 */
+	public String classFileChanged(File file) throws IOException {
+		String path = file.getAbsolutePath();
+		BasicFileAttributes attributes = Files.readAttributes(file.toPath(), BasicFileAttributes.class);
+		long size = attributes.size();
+		long lastModified = trustedModificationTime(attributes.lastModifiedTime().toMillis());
+
+		CacheEntry entry = cache.getEntry(path);
+		if ((entry != null) && entry.sameSizeAndTimestamp(size, lastModified)) {
+			return entry.classname;
+		}
+
+		long checksum = checksum(file, size);
+		if ((entry != null) && (entry.size == size) && (entry.checksum == checksum)) {
+			// Only touched, remember the new timestamp to skip the checksum next time
+			cache.putEntry(path, new CacheEntry(checksum, entry.classname, size, lastModified));
+			return entry.classname;
+		}
+
+		String classname = readClassFile(file);
+
+		cache.remove(classname);
+		cache.putEntry(path, new CacheEntry(checksum, classname, size, lastModified));
+
+		return classname;
+	}
+
+	/**
+	 * A file modified again within the timestamp resolution of the file
+	 * system would keep the same timestamp, so recent timestamps are not
+	 * trusted.
+	 */
+	private static long trustedModificationTime(long lastModified) {
+		if ((System.currentTimeMillis() - lastModified) < RACY_TIMESTAMP_WINDOW) {
+			return UNKNOWN_MODIFICATION_TIME;
+		}
+		return lastModified;
+	}
+
+	/**
+	 * A CRC32 of the content, computed in hardware by the JVM. Large files are
+	 * memory mapped, smaller ones are cheaper to read.
+	 */
+	static long checksum(File file, long size) throws IOException {
+		CRC32 crc = new CRC32();
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			if (size >= MIN_MAPPED_SIZE) {
+				crc.update(channel.map(MapMode.READ_ONLY, 0, channel.size()));
+			} else {
+				ByteBuffer buffer = ByteBuffer.allocate((int) size);
+				while ((channel.read(buffer) > 0) && buffer.hasRemaining()) {
+					// Read until full
+				}
+				buffer.flip();
+				crc.update(buffer);
+			}
+		}
+		return crc.getValue();
+	}
+
+	/**
+	 * @return The cache entry of a parsed class file or null if it was not parsed
+	 */
+	CacheEntry getCacheEntry(File file) {
+		return cache.getEntry(file.getAbsolutePath());
+	}
+
+	/**
+	 * @return The class if it was already parsed, null otherwise
+	 */
+	JavaClass findParsedClass(String className) {
+		return cache.peek(className);
+	}
+
+	/**
+	 * Puts a class parsed in a previous session back in the cache, unless the
+	 * file was parsed again since.
+	 */
+	void restore(File file, CacheEntry entry, JavaClass javaClass) {
+		if ((cache.peek(entry.classname) == null) && cache.putEntryIfAbsent(file.getAbsolutePath(), entry)) {
+			cache.putIfAbsent(entry.classname, javaClass);
+		}
+	}
+
+	/**
+	 * Remembers a class which is not located in a class file (JDK or jar
+	 * class) so that it is not looked up in the class pool again.
+	 */
+	void restoreExternalClass(String className) {
+		cache.putIfAbsent(className, new UnparsableClass(className));
+	}
+}
@@ -0,0 +1,378 @@
+/*
+ * Infinitest, a Continuous Test Runner.
+ *
+ * Copyright (C) 2010-2013
+ * "Ben Rady" <benrady@gmail.com>,
+ * "Rod Coffin" <rfciii@gmail.com>,
+ * "Ryan Breidenbach" <ryan.breidenbach@gmail.com>
+ * "David Gageot" <david@gageot.net>, et al.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.infinitest.parser;
+
+import java.util.*;
+import java.util.function.IntConsumer;
+
+/**
+ * Dependencies between the indexed classes. Each class name gets a dense int
+ * id and the edges are stored as int adjacency lists in both directions, so
+ * the graph needs no object per edge.
+ * <p>
+ * A removed class is forgotten but keeps its id, so that it gets the same one
+ * if it comes back.
+ */
+class DependencyGraph {
+	private static final int NO_ID = -1;
+
+	// Open addressing table of class name to id, the id being the index in names
+	private String[] names = new String[64];
+	private int[] slots = new int[128];
+	private int count;
+
+	private JavaClass[] classes = new JavaClass[64];
+	private final BitSet vertices = new BitSet();
+	private final IntAdjacency dependencies = new IntAdjacency();
+	private final IntAdjacency dependents = new IntAdjacency();
+	private final TestReachability reachability = new TestReachability(this);
+
+	/**
+	 * @return The id of the class, assigning a new one if needed
+	 */
+	int idOf(String className) {
+		int slot = slotOf(className);
+		if (slots[slot] != 0) {
+			return slots[slot] - 1;
+		}
+
+		int id = count++;
+		if (id == names.length) {
+			names = Arrays.copyOf(names, id * 2);
+			classes = Arrays.copyOf(classes, id * 2);
+		}
+		names[id] = className;
+		// Slots hold id + 1 so that 0 means empty
+		slots[slot] = id + 1;
+		if (count * 2 > slots.length) {
+			rehash();
+		}
+		return id;
+	}
+
+	/**
+	 * @return The id of the class or -1 if it is not known
+	 */
+	int findId(String className) {
+		int slot = slotOf(className);
+		return slots[slot] - 1;
+	}
+
+	/**
+	 * @return The indexed version of the class or null if it is not indexed
+	 */
+	JavaClass findClass(String className) {
+		int id = findId(className);
+		return id == NO_ID ? null : classes[id];
+	}
+
+	/**
+	 * @return The names of the classes indexed so far
+	 */
+	Set<String> getClassNames() {
+		Set<String> classNames = new HashSet<>();
+		for (int id = 0; id < count; id++) {
+			if (classes[id] != null) {
+				classNames.add(names[id]);
+			}
+		}
+		return classNames;
+	}
+
+	/**
+	 * @return Every class indexed so far
+	 */
+	List<JavaClass> getClasses() {
+		List<JavaClass> indexedClasses = new ArrayList<>();
+		for (int id = 0; id < count; id++) {
+			if (classes[id] != null) {
+				indexedClasses.add(classes[id]);
+			}
+		}
+		return indexedClasses;
+	}
+
+	/**
+	 * Adds the class to the graph, or replaces the previous version of the
+	 * class while keeping its edges.
+	 * 
+	 * @return The id of the class
+	 */
+	int addVertex(JavaClass javaClass) {
+		int id = idOf(javaClass.getName());
+		if (!vertices.get(id) || (classes[id].isATest() != javaClass.isATest())) {
+			reachability.invalidateFrom(id);
+		}
+		classes[id] = javaClass;
+		vertices.set(id);
+		return id;
+	}
+
+	boolean containsVertex(JavaClass javaClass) {
+		int id = findId(javaClass.getName());
+		return (id != NO_ID) && vertices.get(id);
+	}
+
+	/**
+	 * Removes the vertex, all its edges and the class itself.
+	 */
+	void removeVertex(JavaClass javaClass) {
+		int id = findId(javaClass.getName());
+		if ((id == NO_ID) || !vertices.get(id)) {
+			return;
+		}
+
+		reachability.invalidateFrom(id);
+		dependencies.forEach(id, child -> dependents.remove(child, id));
+		dependencies.clear(id);
+		dependents.forEach(id, parent -> dependencies.remove(parent, id));
+		dependents.clear(id);
+		vertices.clear(id);
+		classes[id] = null;
+	}
+
+	/**
+	 * Replaces the dependencies of a class. Only the edges that differ from
+	 * the previous dependencies are updated.
+	 * 
+	 * @param childIds
+	 *            The ids of the vertices the class depends on, in any order
+	 */
+	void setDependencies(int parentId, int[] childIds) {
+		int[] newChildren = sortedAndDistinct(childIds);
+		int[] oldChildren = dependencies.toArray(parentId);
+
+		int oldIndex = 0;
+		int newIndex = 0;
+		while ((oldIndex < oldChildren.length) || (newIndex < newChildren.length)) {
+			if ((newIndex == newChildren.length) || ((oldIndex < oldChildren.length) && (oldChildren[oldIndex] < newChildren[newIndex]))) {
+				reachability.invalidateFrom(oldChildren[oldIndex]);
+				dependents.remove(oldChildren[oldIndex++], parentId);
+			} else if ((oldIndex == oldChildren.length) || (newChildren[newIndex] < oldChildren[oldIndex])) {
+				reachability.invalidateFrom(newChildren[newIndex]);
+				dependents.add(newChildren[newIndex++], parentId);
+			} else {
+				oldIndex++;
+				newIndex++;
+			}
+		}
+
+		if (!Arrays.equals(oldChildren, newChildren)) {
+			dependencies.set(parentId, newChildren);
+		}
+	}
+
+	boolean containsEdge(JavaClass parent, JavaClass child) {
+		int parentId = findId(parent.getName());
+		int childId = findId(child.getName());
+		return (parentId != NO_ID) && (childId != NO_ID) && dependencies.contains(parentId, childId);
+	}
+
+	/**
+	 * @return The classes which depend on the given class
+	 */
+	List<JavaClass> getParents(JavaClass child) {
+		List<JavaClass> parents = new ArrayList<>();
+		int id = findId(child.getName());
+		if (id != NO_ID) {
+			dependents.forEach(id, parent -> parents.add(classes[parent]));
+		}
+		return parents;
+	}
+
+	/**
+	 * @return The classes the given class depends on
+	 */
+	List<JavaClass> getChildren(JavaClass parent) {
+		List<JavaClass> children = new ArrayList<>();
+		int id = findId(parent.getName());
+		if (id != NO_ID) {
+			dependencies.forEach(id, child -> children.add(classes[child]));
+		}
+		return children;
+	}
+
+	/**
+	 * @return The given classes and all the classes depending on them,
+	 *         directly or not
+	 */
+	Set<JavaClass> findParents(Collection<JavaClass> children) {
+		Set<JavaClass> parents = new HashSet<>(children);
+		BitSet visited = new BitSet();
+		Deque<Integer> stack = new ArrayDeque<>();
+		for (JavaClass each : children) {
+			int id = findId(each.getName());
+			if ((id != NO_ID) && !visited.get(id)) {
+				visited.set(id);
+				stack.push(id);
+			}
+		}
+		while (!stack.isEmpty()) {
+			dependents.forEach(stack.pop(), parent -> {
+				if (!visited.get(parent)) {
+					visited.set(parent);
+					parents.add(classes[parent]);
+					stack.push(parent);
+				}
+			});
+		}
+		return parents;
+	}
+
+	/**
+	 * @return The tests among the given classes and the classes depending on
+	 *         them, directly or not
+	 */
+	Set<JavaClass> findTests(Collection<JavaClass> changedClasses) {
+		int[] ids = new int[changedClasses.size()];
+		int idCount = 0;
+		for (JavaClass each : changedClasses) {
+			int id = findId(each.getName());
+			if (id != NO_ID) {
+				ids[idCount++] = id;
+			}
+		}
+
+		Set<JavaClass> tests = new HashSet<>();
+		BitSet testIds = reachability.findTests(Arrays.copyOf(ids, idCount));
+		for (int id = testIds.nextSetBit(0); id >= 0; id = testIds.nextSetBit(id + 1)) {
+			tests.add(classes[id]);
+		}
+		return tests;
+	}
+
+	/**
+	 * @return The id of the class and the ids of all the classes it depends
+	 *         on, directly or not
+	 */
+	BitSet findDependencyIds(int id) {
+		BitSet visited = new BitSet();
+		Deque<Integer> stack = new ArrayDeque<>();
+		visited.set(id);
+		stack.push(id);
+		while (!stack.isEmpty()) {
+			dependencies.forEach(stack.pop(), child -> {
+				if (!visited.get(child)) {
+					visited.set(child);
+					stack.push(child);
+				}
+			});
+		}
+		return visited;
+	}
+
+	JavaClass classAt(int id) {
+		return classes[id];
+	}
+
+	int getIdCount() {
+		return count;
+	}
+
+	boolean isATest(int id) {
+		return vertices.get(id) && classes[id].isATest();
+	}
+
+	int[] parentIds(int id) {
+		return dependents.toArray(id);
+	}
+
+	void forEachChild(int id, IntConsumer action) {
+		dependencies.forEach(id, action);
+	}
+
+	int getVertexCount() {
+		return vertices.cardinality();
+	}
+
+	long getEdgeCount() {
+		return dependencies.size();
+	}
+
+	/**
+	 * @return An estimate of the memory used by the graph, in bytes, not
+	 *         counting the classes and their names which are shared with the
+	 *         parser
+	 */
+	long estimateSize() {
+		return (4L * names.length) + (4L * slots.length) + (4L * classes.length) + (vertices.size() / 8) + dependencies.estimateSize() + dependents.estimateSize();
+	}
+
+	/**
+	 * @return A summary of the size of the graph and its memory per class and
+	 *         per edge
+	 */
+	String describeMemoryUsage() {
+		int vertexCount = getVertexCount();
+		long edgeCount = getEdgeCount();
+		long size = estimateSize();
+		return vertexCount + " classes, " + edgeCount + " edges, " + size + " bytes (" //
+				+ (size / Math.max(vertexCount, 1)) + " per class, " //
+				+ ((dependencies.estimateSize() + dependents.estimateSize()) / Math.max(edgeCount, 1)) + " per edge)";
+	}
+
+	private int slotOf(String className) {
+		int mask = slots.length - 1;
+		int slot = spread(className.hashCode()) & mask;
+		while ((slots[slot] != 0) && !names[slots[slot] - 1].equals(className)) {
+			slot = (slot + 1) & mask;
+		}
+		return slot;
+	}
+
+	private void rehash() {
+		int[] oldSlots = slots;
+		slots = new int[oldSlots.length * 2];
+		int mask = slots.length - 1;
+		for (int each : oldSlots) {
+			if (each != 0) {
+				int slot = spread(names[each - 1].hashCode()) & mask;
+				while (slots[slot] != 0) {
+					slot = (slot + 1) & mask;
+				}
+				slots[slot] = each;
+			}
+		}
+	}
+
+	private static int spread(int hashCode) {
+		return hashCode ^ (hashCode >>> 16);
+	}
+
+	private static int[] sortedAndDistinct(int[] ids) {
+		int[] sorted = ids.clone();
+		Arrays.sort(sorted);
+		int distinct = 0;
+		for (int i = 0; i < sorted.length; i++) {
+			if ((i == 0) || (sorted[i] != sorted[i - 1])) {
+				sorted[distinct++] = sorted[i];
+			}
+		}
+		return distinct == sorted.length ? sorted : Arrays.copyOf(sorted, distinct);
+	}
+}
@@ -0,0 +1,262 @@
+/*
+ * Infinitest, a Continuous Test Runner.
+ *
+ * Copyright (C) 2010-2013
+ * "Ben Rady" <benrady@gmail.com>,
+ * "Rod Coffin" <rfciii@gmail.com>,
+ * "Ryan Breidenbach" <ryan.breidenbach@gmail.com>
+ * "David Gageot" <david@gageot.net>, et al.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.infinitest.parser;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.infinitest.environment.ClasspathProvider;
+import org.infinitest.parser.ClassParser.CacheEntry;
+
+import com.google.common.hash.Hashing;
+
+/**
+ * Binary copy of the parsed classes of a {@link ClassFileIndex}, so that a new
+ * core only has to parse the class files that changed since the last session.
+ * <p>
+ * Class names are written once in a string table and referenced by index, so
+ * the file stays small even for large workspaces. The graph itself is not
+ * stored: it is rebuilt from the restored classes by the first update.
+ */
+class IndexSnapshot {
+	private static final int MAGIC = 0x494E4958;
+	static final int FORMAT_VERSION = 2;
+
+	private final File file;
+
+	IndexSnapshot(File file) {
+		this.file = file;
+	}
+
+	/**
+	 * @return The snapshot used for the given classpath, stored in the given directory
+	 */
+	static IndexSnapshot forClasspath(File directory, ClasspathProvider classpath) {
+		String key = classpath.getRunnerFullClassPath() + File.pathSeparator + classpath.getClassOutputDirs();
+		String fileName = "index-" + Hashing.sha1().hashString(key, UTF_8) + ".bin";
+		return new IndexSnapshot(new File(directory, fileName));
+	}
+
+	File getFile() {
+		return file;
+	}
+
+	void write(Collection<Entry> entries, Collection<String> externalClasses) throws IOException {
+		Map<String, Integer> names = new LinkedHashMap<>();
+		for (Entry entry : entries) {
+			indexOf(names, entry.javaClass.getName());
+			for (String each : entry.javaClass.getImports()) {
+				indexOf(names, each);
+			}
+		}
+		for (String each : externalClasses) {
+			indexOf(names, each);
+		}
+
+		File directory = file.getAbsoluteFile().getParentFile();
+		if (!directory.isDirectory() && !directory.mkdirs()) {
+			throw new IOException("Could not create directory " + directory);
+		}
+		File tempFile = File.createTempFile("index-", ".tmp", directory);
+		try {
+			try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)))) {
+				out.writeInt(MAGIC);
+				out.writeInt(FORMAT_VERSION);
+				writeVarInt(out, names.size());
+				for (String name : names.keySet()) {
+					out.writeUTF(name);
+				}
+				writeVarInt(out, entries.size());
+				for (Entry entry : entries) {
+					writeEntry(out, entry, names);
+				}
+				writeVarInt(out, externalClasses.size());
+				for (String each : externalClasses) {
+					writeVarInt(out, names.get(each));
+				}
+			}
+			moveTo(tempFile, file);
+		} finally {
+			Files.deleteIfExists(tempFile.toPath());
+		}
+	}
+
+	private static void moveTo(File source, File target) throws IOException {
+		try {
+			Files.move(source.toPath(), target.toPath(), ATOMIC_MOVE, REPLACE_EXISTING);
+		} catch (AtomicMoveNotSupportedException e) {
+			Files.move(source.toPath(), target.toPath(), REPLACE_EXISTING);
+		}
+	}
+
+	private static int indexOf(Map<String, Integer> names, String name) {
+		Integer index = names.get(name);
+		if (index == null) {
+			index = names.size();
+			names.put(name, index);
+		}
+		return index;
+	}
+
+	private static void writeEntry(DataOutput out, Entry entry, Map<String, Integer> names) throws IOException {
+		out.writeUTF(entry.file.getAbsolutePath());
+		out.writeLong(entry.cacheEntry.checksum);
+		out.writeLong(entry.cacheEntry.size);
+		out.writeLong(entry.cacheEntry.lastModified);
+		writeVarInt(out, names.get(entry.javaClass.getName()));
+		out.writeBoolean(entry.javaClass.isATest());
+		String[] imports = entry.javaClass.getImports();
+		writeVarInt(out, imports.length);
+		for (String each : imports) {
+			writeVarInt(out, names.get(each));
+		}
+	}
+
+	/**
+	 * @return The content of the snapshot, or null if there is no snapshot yet
+	 */
+	Content read() throws IOException {
+		if (!file.isFile()) {
+			return null;
+		}
+
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+			if (in.readInt() != MAGIC) {
+				throw new IOException(file + " is not an index snapshot");
+			}
+			int version = in.readInt();
+			if (version != FORMAT_VERSION) {
+				throw new IOException("Unsupported index snapshot version " + version + " in " + file);
+			}
+
+			String[] names = new String[readVarInt(in)];
+			for (int i = 0; i < names.length; i++) {
+				names[i] = in.readUTF().intern();
+			}
+
+			int entryCount = readVarInt(in);
+			List<Entry> entries = new ArrayList<>(entryCount);
+			for (int i = 0; i < entryCount; i++) {
+				entries.add(readEntry(in, names));
+			}
+
+			int externalCount = readVarInt(in);
+			List<String> externalClasses = new ArrayList<>(externalCount);
+			for (int i = 0; i < externalCount; i++) {
+				externalClasses.add(names[readVarInt(in)]);
+			}
+			return new Content(entries, externalClasses);
+		}
+	}
+
+	private static Entry readEntry(DataInput in, String[] names) throws IOException {
+		File path = new File(in.readUTF());
+		long checksum = in.readLong();
+		long size = in.readLong();
+		long lastModified = in.readLong();
+		String className = names[readVarInt(in)];
+		boolean isATest = in.readBoolean();
+		String[] imports = new String[readVarInt(in)];
+		for (int i = 0; i < imports.length; i++) {
+			imports[i] = names[readVarInt(in)];
+		}
+
+		CacheEntry cacheEntry = new CacheEntry(checksum, className, size, lastModified);
+		return new Entry(path, cacheEntry, new SimpleJavaClass(className, imports, isATest, path));
+	}
+
+	private static void writeVarInt(DataOutput out, int value) throws IOException {
+		int remaining = value;
+		while ((remaining & ~0x7F) != 0) {
+			out.writeByte((remaining & 0x7F) | 0x80);
+			remaining >>>= 7;
+		}
+		out.writeByte(remaining);
+	}
+
+	private static int readVarInt(DataInput in) throws IOException {
+		int value = 0;
+		int shift = 0;
+		byte current;
+		do {
+			current = in.readByte();
+			value |= (current & 0x7F) << shift;
+			shift += 7;
+		} while ((current & 0x80) != 0);
+		return value;
+	}
+
+	/**
+	 * A class parsed from a class file, with the cache entry used to detect
+	 * changes of that file.
+	 */
+	static class Entry {
+		final File file;
+		final CacheEntry cacheEntry;
+		final JavaClass javaClass;
+
+		Entry(File file, CacheEntry cacheEntry, JavaClass javaClass) {
+			this.file = file;
+			this.cacheEntry = cacheEntry;
+			this.javaClass = javaClass;
+		}
+	}
+
+	static class Content {
+		final List<Entry> entries;
+		/**
+		 * Classes referenced by the index that are not located in a class file
+		 * (JDK or jar classes)
+		 */
+		final List<String> externalClasses;
+
+		Content(List<Entry> entries, List<String> externalClasses) {
+			this.entries = entries;
+			this.externalClasses = externalClasses;
+		}
+	}
+}
@@ -0,0 +1,220 @@
+/*
+ * Infinitest, a Continuous Test Runner.
+ *
+ * Copyright (C) 2010-2013
+ * "Ben Rady" <benrady@gmail.com>,
+ * "Rod Coffin" <rfciii@gmail.com>,
+ * "Ryan Breidenbach" <ryan.breidenbach@gmail.com>
+ * "David Gageot" <david@gageot.net>, et al.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.infinitest.parser;
+
+import static java.util.logging.Level.WARNING;
+import static org.infinitest.util.InfinitestUtils.log;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import javassist.ClassPath;
+import javassist.NotFoundException;
+
+/**
+ * Finds classes in the directories and jars of a classpath. The classes of
+ * the jars are indexed once, so that finding a class takes a single lookup
+ * instead of a search through every jar. Directories are searched since
+ * their content changes all the time, but there are usually few of them.
+ * <p>
+ * Jars are not kept open, so that they can be rebuilt meanwhile.
+ */
+class IndexedClassPath implements ClassPath {
+	private static final String CLASS_EXTENSION = ".class";
+
+	private final List<Directory> directories = new ArrayList<>();
+	private final List<Jar> jars = new ArrayList<>();
+	/**
+	 * The first jar of the classpath containing each class file
+	 */
+	private Map<String, Jar> jarsByClassFile = new HashMap<>();
+
+	IndexedClassPath(Iterable<String> pathElements) {
+		int position = 0;
+		for (String each : pathElements) {
+			File file = new File(each);
+			// Jars of other modules may not be built yet, nor output
+			// directories created
+			if (file.isFile() || isArchive(each)) {
+				jars.add(new Jar(file, position));
+			} else {
+				directories.add(new Directory(file, position));
+			}
+			position++;
+		}
+		for (Jar each : jars) {
+			each.read();
+		}
+		index();
+	}
+
+	private static boolean isArchive(String pathElement) {
+		String name = pathElement.toLowerCase();
+		return name.endsWith(".jar") || name.endsWith(".zip");
+	}
+
+	/**
+	 * Indexes again the jars which changed since they were indexed.
+	 */
+	synchronized void refresh() {
+		boolean changed = false;
+		for (Jar each : jars) {
+			if (each.changed()) {
+				each.read();
+				changed = true;
+			}
+		}
+		if (changed) {
+			index();
+		}
+	}
+
+	private synchronized void index() {
+		Map<String, Jar> index = new HashMap<>();
+		for (Jar jar : jars) {
+			for (String each : jar.classFiles) {
+				index.putIfAbsent(each, jar);
+			}
+		}
+		jarsByClassFile = index;
+	}
+
+	@Override
+	public URL find(String className) {
+		String classFile = className.replace('.', '/') + CLASS_EXTENSION;
+		Jar jar;
+		synchronized (this) {
+			jar = jarsByClassFile.get(classFile);
+		}
+		try {
+			for (Directory each : directories) {
+				if ((jar != null) && (each.position > jar.position)) {
+					break;
+				}
+				File file = new File(each.file, classFile);
+				if (file.isFile()) {
+					return file.toURI().toURL();
+				}
+			}
+			return (jar == null) ? null : jar.urlOf(classFile);
+		} catch (MalformedURLException e) {
+			return null;
+		}
+	}
+
+	@Override
+	public InputStream openClassfile(String className) throws NotFoundException {
+		URL url = find(className);
+		if (url == null) {
+			return null;
+		}
+		try {
+			if (url.getProtocol().equals("file")) {
+				return new FileInputStream(new File(url.toURI()));
+			}
+			// Cached jar connections would keep reading a jar rebuilt since
+			URLConnection connection = url.openConnection();
+			connection.setUseCaches(false);
+			return connection.getInputStream();
+		} catch (Exception e) {
+			throw new NotFoundException("Could not read " + className + " from " + url, e);
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "IndexedClassPath{" + directories.size() + " directories, " + jars.size() + " jars, " + jarsByClassFile.size() + " classes in jars}";
+	}
+
+	private static class Directory {
+		final File file;
+		final int position;
+
+		Directory(File file, int position) {
+			this.file = file;
+			this.position = position;
+		}
+	}
+
+	private static class Jar {
+		final File file;
+		final int position;
+		String[] classFiles = new String[0];
+		private long lastModified;
+		private long size;
+		private String url;
+
+		Jar(File file, int position) {
+			this.file = file;
+			this.position = position;
+		}
+
+		boolean changed() {
+			return (file.lastModified() != lastModified) || (file.length() != size);
+		}
+
+		void read() {
+			lastModified = file.lastModified();
+			size = file.length();
+			List<String> names = new ArrayList<>();
+			if (!file.isFile()) {
+				classFiles = new String[0];
+				return;
+			}
+			try (ZipFile zipFile = new ZipFile(file)) {
+				url = "jar:" + file.getCanonicalFile().toURI().toURL() + "!/";
+				Enumeration<? extends ZipEntry> entries = zipFile.entries();
+				while (entries.hasMoreElements()) {
+					ZipEntry entry = entries.nextElement();
+					if (!entry.isDirectory() && entry.getName().endsWith(CLASS_EXTENSION)) {
+						names.add(entry.getName());
+					}
+				}
+			} catch (IOException e) {
+				log(WARNING, "Could not index classpath entry " + file + ": " + e.getMessage());
+			}
+			classFiles = names.toArray(new String[names.size()]);
+		}
+
+		URL urlOf(String classFile) throws MalformedURLException {
+			return new URL(url + classFile);
+		}
+	}
+}
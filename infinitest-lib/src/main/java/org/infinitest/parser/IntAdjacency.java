@@ -0,0 +1,200 @@
+/*
+ * Infinitest, a Continuous Test Runner.
+ *
+ * Copyright (C) 2010-2013
+ * "Ben Rady" <benrady@gmail.com>,
+ * "Rod Coffin" <rfciii@gmail.com>,
+ * "Ryan Breidenbach" <ryan.breidenbach@gmail.com>
+ * "David Gageot" <david@gageot.net>, et al.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.infinitest.parser;
+
+import java.util.*;
+import java.util.function.IntConsumer;
+
+/**
+ * Adjacency lists of a graph whose vertices are dense int ids.
+ * <p>
+ * Rows are kept sorted in one shared array, compressed sparse row style.
+ * Updated rows live in a small overlay until there are enough of them to be
+ * worth compacting into the shared array again.
+ */
+final class IntAdjacency {
+	private static final int[] EMPTY = new int[0];
+	private static final int MIN_OVERLAY_SIZE_TO_COMPACT = 64;
+
+	private int[] offsets = { 0 };
+	private int[] targets = EMPTY;
+	private int compactedRows;
+	private final Map<Integer, int[]> overlay = new HashMap<>();
+	private long size;
+
+	/**
+	 * @return The number of edges
+	 */
+	long size() {
+		return size;
+	}
+
+	int degree(int id) {
+		int[] row = overlay.get(id);
+		if (row != null) {
+			return row.length;
+		}
+		return id < compactedRows ? offsets[id + 1] - offsets[id] : 0;
+	}
+
+	void forEach(int id, IntConsumer action) {
+		int[] row = overlay.get(id);
+		if (row != null) {
+			for (int each : row) {
+				action.accept(each);
+			}
+		} else if (id < compactedRows) {
+			for (int i = offsets[id]; i < offsets[id + 1]; i++) {
+				action.accept(targets[i]);
+			}
+		}
+	}
+
+	/**
+	 * @return The sorted targets of the row, as a copy
+	 */
+	int[] toArray(int id) {
+		int[] row = overlay.get(id);
+		if (row != null) {
+			return row.clone();
+		}
+		return id < compactedRows ? Arrays.copyOfRange(targets, offsets[id], offsets[id + 1]) : EMPTY;
+	}
+
+	boolean contains(int id, int target) {
+		int[] row = overlay.get(id);
+		if (row != null) {
+			return Arrays.binarySearch(row, target) >= 0;
+		}
+		return (id < compactedRows) && (Arrays.binarySearch(targets, offsets[id], offsets[id + 1], target) >= 0);
+	}
+
+	/**
+	 * @return <code>true</code> if the edge was not there yet
+	 */
+	boolean add(int id, int target) {
+		int[] row = row(id);
+		int index = Arrays.binarySearch(row, target);
+		if (index >= 0) {
+			return false;
+		}
+		int insertion = -index - 1;
+		int[] newRow = new int[row.length + 1];
+		System.arraycopy(row, 0, newRow, 0, insertion);
+		newRow[insertion] = target;
+		System.arraycopy(row, insertion, newRow, insertion + 1, row.length - insertion);
+		update(id, row, newRow);
+		return true;
+	}
+
+	/**
+	 * @return <code>true</code> if the edge was there
+	 */
+	boolean remove(int id, int target) {
+		int[] row = row(id);
+		int index = Arrays.binarySearch(row, target);
+		if (index < 0) {
+			return false;
+		}
+		int[] newRow = new int[row.length - 1];
+		System.arraycopy(row, 0, newRow, 0, index);
+		System.arraycopy(row, index + 1, newRow, index, row.length - index - 1);
+		update(id, row, newRow);
+		return true;
+	}
+
+	/**
+	 * @param sortedTargets
+	 *            Sorted and without duplicates, owned by this adjacency from
+	 *            now on
+	 */
+	void set(int id, int[] sortedTargets) {
+		update(id, row(id), sortedTargets);
+	}
+
+	void clear(int id) {
+		set(id, EMPTY);
+	}
+
+	/**
+	 * @return An estimate of the memory used, in bytes
+	 */
+	long estimateSize() {
+		long overlaySize = 0;
+		for (int[] each : overlay.values()) {
+			// Map node, boxed key and array header
+			overlaySize += 32 + 16 + 16 + (4L * each.length);
+		}
+		return (4L * offsets.length) + (4L * targets.length) + overlaySize;
+	}
+
+	private int[] row(int id) {
+		int[] row = overlay.get(id);
+		if (row == null) {
+			row = id < compactedRows ? Arrays.copyOfRange(targets, offsets[id], offsets[id + 1]) : EMPTY;
+		}
+		return row;
+	}
+
+	private void update(int id, int[] oldRow, int[] newRow) {
+		size += newRow.length - oldRow.length;
+		overlay.put(id, newRow);
+		if (overlay.size() > Math.max(MIN_OVERLAY_SIZE_TO_COMPACT, compactedRows / 4)) {
+			compact();
+		}
+	}
+
+	private void compact() {
+		int rows = compactedRows;
+		for (int each : overlay.keySet()) {
+			rows = Math.max(rows, each + 1);
+		}
+
+		int[] newOffsets = new int[rows + 1];
+		int[] newTargets = new int[(int) size];
+		int position = 0;
+		for (int id = 0; id < rows; id++) {
+			newOffsets[id] = position;
+			int[] row = overlay.get(id);
+			if (row != null) {
+				System.arraycopy(row, 0, newTargets, position, row.length);
+				position += row.length;
+			} else if (id < compactedRows) {
+				int length = offsets[id + 1] - offsets[id];
+				System.arraycopy(targets, offsets[id], newTargets, position, length);
+				position += length;
+			}
+		}
+		newOffsets[rows] = position;
+
+		offsets = newOffsets;
+		targets = newTargets;
+		compactedRows = rows;
+		overlay.clear();
+	}
+}
@@ -27,137 +27,55 @@
  */
 package org.infinitest.parser;
 
-import static com.google.common.base.Splitter.*;
-import static com.google.common.collect.Lists.*;
-import static java.io.File.*;
-
 import java.io.*;
 import java.net.*;
-import java.util.*;
 
 import javassist.*;
 
 import org.infinitest.*;
 
-import com.google.common.hash.Hashing;
-import com.google.common.io.*;
-
-public class JavaAssistClassParser {
-	private static final Map<String, JavaClass> CLASSES_BY_NAME = new HashMap<>();
-	private static final Map<String, CacheEntry> BY_PATH = new HashMap<>();
-	
-	private final String classpath;
-	private ClassPool classPool;
-
+/**
+ * Javassist class pools are not thread safe, so classes are read and parsed
+ * one at a time. Only the hashing of class files is done in parallel.
+ */
+public class JavaAssistClassParser extends ClassParser {
 	public JavaAssistClassParser(String classpath) {
-		this.classpath = classpath;
-	}
-
-	public void clear() {
-		// classPool = null;
-	}
-
-	private ClassPool getClassPool() {
-		if (classPool == null) {
-			// This is used primarily for getting Java core objects like String
-			// and Integer,
-			// so if we don't have the project's JDK classpath, it's probably
-			// OK.
-			classPool = new ClassPool(true);
-			try {
-				for (String pathElement : getPathElements()) {
-					classPool.appendClassPath(pathElement);
-				}
-			} catch (NotFoundException e) {
-				classPool = null; // RISK Untested
-				// Blank out the class pool so we try again next time
-				throw new MissingClassException("Could not create class pool", e);
-			}
-		}
-		return classPool;
-	}
-
-	private Iterable<String> getPathElements() {
-		List<String> entries = newArrayList(on(pathSeparator).split(classpath));
-		ListIterator<String> iter = entries.listIterator();
-		while (iter.hasNext()) {
-			if (entryDoesNotExist(iter)) {
-				iter.remove();
-			}
-		}
-		return entries;
-	}
-
-	private boolean entryDoesNotExist(ListIterator<String> iter) {
-		return !new File(iter.next()).exists();
+		super(classpath);
 	}
 
-	public JavaClass getClass(String className) {
-		JavaClass clazz = CLASSES_BY_NAME.get(className);
-		if (clazz == null) {
-			CtClass ctClass = getCachedClass(className);
-
-			if (unparsableClass(ctClass)) {
-				clazz = new UnparsableClass(className);
-			} else {
-				try {
-					JavaAssistClass javaAssistClass = new JavaAssistClass(ctClass);
-					URL url = getClassPool().find(className);
-					if ((url != null) && url.getProtocol().equals("file")) {
-						javaAssistClass.setClassFile(new File(url.toURI()));
-					}
-					clazz = javaAssistClass;
-				} catch (URISyntaxException e) {
-					throw new RuntimeException(e);
-				}
-			}
-
-			CLASSES_BY_NAME.put(className, clazz);
+	@Override
+	protected JavaClass parseClass(String className) {
+		synchronized (getClassPool()) {
+			return parseClassFromPool(className);
 		}
-
-		return clazz;
 	}
 
-	public static class CacheEntry {
-		final String sha1;
-		final String classname;
+	private JavaClass parseClassFromPool(String className) {
+		CtClass ctClass = getCachedClass(className);
 
-		public CacheEntry(String sha1, String classname) {
-			this.sha1 = sha1;
-			this.classname = classname;
+		if (unparsableClass(ctClass)) {
+			return new UnparsableClass(className);
 		}
-	}
-	
-	/**
-	 * @return The {@link JavaClass} corresponding to this file or null if it was not parsed or does not exist
-	 */
-	public JavaClass getClass(File file) {
-		CacheEntry entry = BY_PATH.get(file.getAbsolutePath());
 		
-		if (entry != null) {
-			String classname = entry.classname;
-			
-			return CLASSES_BY_NAME.get(classname);
+		try {
+			JavaAssistClass javaAssistClass = new JavaAssistClass(ctClass);
+			URL url = getClassPool().find(className);
+			if ((url != null) && url.getProtocol().equals("file")) {
+				javaAssistClass.setClassFile(new File(url.toURI()));
+			}
+			return javaAssistClass;
+		} catch (URISyntaxException e) {
+			throw new RuntimeException(e);
 		}
-		
-		return null;
 	}
 
-	public String classFileChanged(File file) throws IOException {
-		String sha1 = Files.hash(file, Hashing.sha1()).toString();
-		CacheEntry entry = BY_PATH.get(file.getAbsolutePath());
-		if ((entry != null) && (entry.sha1.equals(sha1))) {
-			return entry.classname;
-		}
-
+	@Override
+	protected String readClassFile(File file) throws IOException {
+		ClassPool classPool = getClassPool();
 		try (FileInputStream inputStream = new FileInputStream(file)) {
-			CtClass ctClass = getClassPool().makeClass(inputStream);
-			String classname = ctClass.getName();
-
-			CLASSES_BY_NAME.remove(classname);
-			BY_PATH.put(file.getAbsolutePath(), new CacheEntry(sha1, classname));
-
-			return classname;
+			synchronized (classPool) {
+				return classPool.makeClass(inputStream).getName();
+			}
 		}
 	}
 
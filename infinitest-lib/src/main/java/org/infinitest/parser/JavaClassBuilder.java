@@ -28,26 +28,38 @@
 package org.infinitest.parser;
 
 import java.io.*;
+import java.util.*;
 
 import javassist.*;
 
 import org.infinitest.*;
 import org.infinitest.environment.ClasspathProvider;
+import org.infinitest.parser.ClassParser.CacheEntry;
+import org.infinitest.util.InfinitestGlobalSettings;
+
+import com.google.common.cache.CacheStats;
 
 /**
  * @author Ben Rady
  */
 class JavaClassBuilder {
-	private final JavaAssistClassParser parser;
+	private final ClassParser parser;
 
 	JavaClassBuilder(ClasspathProvider classpath) {
-		this(new JavaAssistClassParser(classpath.getRunnerFullClassPath()));
+		this(createParser(classpath.getRunnerFullClassPath()));
 	}
 
-	public JavaClassBuilder(JavaAssistClassParser parser) {
+	public JavaClassBuilder(ClassParser parser) {
 		this.parser = parser;
 	}
 
+	private static ClassParser createParser(String classpath) {
+		if (InfinitestGlobalSettings.isStreamingClassParser()) {
+			return new StreamingClassParser(classpath);
+		}
+		return new JavaAssistClassParser(classpath);
+	}
+
 	public void clear() {
 		parser.clear();
 	}
@@ -71,6 +83,54 @@ class JavaClassBuilder {
 		return parser.getClass(file);
 	}
 
+	boolean isJarClass(String classname) {
+		try {
+			return parser.isJarClass(classname);
+		} catch (MissingClassException e) {
+			return false;
+		}
+	}
+
+	void jarClassesChanged(Collection<String> classnames) {
+		parser.jarClassesChanged(classnames);
+	}
+
+	void classpathChanged(ClasspathProvider classpath) {
+		parser.classpathChanged(classpath.getRunnerFullClassPath());
+	}
+
+	void classFileRemoved(File file) {
+		parser.classFileRemoved(file);
+	}
+
+	String getClassName(File file) {
+		return parser.getClassName(file);
+	}
+
+	CacheStats getCacheStats() {
+		return parser.getCacheStats();
+	}
+
+	CacheEntry getCacheEntry(File file) {
+		return parser.getCacheEntry(file);
+	}
+
+	/**
+	 * @return The class if it was already parsed, null otherwise. Never parses
+	 *         the class.
+	 */
+	JavaClass findParsedClass(String classname) {
+		return parser.findParsedClass(classname);
+	}
+
+	void restore(File file, CacheEntry entry, JavaClass javaClass) {
+		parser.restore(file, entry, javaClass);
+	}
+
+	void restoreExternalClass(String classname) {
+		parser.restoreExternalClass(classname);
+	}
+
 	public String classFileChanged(File file) {
 		try {
 			return parser.classFileChanged(file);
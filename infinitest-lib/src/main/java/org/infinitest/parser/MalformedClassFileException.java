@@ -35,4 +35,8 @@ class MalformedClassFileException extends IOException {
 	public MalformedClassFileException(String fileName) {
 		super(fileName);
 	}
+
+	public MalformedClassFileException(String fileName, String reason) {
+		super(fileName + ": " + reason);
+	}
 }
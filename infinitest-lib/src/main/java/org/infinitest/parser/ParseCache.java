@@ -0,0 +1,147 @@
+/*
+ * Infinitest, a Continuous Test Runner.
+ *
+ * Copyright (C) 2010-2013
+ * "Ben Rady" <benrady@gmail.com>,
+ * "Rod Coffin" <rfciii@gmail.com>,
+ * "Ryan Breidenbach" <ryan.breidenbach@gmail.com>
+ * "David Gageot" <david@gageot.net>, et al.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.infinitest.parser;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import org.infinitest.parser.ClassParser.CacheEntry;
+import org.infinitest.util.InfinitestGlobalSettings;
+
+import com.google.common.cache.*;
+
+/**
+ * The classes parsed for one classpath, shared by every parser of this
+ * classpath. It lives as long as a parser uses it.
+ * <p>
+ * Parsed classes are evicted, least recently used first, once their estimated
+ * size exceeds the budget set by
+ * {@link InfinitestGlobalSettings#setParserCacheBudget(long)}. Evicted classes
+ * are parsed again when needed. The entries of class files are kept: there is
+ * one per class file of the project.
+ */
+final class ParseCache {
+	private static final Cache<String, ParseCache> BY_CLASSPATH = CacheBuilder.newBuilder().weakValues().build();
+
+	private final Cache<String, JavaClass> classesByName;
+	private final Map<String, CacheEntry> byPath = new ConcurrentHashMap<>();
+
+	ParseCache(long budget) {
+		classesByName = CacheBuilder.newBuilder() //
+				.maximumWeight(budget) //
+				.weigher(new Weigher<String, JavaClass>() {
+					@Override
+					public int weigh(String className, JavaClass javaClass) {
+						return estimateSize(javaClass);
+					}
+				}) //
+				.recordStats() //
+				.build();
+	}
+
+	static ParseCache forClasspath(String classpath) {
+		try {
+			return BY_CLASSPATH.get(classpath, () -> new ParseCache(InfinitestGlobalSettings.getParserCacheBudget()));
+		} catch (ExecutionException e) {
+			// Creating a cache does not throw checked exceptions
+			throw new IllegalStateException(e.getCause());
+		}
+	}
+
+	/**
+	 * Rough size in bytes of a parsed class. Imports are interned and shared
+	 * between classes so only the references to them are counted.
+	 */
+	static int estimateSize(JavaClass javaClass) {
+		return 64 + (2 * javaClass.getName().length()) + (8 * javaClass.getImports().length);
+	}
+
+	/**
+	 * @return The class or null if it is not cached, counted as a hit or a miss
+	 */
+	JavaClass lookup(String className) {
+		return classesByName.getIfPresent(className);
+	}
+
+	/**
+	 * @return The class or null if it is not cached, without affecting the
+	 *         statistics
+	 */
+	JavaClass peek(String className) {
+		return classesByName.asMap().get(className);
+	}
+
+	/**
+	 * @return The class already cached or null if this one was added
+	 */
+	JavaClass putIfAbsent(String className, JavaClass javaClass) {
+		return classesByName.asMap().putIfAbsent(className, javaClass);
+	}
+
+	/**
+	 * Shares this cache with the parsers created for another classpath, unless
+	 * they already have one.
+	 */
+	void shareWith(String classpath) {
+		BY_CLASSPATH.asMap().putIfAbsent(classpath, this);
+	}
+
+	void remove(String className) {
+		classesByName.invalidate(className);
+	}
+
+	CacheEntry getEntry(String path) {
+		return byPath.get(path);
+	}
+
+	void putEntry(String path, CacheEntry entry) {
+		byPath.put(path, entry);
+	}
+
+	/**
+	 * @return The removed entry or null if there was none
+	 */
+	CacheEntry removeEntry(String path) {
+		return byPath.remove(path);
+	}
+
+	/**
+	 * @return <code>true</code> if the entry was added
+	 */
+	boolean putEntryIfAbsent(String path, CacheEntry entry) {
+		return byPath.putIfAbsent(path, entry) == null;
+	}
+
+	CacheStats stats() {
+		return classesByName.stats();
+	}
+
+	long size() {
+		return classesByName.size();
+	}
+}
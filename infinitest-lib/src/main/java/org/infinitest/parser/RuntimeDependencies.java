@@ -0,0 +1,70 @@
+/*
+ * Infinitest, a Continuous Test Runner.
+ *
+ * Copyright (C) 2010-2013
+ * "Ben Rady" <benrady@gmail.com>,
+ * "Rod Coffin" <rfciii@gmail.com>,
+ * "Ryan Breidenbach" <ryan.breidenbach@gmail.com>
+ * "David Gageot" <david@gageot.net>, et al.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.infinitest.parser;
+
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.IntConsumer;
+
+/**
+ * The classes each test used the last time it ran, as ids of a
+ * {@link DependencyGraph}. Tests are only recorded when the runner records
+ * the classes they load.
+ */
+class RuntimeDependencies {
+	private final Map<Integer, BitSet> classesByTest = new HashMap<>();
+
+	void record(int testId, BitSet classIds) {
+		classesByTest.put(testId, classIds);
+	}
+
+	void forget(int testId) {
+		classesByTest.remove(testId);
+	}
+
+	boolean isRecorded(int testId) {
+		return classesByTest.containsKey(testId);
+	}
+
+	boolean isEmpty() {
+		return classesByTest.isEmpty();
+	}
+
+	/**
+	 * Calls the action with each recorded test which used at least one of the
+	 * classes.
+	 */
+	void forEachTestUsing(BitSet classIds, IntConsumer action) {
+		for (Map.Entry<Integer, BitSet> each : classesByTest.entrySet()) {
+			if (each.getValue().intersects(classIds)) {
+				action.accept(each.getKey());
+			}
+		}
+	}
+}
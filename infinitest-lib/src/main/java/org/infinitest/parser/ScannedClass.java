@@ -0,0 +1,179 @@
+/*
+ * Infinitest, a Continuous Test Runner.
+ *
+ * Copyright (C) 2010-2013
+ * "Ben Rady" <benrady@gmail.com>,
+ * "Rod Coffin" <rfciii@gmail.com>,
+ * "Ryan Breidenbach" <ryan.breidenbach@gmail.com>
+ * "David Gageot" <david@gageot.net>, et al.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.infinitest.parser;
+
+/**
+ * The facts {@link StreamingClassParser} needs about a class file: its
+ * dependencies and what is required to decide whether it is a test.
+ * <p>
+ * Instances are cached for every class looked up, including JDK and library
+ * classes, so only the members relevant to test detection are kept.
+ */
+final class ScannedClass {
+	private static final int ACC_INTERFACE = 0x0200;
+	private static final int ACC_ABSTRACT = 0x0400;
+
+	private final String name;
+	private final String superName;
+	private final String[] interfaces;
+	private final int accessFlags;
+	private final String[] visibleAnnotations;
+	private final String[] invisibleAnnotations;
+	private final Method[] methods;
+	private final boolean archTest;
+	private final boolean nonPrivateConstructor;
+	private final boolean junitCompatibleConstructor;
+	private final String[] imports;
+
+	ScannedClass(String name, String superName, String[] interfaces, int accessFlags, String[] visibleAnnotations, String[] invisibleAnnotations, Method[] methods, boolean archTest, boolean nonPrivateConstructor, boolean junitCompatibleConstructor, String[] imports) {
+		this.name = name;
+		this.superName = superName;
+		this.interfaces = interfaces;
+		this.accessFlags = accessFlags;
+		this.visibleAnnotations = visibleAnnotations;
+		this.invisibleAnnotations = invisibleAnnotations;
+		this.methods = methods;
+		this.archTest = archTest;
+		this.nonPrivateConstructor = nonPrivateConstructor;
+		this.junitCompatibleConstructor = junitCompatibleConstructor;
+		this.imports = imports;
+	}
+
+	String getName() {
+		return name;
+	}
+
+	/**
+	 * @return The name of the superclass or null for <code>java.lang.Object</code>
+	 */
+	String getSuperName() {
+		return superName;
+	}
+
+	String[] getInterfaces() {
+		return interfaces;
+	}
+
+	boolean isAbstract() {
+		return (accessFlags & (ACC_INTERFACE | ACC_ABSTRACT)) != 0;
+	}
+
+	boolean hasVisibleAnnotation(String annotationName) {
+		return contains(visibleAnnotations, annotationName);
+	}
+
+	boolean hasAnnotation(String annotationName) {
+		return contains(visibleAnnotations, annotationName) || contains(invisibleAnnotations, annotationName);
+	}
+
+	/**
+	 * @return The declared methods which are neither private, constructors nor
+	 *         static initializers
+	 */
+	Method[] getMethods() {
+		return methods;
+	}
+
+	/**
+	 * @return <code>true</code> if a declared field or method is annotated with ArchUnit's <code>ArchTest</code>
+	 */
+	boolean hasArchTest() {
+		return archTest;
+	}
+
+	boolean hasNonPrivateConstructor() {
+		return nonPrivateConstructor;
+	}
+
+	/**
+	 * @return <code>true</code> if there is a public constructor without
+	 *         parameters or taking the test name
+	 */
+	boolean hasJUnitCompatibleConstructor() {
+		return junitCompatibleConstructor;
+	}
+
+	String[] getImports() {
+		return imports;
+	}
+
+	@Override
+	public String toString() {
+		return name;
+	}
+
+	private static boolean contains(String[] names, String name) {
+		for (String each : names) {
+			if (each.equals(name)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	static final class Method {
+		private final String declaringClass;
+		private final String name;
+		private final String descriptor;
+		private final String[] annotations;
+
+		Method(String declaringClass, String name, String descriptor, String[] annotations) {
+			this.declaringClass = declaringClass;
+			this.name = name;
+			this.descriptor = descriptor;
+			this.annotations = annotations;
+		}
+
+		String getDeclaringClass() {
+			return declaringClass;
+		}
+
+		String getName() {
+			return name;
+		}
+
+		/**
+		 * @return The name and descriptor, which identify a method overridden
+		 *         in a subclass
+		 */
+		String getSignature() {
+			return name + descriptor;
+		}
+
+		/**
+		 * @return <code>true</code> if the method has this visible or invisible annotation
+		 */
+		boolean hasAnnotation(String annotationName) {
+			return contains(annotations, annotationName);
+		}
+
+		String[] getAnnotations() {
+			return annotations;
+		}
+	}
+}
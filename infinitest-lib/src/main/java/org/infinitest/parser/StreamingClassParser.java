@@ -0,0 +1,291 @@
+/*
+ * Infinitest, a Continuous Test Runner.
+ *
+ * Copyright (C) 2010-2013
+ * "Ben Rady" <benrady@gmail.com>,
+ * "Rod Coffin" <rfciii@gmail.com>,
+ * "Ryan Breidenbach" <ryan.breidenbach@gmail.com>
+ * "David Gageot" <david@gageot.net>, et al.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.infinitest.parser;
+
+import static java.util.Arrays.asList;
+
+import java.io.*;
+import java.net.*;
+import java.nio.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+import java.util.logging.Level;
+
+import org.infinitest.*;
+import org.infinitest.util.InfinitestUtils;
+
+import com.google.common.io.ByteStreams;
+
+/**
+ * Parses class files with a {@link ClassFileScanner} instead of building
+ * Javassist classes. The class pool is only used to locate class files.
+ * <p>
+ * Detects the same tests and dependencies as {@link JavaAssistClass}.
+ */
+public class StreamingClassParser extends ClassParser {
+	private static final Set<String> PRIMITIVES = new HashSet<>(asList("boolean", "byte", "char", "short", "int", "long", "float", "double", "void"));
+
+	private static final String JUNIT3_TEST_CASE = "junit.framework.TestCase";
+	private static final String JUNIT4_TEST = "org.junit.Test";
+	private static final String JUNIT4_RUN_WITH = "org.junit.runner.RunWith";
+	private static final String JUNIT5_TEST = "org.junit.jupiter.api.Test";
+	private static final String JUNIT5_TEST_TEMPLATE = "org.junit.jupiter.api.TestTemplate";
+	private static final String JUNIT5_TESTABLE = "org.junit.platform.commons.annotation.Testable";
+	private static final String TESTNG_TEST = "org.testng.annotations.Test";
+
+	/**
+	 * The classes scanned since the changed classes were last parsed, the
+	 * parsed classes are cached instead
+	 */
+	private final Map<String, ScannedClass> scannedClasses = new ConcurrentHashMap<>();
+
+	public StreamingClassParser(String classpath) {
+		super(classpath);
+	}
+
+	@Override
+	protected JavaClass parseClass(String className) {
+		if (isArrayOrPrimitive(className)) {
+			return new UnparsableClass(className);
+		}
+
+		ScannedClass scannedClass = findScannedClass(className);
+		if (scannedClass == null) {
+			throw new MissingClassException("Expected to find " + className);
+		}
+		JavaClass javaClass = new SimpleJavaClass(className, scannedClass.getImports(), isATest(scannedClass), findClassFile(className));
+		// Scanned again if another class of the changes extends it
+		scannedClasses.remove(className);
+		return javaClass;
+	}
+
+	/**
+	 * The parents and annotations scanned to detect the tests are only kept
+	 * while the changed classes are parsed.
+	 */
+	@Override
+	public void clear() {
+		super.clear();
+		scannedClasses.clear();
+	}
+
+	int scannedClassCount() {
+		return scannedClasses.size();
+	}
+
+	@Override
+	protected String readClassFile(File file) throws IOException {
+		ScannedClass scannedClass = ClassFileScanner.scan(ByteBuffer.wrap(Files.readAllBytes(file.toPath())), file.getPath());
+		scannedClasses.put(scannedClass.getName(), scannedClass);
+		return scannedClass.getName();
+	}
+
+	@Override
+	protected void classChanged(String className) {
+		scannedClasses.remove(className);
+	}
+
+	private boolean isArrayOrPrimitive(String className) {
+		return className.startsWith("[") || className.endsWith("[]") || PRIMITIVES.contains(className);
+	}
+
+	private File findClassFile(String className) {
+		try {
+			URL url = getClassPool().find(className);
+			if ((url != null) && url.getProtocol().equals("file")) {
+				return new File(url.toURI());
+			}
+			return null;
+		} catch (URISyntaxException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * @return The scanned class or null if it cannot be found in the classpath
+	 */
+	private ScannedClass findScannedClass(String className) {
+		ScannedClass scannedClass = scannedClasses.get(className);
+		if (scannedClass == null) {
+			scannedClass = scanFromClassPool(className);
+			if (scannedClass != null) {
+				scannedClasses.put(className, scannedClass);
+			}
+		}
+		return scannedClass;
+	}
+
+	private ScannedClass scanFromClassPool(String className) {
+		URL url = getClassPool().find(className);
+		if (url == null) {
+			return null;
+		}
+		try (InputStream inputStream = openWithoutCache(url)) {
+			return ClassFileScanner.scan(ByteBuffer.wrap(ByteStreams.toByteArray(inputStream)), className);
+		} catch (IOException e) {
+			InfinitestUtils.log(Level.FINE, "Could not read class " + className + " : " + e.getMessage());
+			return null;
+		}
+	}
+
+	/**
+	 * Jar connections are cached by default, they would keep reading a jar
+	 * which was rebuilt since.
+	 */
+	private static InputStream openWithoutCache(URL url) throws IOException {
+		URLConnection connection = url.openConnection();
+		connection.setUseCaches(false);
+		return connection.getInputStream();
+	}
+
+	private boolean isATest(ScannedClass scannedClass) {
+		if (scannedClass.isAbstract()) {
+			return false;
+		}
+		boolean usesCustomRunner = usesCustomRunner(scannedClass);
+		return (hasTests(scannedClass, usesCustomRunner) || isJUnit5Testable(scannedClass))
+				&& (hasJUnit5TestImport(scannedClass) || canInstantiate(scannedClass, usesCustomRunner));
+	}
+
+	private boolean hasTests(ScannedClass scannedClass, boolean usesCustomRunner) {
+		if (usesCustomRunner || scannedClass.hasArchTest() || scannedClass.hasVisibleAnnotation(TESTNG_TEST)) {
+			return true;
+		}
+		for (ScannedClass.Method method : getMethods(scannedClass)) {
+			if (isJUnit5TestMethod(method)
+					|| method.hasAnnotation(JUNIT4_TEST)
+					|| isJUnit3TestMethod(method)
+					|| method.hasAnnotation(TESTNG_TEST)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private boolean hasJUnit5TestImport(ScannedClass scannedClass) {
+		return asList(scannedClass.getImports()).contains(JUNIT5_TEST);
+	}
+
+	private boolean canInstantiate(ScannedClass scannedClass, boolean usesCustomRunner) {
+		return scannedClass.hasJUnitCompatibleConstructor() || (usesCustomRunner && scannedClass.hasNonPrivateConstructor());
+	}
+
+	/**
+	 * @return <code>true</code> if the class or one of its parents is annotated with <code>Testable</code>
+	 */
+	private boolean isJUnit5Testable(ScannedClass scannedClass) {
+		ScannedClass clazz = scannedClass;
+		while (clazz != null) {
+			if (clazz.hasAnnotation(JUNIT5_TESTABLE)) {
+				return true;
+			}
+			clazz = findSuperclass(clazz);
+		}
+		return false;
+	}
+
+	private boolean usesCustomRunner(ScannedClass scannedClass) {
+		Predicate<ScannedClass> hasACustomRunner = clazz -> clazz.hasVisibleAnnotation(JUNIT4_RUN_WITH);
+		return hasACustomRunner.test(scannedClass) || anySuperclassOf(scannedClass, hasACustomRunner);
+	}
+
+	private boolean isJUnit3TestMethod(ScannedClass.Method method) {
+		if (!method.getName().startsWith("test")) {
+			return false;
+		}
+		ScannedClass declaringClass = findScannedClass(method.getDeclaringClass());
+		return (declaringClass != null) && anySuperclassOf(declaringClass, clazz -> clazz.getName().equals(JUNIT3_TEST_CASE));
+	}
+
+	/**
+	 * @return <code>true</code> if the method is annotated with JUnit's <code>Test</code> or with an annotation itself
+	 *         annotated with <code>Test</code> or <code>TestTemplate</code>, such as <code>ParameterizedTest</code>
+	 */
+	private boolean isJUnit5TestMethod(ScannedClass.Method method) {
+		for (String annotation : method.getAnnotations()) {
+			if (JUNIT5_TEST.equals(annotation)) {
+				return true;
+			}
+			ScannedClass annotationType = findScannedClass(annotation);
+			if ((annotationType != null)
+					&& (annotationType.hasVisibleAnnotation(JUNIT5_TEST) || annotationType.hasVisibleAnnotation(JUNIT5_TEST_TEMPLATE))) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @return The non-private methods of the class and its parents, overridden
+	 *         methods being replaced by the ones of the subclasses
+	 */
+	private Collection<ScannedClass.Method> getMethods(ScannedClass scannedClass) {
+		Map<String, ScannedClass.Method> methods = new HashMap<>();
+		addMethods(scannedClass, methods);
+		return methods.values();
+	}
+
+	private void addMethods(ScannedClass scannedClass, Map<String, ScannedClass.Method> methods) {
+		for (String each : scannedClass.getInterfaces()) {
+			ScannedClass anInterface = findScannedClass(each);
+			if (anInterface != null) {
+				addMethods(anInterface, methods);
+			}
+		}
+		ScannedClass superclass = findSuperclass(scannedClass);
+		if (superclass != null) {
+			addMethods(superclass, methods);
+		}
+		for (ScannedClass.Method each : scannedClass.getMethods()) {
+			methods.put(each.getSignature(), each);
+		}
+	}
+
+	private boolean anySuperclassOf(ScannedClass scannedClass, Predicate<ScannedClass> predicate) {
+		ScannedClass superclass = findSuperclass(scannedClass);
+		while (superclass != null) {
+			if (predicate.test(superclass)) {
+				return true;
+			}
+			superclass = findSuperclass(superclass);
+		}
+		return false;
+	}
+
+	private ScannedClass findSuperclass(ScannedClass scannedClass) {
+		String superName = scannedClass.getSuperName();
+		if (superName == null) {
+			return null;
+		}
+		// If we can't find the superclass, it's not in the project classpath
+		// and we don't care.
+		return findScannedClass(superName);
+	}
+}
@@ -30,6 +30,7 @@ package org.infinitest.parser;
 import java.io.File;
 import java.util.Collection;
 import java.util.Set;
+import java.util.function.Consumer;
 
 import org.infinitest.environment.ClasspathProvider;
 
@@ -37,6 +38,9 @@ public interface TestDetector {
 	void clear();
 	
 	/**
+	 * The tests depending on the removed classes run with the next tests to
+	 * run.
+	 * 
 	 * @param removedFiles The removed files
 	 * @return the removed test classes
 	 */
@@ -44,7 +48,43 @@ public interface TestDetector {
 
 	Set<JavaClass> findTestsToRun(Collection<File> changedFiles);
 
+	/**
+	 * @param changedJarClasses
+	 *            The names of the classes which changed in the jars of the
+	 *            classpath
+	 */
+	Set<JavaClass> findTestsToRun(Collection<File> changedFiles, Collection<String> changedJarClasses);
+
+	/**
+	 * Also gives each changed test to the listener as soon as it is parsed,
+	 * before the other classes are indexed, so that it can start running
+	 * meanwhile. The listener may be called from several threads.
+	 * 
+	 * @return Every test to run, including those given to the listener
+	 */
+	Set<JavaClass> findTestsToRun(Collection<File> changedFiles, Collection<String> changedJarClasses, Consumer<JavaClass> testListener);
+
 	void setClasspathProvider(ClasspathProvider classpath);
 
+	/**
+	 * Switches to a classpath with the same class directories, whose jars
+	 * differ, keeping the index. The classes of the jars added or removed must
+	 * then be given as changed jar classes.
+	 */
+	void updateClasspathProvider(ClasspathProvider classpath);
+
+	/**
+	 * Remembers the classes a test loaded when it ran, the tests which ran
+	 * then only need to run again when one of them changes.
+	 * 
+	 * @param loadedClasses
+	 *            The project classes loaded by the test, or null if they were
+	 *            not recorded
+	 * @param classesLoadedBefore
+	 *            The project classes the runner process loaded before
+	 *            running the test
+	 */
+	void recordClassUsage(String testName, Set<String> loadedClasses, Set<String> classesLoadedBefore);
+
 	Set<String> getCurrentTests();
 }
\ No newline at end of file
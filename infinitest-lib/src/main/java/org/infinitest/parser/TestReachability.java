@@ -0,0 +1,271 @@
+/*
+ * Infinitest, a Continuous Test Runner.
+ *
+ * Copyright (C) 2010-2013
+ * "Ben Rady" <benrady@gmail.com>,
+ * "Rod Coffin" <rfciii@gmail.com>,
+ * "Ryan Breidenbach" <ryan.breidenbach@gmail.com>
+ * "David Gageot" <david@gageot.net>, et al.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.infinitest.parser;
+
+import java.util.*;
+
+/**
+ * Finds the tests depending, directly or not, on classes of a
+ * {@link DependencyGraph}, without recursion.
+ * <p>
+ * The tests depending on a class are computed once per strongly connected
+ * component of the graph (classes depending on each other) with Tarjan's
+ * algorithm, and remembered until an edge leading to the component changes.
+ * Components without tests of their own and a single parent component share
+ * the result of that parent.
+ */
+class TestReachability {
+	private static final BitSet NO_TESTS = new BitSet();
+	private static final long MAX_MEMO_BYTES = 16 * 1024 * 1024;
+
+	private final DependencyGraph graph;
+	// The test ids depending on each vertex, including itself, or null when not known yet.
+	// When known for a vertex, it is known for every vertex depending on it.
+	private BitSet[] memo = new BitSet[64];
+	private long memoBytes;
+
+	TestReachability(DependencyGraph graph) {
+		this.graph = graph;
+	}
+
+	/**
+	 * @return The ids of the tests depending on the given vertices, including
+	 *         the vertices themselves. The set must not be modified.
+	 */
+	BitSet findTests(int[] ids) {
+		if (memoBytes > MAX_MEMO_BYTES) {
+			forgetAll();
+		}
+
+		new Tarjan().run(ids);
+
+		if (ids.length == 1) {
+			return memo[ids[0]];
+		}
+		BitSet tests = new BitSet();
+		for (int each : ids) {
+			tests.or(memo[each]);
+		}
+		return tests;
+	}
+
+	/**
+	 * Forgets the tests of the vertex and of every vertex it depends on, whose
+	 * dependent tests may have changed.
+	 */
+	void invalidateFrom(int id) {
+		if ((id >= memo.length) || (memo[id] == null)) {
+			// Nothing it depends on is known either
+			return;
+		}
+
+		Deque<Integer> stack = new ArrayDeque<>();
+		memo[id] = null;
+		stack.push(id);
+		while (!stack.isEmpty()) {
+			graph.forEachChild(stack.pop(), child -> {
+				if (memo[child] != null) {
+					memo[child] = null;
+					stack.push(child);
+				}
+			});
+		}
+	}
+
+	void forgetAll() {
+		Arrays.fill(memo, null);
+		memoBytes = 0;
+	}
+
+	private void remember(int id, BitSet tests) {
+		if (id >= memo.length) {
+			memo = Arrays.copyOf(memo, Math.max(id + 1, memo.length * 2));
+		}
+		memo[id] = tests;
+	}
+
+	private BitSet known(int id) {
+		return id < memo.length ? memo[id] : null;
+	}
+
+	/**
+	 * Iterative version of Tarjan's strongly connected components algorithm,
+	 * following the edges from a class to the classes depending on it. A
+	 * component is complete once all the components depending on it are, so
+	 * their tests are known by then.
+	 */
+	private class Tarjan {
+		private final int[] index = new int[graph.getIdCount()];
+		private final int[] lowLink = new int[graph.getIdCount()];
+		private final boolean[] onStack = new boolean[graph.getIdCount()];
+		private final IntStack components = new IntStack();
+		private final IntStack frames = new IntStack();
+		private final List<int[]> frameParents = new ArrayList<>();
+		private final IntStack framePositions = new IntStack();
+		private int counter;
+
+		void run(int[] ids) {
+			for (int each : ids) {
+				if ((known(each) == null) && (index[each] == 0)) {
+					visit(each);
+				}
+			}
+		}
+
+		private void visit(int start) {
+			push(start);
+			while (!frames.isEmpty()) {
+				int vertex = frames.peek();
+				int[] parents = frameParents.get(frameParents.size() - 1);
+				int position = framePositions.peek();
+				if (position < parents.length) {
+					framePositions.set(position + 1);
+					int parent = parents[position];
+					if (known(parent) != null) {
+						continue;
+					}
+					if (index[parent] == 0) {
+						push(parent);
+					} else if (onStack[parent]) {
+						lowLink[vertex] = Math.min(lowLink[vertex], index[parent]);
+					}
+				} else {
+					frames.pop();
+					frameParents.remove(frameParents.size() - 1);
+					framePositions.pop();
+					if (lowLink[vertex] == index[vertex]) {
+						completeComponent(vertex);
+					}
+					if (!frames.isEmpty()) {
+						int caller = frames.peek();
+						lowLink[caller] = Math.min(lowLink[caller], lowLink[vertex]);
+					}
+				}
+			}
+		}
+
+		private void push(int vertex) {
+			counter++;
+			index[vertex] = counter;
+			lowLink[vertex] = counter;
+			components.push(vertex);
+			onStack[vertex] = true;
+			frames.push(vertex);
+			frameParents.add(graph.parentIds(vertex));
+			framePositions.push(0);
+		}
+
+		private void completeComponent(int root) {
+			IntStack members = new IntStack();
+			int member;
+			do {
+				member = components.pop();
+				onStack[member] = false;
+				members.push(member);
+			} while (member != root);
+
+			BitSet ownTests = null;
+			Set<BitSet> parentTests = Collections.newSetFromMap(new IdentityHashMap<>());
+			for (int i = 0; i < members.size(); i++) {
+				int each = members.get(i);
+				if (graph.isATest(each)) {
+					if (ownTests == null) {
+						ownTests = new BitSet();
+					}
+					ownTests.set(each);
+				}
+				for (int parent : graph.parentIds(each)) {
+					BitSet tests = known(parent);
+					// Parents in the same component are not known yet
+					if ((tests != null) && (tests != NO_TESTS)) {
+						parentTests.add(tests);
+					}
+				}
+			}
+
+			BitSet tests = combine(ownTests, parentTests);
+			for (int i = 0; i < members.size(); i++) {
+				remember(members.get(i), tests);
+			}
+		}
+
+		private BitSet combine(BitSet ownTests, Set<BitSet> parentTests) {
+			if (ownTests == null) {
+				if (parentTests.isEmpty()) {
+					return NO_TESTS;
+				}
+				if (parentTests.size() == 1) {
+					return parentTests.iterator().next();
+				}
+			}
+
+			BitSet tests = ownTests == null ? new BitSet() : ownTests;
+			for (BitSet each : parentTests) {
+				tests.or(each);
+			}
+			memoBytes += tests.size() / 8;
+			return tests;
+		}
+	}
+
+	private static class IntStack {
+		private int[] values = new int[16];
+		private int size;
+
+		void push(int value) {
+			if (size == values.length) {
+				values = Arrays.copyOf(values, size * 2);
+			}
+			values[size++] = value;
+		}
+
+		int pop() {
+			return values[--size];
+		}
+
+		int peek() {
+			return values[size - 1];
+		}
+
+		void set(int value) {
+			values[size - 1] = value;
+		}
+
+		int get(int position) {
+			return values[position];
+		}
+
+		int size() {
+			return size;
+		}
+
+		boolean isEmpty() {
+			return size == 0;
+		}
+	}
+}
@@ -36,12 +36,14 @@ import org.infinitest.environment.RuntimeEnvironment;
 
 public abstract class AbstractTestRunner implements TestRunner {
 	private final RunnerEventSupport eventSupport;
+	private final ConsoleOutputBuffer consoleOutput;
 	private RuntimeEnvironment environment;
 	private ConcurrencyController concurrencyController;
 	private Comparator<String> testPriority;
 
 	protected AbstractTestRunner() {
 		eventSupport = new RunnerEventSupport(this);
+		consoleOutput = new ConsoleOutputBuffer(eventSupport);
 		testPriority = new NoOpComparator();
 	}
 
@@ -86,6 +88,11 @@ public abstract class AbstractTestRunner implements TestRunner {
 		eventSupport.removeConsoleOutputListener(listener);
 	}
 
+	@Override
+	public String getConsoleOutput(String testName) {
+		return consoleOutput.getTestOutput(testName);
+	}
+
 	@Override
 	public void addTestQueueListener(TestQueueListener listener) {
 		eventSupport.addTestQueueListener(listener);
@@ -100,6 +107,10 @@ public abstract class AbstractTestRunner implements TestRunner {
 		return eventSupport;
 	}
 
+	ConsoleOutputBuffer getConsoleOutputBuffer() {
+		return consoleOutput;
+	}
+
 	public void runTest(String testClass) {
 		runTests(singletonList(testClass));
 	}
@@ -111,6 +122,31 @@ public abstract class AbstractTestRunner implements TestRunner {
 		}
 	}
 
+	@Override
+	public void openTestStream() {
+		// Streamed tests are run like other tests by default
+	}
+
+	@Override
+	public void streamTests(List<String> testNames) {
+		runTests(testNames);
+	}
+
+	@Override
+	public void closeTestStream() {
+		// Streamed tests are run like other tests by default
+	}
+
+	@Override
+	public void prepareTestRun() {
+		// Nothing to prepare by default
+	}
+
+	@Override
+	public void close() {
+		// Nothing kept by default
+	}
+
 	@Override
 	public void setRuntimeEnvironment(RuntimeEnvironment environment) {
 		this.environment = environment;
@@ -0,0 +1,224 @@
+/*
+ * Infinitest, a Continuous Test Runner.
+ *
+ * Copyright (C) 2010-2013
+ * "Ben Rady" <benrady@gmail.com>,
+ * "Rod Coffin" <rfciii@gmail.com>,
+ * "Ryan Breidenbach" <ryan.breidenbach@gmail.com>
+ * "David Gageot" <david@gageot.net>, et al.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.infinitest.testrunner;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import org.infinitest.ConsoleOutputListener.OutputType;
+import org.infinitest.util.InfinitestGlobalSettings;
+
+/**
+ * The console output of the runner processes of a core, on its way to the
+ * console listeners.
+ * <p>
+ * The output is sent in batches, once it waited {@link #FLUSH_DELAY} ms or
+ * reached {@link #BATCH_SIZE} characters, by a thread shared by all the
+ * cores. When the listeners are slower than the tests writing, only the last
+ * half of {@link InfinitestGlobalSettings#getConsoleOutputBudget()} waits to
+ * be sent: the oldest output is dropped, and a line tells how much was. The
+ * output waits in chunks of up to {@link #CHUNK_SIZE} characters, so that the
+ * oldest chunks are dropped without copying the others.
+ * <p>
+ * The end of the output of each test is also kept, within the other half of
+ * the budget, so that it can be shown on demand. The output is credited to
+ * the test the core started last, which is only approximate when a core runs
+ * several processes, or when the processes get tests ahead of the one they
+ * run.
+ */
+class ConsoleOutputBuffer {
+	static final long FLUSH_DELAY = 100;
+	static final int BATCH_SIZE = 16 * 1024;
+	static final int CHUNK_SIZE = 4 * 1024;
+	/**
+	 * The number of characters kept per test, if the budget allows
+	 */
+	static final int TEST_OUTPUT_LIMIT = 64 * 1024;
+
+	private static final ScheduledExecutorService FLUSHER = Executors.newSingleThreadScheduledExecutor(runnable -> {
+		Thread thread = new Thread(runnable, "Infinitest console output");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	private final RunnerEventSupport eventSupport;
+	private final int pendingBudget;
+	private final int testOutputsBudget;
+	private final Deque<Chunk> pendingChunks = new ArrayDeque<>();
+	private int pendingLength;
+	private long droppedLength;
+	private boolean flushScheduled;
+	private boolean batchFull;
+	private String runningTest;
+	// Least recently written first
+	private final LinkedHashMap<String, StringBuilder> testOutputs = new LinkedHashMap<>(16, 0.75f, true);
+	private int testOutputsLength;
+
+	ConsoleOutputBuffer(RunnerEventSupport eventSupport) {
+		this(eventSupport, (int) Math.min(Integer.MAX_VALUE, InfinitestGlobalSettings.getConsoleOutputBudget()));
+	}
+
+	ConsoleOutputBuffer(RunnerEventSupport eventSupport, int budget) {
+		this.eventSupport = eventSupport;
+		pendingBudget = budget - (budget / 2);
+		testOutputsBudget = budget / 2;
+	}
+
+	synchronized void append(OutputType outputType, String text) {
+		if (runningTest != null) {
+			keepTestOutput(runningTest, text);
+		}
+
+		Chunk lastChunk = pendingChunks.peekLast();
+		if ((lastChunk != null) && (lastChunk.outputType == outputType) && (lastChunk.text.length() < CHUNK_SIZE)) {
+			lastChunk.text.append(text);
+		} else {
+			pendingChunks.add(new Chunk(outputType, text));
+		}
+		pendingLength += text.length();
+		dropOldestPendingOutput();
+
+		if (!flushScheduled) {
+			flushScheduled = true;
+			FLUSHER.schedule(this::flush, FLUSH_DELAY, MILLISECONDS);
+		}
+		if ((pendingLength >= BATCH_SIZE) && !batchFull) {
+			batchFull = true;
+			FLUSHER.execute(this::flush);
+		}
+	}
+
+	/**
+	 * The last lines written tell the most, the oldest chunks are dropped
+	 * first. Only a chunk larger than the budget by itself is cut.
+	 */
+	private void dropOldestPendingOutput() {
+		while ((pendingLength > pendingBudget) && (pendingChunks.size() > 1)) {
+			int dropped = pendingChunks.poll().text.length();
+			pendingLength -= dropped;
+			droppedLength += dropped;
+		}
+		if (pendingLength > pendingBudget) {
+			int excess = pendingLength - pendingBudget;
+			pendingChunks.peek().text.delete(0, excess);
+			pendingLength -= excess;
+			droppedLength += excess;
+		}
+	}
+
+	/**
+	 * Credits the output written from now on to the test, and forgets the
+	 * output of its previous run.
+	 */
+	synchronized void testStarting(String testName) {
+		runningTest = testName;
+		StringBuilder output = testOutputs.remove(testName);
+		if (output != null) {
+			testOutputsLength -= output.length();
+		}
+	}
+
+	/**
+	 * @return The end of the output written while the test last ran, empty
+	 *         if there was none or if it was dropped to save memory
+	 */
+	synchronized String getTestOutput(String testName) {
+		StringBuilder output = testOutputs.get(testName);
+		return output == null ? "" : output.toString();
+	}
+
+	/**
+	 * Sends the output waiting to the listeners.
+	 */
+	void flush() {
+		List<Chunk> chunks;
+		long dropped;
+		synchronized (this) {
+			chunks = new ArrayList<>(pendingChunks);
+			dropped = droppedLength;
+			pendingChunks.clear();
+			pendingLength = 0;
+			droppedLength = 0;
+			flushScheduled = false;
+			batchFull = false;
+		}
+
+		if (dropped > 0) {
+			eventSupport.fireConsoleUpdateEvent("[Infinitest dropped " + dropped + " earlier characters of console output]\n", OutputType.STDERR);
+		}
+		// The chunks of the same output are sent together
+		int first = 0;
+		while (first < chunks.size()) {
+			OutputType outputType = chunks.get(first).outputType;
+			StringBuilder text = new StringBuilder();
+			int next = first;
+			while ((next < chunks.size()) && (chunks.get(next).outputType == outputType)) {
+				text.append(chunks.get(next).text);
+				next++;
+			}
+			eventSupport.fireConsoleUpdateEvent(text.toString(), outputType);
+			first = next;
+		}
+	}
+
+	private void keepTestOutput(String testName, String text) {
+		StringBuilder output = testOutputs.get(testName);
+		if (output == null) {
+			output = new StringBuilder();
+			testOutputs.put(testName, output);
+		}
+		output.append(text);
+		testOutputsLength += text.length();
+
+		int limit = Math.min(TEST_OUTPUT_LIMIT, testOutputsBudget);
+		if (output.length() > limit) {
+			int excess = output.length() - limit;
+			output.delete(0, excess);
+			testOutputsLength -= excess;
+		}
+
+		Iterator<StringBuilder> oldestOutputs = testOutputs.values().iterator();
+		while (testOutputsLength > testOutputsBudget) {
+			StringBuilder oldestOutput = oldestOutputs.next();
+			testOutputsLength -= oldestOutput.length();
+			oldestOutputs.remove();
+		}
+	}
+
+	private static class Chunk {
+		private final OutputType outputType;
+		private final StringBuilder text;
+
+		Chunk(OutputType outputType, String text) {
+			this.outputType = outputType;
+			this.text = new StringBuilder(text);
+		}
+	}
+}
@@ -35,24 +35,40 @@ import org.infinitest.ConsoleOutputListener.OutputType;
 
 public class ConsoleOutputProcessor implements Runnable {
 	private final RunnerEventSupport eventSupport;
+	private final ConsoleOutputBuffer outputBuffer;
 	private final InputStream outputSource;
 	private final OutputType outputType;
 
 	public ConsoleOutputProcessor(InputStream stream, OutputType outputType, RunnerEventSupport eventSupport) {
+		this(stream, outputType, eventSupport, null);
+	}
+
+	/**
+	 * @param outputBuffer
+	 *            The buffer the output goes through, or null to send it to
+	 *            the listeners as soon as it is read
+	 */
+	ConsoleOutputProcessor(InputStream stream, OutputType outputType, RunnerEventSupport eventSupport, ConsoleOutputBuffer outputBuffer) {
 		outputSource = stream;
 		this.outputType = outputType;
 		this.eventSupport = eventSupport;
+		this.outputBuffer = outputBuffer;
 	}
 
 	@Override
 	public void run() {
-		try {
-			int bytesRead;
-			byte[] buffer = new byte[1024 * 10];
-			while ((bytesRead = outputSource.read(buffer)) != -1) {
-				eventSupport.fireConsoleUpdateEvent(new String(buffer, 0, bytesRead), outputType);
+		// The reader keeps the bytes of a character split between two reads
+		try (Reader reader = new InputStreamReader(outputSource)) {
+			int charsRead;
+			char[] buffer = new char[1024 * 10];
+			while ((charsRead = reader.read(buffer)) != -1) {
+				String text = new String(buffer, 0, charsRead);
+				if (outputBuffer == null) {
+					eventSupport.fireConsoleUpdateEvent(text, outputType);
+				} else {
+					outputBuffer.append(outputType, text);
+				}
 			}
-			outputSource.close();
 		} catch (IOException e) {
 			log("Error while reading console output from the test runner process", e);
 			throw new RuntimeException(e);
@@ -37,22 +37,27 @@ import org.infinitest.testrunner.queue.*;
 
 public class MultiProcessRunner extends AbstractTestRunner {
 	private QueueConsumer queueConsumer;
+	private final PooledConnectionFactory connectionFactory;
+	private final PersistentConnectionFactory persistentConnectionFactory;
 
 	// DEBT Move into QueueConsumer.
-	private Queue<String> queue;
+	private TestQueue queue;
 
 	public MultiProcessRunner() {
 		this(new NativeConnectionFactory(DefaultRunner.class), null);
 	}
 
 	public MultiProcessRunner(final ProcessConnectionFactory remoteProcessManager, RuntimeEnvironment environment) {
-		queue = new TestQueue(getTestPriority());
+		// The priority is set once the runner is created
+		queue = new TestQueue((test1, test2) -> getTestPriority().compare(test1, test2));
+		connectionFactory = new PooledConnectionFactory(remoteProcessManager);
+		persistentConnectionFactory = new PersistentConnectionFactory(connectionFactory);
 
 		setRuntimeEnvironment(environment);
 		queueConsumer = new QueueConsumer(getEventSupport(), queue) {
 			@Override
 			protected QueueProcessor createQueueProcessor() throws IOException {
-				return new TestQueueProcessor(getEventSupport(), remoteProcessManager, getRuntimeEnvironment());
+				return new TestQueueProcessor(getEventSupport(), persistentConnectionFactory, getRuntimeEnvironment(), getConsoleOutputBuffer());
 			}
 		};
 	}
@@ -69,4 +74,30 @@ public class MultiProcessRunner extends AbstractTestRunner {
 			queueConsumer.push(testNames);
 		}
 	}
+
+	@Override
+	public void prepareTestRun() {
+		connectionFactory.prestart(getRuntimeEnvironment());
+	}
+
+	@Override
+	public void close() {
+		persistentConnectionFactory.close();
+		connectionFactory.discardIdleProcesses(getRuntimeEnvironment());
+	}
+
+	@Override
+	public void openTestStream() {
+		queueConsumer.openStream();
+	}
+
+	@Override
+	public void streamTests(List<String> testNames) {
+		queueConsumer.stream(testNames);
+	}
+
+	@Override
+	public void closeTestStream() {
+		queueConsumer.closeStream();
+	}
 }
@@ -28,14 +28,31 @@
 package org.infinitest.testrunner;
 
 import static java.lang.System.*;
+import static java.nio.file.StandardCopyOption.*;
 
+import java.io.*;
+import java.nio.file.*;
 import java.util.*;
+import java.util.concurrent.*;
 
+/**
+ * What the previous runs tell about each test: when it last failed, whether
+ * its last run failed and how long it is expected to take. The statistics can
+ * be saved, so that the tests are ordered as well after a restart.
+ */
 public class RunStatistics implements TestResultsListener {
+	public static final long UNKNOWN_DURATION = -1;
+
+	private static final int MAGIC = 0x494E5253;
+	private static final int FORMAT_VERSION = 1;
+
 	private final Map<String, Long> failureTimestamps;
+	private final Map<String, Long> expectedDurations = new ConcurrentHashMap<>();
+	private final Set<String> failingTests = ConcurrentHashMap.newKeySet();
+	private final Map<String, Long> startTimes = new ConcurrentHashMap<>();
 
 	public RunStatistics() {
-		failureTimestamps = new HashMap<>();
+		failureTimestamps = new ConcurrentHashMap<>();
 	}
 
 	private void update(TestEvent event) {
@@ -49,14 +66,118 @@ public class RunStatistics implements TestResultsListener {
 		return failureTimestamps.get(testName);
 	}
 
+	/**
+	 * @return true if the last run of the test failed
+	 */
+	public boolean isFailing(String testName) {
+		return failingTests.contains(testName);
+	}
+
+	/**
+	 * @return How long the test is expected to run, in milliseconds, or
+	 *         {@link #UNKNOWN_DURATION} if it never ran
+	 */
+	public long getExpectedDuration(String testName) {
+		Long duration = expectedDurations.get(testName);
+		return duration == null ? UNKNOWN_DURATION : duration;
+	}
+
 	@Override
 	public void testCaseComplete(TestCaseEvent event) {
 		for (TestEvent each : event.getFailureEvents()) {
 			update(each);
 		}
+		if (event.failed()) {
+			failingTests.add(event.getTestName());
+		} else {
+			failingTests.remove(event.getTestName());
+		}
+		recordDuration(event);
 	}
 
 	@Override
 	public void testCaseStarting(TestEvent event) {
+		startTimes.put(event.getTestName(), currentTimeMillis());
+	}
+
+	/**
+	 * The duration is the time spent in the test methods, as measured by the
+	 * runner, or the time between the events if the runner did not measure
+	 * it. The previous runs are taken into account but the last one weighs
+	 * the most.
+	 */
+	private void recordDuration(TestCaseEvent event) {
+		long duration = 0;
+		for (MethodStats each : event.getRunStats()) {
+			duration += Math.max(0, each.duration());
+		}
+		Long startTime = startTimes.remove(event.getTestName());
+		if (duration == 0) {
+			if (startTime == null) {
+				return;
+			}
+			duration = currentTimeMillis() - startTime;
+		}
+		expectedDurations.merge(event.getTestName(), duration, (previous, last) -> (previous + (3 * last)) / 4);
+	}
+
+	/**
+	 * Replaces the statistics by the ones saved in the file, if it exists and
+	 * can be read.
+	 */
+	public void load(File file) throws IOException {
+		if (!file.isFile()) {
+			return;
+		}
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+			if ((in.readInt() != MAGIC) || (in.readInt() != FORMAT_VERSION)) {
+				return;
+			}
+			failureTimestamps.clear();
+			expectedDurations.clear();
+			failingTests.clear();
+			int testCount = in.readInt();
+			for (int i = 0; i < testCount; i++) {
+				String testName = in.readUTF();
+				long failureTime = in.readLong();
+				long duration = in.readLong();
+				if (failureTime != 0) {
+					failureTimestamps.put(testName, failureTime);
+				}
+				if (duration != UNKNOWN_DURATION) {
+					expectedDurations.put(testName, duration);
+				}
+				if (in.readBoolean()) {
+					failingTests.add(testName);
+				}
+			}
+		}
+	}
+
+	public void save(File file) throws IOException {
+		Set<String> testNames = new TreeSet<>(failureTimestamps.keySet());
+		testNames.addAll(expectedDurations.keySet());
+
+		File directory = file.getAbsoluteFile().getParentFile();
+		if (!directory.isDirectory() && !directory.mkdirs()) {
+			throw new IOException("Could not create directory " + directory);
+		}
+		File tempFile = File.createTempFile("statistics-", ".tmp", directory);
+		try {
+			try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)))) {
+				out.writeInt(MAGIC);
+				out.writeInt(FORMAT_VERSION);
+				out.writeInt(testNames.size());
+				for (String each : testNames) {
+					out.writeUTF(each);
+					out.writeLong(getLastFailureTime(each));
+					out.writeLong(getExpectedDuration(each));
+					out.writeBoolean(isFailing(each));
+				}
+			}
+			Files.move(tempFile.toPath(), file.toPath(), REPLACE_EXISTING);
+		} finally {
+			Files.deleteIfExists(tempFile.toPath());
+		}
 	}
 }
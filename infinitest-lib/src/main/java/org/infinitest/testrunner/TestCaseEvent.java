@@ -32,6 +32,7 @@ import static java.util.Collections.unmodifiableList;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
+import java.util.Set;
 
 public class TestCaseEvent {
 	private final List<TestEvent> methodEvents;
@@ -98,4 +99,20 @@ public class TestCaseEvent {
 	public Iterable<MethodStats> getRunStats() {
 		return results.getMethodStats();
 	}
+
+	/**
+	 * @return The project classes loaded by the test, or null if they were not
+	 *         recorded
+	 */
+	public Set<String> getLoadedClasses() {
+		return results.getLoadedClasses();
+	}
+
+	/**
+	 * @return The project classes the runner process loaded before running
+	 *         the test, or null if they were not recorded
+	 */
+	public Set<String> getClassesLoadedBefore() {
+		return results.getClassesLoadedBefore();
+	}
 }
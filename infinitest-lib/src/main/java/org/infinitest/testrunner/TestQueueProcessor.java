@@ -31,8 +31,11 @@ import static java.util.logging.Level.*;
 import static org.infinitest.util.InfinitestUtils.*;
 
 import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
 
 import org.infinitest.ConsoleOutputListener.OutputType;
+import org.infinitest.TestRunAborted;
 import org.infinitest.environment.RuntimeEnvironment;
 import org.infinitest.testrunner.process.*;
 import org.infinitest.testrunner.queue.*;
@@ -40,24 +43,90 @@ import org.infinitest.testrunner.queue.*;
 class TestQueueProcessor implements QueueProcessor {
 	private final ProcessConnectionFactory factory;
 	private final RunnerEventSupport eventSupport;
+	private final ConsoleOutputBuffer outputBuffer;
 
 	private final ProcessConnection currentConnection;
+	/**
+	 * The tests sent to the process and not processed yet, in the order they
+	 * were sent
+	 */
+	private final Deque<DispatchedTest> dispatchedTests = new ArrayDeque<>();
 
 	public TestQueueProcessor(RunnerEventSupport eventSupport, ProcessConnectionFactory factory, RuntimeEnvironment environment) throws IOException {
+		this(eventSupport, factory, environment, null);
+	}
+
+	/**
+	 * @param outputBuffer
+	 *            The buffer the console output of the process goes through,
+	 *            or null to send it to the listeners as soon as it is read
+	 */
+	TestQueueProcessor(RunnerEventSupport eventSupport, ProcessConnectionFactory factory, RuntimeEnvironment environment, ConsoleOutputBuffer outputBuffer) throws IOException {
 		this.eventSupport = eventSupport;
 		this.factory = factory;
+		this.outputBuffer = outputBuffer;
 		currentConnection = establishConnection(environment);
 	}
 
 	@Override
-	public void process(String testName) {
+	public void process(String testName) throws InterruptedException {
+		Future<TestResults> dispatchedResults = takeDispatchedResults(testName);
+		if (outputBuffer != null) {
+			outputBuffer.testStarting(testName);
+		}
 		getEventSupport().fireStartingEvent(testName);
-		TestResults results = currentConnection.runTest(testName);
-		getEventSupport().fireTestCaseComplete(testName, results);
+		// Sent like the dispatched tests, so that an interrupted wait stops the
+		// process rather than leaving the test running in it
+		Future<TestResults> results = dispatchedResults == null ? currentConnection.submitTest(testName) : dispatchedResults;
+		getEventSupport().fireTestCaseComplete(testName, awaitResults(testName, results));
+	}
+
+	@Override
+	public synchronized void dispatch(String testName) {
+		dispatchedTests.add(new DispatchedTest(testName, currentConnection.submitTest(testName)));
+	}
+
+	@Override
+	public synchronized void cancel(String testName) {
+		Iterator<DispatchedTest> tests = dispatchedTests.descendingIterator();
+		while (tests.hasNext()) {
+			DispatchedTest test = tests.next();
+			if (test.name.equals(testName)) {
+				tests.remove();
+				test.results.cancel(false);
+				return;
+			}
+		}
+	}
+
+	private synchronized Future<TestResults> takeDispatchedResults(String testName) {
+		DispatchedTest test = dispatchedTests.peek();
+		if ((test == null) || !test.name.equals(testName)) {
+			return null;
+		}
+		dispatchedTests.remove();
+		return test.results;
+	}
+
+	private TestResults awaitResults(String testName, Future<TestResults> results) throws InterruptedException {
+		try {
+			return results.get();
+		} catch (InterruptedException e) {
+			results.cancel(false);
+			throw e;
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw new TestRunAborted(testName, e);
+		}
 	}
 
 	@Override
 	public void close() {
+		if (outputBuffer != null) {
+			outputBuffer.flush();
+		}
 		getEventSupport().fireTestRunComplete();
 		currentConnection.close();
 	}
@@ -66,7 +135,7 @@ class TestQueueProcessor implements QueueProcessor {
 		return factory.getConnection(environment, new OutputStreamHandler() {
 			@Override
 			public void processStream(InputStream stream, OutputType type) {
-				new Thread(new ConsoleOutputProcessor(stream, type, getEventSupport())).start();
+				new Thread(new ConsoleOutputProcessor(stream, type, getEventSupport(), outputBuffer)).start();
 			}
 		});
 	}
@@ -83,4 +152,14 @@ class TestQueueProcessor implements QueueProcessor {
 			log("Test runner process terminated");
 		}
 	}
+
+	private static class DispatchedTest {
+		private final String name;
+		private final Future<TestResults> results;
+
+		DispatchedTest(String name, Future<TestResults> results) {
+			this.name = name;
+			this.results = results;
+		}
+	}
 }
@@ -37,6 +37,33 @@ public interface TestRunner {
 
 	void runTests(List<String> testNames);
 
+	/**
+	 * Starts a run whose tests are given progressively by
+	 * {@link #streamTests(List)}, until {@link #closeTestStream()} is called.
+	 */
+	void openTestStream();
+
+	/**
+	 * Runs the tests with those streamed before. Tests already queued are not
+	 * queued twice. Called while the classes are parsed, it does not wait for
+	 * the tests to start.
+	 */
+	void streamTests(List<String> testNames);
+
+	void closeTestStream();
+
+	/**
+	 * Called as soon as changes are detected, before the tests to run are
+	 * known, so that the runner can get ready to run them.
+	 */
+	void prepareTestRun();
+
+	/**
+	 * Stops the runner processes kept for the next runs. Called when the
+	 * runner is no longer used.
+	 */
+	void close();
+
 	void addTestResultsListener(TestResultsListener listener);
 
 	void removeTestStatusListener(TestResultsListener listener);
@@ -47,6 +74,11 @@ public interface TestRunner {
 
 	void removeConsoleOutputListener(ConsoleOutputListener listener);
 
+	/**
+	 * @see org.infinitest.InfinitestCore#getConsoleOutput(String)
+	 */
+	String getConsoleOutput(String testName);
+
 	void addTestQueueListener(TestQueueListener listener);
 
 	void removeTestQueueListener(ReloadListener testQueueNormalizer);
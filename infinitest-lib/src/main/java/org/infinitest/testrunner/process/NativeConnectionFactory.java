@@ -52,11 +52,22 @@ public class NativeConnectionFactory implements ProcessConnectionFactory {
 
 	@Override
 	public ProcessConnection getConnection(RuntimeEnvironment environment, OutputStreamHandler outputListener) throws IOException {
-		TcpSocketProcessCommunicator communicator = createCommunicator();
-				
+		ProcessCommunicator communicator = createCommunicator(environment);
+		String address;
+		try {
+			address = communicator.bind();
+		} catch (RuntimeException e) {
+			if (communicator instanceof TcpSocketProcessCommunicator) {
+				throw e;
+			}
+			log(CONFIG, "Falling back to TCP to connect to the test runner: " + e.getCause());
+			communicator = createCommunicator();
+			address = communicator.bind();
+		}
+
 		ClasspathArgumentBuilder classpathArgumentBuilder = environment.createClasspathArgumentBuilder();
 		
-		Process process = startProcess(communicator.createSocket(), environment, classpathArgumentBuilder);
+		Process process = startProcess(address, environment, classpathArgumentBuilder);
 		outputListener.processStream(process.getErrorStream(), OutputType.STDERR);
 		outputListener.processStream(process.getInputStream(), OutputType.STDOUT);
 		communicator.openSocket();
@@ -65,30 +76,62 @@ public class NativeConnectionFactory implements ProcessConnectionFactory {
 
 
 
+	/**
+	 * Factories starting the same runner start the same processes, they can
+	 * share them.
+	 */
+	@Override
+	public boolean equals(Object obj) {
+		return (obj != null) && (obj.getClass() == getClass()) && ((NativeConnectionFactory) obj).runnerClass.equals(runnerClass);
+	}
+
+	@Override
+	public int hashCode() {
+		return runnerClass.hashCode();
+	}
+
 	protected TcpSocketProcessCommunicator createCommunicator() {
 		return new TcpSocketProcessCommunicator();
 	}
 
+	/**
+	 * @return A communicator using a Unix domain socket when the runner
+	 *         processes of the environment support it, a TCP one otherwise
+	 */
+	protected ProcessCommunicator createCommunicator(RuntimeEnvironment environment) {
+		if (UnixSocketProcessCommunicator.canConnect(environment)) {
+			return new UnixSocketProcessCommunicator();
+		}
+		return createCommunicator();
+	}
+
 	Process startProcess(int port, RuntimeEnvironment environment, ClasspathArgumentBuilder classpathArgumentBuilder) throws IOException {
+		return startProcess(String.valueOf(port), environment, classpathArgumentBuilder);
+	}
+
+	Process startProcess(String address, RuntimeEnvironment environment, ClasspathArgumentBuilder classpathArgumentBuilder) throws IOException {
 		
-		ProcessBuilder builder = buildProcess(port, environment, classpathArgumentBuilder);
+		ProcessBuilder builder = buildProcess(address, environment, classpathArgumentBuilder);
 		log(CONFIG, "Starting TestRunner with configuration:\n"+buildTestProcessConfigurationMessage(builder));
 		try {
-			return builder.start();
+			Process process = builder.start();
+			environment.runnerProcessStarted(builder.command(), process);
+			return process;
 		} catch (IOException e) {
+			environment.runnerProcessNotStarted(builder.command());
 			String message = "Failed to start runner process with configuration\n" +buildTestProcessConfigurationMessage(builder);
 			throw new IOException(message, e);
 		}
 	}
 
-	ProcessBuilder buildProcess(int port, RuntimeEnvironment environment, ClasspathArgumentBuilder classpathArgumentBuilder) {
+	ProcessBuilder buildProcess(String address, RuntimeEnvironment environment, ClasspathArgumentBuilder classpathArgumentBuilder) {
 		// Could extract this to a class. Could then replace with:
 		// http://wiki.eclipse.org/FAQ_How_do_I_launch_a_Java_program%3F
 		ProcessBuilder builder = new ProcessBuilder();
 		builder.directory(environment.getWorkingDirectory());
 
 		List<String> arguments = environment.createProcessArguments(classpathArgumentBuilder);
-		arguments.addAll(buildRunnerArgs(port));
+		arguments.addAll(buildRunnerArgs(address));
 		builder.command(arguments);
 
 		builder.environment().putAll(environment.createProcessEnvironment());
@@ -113,10 +156,10 @@ public class NativeConnectionFactory implements ProcessConnectionFactory {
 		return message.toString();
 	}
 
-	private Collection<String> buildRunnerArgs(int portNum) {
+	private Collection<String> buildRunnerArgs(String address) {
 		return asList(
 				TestRunnerProcess.class.getName(), 
 				runnerClass.getName(), 
-				String.valueOf(portNum));
+				address);
 	}
 }
@@ -27,15 +27,17 @@
  */
 package org.infinitest.testrunner.process;
 
+import java.util.concurrent.Future;
+
 import org.infinitest.environment.ClasspathArgumentBuilder;
 import org.infinitest.testrunner.TestResults;
 
 public class NativeProcessConnection implements ProcessConnection {
-	private final TcpSocketProcessCommunicator communicator;
+	private final ProcessCommunicator communicator;
 	private final Process process;
 	private final ClasspathArgumentBuilder classpathArgumentBuilder;
 
-	public NativeProcessConnection(TcpSocketProcessCommunicator communicator, Process process, ClasspathArgumentBuilder classpathArgumentBuilder) {
+	public NativeProcessConnection(ProcessCommunicator communicator, Process process, ClasspathArgumentBuilder classpathArgumentBuilder) {
 		this.communicator = communicator;
 		this.process = process;
 		this.classpathArgumentBuilder = classpathArgumentBuilder;
@@ -58,8 +60,23 @@ public class NativeProcessConnection implements ProcessConnection {
 		communicator.closeSocket();
 	}
 
+	@Override
+	public boolean isAlive() {
+		return process.isAlive();
+	}
+
+	@Override
+	public boolean startRun() {
+		return communicator.startRun();
+	}
+
 	@Override
 	public TestResults runTest(String testName) {
 		return communicator.sendMessage(testName);
 	}
+
+	@Override
+	public Future<TestResults> submitTest(String testName) {
+		return communicator.submit(testName);
+	}
 }
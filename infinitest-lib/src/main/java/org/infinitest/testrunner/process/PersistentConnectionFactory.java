@@ -0,0 +1,232 @@
+/*
+ * Infinitest, a Continuous Test Runner.
+ *
+ * Copyright (C) 2010-2013
+ * "Ben Rady" <benrady@gmail.com>,
+ * "Rod Coffin" <rfciii@gmail.com>,
+ * "Ryan Breidenbach" <ryan.breidenbach@gmail.com>
+ * "David Gageot" <david@gageot.net>, et al.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.infinitest.testrunner.process;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.logging.Level.CONFIG;
+import static java.util.logging.Level.FINE;
+import static org.infinitest.util.InfinitestUtils.log;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.infinitest.environment.RuntimeEnvironment;
+import org.infinitest.testrunner.OutputStreamHandler;
+import org.infinitest.testrunner.TestResults;
+import org.infinitest.util.InfinitestGlobalSettings;
+
+/**
+ * Keeps the runner processes after their run when
+ * {@link InfinitestGlobalSettings#isPersistentRunnerProcesses()} is enabled,
+ * and runs the next runs in them. The libraries are then loaded once, only
+ * the classes of the project are loaded again for each run.
+ * <p>
+ * A process is not reused, and another one is started instead, if it exited,
+ * if the environment or a jar changed since it started, or if it reports
+ * that its previous runs leaked class loaders or threads.
+ * <p>
+ * The output of a kept process still goes to the handler it was started
+ * with, so the processes are only reused by the runner which started them.
+ * <p>
+ * A process left idle longer than {@link #IDLE_TIMEOUT} is stopped, and every
+ * idle process is stopped when the runner is closed.
+ */
+public class PersistentConnectionFactory implements ProcessConnectionFactory {
+	static final long IDLE_TIMEOUT = TimeUnit.MINUTES.toMillis(10);
+
+	private static final ScheduledExecutorService EXPIRER = Executors.newSingleThreadScheduledExecutor(runnable -> {
+		Thread thread = new Thread(runnable, "Infinitest idle runner processes");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	private final ProcessConnectionFactory factory;
+	private final long idleTimeout;
+	private final Deque<PersistentConnection> idleConnections = new ArrayDeque<>();
+	private boolean closed;
+
+	public PersistentConnectionFactory(ProcessConnectionFactory factory) {
+		this(factory, IDLE_TIMEOUT);
+	}
+
+	PersistentConnectionFactory(ProcessConnectionFactory factory, long idleTimeout) {
+		this.factory = factory;
+		this.idleTimeout = idleTimeout;
+	}
+
+	@Override
+	public ProcessConnection getConnection(RuntimeEnvironment environment, OutputStreamHandler outputHandler) throws IOException {
+		if (!InfinitestGlobalSettings.isPersistentRunnerProcesses()) {
+			return factory.getConnection(environment, outputHandler);
+		}
+
+		PersistentConnection connection;
+		while ((connection = takeIdleConnection()) != null) {
+			if (connection.canRunTestsOf(environment) && connection.startRun()) {
+				log(FINE, "Reusing the runner process of a previous run");
+				return connection;
+			}
+			log(CONFIG, "Restarting a runner process which cannot be reused");
+			connection.discard();
+		}
+		return new PersistentConnection(factory.getConnection(environment, outputHandler), environment);
+	}
+
+	private PersistentConnection takeIdleConnection() {
+		synchronized (idleConnections) {
+			return idleConnections.poll();
+		}
+	}
+
+	private void release(PersistentConnection connection) {
+		synchronized (idleConnections) {
+			if (!closed) {
+				connection.idleSince = System.nanoTime();
+				idleConnections.push(connection);
+				EXPIRER.schedule(this::discardExpiredConnections, idleTimeout, MILLISECONDS);
+				return;
+			}
+		}
+		connection.discard();
+	}
+
+	private void discardExpiredConnections() {
+		List<PersistentConnection> expiredConnections = new ArrayList<>();
+		// Same clock as the scheduler, so the connection which scheduled it has expired
+		long now = System.nanoTime();
+		synchronized (idleConnections) {
+			Iterator<PersistentConnection> connections = idleConnections.iterator();
+			while (connections.hasNext()) {
+				PersistentConnection connection = connections.next();
+				if ((now - connection.idleSince) >= MILLISECONDS.toNanos(idleTimeout)) {
+					expiredConnections.add(connection);
+					connections.remove();
+				}
+			}
+		}
+		for (PersistentConnection each : expiredConnections) {
+			log(FINE, "Stopping a runner process left idle");
+			each.discard();
+		}
+	}
+
+	/**
+	 * Stops the idle processes. The processes still running tests are
+	 * stopped at the end of their run.
+	 */
+	public void close() {
+		List<PersistentConnection> connections;
+		synchronized (idleConnections) {
+			closed = true;
+			connections = new ArrayList<>(idleConnections);
+			idleConnections.clear();
+		}
+		for (PersistentConnection each : connections) {
+			each.discard();
+		}
+	}
+
+	private class PersistentConnection implements ProcessConnection {
+		private final long startTime = System.currentTimeMillis();
+		private final ProcessConnection connection;
+		private final List<Object> processKey;
+		private final List<File> jars;
+		private volatile boolean aborted;
+		private long idleSince;
+
+		PersistentConnection(ProcessConnection connection, RuntimeEnvironment environment) {
+			this.connection = connection;
+			processKey = environment.getRunnerProcessKey();
+			jars = environment.jarsInClasspath();
+		}
+
+		boolean canRunTestsOf(RuntimeEnvironment environment) {
+			if (!connection.isAlive() || !processKey.equals(environment.getRunnerProcessKey())) {
+				return false;
+			}
+			for (File each : jars) {
+				if (each.lastModified() >= startTime) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		void discard() {
+			connection.close();
+			connection.abort();
+		}
+
+		@Override
+		public TestResults runTest(String testName) {
+			return connection.runTest(testName);
+		}
+
+		@Override
+		public Future<TestResults> submitTest(String testName) {
+			return connection.submitTest(testName);
+		}
+
+		/**
+		 * Keeps the process for the next run, unless it was aborted.
+		 */
+		@Override
+		public void close() {
+			if (aborted || !InfinitestGlobalSettings.isPersistentRunnerProcesses()) {
+				connection.close();
+			} else {
+				release(this);
+			}
+		}
+
+		@Override
+		public boolean abort() {
+			aborted = true;
+			return connection.abort();
+		}
+
+		@Override
+		public boolean isAlive() {
+			return connection.isAlive();
+		}
+
+		@Override
+		public boolean startRun() {
+			return connection.startRun();
+		}
+	}
+}
@@ -0,0 +1,281 @@
+/*
+ * Infinitest, a Continuous Test Runner.
+ *
+ * Copyright (C) 2010-2013
+ * "Ben Rady" <benrady@gmail.com>,
+ * "Rod Coffin" <rfciii@gmail.com>,
+ * "Ryan Breidenbach" <ryan.breidenbach@gmail.com>
+ * "David Gageot" <david@gageot.net>, et al.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.infinitest.testrunner.process;
+
+import static java.util.logging.Level.CONFIG;
+import static java.util.logging.Level.FINE;
+import static org.infinitest.util.InfinitestUtils.log;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.infinitest.ConsoleOutputListener.OutputType;
+import org.infinitest.environment.RuntimeEnvironment;
+import org.infinitest.testrunner.OutputStreamHandler;
+import org.infinitest.util.InfinitestGlobalSettings;
+
+/**
+ * Keeps runner processes started and connected before they are needed, so
+ * that a run does not wait for a new JVM to start. The number of idle
+ * processes per environment is set by
+ * {@link InfinitestGlobalSettings#setWarmRunnerProcesses(int)}, none by
+ * default.
+ * <p>
+ * The idle processes are shared by every core: cores whose environments start
+ * the same processes, for instance modules with the same classpath, take them
+ * from the same pool.
+ * <p>
+ * Processes idle longer than {@link #IDLE_TIMEOUT} are stopped, they are
+ * checked every minute.
+ */
+public class PooledConnectionFactory implements ProcessConnectionFactory {
+	static final long IDLE_TIMEOUT = TimeUnit.MINUTES.toMillis(10);
+
+	private static final Map<List<Object>, Deque<WarmProcess>> IDLE_PROCESSES = new HashMap<>();
+	private static final ExecutorService STARTER = Executors.newCachedThreadPool(runnable -> {
+		Thread thread = new Thread(runnable, "Infinitest runner process starter");
+		thread.setDaemon(true);
+		return thread;
+	});
+	private static final ScheduledExecutorService EXPIRER = Executors.newSingleThreadScheduledExecutor(runnable -> {
+		Thread thread = new Thread(runnable, "Infinitest idle runner process pool");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	static {
+		EXPIRER.scheduleWithFixedDelay(() -> discardProcessesStartedBefore(System.currentTimeMillis() - IDLE_TIMEOUT), 1, 1, TimeUnit.MINUTES);
+	}
+
+	private final ProcessConnectionFactory factory;
+
+	public PooledConnectionFactory(ProcessConnectionFactory factory) {
+		this.factory = factory;
+	}
+
+	/**
+	 * @return A process of the pool if there is one, otherwise a process
+	 *         started now. The pool is filled again in the background.
+	 */
+	@Override
+	public ProcessConnection getConnection(RuntimeEnvironment environment, OutputStreamHandler outputHandler) throws IOException {
+		WarmProcess process = takeIdleProcess(environment);
+		prestart(environment);
+		while (process != null) {
+			ProcessConnection connection = process.connect(outputHandler);
+			if (connection != null) {
+				log(FINE, "Using a runner process started beforehand");
+				return connection;
+			}
+			process = takeIdleProcess(environment);
+		}
+		return factory.getConnection(environment, outputHandler);
+	}
+
+	/**
+	 * Starts runner processes for the environment in the background, until
+	 * there are as many idle processes as set. Called as soon as changes are
+	 * detected, before the tests to run are known.
+	 */
+	public void prestart(RuntimeEnvironment environment) {
+		int poolSize = InfinitestGlobalSettings.getWarmRunnerProcesses();
+		if ((environment == null) || (poolSize == 0)) {
+			return;
+		}
+
+		synchronized (IDLE_PROCESSES) {
+			Deque<WarmProcess> processes = IDLE_PROCESSES.computeIfAbsent(poolKey(environment), key -> new ArrayDeque<>());
+			while (processes.size() < poolSize) {
+				log(CONFIG, "Starting a runner process beforehand");
+				processes.add(new WarmProcess(factory, environment));
+			}
+		}
+	}
+
+	private WarmProcess takeIdleProcess(RuntimeEnvironment environment) {
+		synchronized (IDLE_PROCESSES) {
+			Deque<WarmProcess> processes = IDLE_PROCESSES.get(poolKey(environment));
+			while ((processes != null) && !processes.isEmpty()) {
+				WarmProcess process = processes.poll();
+				if (!process.jarsChangedSince(environment)) {
+					return process;
+				}
+				// The process may have opened the previous version of the jars
+				process.discard();
+			}
+			return null;
+		}
+	}
+
+	static void discardProcessesStartedBefore(long time) {
+		synchronized (IDLE_PROCESSES) {
+			for (Deque<WarmProcess> each : IDLE_PROCESSES.values()) {
+				Iterator<WarmProcess> processes = each.iterator();
+				while (processes.hasNext()) {
+					WarmProcess process = processes.next();
+					if (process.startTime < time) {
+						log(FINE, "Stopping a runner process left idle");
+						process.discard();
+						processes.remove();
+					}
+				}
+			}
+			IDLE_PROCESSES.values().removeIf(Deque::isEmpty);
+		}
+	}
+
+	/**
+	 * Discards the idle processes of the environment. Called when a runner
+	 * using it is closed, the other runners sharing them start new ones on
+	 * their next changes.
+	 */
+	public void discardIdleProcesses(RuntimeEnvironment environment) {
+		if (environment == null) {
+			return;
+		}
+		Deque<WarmProcess> processes;
+		synchronized (IDLE_PROCESSES) {
+			processes = IDLE_PROCESSES.remove(poolKey(environment));
+		}
+		if (processes != null) {
+			for (WarmProcess each : processes) {
+				each.discard();
+			}
+		}
+	}
+
+	private List<Object> poolKey(RuntimeEnvironment environment) {
+		return Arrays.<Object> asList(factory, environment.getRunnerProcessKey());
+	}
+
+	/**
+	 * Discards every idle process.
+	 */
+	public static void clear() {
+		synchronized (IDLE_PROCESSES) {
+			for (Deque<WarmProcess> each : IDLE_PROCESSES.values()) {
+				for (WarmProcess process : each) {
+					process.discard();
+				}
+			}
+			IDLE_PROCESSES.clear();
+		}
+	}
+
+	/**
+	 * A process started in the background. Its output is only read once it
+	 * is used, by the handler of the run using it.
+	 */
+	private static class WarmProcess implements OutputStreamHandler {
+		private final long startTime = System.currentTimeMillis();
+		private final Map<InputStream, OutputType> pendingStreams = new LinkedHashMap<>();
+		private final Future<ProcessConnection> connection;
+		private OutputStreamHandler outputHandler;
+
+		WarmProcess(ProcessConnectionFactory factory, RuntimeEnvironment environment) {
+			connection = STARTER.submit(() -> factory.getConnection(environment, this));
+		}
+
+		@Override
+		public synchronized void processStream(InputStream stream, OutputType type) {
+			if (outputHandler == null) {
+				pendingStreams.put(stream, type);
+			} else {
+				outputHandler.processStream(stream, type);
+			}
+		}
+
+		private synchronized void redirectOutput(OutputStreamHandler handler) {
+			outputHandler = handler;
+			for (Map.Entry<InputStream, OutputType> each : pendingStreams.entrySet()) {
+				handler.processStream(each.getKey(), each.getValue());
+			}
+			pendingStreams.clear();
+		}
+
+		/**
+		 * Waits for the process if it is still starting.
+		 * 
+		 * @return The connection to the process, or null if it could not be
+		 *         started or exited since
+		 */
+		ProcessConnection connect(OutputStreamHandler handler) {
+			try {
+				ProcessConnection processConnection = connection.get();
+				if (!processConnection.isAlive()) {
+					return null;
+				}
+				redirectOutput(handler);
+				return processConnection;
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				discard();
+				return null;
+			} catch (ExecutionException e) {
+				log(FINE, "Could not start a runner process beforehand: " + e.getCause());
+				return null;
+			}
+		}
+
+		boolean jarsChangedSince(RuntimeEnvironment environment) {
+			for (File each : environment.jarsInClasspath()) {
+				if (each.lastModified() >= startTime) {
+					return true;
+				}
+			}
+			return false;
+		}
+
+		void discard() {
+			STARTER.execute(() -> {
+				try {
+					ProcessConnection processConnection = connection.get();
+					processConnection.close();
+					processConnection.abort();
+				} catch (InterruptedException | ExecutionException e) {
+					// Not started, nothing to stop
+				}
+			});
+		}
+	}
+}
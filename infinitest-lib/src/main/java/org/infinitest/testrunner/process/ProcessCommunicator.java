@@ -0,0 +1,230 @@
+/*
+ * Infinitest, a Continuous Test Runner.
+ *
+ * Copyright (C) 2010-2013
+ * "Ben Rady" <benrady@gmail.com>,
+ * "Rod Coffin" <rfciii@gmail.com>,
+ * "Ryan Breidenbach" <ryan.breidenbach@gmail.com>
+ * "David Gageot" <david@gageot.net>, et al.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.infinitest.testrunner.process;
+
+import static org.infinitest.util.InfinitestUtils.log;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
+
+import org.infinitest.TestRunAborted;
+import org.infinitest.testrunner.ResultsReader;
+import org.infinitest.testrunner.TestResults;
+import org.infinitest.testrunner.TestRunnerProcess;
+
+/**
+ * Sends requests to a runner process and reads its answers. Several requests
+ * may be in flight: each one gets an id, and each answer completes the
+ * request with the same id.
+ * <p>
+ * Subclasses provide the connection to the process, and hand the answers
+ * they read to {@link #answerRead(ResultsReader, int)}.
+ * <p>
+ * The results of each test tell which classes the process loaded before it
+ * in the current run, the classes loaded by the tests which were cancelled
+ * after the process started them included.
+ */
+public abstract class ProcessCommunicator {
+	private final Map<Integer, PendingRequest<?>> pendingRequests = new ConcurrentHashMap<>();
+	private int nextRequestId;
+	private IOException connectionError;
+	/**
+	 * The project classes loaded by the tests the process answered since its
+	 * run started. Only used by the thread reading the answers.
+	 */
+	private final Set<String> loadedClasses = new HashSet<>();
+
+	/**
+	 * Opens the server socket the process connects to.
+	 * 
+	 * @return The address of the socket, given to the process
+	 */
+	public abstract String bind();
+
+	/**
+	 * Waits for the process to connect.
+	 */
+	public abstract void openSocket();
+
+	public abstract void closeSocket();
+
+	/**
+	 * @return <code>false</code> if the line could not be sent
+	 */
+	protected abstract boolean writeLine(String line);
+
+	/**
+	 * @return <code>false</code> if the socket is not open
+	 */
+	protected abstract boolean isOpen();
+
+	/**
+	 * Runs a test and waits for its results.
+	 */
+	public TestResults sendMessage(String testName) {
+		Future<TestResults> results = submit(testName);
+		try {
+			return results.get();
+		} catch (ExecutionException e) {
+			throw (TestRunAborted) e.getCause();
+		} catch (InterruptedException e) {
+			results.cancel(false);
+			Thread.currentThread().interrupt();
+			throw new TestRunAborted(testName, e);
+		}
+	}
+
+	/**
+	 * Sends a test to run after the tests already sent. Cancelling the result
+	 * drops the test if the process did not start it yet, and ignores its
+	 * results otherwise, the connection stays usable.
+	 * 
+	 * @return The results of the test, which fail with {@link TestRunAborted}
+	 *         if the connection to the process is lost
+	 */
+	public Future<TestResults> submit(String testName) {
+		return send(testName);
+	}
+
+	/**
+	 * @return <code>false</code> if the process refused or failed to start a
+	 *         new run
+	 */
+	public boolean startRun() {
+		PendingRequest<Boolean> request = send(TestRunnerProcess.START_RUN);
+		try {
+			return request.get();
+		} catch (ExecutionException e) {
+			log(Level.CONFIG, "Test runner process cannot be reused: " + e.getCause().getCause());
+			return false;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
+		}
+	}
+
+	// Synchronized to prevent sending a message while the socket is being
+	// closed
+	private synchronized <T> PendingRequest<T> send(String name) {
+		PendingRequest<T> request = new PendingRequest<>(nextRequestId++, name);
+		if (connectionError != null) {
+			request.abort(connectionError);
+			return request;
+		}
+		if (!isOpen()) {
+			request.abort(new IOException("Connection to the test runner process is closed"));
+			return request;
+		}
+		pendingRequests.put(request.id, request);
+		if (!writeLine(request.id + " " + name)) {
+			pendingRequests.remove(request.id);
+			request.abort(new IOException("Cannot send " + name + " to the test runner process"));
+		}
+		return request;
+	}
+
+	private synchronized void cancel(PendingRequest<?> request) {
+		if ((pendingRequests.remove(request.id) != null) && isOpen()) {
+			writeLine(TestRunnerProcess.CANCEL + " " + request.id);
+		}
+	}
+
+	/**
+	 * Completes the request answered by the message the reader just read.
+	 */
+	@SuppressWarnings("unchecked")
+	protected void answerRead(ResultsReader reader, int requestId) throws IOException {
+		// The answers of the cancelled requests are read all the same, the
+		// classes their tests loaded stay loaded in the process
+		Object answer;
+		if (reader.isResults()) {
+			TestResults results = reader.readResults();
+			recordLoadedClasses(results);
+			answer = results;
+		} else {
+			answer = reader.readRunStarted();
+			// The new run loads the project classes again
+			loadedClasses.clear();
+		}
+		PendingRequest<Object> request = (PendingRequest<Object>) pendingRequests.remove(requestId);
+		if (request != null) {
+			request.complete(answer);
+		}
+	}
+
+	private void recordLoadedClasses(TestResults results) {
+		if (results.getLoadedClasses() != null) {
+			results.setClassesLoadedBefore(new HashSet<>(loadedClasses));
+			loadedClasses.addAll(results.getLoadedClasses());
+		}
+	}
+
+	/**
+	 * Aborts the requests in flight and the next ones.
+	 */
+	protected synchronized void connectionLost(IOException e) {
+		connectionError = e;
+		List<PendingRequest<?>> abortedRequests = new ArrayList<>(pendingRequests.values());
+		pendingRequests.clear();
+		for (PendingRequest<?> each : abortedRequests) {
+			each.abort(e);
+		}
+	}
+
+	private class PendingRequest<T> extends CompletableFuture<T> {
+		private final int id;
+		private final String name;
+
+		PendingRequest(int id, String name) {
+			this.id = id;
+			this.name = name;
+		}
+
+		void abort(IOException e) {
+			completeExceptionally(new TestRunAborted(name, e));
+		}
+
+		@Override
+		public boolean cancel(boolean mayInterruptIfRunning) {
+			boolean cancelled = super.cancel(mayInterruptIfRunning);
+			if (cancelled) {
+				ProcessCommunicator.this.cancel(this);
+			}
+			return cancelled;
+		}
+	}
+}
@@ -27,12 +27,33 @@
  */
 package org.infinitest.testrunner.process;
 
+import java.util.concurrent.Future;
+
 import org.infinitest.testrunner.*;
 
 public interface ProcessConnection {
 	TestResults runTest(String testName);
 
+	/**
+	 * Sends a test to run after the tests already sent, without waiting for
+	 * its results. Cancelling the results does not close the connection.
+	 */
+	Future<TestResults> submitTest(String testName);
+
 	void close();
 
 	boolean abort();
+
+	/**
+	 * @return <code>false</code> if the runner process exited
+	 */
+	boolean isAlive();
+
+	/**
+	 * Prepares a process which already ran tests to run the tests of a new
+	 * run.
+	 * 
+	 * @return <code>false</code> if the process cannot be reused
+	 */
+	boolean startRun();
 }
\ No newline at end of file
@@ -0,0 +1,190 @@
+/*
+ * Infinitest, a Continuous Test Runner.
+ *
+ * Copyright (C) 2010-2013
+ * "Ben Rady" <benrady@gmail.com>,
+ * "Rod Coffin" <rfciii@gmail.com>,
+ * "Ryan Breidenbach" <ryan.breidenbach@gmail.com>
+ * "David Gageot" <david@gageot.net>, et al.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.infinitest.testrunner.process;
+
+import static org.infinitest.util.InfinitestUtils.log;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.logging.Level;
+
+import org.infinitest.testrunner.ResultsReader;
+
+/**
+ * A single thread reading the answers of all the runner processes connected
+ * through a {@link SocketChannel}, rather than a thread per process. The
+ * bytes read are split into the header and the messages of the stream, which
+ * are handed to the handler of the channel.
+ */
+class RunnerChannelSelector implements Runnable {
+	private static RunnerChannelSelector instance;
+
+	private final Selector selector;
+	private final Queue<Connection> newConnections = new ConcurrentLinkedQueue<>();
+
+	private RunnerChannelSelector() throws IOException {
+		selector = Selector.open();
+	}
+
+	static synchronized RunnerChannelSelector getInstance() throws IOException {
+		if (instance == null) {
+			instance = new RunnerChannelSelector();
+			Thread thread = new Thread(instance, "Infinitest runner connections");
+			thread.setDaemon(true);
+			thread.start();
+		}
+		return instance;
+	}
+
+	interface MessageHandler {
+		void headerRead(byte[] header) throws IOException;
+
+		void messageRead(byte[] message) throws IOException;
+
+		/**
+		 * Called once, when the channel is closed or cannot be read anymore.
+		 */
+		void closed(IOException e);
+	}
+
+	/**
+	 * Reads the channel until it is closed. The channel is then non blocking.
+	 */
+	void register(SocketChannel channel, MessageHandler handler) throws IOException {
+		channel.configureBlocking(false);
+		newConnections.add(new Connection(channel, handler));
+		selector.wakeup();
+	}
+
+	@Override
+	public void run() {
+		while (true) {
+			try {
+				selector.select();
+				registerNewConnections();
+				Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+				while (keys.hasNext()) {
+					SelectionKey key = keys.next();
+					keys.remove();
+					((Connection) key.attachment()).read(key);
+				}
+			} catch (IOException e) {
+				log(Level.WARNING, "Error while selecting the connections of the runner processes: " + e);
+			}
+		}
+	}
+
+	private void registerNewConnections() {
+		Connection connection;
+		while ((connection = newConnections.poll()) != null) {
+			try {
+				connection.channel.register(selector, SelectionKey.OP_READ, connection);
+			} catch (IOException e) {
+				connection.handler.closed(e);
+			}
+		}
+	}
+
+	private static class Connection {
+		private final SocketChannel channel;
+		private final MessageHandler handler;
+		private ByteBuffer buffer = ByteBuffer.allocate(8 * 1024);
+		private boolean headerRead;
+		private int requiredCapacity;
+
+		Connection(SocketChannel channel, MessageHandler handler) {
+			this.channel = channel;
+			this.handler = handler;
+		}
+
+		void read(SelectionKey key) {
+			try {
+				if (channel.read(buffer) == -1) {
+					throw new EOFException("The runner process closed the connection");
+				}
+				buffer.flip();
+				while (handleNextMessage()) {
+					// Handles every complete message read
+				}
+				buffer.compact();
+				if (requiredCapacity > buffer.capacity()) {
+					ByteBuffer largerBuffer = ByteBuffer.allocate(Math.max(requiredCapacity, buffer.capacity() * 2));
+					buffer.flip();
+					largerBuffer.put(buffer);
+					buffer = largerBuffer;
+				}
+			} catch (IOException | RuntimeException e) {
+				key.cancel();
+				try {
+					channel.close();
+				} catch (IOException closeError) {
+					// Already lost
+				}
+				handler.closed(e instanceof IOException ? (IOException) e : new IOException(e));
+			}
+		}
+
+		/**
+		 * @return <code>false</code> if the buffer does not hold a complete
+		 *         message
+		 */
+		private boolean handleNextMessage() throws IOException {
+			if (!headerRead) {
+				if (buffer.remaining() < ResultsReader.HEADER_LENGTH) {
+					return false;
+				}
+				byte[] header = new byte[ResultsReader.HEADER_LENGTH];
+				buffer.get(header);
+				headerRead = true;
+				handler.headerRead(header);
+				return true;
+			}
+
+			if (buffer.remaining() < 4) {
+				return false;
+			}
+			int length = buffer.getInt(buffer.position());
+			if (buffer.remaining() < (4 + length)) {
+				requiredCapacity = 4 + length;
+				return false;
+			}
+			buffer.getInt();
+			byte[] message = new byte[length];
+			buffer.get(message);
+			handler.messageRead(message);
+			return true;
+		}
+	}
+}
@@ -29,21 +29,22 @@ package org.infinitest.testrunner.process;
 
 import static org.infinitest.util.InfinitestUtils.log;
 
+import java.io.BufferedInputStream;
 import java.io.IOException;
-import java.io.ObjectInputStream;
 import java.io.PrintStream;
 import java.net.ServerSocket;
 import java.net.Socket;
 import java.net.SocketTimeoutException;
 import java.util.logging.Level;
 
-import org.infinitest.MissingClassException;
-import org.infinitest.TestRunAborted;
-import org.infinitest.testrunner.TestResults;
+import org.infinitest.testrunner.ResultsReader;
 
-public class TcpSocketProcessCommunicator {
+/**
+ * Connects to the runner process with a loopback TCP socket. The answers are
+ * read by a thread of the connection.
+ */
+public class TcpSocketProcessCommunicator extends ProcessCommunicator {
 	private ServerSocket serverSocket;
-	private ObjectInputStream inStream;
 	private PrintStream writer;
 	private Socket socket;
 	private final int timeout;
@@ -70,12 +71,19 @@ public class TcpSocketProcessCommunicator {
 		return serverSocket.getLocalPort();
 	}
 
+	@Override
+	public String bind() {
+		return String.valueOf(createSocket());
+	}
+
+	@Override
 	public void openSocket() {
 		try {
 			socket = serverSocket.accept();
 			log(Level.CONFIG, "Socket opened");
-			inStream = new ObjectInputStream(socket.getInputStream());
+			ResultsReader reader = new ResultsReader(new BufferedInputStream(socket.getInputStream()));
 			writer = new PrintStream(socket.getOutputStream(), true, "UTF-8");
+			readAnswersInBackground(reader);
 		} catch (SocketTimeoutException e) {
 			log("Test runner process failed to start in a timely manner", e);
 			throw new RuntimeException(e);
@@ -85,15 +93,11 @@ public class TcpSocketProcessCommunicator {
 		}
 	}
 
-	/**
-	 * @see #sendMessage(String)
-	 */
+	@Override
 	public synchronized void closeSocket() {
 		try {
 			if (writer != null) {
 				if (!socket.isClosed()) {
-					inStream.close();
-					inStream = null;
 					writer.close();
 					writer = null;
 					socket.close();
@@ -106,18 +110,30 @@ public class TcpSocketProcessCommunicator {
 		}
 	}
 
-	// Synchronized to prevent sending a message while the socket is being
-	// closed
-	public synchronized TestResults sendMessage(String testName) {
+	@Override
+	protected boolean writeLine(String line) {
+		writer.println(line);
+		return !writer.checkError();
+	}
+
+	@Override
+	protected boolean isOpen() {
+		return writer != null;
+	}
+
+	private void readAnswersInBackground(ResultsReader reader) {
+		Thread thread = new Thread(() -> readAnswers(reader), "Infinitest results reader");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	private void readAnswers(ResultsReader reader) {
 		try {
-			writer.println(testName);
-			return (TestResults) inStream.readObject();
+			while (true) {
+				answerRead(reader, reader.readMessage());
+			}
 		} catch (IOException e) {
-			throw new TestRunAborted(testName, e);
-		} catch (ClassNotFoundException e) {
-			log("Error reading from socket", e);
-			throw new MissingClassException("Error reading from socket", e);
+			connectionLost(e);
 		}
-
 	}
 }
@@ -0,0 +1,219 @@
+/*
+ * Infinitest, a Continuous Test Runner.
+ *
+ * Copyright (C) 2010-2013
+ * "Ben Rady" <benrady@gmail.com>,
+ * "Rod Coffin" <rfciii@gmail.com>,
+ * "Ryan Breidenbach" <ryan.breidenbach@gmail.com>
+ * "David Gageot" <david@gageot.net>, et al.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.infinitest.testrunner.process;
+
+import static org.infinitest.util.InfinitestUtils.log;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.logging.Level;
+
+import org.infinitest.environment.RuntimeEnvironment;
+import org.infinitest.testrunner.ResultsReader;
+import org.infinitest.testrunner.UnixDomainSockets;
+import org.infinitest.util.InfinitestGlobalSettings;
+
+/**
+ * Connects to the runner process with a Unix domain socket, which avoids the
+ * TCP loopback. The answers of all the processes connected this way are read
+ * by the single thread of the {@link RunnerChannelSelector}.
+ */
+public class UnixSocketProcessCommunicator extends ProcessCommunicator implements RunnerChannelSelector.MessageHandler {
+	/**
+	 * Unix domain sockets are available from this version of Java
+	 */
+	private static final int MIN_JAVA_VERSION = 16;
+
+	private final int timeout;
+	private final ResultsReader reader = new ResultsReader();
+	private File socketFile;
+	private ServerSocketChannel serverChannel;
+	private SocketChannel channel;
+
+	public UnixSocketProcessCommunicator() {
+		this(2500);
+	}
+
+	public UnixSocketProcessCommunicator(int timeout) {
+		this.timeout = timeout;
+	}
+
+	/**
+	 * @return <code>true</code> if the runner processes of the environment can
+	 *         connect with a Unix domain socket
+	 */
+	public static boolean canConnect(RuntimeEnvironment environment) {
+		if (!InfinitestGlobalSettings.isUnixDomainSockets() || !UnixDomainSockets.isSupported()) {
+			return false;
+		}
+		Integer javaVersion = environment.getJavaVersion();
+		return (javaVersion != null) && (javaVersion >= MIN_JAVA_VERSION);
+	}
+
+	@Override
+	public String bind() {
+		if (serverChannel != null) {
+			throw new IllegalStateException("Test runner socket is already open");
+		}
+
+		try {
+			socketFile = File.createTempFile("infinitest", ".socket");
+			// The socket creates the file
+			socketFile.delete();
+			serverChannel = UnixDomainSockets.openServerChannel();
+			serverChannel.bind(UnixDomainSockets.address(socketFile.getAbsolutePath()));
+		} catch (IOException e) {
+			closeServerChannel();
+			throw new RuntimeException("Cannot open Unix domain socket for interprocess communication", e);
+		}
+		return socketFile.getAbsolutePath();
+	}
+
+	@Override
+	public void openSocket() {
+		try {
+			channel = accept();
+			log(Level.CONFIG, "Socket opened");
+			RunnerChannelSelector.getInstance().register(channel, this);
+		} catch (SocketTimeoutException e) {
+			log("Test runner process failed to start in a timely manner", e);
+			throw new RuntimeException(e);
+		} catch (IOException e) {
+			log("Error connecting to test runner process", e);
+			throw new RuntimeException(e);
+		} finally {
+			closeServerChannel();
+		}
+	}
+
+	private SocketChannel accept() throws IOException {
+		serverChannel.configureBlocking(false);
+		try (Selector acceptSelector = Selector.open()) {
+			serverChannel.register(acceptSelector, SelectionKey.OP_ACCEPT);
+			long deadline = System.currentTimeMillis() + timeout;
+			SocketChannel acceptedChannel;
+			while ((acceptedChannel = serverChannel.accept()) == null) {
+				long remainingTime = deadline - System.currentTimeMillis();
+				if (remainingTime <= 0) {
+					throw new SocketTimeoutException("Accept timed out");
+				}
+				acceptSelector.select(remainingTime);
+			}
+			return acceptedChannel;
+		}
+	}
+
+	private void closeServerChannel() {
+		try {
+			if (serverChannel != null) {
+				serverChannel.close();
+			}
+		} catch (IOException e) {
+			log(Level.INFO, "Tried to close server socket, but was already closed");
+		}
+		if (socketFile != null) {
+			socketFile.delete();
+		}
+	}
+
+	@Override
+	public synchronized void closeSocket() {
+		try {
+			if ((channel != null) && channel.isOpen()) {
+				channel.close();
+				log(Level.CONFIG, "Socket closed");
+			}
+		} catch (IOException e) {
+			log(Level.INFO, "Tried to close socket, but was already closed");
+		}
+		connectionLost(new IOException("Connection to the test runner process is closed"));
+	}
+
+	@Override
+	protected boolean writeLine(String line) {
+		ByteBuffer bytes = ByteBuffer.wrap((line + "\n").getBytes(StandardCharsets.UTF_8));
+		try {
+			channel.write(bytes);
+			if (bytes.hasRemaining()) {
+				// The runner did not read the previous requests yet
+				awaitWritten(bytes);
+			}
+			return true;
+		} catch (IOException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * The channel does not block since it is read by the
+	 * {@link RunnerChannelSelector}, so the rest of the line is written as the
+	 * runner makes room for it.
+	 */
+	private void awaitWritten(ByteBuffer bytes) throws IOException {
+		try (Selector writeSelector = Selector.open()) {
+			channel.register(writeSelector, SelectionKey.OP_WRITE);
+			while (bytes.hasRemaining()) {
+				if (!channel.isOpen()) {
+					throw new ClosedChannelException();
+				}
+				writeSelector.select(timeout);
+				channel.write(bytes);
+			}
+		}
+	}
+
+	@Override
+	protected boolean isOpen() {
+		return (channel != null) && channel.isOpen();
+	}
+
+	@Override
+	public void headerRead(byte[] header) throws IOException {
+		ResultsReader.readHeader(new DataInputStream(new ByteArrayInputStream(header)));
+	}
+
+	@Override
+	public void messageRead(byte[] message) throws IOException {
+		answerRead(reader, reader.readMessage(message));
+	}
+
+	@Override
+	public void closed(IOException e) {
+		connectionLost(e);
+	}
+}
@@ -33,28 +33,54 @@ import java.util.*;
 
 import org.infinitest.*;
 import org.infinitest.testrunner.*;
+import org.infinitest.util.*;
 
 class ProcessorRunnable implements Runnable {
 	private final QueueProcessor processor;
 	private final Queue<String> testQueue;
 	private final RunnerEventSupport eventSupport;
-	private final int initialSize;
+	private final TestBatch batch;
 	private final ConcurrencyController concurrencySemaphore;
+	private volatile String runningTest;
+	private final int testsDispatchedAhead = InfinitestGlobalSettings.getTestsDispatchedAhead();
+	/**
+	 * The tests taken from the queue and sent to the process, to run after
+	 * the running test
+	 */
+	private final Deque<String> dispatchedTests = new ArrayDeque<>();
 
 	public ProcessorRunnable(Queue<String> testQueue, QueueProcessor processor, RunnerEventSupport eventSupport, int initialSize, ConcurrencyController concurrencySemaphore) {
+		this(testQueue, processor, eventSupport, new TestBatch(initialSize, false), concurrencySemaphore);
+	}
+
+	ProcessorRunnable(Queue<String> testQueue, QueueProcessor processor, RunnerEventSupport eventSupport, TestBatch batch, ConcurrencyController concurrencySemaphore) {
 		this.testQueue = testQueue;
 		this.processor = processor;
 		this.eventSupport = eventSupport;
-		this.initialSize = initialSize;
+		this.batch = batch;
 		this.concurrencySemaphore = concurrencySemaphore;
+		batch.processAdded();
 	}
 
 	public void terminate() {
 		processor.cleanup();
 	}
 
+	/**
+	 * @return The test the process is running, null between two tests
+	 */
+	String getRunningTest() {
+		return runningTest;
+	}
+
 	private void fireEvent() {
-		eventSupport.fireQueueEvent(new TestQueueEvent(new ArrayList<>(testQueue), initialSize));
+		List<String> remainingTests;
+		synchronized (dispatchedTests) {
+			// Not started as far as the listeners know
+			remainingTests = new ArrayList<>(dispatchedTests);
+		}
+		remainingTests.addAll(testQueue);
+		eventSupport.fireQueueEvent(new TestQueueEvent(remainingTests, batch.size()));
 	}
 
 	@Override
@@ -63,8 +89,14 @@ class ProcessorRunnable implements Runnable {
 			String currentTest = null;
 			try {
 				concurrencySemaphore.acquire();
-				while (!testQueue.isEmpty()) {
-					currentTest = testQueue.poll();
+				while (hasDispatchedTests() || batch.awaitTests(testQueue)) {
+					currentTest = takeNextTest();
+					if (currentTest == null) {
+						// Another process took the last test meanwhile
+						continue;
+					}
+					runningTest = currentTest;
+					dispatchNextTests();
 					processor.process(currentTest);
 					// RISK There might be a race condition here.
 					// If we fire all the events for a test
@@ -74,6 +106,8 @@ class ProcessorRunnable implements Runnable {
 					// already. Is this actually
 					// a problem? I have no idea.
 					fireEvent();
+					currentTest = null;
+					runningTest = null;
 				}
 			} catch (QueueDispatchException e) {
 				reQueueTestAndTerminateProcess(currentTest);
@@ -81,11 +115,16 @@ class ProcessorRunnable implements Runnable {
 				reQueueTestAndTerminateProcess(currentTest);
 			} catch (TestRunAborted e) {
 				reQueueTest(currentTest);
+				reQueueDispatchedTests();
 				// The process is already dead, no need to clean up
 				clearLingeringInterruptedState();
 			} finally {
+				runningTest = null;
 				concurrencySemaphore.release();
-				processor.close();
+				// Closing a processor completes the run, so they are all closed by the last one
+				for (QueueProcessor each : batch.finished(processor)) {
+					each.close();
+				}
 			}
 		}
 		// CHECKSTYLE:OFF
@@ -98,8 +137,72 @@ class ProcessorRunnable implements Runnable {
 		}
 	}
 
+	/**
+	 * Takes back the tests dispatched to the process which did not start,
+	 * without stopping the process, and queues them again. They then run
+	 * after the tests added first to the queue.
+	 */
+	void cancelDispatchedTests() {
+		synchronized (dispatchedTests) {
+			for (String each : dispatchedTests) {
+				processor.cancel(each);
+				testQueue.add(each);
+			}
+			dispatchedTests.clear();
+		}
+	}
+
+	private boolean hasDispatchedTests() {
+		synchronized (dispatchedTests) {
+			return !dispatchedTests.isEmpty();
+		}
+	}
+
+	/**
+	 * @return The first test dispatched, or the next test of the queue which
+	 *         is then dispatched before the next ones
+	 */
+	private String takeNextTest() {
+		synchronized (dispatchedTests) {
+			String test = dispatchedTests.poll();
+			if (test != null) {
+				return test;
+			}
+			test = testQueue.poll();
+			if ((test != null) && (testsDispatchedAhead > 0)) {
+				processor.dispatch(test);
+			}
+			return test;
+		}
+	}
+
+	private void dispatchNextTests() {
+		synchronized (dispatchedTests) {
+			// Leaves the last tests to the other processes, which would have
+			// nothing to run otherwise
+			while ((dispatchedTests.size() < testsDispatchedAhead) && (testQueue.size() >= batch.processCount())) {
+				String test = testQueue.poll();
+				if (test == null) {
+					return;
+				}
+				processor.dispatch(test);
+				dispatchedTests.add(test);
+			}
+		}
+	}
+
+	private void reQueueDispatchedTests() {
+		synchronized (dispatchedTests) {
+			for (String each : dispatchedTests) {
+				reQueueTest(each);
+			}
+			dispatchedTests.clear();
+		}
+	}
+
 	private void reQueueTestAndTerminateProcess(String currentTest) {
 		reQueueTest(currentTest);
+		reQueueDispatchedTests();
 		processor.cleanup();
 	}
 
@@ -28,6 +28,7 @@
 package org.infinitest.testrunner.queue;
 
 import static java.util.concurrent.Executors.*;
+import static org.infinitest.util.InfinitestUtils.*;
 
 import java.io.*;
 import java.util.*;
@@ -35,20 +36,30 @@ import java.util.concurrent.*;
 
 import org.infinitest.*;
 import org.infinitest.testrunner.*;
+import org.infinitest.util.*;
 
 public abstract class QueueConsumer {
-	private final Queue<String> testQueue;
+	private static final ExecutorService PROCESS_STARTER = newCachedThreadPool(runnable -> {
+		Thread thread = new Thread(runnable, "Infinitest test run starter");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	private final TestQueue testQueue;
 	private final RunnerEventSupport eventSupport;
-	private QueueProcessorThread processorThread;
+	private final List<QueueProcessorThread> processorThreads = new CopyOnWriteArrayList<>();
 	private final long testTimeout;
 	private final ExecutorService executor;
 	private ConcurrencyController semaphore;
+	private TestBatch streamBatch;
+	private TestBatch runningBatch;
+	private ConcurrencyController runningPermit;
 
-	protected QueueConsumer(RunnerEventSupport eventSupport, Queue<String> testQueue) {
+	protected QueueConsumer(RunnerEventSupport eventSupport, TestQueue testQueue) {
 		this(eventSupport, testQueue, 2000);
 	}
 
-	protected QueueConsumer(RunnerEventSupport eventSupport, Queue<String> testQueue, long testTimeout) {
+	protected QueueConsumer(RunnerEventSupport eventSupport, TestQueue testQueue, long testTimeout) {
 		this.eventSupport = eventSupport;
 		this.testQueue = testQueue;
 		this.testTimeout = testTimeout;
@@ -56,31 +67,156 @@ public abstract class QueueConsumer {
 		semaphore = new SingleLockConcurrencyController();
 	}
 
-	public void push(List<String> tests) {
+	/**
+	 * Runs the tests. If a run is in progress, the tests are added to it and
+	 * run before its remaining tests. Only the processes running one of the
+	 * tests, whose result would be out of date, are stopped and replaced. The
+	 * tests dispatched to a process but not started are queued again, after
+	 * the added tests.
+	 */
+	public synchronized void push(List<String> tests) {
+		TestBatch batch = runningBatch;
+		if (batch != null) {
+			for (QueueProcessorThread each : processorThreads) {
+				each.cancelDispatchedTests();
+			}
+		}
+		if ((batch != null) && batch.addFirst(testQueue, tests)) {
+			eventSupport.fireQueueEvent(new TestQueueEvent(new ArrayList<>(testQueue), batch.size()));
+			executor.execute(new OutdatedTestsStopper(findProcessesRunningOneOf(tests), batch, runningPermit));
+			return;
+		}
+
 		testQueue.addAll(tests);
-		startProcessing();
+		// No more processes than tests
+		int processCount = Math.min(InfinitestGlobalSettings.getRunnerProcessesPerCore(), testQueue.size());
+		startProcessing(new TestBatch(testQueue.size(), false), processCount);
+	}
+
+	/**
+	 * Starts a stream of tests. The first tests streamed start a new run, like
+	 * {@link #push(List)}, the next ones are added to this run, which waits for
+	 * them until the stream is closed.
+	 */
+	public synchronized void openStream() {
+		streamBatch = null;
+	}
+
+	public synchronized void stream(List<String> tests) {
+		if (tests.isEmpty()) {
+			return;
+		}
+		if ((streamBatch != null) && streamBatch.add(testQueue, tests)) {
+			eventSupport.fireQueueEvent(new TestQueueEvent(new ArrayList<>(testQueue), streamBatch.size()));
+			return;
+		}
+
+		// First tests of the stream, or the run was aborted
+		testQueue.addAll(tests);
+		streamBatch = new TestBatch(testQueue.size(), true);
+		startProcessing(streamBatch, InfinitestGlobalSettings.getRunnerProcessesPerCore());
+	}
+
+	/**
+	 * The run of the stream ends once its tests ran.
+	 */
+	public synchronized void closeStream() {
+		if (streamBatch != null) {
+			streamBatch.close();
+			streamBatch = null;
+		}
+	}
+
+	/**
+	 * Each process of the run takes the next test of the queue, a process
+	 * which dies only loses the test it was running, which is queued again.
+	 * <p>
+	 * The processes are started in the background, at the same time, the
+	 * tests pushed meanwhile are added to the run.
+	 */
+	private void startProcessing(TestBatch batch, int processCount) {
+		ConcurrencyController permit = new SharedPermit(semaphore);
+		runningBatch = batch;
+		runningPermit = permit;
+		executor.execute(new ProcessingKickoffRunnable(batch, permit, Math.max(1, processCount)));
 	}
 
-	private void startProcessing() {
-		try {
-			QueueProcessor processor = createQueueProcessor();
-			ProcessorRunnable runnable = new ProcessorRunnable(testQueue, processor, eventSupport, testQueue.size(), semaphore);
-			executor.execute(new ProcessingKickoffRunnable(runnable));
-		} catch (IOException e) {
-			throw new RuntimeException(e);
+	/**
+	 * @return The processes running one of the tests, with the test they run
+	 */
+	private Map<QueueProcessorThread, String> findProcessesRunningOneOf(Collection<String> tests) {
+		Map<QueueProcessorThread, String> processes = new HashMap<>();
+		for (QueueProcessorThread each : processorThreads) {
+			String runningTest = each.getRunningTest();
+			if ((runningTest != null) && tests.contains(runningTest)) {
+				processes.put(each, runningTest);
+			}
+		}
+		return processes;
+	}
+
+	/**
+	 * Stops the processes of the run which are still running an outdated
+	 * test, the tests are queued again and other processes take them.
+	 */
+	private class OutdatedTestsStopper implements Runnable {
+		private final Map<QueueProcessorThread, String> outdatedTests;
+		private final TestBatch batch;
+		private final ConcurrencyController permit;
+
+		private OutdatedTestsStopper(Map<QueueProcessorThread, String> outdatedTests, TestBatch batch, ConcurrencyController permit) {
+			this.outdatedTests = outdatedTests;
+			this.batch = batch;
+			this.permit = permit;
+		}
+
+		@Override
+		public void run() {
+			try {
+				for (Map.Entry<QueueProcessorThread, String> each : outdatedTests.entrySet()) {
+					// The process may have finished the test meanwhile
+					if (each.getValue().equals(each.getKey().getRunningTest()) && batch.isRunning()) {
+						replace(each.getKey());
+					}
+				}
+			} catch (InterruptedException e) {
+				throw new RuntimeException(e);
+			} catch (IOException e) {
+				log("Error starting a runner process", e);
+			}
+		}
+
+		private void replace(QueueProcessorThread thread) throws InterruptedException, IOException {
+			// Added to the run first, so that the run does not end with the stopped process
+			QueueProcessorThread replacement = new QueueProcessorThread(new ProcessorRunnable(testQueue, createQueueProcessor(), eventSupport, batch, permit));
+			stopProcess(thread);
+			processorThreads.remove(thread);
+			processorThreads.add(replacement);
+			replacement.start();
 		}
 	}
 
 	private class ProcessingKickoffRunnable implements Runnable {
-		private final ProcessorRunnable runnable;
+		private final List<ProcessorRunnable> runnables = new ArrayList<>();
+		private final TestBatch batch;
+		private final ConcurrencyController permit;
+		private final int processCount;
 
-		private ProcessingKickoffRunnable(ProcessorRunnable runnable) {
-			this.runnable = runnable;
+		private ProcessingKickoffRunnable(TestBatch batch, ConcurrencyController permit, int processCount) {
+			this.batch = batch;
+			this.permit = permit;
+			this.processCount = processCount;
 		}
 
 		@Override
 		public void run() {
 			try {
+				startProcessors();
+				if (runnables.isEmpty()) {
+					// The tests stay queued, they run with the next run
+					batch.cancel();
+					return;
+				}
 				if (testsAreRunning()) {
 					stopCurrentRun();
 				}
@@ -90,26 +226,91 @@ public abstract class QueueConsumer {
 			}
 		}
 
+		/**
+		 * The run goes on with the processes which started, if some could
+		 * not.
+		 */
+		private void startProcessors() throws InterruptedException {
+			List<Future<QueueProcessor>> processors = new ArrayList<>();
+			for (int i = 0; i < processCount; i++) {
+				processors.add(PROCESS_STARTER.submit(QueueConsumer.this::createQueueProcessor));
+			}
+			List<QueueProcessor> startedProcessors = new ArrayList<>();
+			try {
+				for (Future<QueueProcessor> each : processors) {
+					QueueProcessor processor = awaitProcessor(each);
+					if (processor != null) {
+						startedProcessors.add(processor);
+					}
+				}
+			} catch (InterruptedException e) {
+				for (Future<QueueProcessor> each : processors) {
+					each.cancel(true);
+				}
+				for (QueueProcessor each : startedProcessors) {
+					each.cleanup();
+				}
+				batch.cancel();
+				throw e;
+			}
+			for (QueueProcessor each : startedProcessors) {
+				runnables.add(new ProcessorRunnable(testQueue, each, eventSupport, batch, permit));
+			}
+		}
+
+		private QueueProcessor awaitProcessor(Future<QueueProcessor> processor) throws InterruptedException {
+			try {
+				return processor.get();
+			} catch (ExecutionException e) {
+				log("Error starting a runner process", e.getCause());
+				return null;
+			}
+		}
+
 		private void startNewTestRun() {
-			processorThread = new QueueProcessorThread(runnable);
-			eventSupport.fireQueueEvent(new TestQueueEvent(new ArrayList<>(testQueue), testQueue.size()));
-			processorThread.start();
+			processorThreads.clear();
+			for (ProcessorRunnable each : runnables) {
+				processorThreads.add(new QueueProcessorThread(each));
+			}
+			batch.started(testQueue);
+			eventSupport.fireQueueEvent(new TestQueueEvent(new ArrayList<>(testQueue), batch.size()));
+			for (QueueProcessorThread each : processorThreads) {
+				each.start();
+			}
 		}
 
 		private boolean testsAreRunning() {
-			return (processorThread != null) && processorThread.isAlive();
+			for (QueueProcessorThread each : processorThreads) {
+				if (each.isAlive()) {
+					return true;
+				}
+			}
+			return false;
 		}
 	}
 
 	private void stopCurrentRun() throws InterruptedException {
 		// Die hard
-		processorThread.interrupt();
-		processorThread.join(testTimeout);
-		if (processorThread.isAlive()) {
+		for (QueueProcessorThread each : processorThreads) {
+			each.interrupt();
+		}
+		for (QueueProcessorThread each : processorThreads) {
+			awaitStop(each);
+		}
+	}
+
+	private void stopProcess(QueueProcessorThread thread) throws InterruptedException {
+		thread.interrupt();
+		awaitStop(thread);
+	}
+
+	private void awaitStop(QueueProcessorThread thread) throws InterruptedException {
+		thread.join(testTimeout);
+		if (thread.isAlive()) {
 			// Die Harder
-			processorThread.terminate();
-			processorThread.join(5000);
-			if (processorThread.isAlive()) {
+			thread.terminate();
+			thread.join(5000);
+			if (thread.isAlive()) {
 				throw new IllegalStateException();
 			}
 		}
@@ -32,6 +32,18 @@ import java.io.*;
 public interface QueueProcessor {
 	void process(String string) throws InterruptedException, IOException;
 
+	/**
+	 * Sends a test to the process before it is processed, so that the process
+	 * runs it as soon as it is done with the previous ones. The tests
+	 * dispatched are processed in the same order.
+	 */
+	void dispatch(String test);
+
+	/**
+	 * Drops a test dispatched but not processed yet.
+	 */
+	void cancel(String test);
+
 	void close();
 
 	void cleanup();
@@ -38,4 +38,12 @@ class QueueProcessorThread extends Thread {
 	public void terminate() {
 		runnable.terminate();
 	}
+
+	String getRunningTest() {
+		return runnable.getRunningTest();
+	}
+
+	void cancelDispatchedTests() {
+		runnable.cancelDispatchedTests();
+	}
 }
\ No newline at end of file
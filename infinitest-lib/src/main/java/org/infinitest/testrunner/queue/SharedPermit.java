@@ -0,0 +1,67 @@
+/*
+ * Infinitest, a Continuous Test Runner.
+ *
+ * Copyright (C) 2010-2013
+ * "Ben Rady" <benrady@gmail.com>,
+ * "Rod Coffin" <rfciii@gmail.com>,
+ * "Ryan Breidenbach" <ryan.breidenbach@gmail.com>
+ * "David Gageot" <david@gageot.net>, et al.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.infinitest.testrunner.queue;
+
+import java.util.*;
+
+import org.infinitest.*;
+
+/**
+ * The permit of a core, shared by the processes of a run: the first process
+ * to start acquires it, the last one to stop releases it. The processes of a
+ * core run at the same time without taking the permits of the other cores.
+ */
+class SharedPermit implements ConcurrencyController {
+	private final ConcurrencyController controller;
+	private final Set<Thread> holders = new HashSet<>();
+
+	SharedPermit(ConcurrencyController controller) {
+		this.controller = controller;
+	}
+
+	@Override
+	public synchronized void acquire() throws InterruptedException {
+		if (holders.isEmpty()) {
+			controller.acquire();
+		}
+		holders.add(Thread.currentThread());
+	}
+
+	@Override
+	public synchronized void release() {
+		// Also called by the processes interrupted before they got the permit
+		if (holders.remove(Thread.currentThread()) && holders.isEmpty()) {
+			controller.release();
+		}
+	}
+
+	@Override
+	public void setCoreCount(int coreCount) {
+		controller.setCoreCount(coreCount);
+	}
+}
@@ -0,0 +1,172 @@
+/*
+ * Infinitest, a Continuous Test Runner.
+ *
+ * Copyright (C) 2010-2013
+ * "Ben Rady" <benrady@gmail.com>,
+ * "Rod Coffin" <rfciii@gmail.com>,
+ * "Ryan Breidenbach" <ryan.breidenbach@gmail.com>
+ * "David Gageot" <david@gageot.net>, et al.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.infinitest.testrunner.queue;
+
+import java.util.*;
+
+/**
+ * The tests of a run. While the batch is open, more tests may be added to the
+ * queue and the run waits for them once the queue is empty.
+ * <p>
+ * Several processes may take their tests from the queue, the run is finished
+ * once all of them stopped.
+ */
+class TestBatch {
+	private static final long WAIT_TIMEOUT = 100;
+
+	private int size;
+	private boolean open;
+	private boolean finished;
+	private int processes;
+	private final List<QueueProcessor> stoppedProcessors = new ArrayList<>();
+
+	TestBatch(int size, boolean open) {
+		this.size = size;
+		this.open = open;
+	}
+
+	/**
+	 * @return The number of tests of the run so far, run or not
+	 */
+	synchronized int size() {
+		return size;
+	}
+
+	/**
+	 * Called when the run starts. The queue then holds every test of the run,
+	 * including those re-queued by the run it replaces.
+	 */
+	synchronized void started(Queue<String> testQueue) {
+		size = testQueue.size();
+	}
+
+	/**
+	 * Adds tests to the queue, the tests already queued are not added twice.
+	 * 
+	 * @return <code>false</code> if the run is finished and will not run them
+	 */
+	synchronized boolean add(Queue<String> testQueue, Collection<String> tests) {
+		if (finished) {
+			return false;
+		}
+		for (String each : tests) {
+			if (testQueue.add(each)) {
+				size++;
+			}
+		}
+		notifyAll();
+		return true;
+	}
+
+	/**
+	 * Adds tests to the queue, to run before the tests already queued. The
+	 * tests already run by this run run again.
+	 * 
+	 * @return <code>false</code> if the run is finished and will not run them
+	 */
+	synchronized boolean addFirst(TestQueue testQueue, Collection<String> tests) {
+		if (finished) {
+			return false;
+		}
+		size += testQueue.addAllFirst(tests);
+		notifyAll();
+		return true;
+	}
+
+	/**
+	 * No more tests will be added, the run ends once the queue is empty.
+	 */
+	synchronized void close() {
+		open = false;
+		notifyAll();
+	}
+
+	/**
+	 * Waits while the queue is empty and more tests may be added.
+	 * 
+	 * @return <code>false</code> if the queue is empty and the run is over
+	 */
+	synchronized boolean awaitTests(Queue<String> testQueue) throws InterruptedException {
+		while (testQueue.isEmpty() && open) {
+			// The queue is also filled without notification when tests are re-queued
+			wait(WAIT_TIMEOUT);
+		}
+		if (testQueue.isEmpty()) {
+			// The processes are stopping, the tests added now would not run
+			finished = true;
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Called when none of the processes of the run could start, the tests
+	 * added next start another run.
+	 */
+	synchronized void cancel() {
+		finished = true;
+	}
+
+	/**
+	 * Called for each process of the run, before it starts.
+	 */
+	synchronized void processAdded() {
+		processes++;
+	}
+
+	/**
+	 * @return The number of processes of the run which did not stop yet
+	 */
+	synchronized int processCount() {
+		return processes;
+	}
+
+	/**
+	 * @return <code>false</code> if the run is finished, or about to finish,
+	 *         and does not take tests anymore
+	 */
+	synchronized boolean isRunning() {
+		return !finished;
+	}
+
+	/**
+	 * Called by each process of the run once it stopped.
+	 * 
+	 * @return The processors of the run to close if it was the last process,
+	 *         nothing otherwise
+	 */
+	synchronized List<QueueProcessor> finished(QueueProcessor processor) {
+		stoppedProcessors.add(processor);
+		processes--;
+		if (processes > 0) {
+			return Collections.emptyList();
+		}
+		finished = true;
+		return new ArrayList<>(stoppedProcessors);
+	}
+}
@@ -27,10 +27,25 @@
  */
 package org.infinitest.testrunner.queue;
 
+import static org.infinitest.testrunner.RunStatistics.UNKNOWN_DURATION;
+
 import java.util.*;
 
 import org.infinitest.testrunner.*;
+import org.infinitest.util.InfinitestGlobalSettings;
 
+/**
+ * Orders the tests of a run so that the feedback comes as early as possible.
+ * <ul>
+ * <li>The tests whose last run failed come first, the fastest first, since
+ * they are the most likely to fail again.</li>
+ * <li>Then the tests which never ran, whose duration is unknown.</li>
+ * <li>Then the other tests, the fastest first. When several processes share
+ * the queue, the longest come first instead, so that the processes finish at
+ * about the same time.</li>
+ * </ul>
+ * Tests are otherwise ordered by their last failure, the most recent first.
+ */
 public class TestComparator implements Comparator<String> {
 	private final RunStatistics stats;
 
@@ -40,6 +55,23 @@ public class TestComparator implements Comparator<String> {
 
 	@Override
 	public int compare(String test1, String test2) {
-		return new Long(stats.getLastFailureTime(test2)).compareTo(stats.getLastFailureTime(test1));
+		int comparison = Boolean.compare(stats.isFailing(test2), stats.isFailing(test1));
+		if (comparison == 0) {
+			comparison = compareDurations(stats.getExpectedDuration(test1), stats.getExpectedDuration(test2), stats.isFailing(test1));
+		}
+		if (comparison == 0) {
+			comparison = Long.compare(stats.getLastFailureTime(test2), stats.getLastFailureTime(test1));
+		}
+		return comparison;
+	}
+
+	private static int compareDurations(long duration1, long duration2, boolean failing) {
+		if ((duration1 == UNKNOWN_DURATION) || (duration2 == UNKNOWN_DURATION)) {
+			return Boolean.compare(duration2 == UNKNOWN_DURATION, duration1 == UNKNOWN_DURATION);
+		}
+		if (!failing && (InfinitestGlobalSettings.getRunnerProcessesPerCore() > 1)) {
+			return Long.compare(duration2, duration1);
+		}
+		return Long.compare(duration1, duration2);
 	}
 }
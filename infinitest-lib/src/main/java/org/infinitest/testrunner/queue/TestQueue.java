@@ -27,14 +27,29 @@
  */
 package org.infinitest.testrunner.queue;
 
+import java.io.*;
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
 
+/**
+ * The tests waiting to run, in the order of the comparator, except for the
+ * tests added by {@link #addAllFirst(Collection)} which run before the
+ * others.
+ */
 public class TestQueue extends PriorityBlockingQueue<String> {
 	private static final long serialVersionUID = -1L;
 
+	private final Map<String, Long> priorities;
+	private final AtomicLong lastPriority = new AtomicLong();
+
 	public TestQueue(Comparator<String> comparator) {
-		super(11, comparator);
+		this(comparator, new ConcurrentHashMap<String, Long>());
+	}
+
+	private TestQueue(Comparator<String> comparator, Map<String, Long> priorities) {
+		super(11, new PriorityComparator(comparator, priorities));
+		this.priorities = priorities;
 	}
 
 	@Override
@@ -44,4 +59,74 @@ public class TestQueue extends PriorityBlockingQueue<String> {
 		}
 		return false;
 	}
+
+	/**
+	 * Queues the tests before all the tests already queued, including those
+	 * of the given tests which were already queued.
+	 * 
+	 * @return The number of tests which were not queued yet
+	 */
+	public synchronized int addAllFirst(Collection<String> testNames) {
+		Long priority = lastPriority.incrementAndGet();
+		int addedTests = 0;
+		for (String each : new LinkedHashSet<>(testNames)) {
+			if (!remove(each)) {
+				addedTests++;
+			}
+			priorities.put(each, priority);
+			super.add(each);
+		}
+		return addedTests;
+	}
+
+	@Override
+	public String poll() {
+		return forgetPriority(super.poll());
+	}
+
+	@Override
+	public String take() throws InterruptedException {
+		return forgetPriority(super.take());
+	}
+
+	@Override
+	public boolean remove(Object testName) {
+		boolean removed = super.remove(testName);
+		priorities.remove(testName);
+		return removed;
+	}
+
+	@Override
+	public void clear() {
+		super.clear();
+		priorities.clear();
+	}
+
+	private String forgetPriority(String testName) {
+		if (testName != null) {
+			priorities.remove(testName);
+		}
+		return testName;
+	}
+
+	private static class PriorityComparator implements Comparator<String>, Serializable {
+		private static final long serialVersionUID = -1L;
+
+		private final Comparator<String> comparator;
+		private final Map<String, Long> priorities;
+
+		PriorityComparator(Comparator<String> comparator, Map<String, Long> priorities) {
+			this.comparator = comparator;
+			this.priorities = priorities;
+		}
+
+		@Override
+		public int compare(String test1, String test2) {
+			int comparison = Long.compare(priorities.getOrDefault(test2, 0L), priorities.getOrDefault(test1, 0L));
+			if (comparison == 0) {
+				comparison = comparator.compare(test1, test2);
+			}
+			return comparison;
+		}
+	}
 }
@@ -29,6 +29,7 @@ package org.infinitest.util;
 
 import static java.util.logging.Level.*;
 
+import java.io.File;
 import java.util.logging.*;
 
 /**
@@ -37,10 +38,40 @@ import java.util.logging.*;
 public class InfinitestGlobalSettings {
 	private static Level logLevel = Level.INFO;
 	private static long slowTestTimeLimit = 500;
+	private static File indexSnapshotDirectory;
+	private static boolean streamingClassParser = false;
+	private static int parserParallelism = defaultParserParallelism();
+	private static long parserCacheBudget = 64 * 1024 * 1024;
+	private static boolean classUsageRecording = false;
+	private static boolean testsRunWhileIndexing = false;
+	private static int runnerProcessesPerCore = 1;
+	private static int warmRunnerProcesses = 0;
+	private static boolean persistentRunnerProcesses = false;
+	private static int stackTraceDepth = 0;
+	private static String stackFrameFilter;
+	private static int testsDispatchedAhead = 1;
+	private static boolean unixDomainSockets = false;
+	private static long consoleOutputBudget = 1024 * 1024;
+	private static File classDataArchiveDirectory;
 
 	public static void resetToDefaults() {
 		setLogLevel(INFO);
 		setSlowTestTimeLimit(500);
+		setIndexSnapshotDirectory(null);
+		setStreamingClassParser(false);
+		setParserParallelism(defaultParserParallelism());
+		setParserCacheBudget(64 * 1024 * 1024);
+		setClassUsageRecording(false);
+		setTestsRunWhileIndexing(false);
+		setRunnerProcessesPerCore(1);
+		setWarmRunnerProcesses(0);
+		setPersistentRunnerProcesses(false);
+		setStackTraceDepth(0);
+		setStackFrameFilter(null);
+		setTestsDispatchedAhead(1);
+		setUnixDomainSockets(false);
+		setConsoleOutputBudget(1024 * 1024);
+		setClassDataArchiveDirectory(null);
 	}
 
 	public static Level getLogLevel() {
@@ -58,4 +89,209 @@ public class InfinitestGlobalSettings {
 	public static long getSlowTestTimeLimit() {
 		return slowTestTimeLimit;
 	}
+
+	/**
+	 * The directory where each core stores a snapshot of its class index, or
+	 * null if indexes should not be persisted.
+	 */
+	public static File getIndexSnapshotDirectory() {
+		return indexSnapshotDirectory;
+	}
+
+	public static void setIndexSnapshotDirectory(File directory) {
+		indexSnapshotDirectory = directory;
+	}
+
+	/**
+	 * When enabled, class files are read by the
+	 * {@link org.infinitest.parser.StreamingClassParser} rather than by
+	 * Javassist.
+	 */
+	public static boolean isStreamingClassParser() {
+		return streamingClassParser;
+	}
+
+	public static void setStreamingClassParser(boolean enabled) {
+		streamingClassParser = enabled;
+	}
+
+	/**
+	 * How many class files are parsed at the same time when many of them
+	 * changed, for instance after a clean build. 1 parses them one after
+	 * another.
+	 */
+	public static int getParserParallelism() {
+		return parserParallelism;
+	}
+
+	public static void setParserParallelism(int parallelism) {
+		parserParallelism = Math.max(1, parallelism);
+	}
+
+	private static int defaultParserParallelism() {
+		return Runtime.getRuntime().availableProcessors();
+	}
+
+	/**
+	 * The approximate memory, in bytes, the parsed classes of a classpath may
+	 * use before the least recently used ones are evicted. Only applies to the
+	 * caches created afterwards.
+	 */
+	public static long getParserCacheBudget() {
+		return parserCacheBudget;
+	}
+
+	public static void setParserCacheBudget(long budget) {
+		parserCacheBudget = budget;
+	}
+
+	/**
+	 * When enabled, the test runner records the classes each test loads, and
+	 * the tests which already ran only run again when one of these classes
+	 * changes. Takes effect for the runner processes started afterwards.
+	 */
+	public static boolean isClassUsageRecording() {
+		return classUsageRecording;
+	}
+
+	public static void setClassUsageRecording(boolean enabled) {
+		classUsageRecording = enabled;
+	}
+
+	/**
+	 * When enabled, the first run after a reload does not wait for every class
+	 * to be indexed: each test starts as soon as it is parsed, while the other
+	 * classes are still being indexed.
+	 */
+	public static boolean isTestsRunWhileIndexing() {
+		return testsRunWhileIndexing;
+	}
+
+	public static void setTestsRunWhileIndexing(boolean enabled) {
+		testsRunWhileIndexing = enabled;
+	}
+
+	/**
+	 * How many runner processes of the same core run tests at the same time,
+	 * each taking the next test of the queue. Only applies to the runs
+	 * started afterwards.
+	 */
+	public static int getRunnerProcessesPerCore() {
+		return runnerProcessesPerCore;
+	}
+
+	public static void setRunnerProcessesPerCore(int processCount) {
+		runnerProcessesPerCore = Math.max(1, processCount);
+	}
+
+	/**
+	 * How many runner processes are kept started, waiting for tests, for each
+	 * distinct environment. 0 starts the processes only when tests run.
+	 */
+	public static int getWarmRunnerProcesses() {
+		return warmRunnerProcesses;
+	}
+
+	public static void setWarmRunnerProcesses(int processCount) {
+		warmRunnerProcesses = Math.max(0, processCount);
+	}
+
+	/**
+	 * When enabled, a runner process is kept after a run and runs the tests of
+	 * the next runs of its core, loading the changed classes of the project
+	 * again each time. Takes effect for the runner processes started
+	 * afterwards.
+	 */
+	public static boolean isPersistentRunnerProcesses() {
+		return persistentRunnerProcesses;
+	}
+
+	public static void setPersistentRunnerProcesses(boolean enabled) {
+		persistentRunnerProcesses = enabled;
+	}
+
+	/**
+	 * How many frames of the stack trace of a failure the runner processes
+	 * send, the frame of the test method being always sent. 0 sends them
+	 * all. Takes effect for the runner processes started afterwards.
+	 */
+	public static int getStackTraceDepth() {
+		return stackTraceDepth;
+	}
+
+	public static void setStackTraceDepth(int depth) {
+		stackTraceDepth = Math.max(0, depth);
+	}
+
+	/**
+	 * The regular expression of the classes whose frames the runner processes
+	 * leave out of the stack traces they send, for instance
+	 * <code>org\.junit\..*</code>, or null to send them all. Takes effect for
+	 * the runner processes started afterwards.
+	 */
+	public static String getStackFrameFilter() {
+		return stackFrameFilter;
+	}
+
+	public static void setStackFrameFilter(String filter) {
+		stackFrameFilter = filter;
+	}
+
+	/**
+	 * How many tests each runner process gets ahead of the test it runs, so
+	 * that it starts the next one without waiting for the results of the
+	 * previous one to be reported. 0 sends each test once the previous one
+	 * is done. Only applies to the runs started afterwards.
+	 */
+	public static int getTestsDispatchedAhead() {
+		return testsDispatchedAhead;
+	}
+
+	public static void setTestsDispatchedAhead(int testCount) {
+		testsDispatchedAhead = Math.max(0, testCount);
+	}
+
+	/**
+	 * When enabled, the runner processes running on Java 16 or later connect
+	 * through a Unix domain socket rather than a loopback TCP socket, and a
+	 * single thread reads the results of all of them. Takes effect for the
+	 * runner processes started afterwards. Disabled by default until it is
+	 * shown to lower the latency of the runs.
+	 */
+	public static boolean isUnixDomainSockets() {
+		return unixDomainSockets;
+	}
+
+	public static void setUnixDomainSockets(boolean enabled) {
+		unixDomainSockets = enabled;
+	}
+
+	/**
+	 * How many characters of console output each core holds: half of it for
+	 * the last output waiting to be sent to the console listeners, the older
+	 * output being dropped, and half of it for the output kept for the tests
+	 * which wrote it. Only applies to the runners created afterwards.
+	 */
+	public static long getConsoleOutputBudget() {
+		return consoleOutputBudget;
+	}
+
+	public static void setConsoleOutputBudget(long budget) {
+		consoleOutputBudget = Math.max(1, budget);
+	}
+
+	/**
+	 * The directory where the class data sharing archives of the jars of the
+	 * runner processes are kept, or null if the processes should load every
+	 * class from the jars. Needs Java 11 or later, and puts the jars before
+	 * the class directories on the classpath of the processes. Takes effect
+	 * for the runner processes started afterwards.
+	 */
+	public static File getClassDataArchiveDirectory() {
+		return classDataArchiveDirectory;
+	}
+
+	public static void setClassDataArchiveDirectory(File directory) {
+		classDataArchiveDirectory = directory;
+	}
 }
@@ -68,6 +68,15 @@ public class FakeInfinitestCore implements InfinitestCore {
 	public void removeConsoleOutputListener(ConsoleOutputListener listener) {
 	}
 
+	@Override
+	public String getConsoleOutput(String testName) {
+		return "";
+	}
+
+	@Override
+	public void close() {
+	}
+
 	public void addReloadListener(ReloadListener listener) {
 	}
 
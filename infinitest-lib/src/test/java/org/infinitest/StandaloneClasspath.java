@@ -73,6 +73,17 @@ public class StandaloneClasspath implements ClasspathProvider {
 		return classDirsInClasspath;
 	}
 
+	@Override
+	public List<File> jarsInClasspath() {
+		List<File> jars = new ArrayList<>();
+		for (String each : classpath.split(File.pathSeparator)) {
+			if (each.endsWith(".jar")) {
+				jars.add(new File(each));
+			}
+		}
+		return jars;
+	}
+
 	public String getSystemClasspath() {
 		return systemClasspath();
 	}
@@ -32,6 +32,7 @@ import static java.util.Collections.emptySet;
 import java.io.File;
 import java.util.Collection;
 import java.util.Set;
+import java.util.function.Consumer;
 
 import org.infinitest.environment.ClasspathProvider;
 import org.infinitest.parser.JavaClass;
@@ -59,6 +60,16 @@ class StubTestDetector implements TestDetector {
 		return emptySet();
 	}
 
+	@Override
+	public Set<JavaClass> findTestsToRun(Collection<File> changedFiles, Collection<String> changedJarClasses) {
+		return findTestsToRun(changedFiles);
+	}
+
+	@Override
+	public Set<JavaClass> findTestsToRun(Collection<File> changedFiles, Collection<String> changedJarClasses, Consumer<JavaClass> testListener) {
+		return findTestsToRun(changedFiles, changedJarClasses);
+	}
+
 	public boolean isEmpty() {
 		throw new UnsupportedOperationException();
 	}
@@ -72,6 +83,16 @@ class StubTestDetector implements TestDetector {
 		throw new UnsupportedOperationException();
 	}
 
+	@Override
+	public void updateClasspathProvider(ClasspathProvider classpath) {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public void recordClassUsage(String testName, Set<String> loadedClasses, Set<String> classesLoadedBefore) {
+		// nothing to do here
+	}
+
 	@Override
 	public Set<String> getCurrentTests() {
 		return emptySet();
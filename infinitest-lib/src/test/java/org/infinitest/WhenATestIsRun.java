@@ -30,6 +30,7 @@ package org.infinitest;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 
 import java.util.Comparator;
@@ -54,7 +55,7 @@ class WhenATestIsRun {
 		core.addConsoleOutputListener(listener);
 		core.removeConsoleOutputListener(listener);
 
-		verify(runner).addTestResultsListener(any(TestResultsListener.class));
+		verify(runner, times(2)).addTestResultsListener(any(TestResultsListener.class));
 		verify(runner).setTestPriority(any(Comparator.class));
 		verify(runner).addConsoleOutputListener(any(ConsoleOutputListener.class));
 		verify(runner).removeConsoleOutputListener(any(ConsoleOutputListener.class));
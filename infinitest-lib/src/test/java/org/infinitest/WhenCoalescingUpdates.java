@@ -0,0 +1,158 @@
+/*
+ * Infinitest, a Continuous Test Runner.
+ *
+ * Copyright (C) 2010-2013
+ * "Ben Rady" <benrady@gmail.com>,
+ * "Rod Coffin" <rfciii@gmail.com>,
+ * "Ryan Breidenbach" <ryan.breidenbach@gmail.com>
+ * "David Gageot" <david@gageot.net>, et al.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.infinitest;
+
+import static java.util.Arrays.asList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.after;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.File;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.infinitest.environment.RuntimeEnvironment;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+
+class WhenCoalescingUpdates {
+	private InfinitestCore core;
+	private UpdateScheduler scheduler;
+
+	@BeforeEach
+	void inContext() {
+		core = mock(InfinitestCore.class);
+	}
+
+	@AfterEach
+	void cleanup() {
+		scheduler.shutdown();
+	}
+
+	@Test
+	void shouldMergeNotificationsArrivingWithinTheQuietPeriod() {
+		scheduler = new UpdateScheduler(core, 300, 10000);
+
+		scheduler.scheduleUpdate();
+		scheduler.scheduleUpdate();
+		scheduler.scheduleUpdate();
+
+		verify(core, timeout(2000)).update();
+		verify(core, after(500)).update();
+		assertThat(scheduler.getMergedNotificationCount()).isEqualTo(2);
+		assertThat(scheduler.isUpdatePending()).isFalse();
+	}
+
+	@Test
+	void shouldWaitForTheChangesToSettle() {
+		scheduler = new UpdateScheduler(core, 1000, 10000);
+
+		scheduler.scheduleUpdate();
+
+		assertThat(scheduler.isUpdatePending()).isTrue();
+		verify(core, after(300).never()).update();
+	}
+
+	@Test
+	void shouldNotDelayTheUpdateMoreThanTheMaximumDelay() throws InterruptedException {
+		scheduler = new UpdateScheduler(core, 400, 600);
+
+		long start = System.currentTimeMillis();
+		while ((System.currentTimeMillis() - start) < 1500) {
+			scheduler.scheduleUpdate();
+			Thread.sleep(50);
+		}
+
+		verify(core, timeout(100).atLeastOnce()).update();
+	}
+
+	@Test
+	void shouldUpdateTheChangedFilesOfEveryMergedNotification() {
+		scheduler = new UpdateScheduler(core, 300, 10000);
+		File first = new File("First.class");
+		File second = new File("Second.class");
+
+		scheduler.scheduleUpdate(asList(first));
+		scheduler.scheduleUpdate(asList(second, first));
+
+		verify(core, timeout(2000)).update(new HashSet<>(asList(first, second)));
+		verify(core, never()).update();
+	}
+
+	@Test
+	void shouldTellHowManyTestsEachUpdateQueued() {
+		when(core.update()).thenReturn(3);
+		List<Integer> testsToRun = new CopyOnWriteArrayList<>();
+		scheduler = new UpdateScheduler(core, 10000, 10000, testsToRun::add);
+
+		scheduler.scheduleUpdate();
+		scheduler.flush();
+
+		verify(core).update();
+		assertThat(testsToRun).containsExactly(3);
+		assertThat(scheduler.isUpdatePending()).isFalse();
+	}
+
+	@Test
+	void shouldUpdateEverythingWhenOneNotificationDoesNotTellTheChangedFiles() {
+		scheduler = new UpdateScheduler(core, 300, 10000);
+
+		scheduler.scheduleUpdate(asList(new File("First.class")));
+		scheduler.scheduleUpdate();
+
+		verify(core, timeout(2000)).update();
+		verify(core, never()).update(anyCollection());
+	}
+
+	@Test
+	void shouldSetTheLastNotifiedEnvironmentWhenUpdating() {
+		RuntimeEnvironment firstEnvironment = mock(RuntimeEnvironment.class);
+		RuntimeEnvironment lastEnvironment = mock(RuntimeEnvironment.class);
+		File changedFile = new File("First.class");
+		scheduler = new UpdateScheduler(core, 10000, 10000);
+
+		scheduler.scheduleUpdate(firstEnvironment, asList(changedFile));
+		scheduler.scheduleUpdate(lastEnvironment, asList(changedFile));
+		verify(core, never()).setRuntimeEnvironment(lastEnvironment);
+		scheduler.flush();
+
+		InOrder inOrder = inOrder(core);
+		inOrder.verify(core).setRuntimeEnvironment(lastEnvironment);
+		inOrder.verify(core).update(new HashSet<>(asList(changedFile)));
+		verify(core, never()).setRuntimeEnvironment(firstEnvironment);
+	}
+}
@@ -27,28 +27,49 @@
  */
 package org.infinitest;
 
+import static java.util.Collections.emptySet;
+import static java.util.Collections.singleton;
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.infinitest.CoreDependencySupport.createCore;
-import static org.infinitest.CoreDependencySupport.withNoTestsToRun;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 import java.io.File;
-import java.util.Collections;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
 
-import org.infinitest.changedetect.ChangeDetector;
 import org.infinitest.changedetect.FakeChangeDetector;
+import org.infinitest.parser.JavaClass;
+import org.infinitest.parser.TestDetector;
 import org.junit.jupiter.api.Test;
 
 class WhenTestFileIsRemoved {
 	@Test
-	void shouldReloadIndex() throws Exception {
-		InfinitestCore core = createCore(withRemovedFiles(), withNoTestsToRun());
+	void shouldRemoveTheClassesOfTheRemovedFilesWithoutReloading() throws Exception {
+		File removedFile = new File("RemovedTest.class");
+		JavaClass removedTest = mock(JavaClass.class);
+		when(removedTest.getName()).thenReturn("RemovedTest");
+		TestDetector testDetector = mock(TestDetector.class);
+		when(testDetector.removeClasses(singleton(removedFile))).thenReturn(singleton(removedTest));
+		DefaultInfinitestCore core = createCore(new FakeChangeDetector(emptySet(), singleton(removedFile)), testDetector);
 		EventSupport eventSupport = new EventSupport();
 		core.addTestQueueListener(eventSupport);
+		List<String> disabledTests = new ArrayList<>();
+		core.addDisabledTestListener(new DisabledTestListener() {
+			@Override
+			public void testsDisabled(Collection<String> testNames) {
+				disabledTests.addAll(testNames);
+			}
+		});
+
 		core.update();
-		core.update();
-		eventSupport.assertReloadOccured();
-	}
 
-	private ChangeDetector withRemovedFiles() {
-		return new FakeChangeDetector(Collections.<File> emptySet(), true);
+		verify(testDetector).removeClasses(singleton(removedFile));
+		verify(testDetector).findTestsToRun(any(Collection.class), any(Collection.class));
+		assertThat(disabledTests).containsOnly("RemovedTest");
+		assertThat(eventSupport.getReloadCount()).isZero();
 	}
 }
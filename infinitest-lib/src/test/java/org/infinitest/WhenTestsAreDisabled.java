@@ -55,7 +55,7 @@ class WhenTestsAreDisabled {
 		TestDetector testDetector = mock(TestDetector.class);
 		when(testDetector.getCurrentTests()).thenReturn(setify("MyClass", "OtherClass"), setify("OtherClass"));
 		Set<JavaClass> emptyClassSet = Collections.<JavaClass> emptySet();
-		when(testDetector.findTestsToRun(any(Collection.class))).thenReturn(emptyClassSet);
+		when(testDetector.findTestsToRun(any(Collection.class), any(Collection.class))).thenReturn(emptyClassSet);
 
 		DefaultInfinitestCore core = new DefaultInfinitestCore(runner, new ControlledEventQueue());
 		core.setChangeDetector(withChangedFiles(PassingTest.class));
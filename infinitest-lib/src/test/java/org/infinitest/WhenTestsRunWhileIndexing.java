@@ -0,0 +1,128 @@
+/*
+ * Infinitest, a Continuous Test Runner.
+ *
+ * Copyright (C) 2010-2013
+ * "Ben Rady" <benrady@gmail.com>,
+ * "Rod Coffin" <rfciii@gmail.com>,
+ * "Ryan Breidenbach" <ryan.breidenbach@gmail.com>
+ * "David Gageot" <david@gageot.net>, et al.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.infinitest;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.emptySet;
+import static java.util.Collections.singletonList;
+import static org.infinitest.CoreDependencySupport.withNoChangedFiles;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.File;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.function.Consumer;
+
+import org.infinitest.parser.JavaClass;
+import org.infinitest.testrunner.TestRunner;
+import org.infinitest.util.InfinitestGlobalSettings;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+
+class WhenTestsRunWhileIndexing {
+	private TestRunner runner;
+	private DefaultInfinitestCore core;
+
+	@BeforeEach
+	void inContext() {
+		InfinitestGlobalSettings.setTestsRunWhileIndexing(true);
+		runner = mock(TestRunner.class);
+		core = new DefaultInfinitestCore(runner, new FakeEventQueue());
+		core.setChangeDetector(withNoChangedFiles());
+		core.setTestDetector(new StubTestDetector() {
+			@Override
+			public Set<JavaClass> findTestsToRun(Collection<File> changedFiles, Collection<String> changedJarClasses, Consumer<JavaClass> testListener) {
+				// The first test is parsed during indexing, the second one is
+				// only found once every class is indexed
+				JavaClass parsedTest = test("ParsedTest");
+				testListener.accept(parsedTest);
+				return new HashSet<>(asList(parsedTest, test("DependentTest")));
+			}
+
+			@Override
+			public Set<JavaClass> findTestsToRun(Collection<File> changedFiles, Collection<String> changedJarClasses) {
+				return new HashSet<>(asList(test("ParsedTest"), test("DependentTest")));
+			}
+
+			@Override
+			public Set<String> getCurrentTests() {
+				return emptySet();
+			}
+		});
+	}
+
+	@AfterEach
+	void cleanup() {
+		InfinitestGlobalSettings.resetToDefaults();
+	}
+
+	@Test
+	void shouldStreamEachTestOnceAsSoonAsItIsFound() {
+		core.update();
+
+		InOrder inOrder = inOrder(runner);
+		inOrder.verify(runner).openTestStream();
+		inOrder.verify(runner).streamTests(singletonList("ParsedTest"));
+		inOrder.verify(runner).streamTests(singletonList("DependentTest"));
+		inOrder.verify(runner).closeTestStream();
+		verify(runner, never()).runTests(anyList());
+	}
+
+	@Test
+	void shouldRunTheTestsOnceIndexedAfterTheFirstRun() {
+		core.update();
+		core.update();
+
+		verify(runner).openTestStream();
+		verify(runner).runTests(anyList());
+	}
+
+	@Test
+	void shouldRunTheTestsOnceIndexedWhenDisabled() {
+		InfinitestGlobalSettings.setTestsRunWhileIndexing(false);
+
+		core.update();
+
+		verify(runner, never()).openTestStream();
+		verify(runner).runTests(anyList());
+	}
+
+	private static JavaClass test(String name) {
+		JavaClass test = mock(JavaClass.class);
+		when(test.getName()).thenReturn(name);
+		return test;
+	}
+}
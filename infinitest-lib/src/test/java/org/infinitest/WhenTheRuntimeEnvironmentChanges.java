@@ -27,19 +27,27 @@
  */
 package org.infinitest;
 
+import static java.io.File.pathSeparator;
+import static java.util.Arrays.asList;
 import static org.infinitest.CoreDependencySupport.createCore;
 import static org.infinitest.CoreDependencySupport.withNoChangedFiles;
 import static org.infinitest.CoreDependencySupport.withNoTestsToRun;
+import static org.infinitest.environment.FakeEnvironments.currentJavaHome;
 import static org.infinitest.environment.FakeEnvironments.emptyRuntimeEnvironment;
+import static org.infinitest.environment.FakeEnvironments.fakeBuildPaths;
 import static org.infinitest.environment.FakeEnvironments.fakeEnvironment;
+import static org.infinitest.environment.FakeEnvironments.fakeWorkingDirectory;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 
 import java.util.Comparator;
 
 import org.infinitest.changedetect.ChangeDetector;
+import org.infinitest.environment.ClasspathProvider;
 import org.infinitest.environment.RuntimeEnvironment;
 import org.infinitest.parser.TestDetector;
 import org.infinitest.testrunner.TestResultsListener;
@@ -69,7 +77,7 @@ class WhenTheRuntimeEnvironmentChanges {
 		core.setRuntimeEnvironment(environment);
 
 		verify(testRunner).setRuntimeEnvironment(environment);
-		verify(testRunner).addTestResultsListener(any(TestResultsListener.class));
+		verify(testRunner, times(2)).addTestResultsListener(any(TestResultsListener.class));
 		verify(testRunner).setTestPriority(any(Comparator.class));
 		verify(testDetector).clear();
 		verify(testDetector).setClasspathProvider(environment);
@@ -77,6 +85,56 @@ class WhenTheRuntimeEnvironmentChanges {
 		verify(changeDetector).clear();
 	}
 
+	@Test
+	void shouldOnlyGiveTheRunnerAnEnvironmentWhoseArgumentsChanged() {
+		TestRunner testRunner = mock(TestRunner.class);
+		TestDetector testDetector = mock(TestDetector.class);
+		ChangeDetector changeDetector = mock(ChangeDetector.class);
+		DefaultInfinitestCore core = new DefaultInfinitestCore(testRunner, new FakeEventQueue());
+		core.setTestDetector(testDetector);
+		core.setChangeDetector(changeDetector);
+		core.setRuntimeEnvironment(fakeEnvironment());
+
+		RuntimeEnvironment environment = fakeEnvironment();
+		environment.addVMArgs(asList("-ea"));
+		core.setRuntimeEnvironment(environment);
+
+		verify(testRunner).setRuntimeEnvironment(environment);
+		verify(testDetector).clear();
+		verify(testDetector, never()).updateClasspathProvider(any(ClasspathProvider.class));
+		verify(changeDetector, never()).updateClasspathProvider(any(ClasspathProvider.class));
+	}
+
+	@Test
+	void shouldKeepTheIndexWhenOnlyJarsChange() {
+		TestRunner testRunner = mock(TestRunner.class);
+		TestDetector testDetector = mock(TestDetector.class);
+		ChangeDetector changeDetector = mock(ChangeDetector.class);
+		DefaultInfinitestCore core = new DefaultInfinitestCore(testRunner, new FakeEventQueue());
+		core.setTestDetector(testDetector);
+		core.setChangeDetector(changeDetector);
+		core.setRuntimeEnvironment(environmentWithClasspath("classes"));
+
+		RuntimeEnvironment environment = environmentWithClasspath("classes" + pathSeparator + "added.jar");
+		core.setRuntimeEnvironment(environment);
+
+		verify(testRunner).setRuntimeEnvironment(environment);
+		verify(testDetector).updateClasspathProvider(environment);
+		verify(changeDetector).updateClasspathProvider(environment);
+		verify(testDetector).clear();
+	}
+
+	@Test
+	void shouldReloadWhenTheClassDirectoriesChange() throws Exception {
+		InfinitestCore core = createCore(withNoChangedFiles(), withNoTestsToRun());
+		EventSupport eventSupport = new EventSupport();
+		core.addTestQueueListener(eventSupport);
+		core.setRuntimeEnvironment(environmentWithClasspath("classes"));
+		core.setRuntimeEnvironment(environmentWithClasspath("classes" + pathSeparator + "other-classes"));
+
+		assertEquals(2, eventSupport.getReloadCount());
+	}
+
 	@Test
 	void shouldDoNothingIfEnvironmentIsNotActuallyDifferent() throws Exception {
 		InfinitestCore core = createCore(withNoChangedFiles(), withNoTestsToRun());
@@ -89,4 +147,8 @@ class WhenTheRuntimeEnvironmentChanges {
 		core.setRuntimeEnvironment(emptyRuntimeEnvironment());
 		assertEquals(1, eventSupport.getReloadCount());
 	}
+
+	private static RuntimeEnvironment environmentWithClasspath(String classpath) {
+		return new RuntimeEnvironment(currentJavaHome(), fakeWorkingDirectory(), "infinitest-classloader.classpath", "infinitest-runner.classpath", fakeBuildPaths(), classpath);
+	}
 }
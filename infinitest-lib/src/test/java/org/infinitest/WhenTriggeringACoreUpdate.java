@@ -66,7 +66,7 @@ class WhenTriggeringACoreUpdate {
 	}
 
 	private void testsToExpect(JavaClass... tests) {
-		when(testDetector.findTestsToRun(updatedFiles)).thenReturn(newHashSet(tests));
+		when(testDetector.findTestsToRun(updatedFiles, Collections.<String> emptySet())).thenReturn(newHashSet(tests));
 	}
 
 	@Test
@@ -37,15 +37,16 @@ import org.infinitest.environment.ClasspathProvider;
 
 public class FakeChangeDetector implements ChangeDetector {
 	private Set<File> changedFiles;
-	private boolean filesRemoved;
+	private Set<File> removedFiles;
 
-	public FakeChangeDetector(Set<File> changedFiles, boolean filesRemoved) {
+	public FakeChangeDetector(Set<File> changedFiles, Set<File> removedFiles) {
 		this.changedFiles = changedFiles;
-		this.filesRemoved = filesRemoved;
+		this.removedFiles = removedFiles;
 	}
 
 	public FakeChangeDetector() {
 		changedFiles = emptySet();
+		removedFiles = emptySet();
 	}
 
 	@Override
@@ -54,8 +55,10 @@ public class FakeChangeDetector implements ChangeDetector {
 	}
 
 	@Override
-	public boolean filesWereRemoved() {
-		return filesRemoved;
+	public Set<File> findRemovedFiles() {
+		Set<File> files = removedFiles;
+		removedFiles = emptySet();
+		return files;
 	}
 
 	/**
@@ -67,8 +70,18 @@ public class FakeChangeDetector implements ChangeDetector {
 		return changedFiles;
 	}
 
+	@Override
+	public Set<String> findChangedJarClasses() {
+		return emptySet();
+	}
+
 	@Override
 	public void setClasspathProvider(ClasspathProvider classpath) {
 		// nothing to do here
 	}
+
+	@Override
+	public void updateClasspathProvider(ClasspathProvider classpath) {
+		// nothing to do here
+	}
 }
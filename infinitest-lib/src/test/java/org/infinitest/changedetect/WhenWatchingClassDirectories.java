@@ -0,0 +1,210 @@
+/*
+ * Infinitest, a Continuous Test Runner.
+ *
+ * Copyright (C) 2010-2013
+ * "Ben Rady" <benrady@gmail.com>,
+ * "Rod Coffin" <rfciii@gmail.com>,
+ * "Ryan Breidenbach" <ryan.breidenbach@gmail.com>
+ * "David Gageot" <david@gageot.net>, et al.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.infinitest.changedetect;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Arrays.asList;
+import static java.util.Collections.emptyList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.infinitest.environment.ClasspathProvider;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class WhenWatchingClassDirectories {
+	private static final long TIMEOUT = 10000;
+
+	@TempDir
+	File temporaryFolder;
+
+	private File classDirectory;
+	private WatchingChangeDetector detector;
+
+	@BeforeEach
+	void inContext() throws IOException {
+		classDirectory = new File(temporaryFolder, "classes");
+		writeFile("com/example/Existing.class");
+
+		ClasspathProvider classpath = mock(ClasspathProvider.class);
+		when(classpath.classDirectoriesInClasspath()).thenReturn(asList(classDirectory));
+		when(classpath.jarsInClasspath()).thenReturn(emptyList());
+		detector = new WatchingChangeDetector();
+		detector.setClasspathProvider(classpath);
+	}
+
+	@AfterEach
+	void stopWatching() {
+		detector.clear();
+	}
+
+	@Test
+	void shouldReportEveryClassFileTheFirstTime() throws IOException {
+		assertThat(detector.findChangedFiles()).containsOnly(file("com/example/Existing.class"));
+		assertThat(detector.findChangedFiles()).isEmpty();
+	}
+
+	@Test
+	void shouldReportAddedClassFiles() throws IOException {
+		detector.findChangedFiles();
+
+		writeFile("com/example/Added.class");
+		writeFile("com/example/notes.txt");
+
+		assertThat(awaitChangedFiles(1)).containsOnly(file("com/example/Added.class"));
+	}
+
+	@Test
+	void shouldReportModifiedClassFiles() throws IOException {
+		detector.findChangedFiles();
+
+		File existing = writeFile("com/example/Existing.class");
+		existing.setLastModified(existing.lastModified() - 10000);
+
+		assertThat(awaitChangedFiles(1)).containsOnly(file("com/example/Existing.class"));
+	}
+
+	@Test
+	void shouldWaitForTheEventsOfFilesWrittenJustBeforeAnUpdate() throws IOException {
+		detector.findChangedFiles();
+
+		writeFile("com/example/Added.class");
+		Files.delete(file("com/example/Existing.class").toPath());
+
+		assertThat(detector.findChangedFiles()).containsOnly(file("com/example/Added.class"));
+		assertThat(detector.findRemovedFiles()).containsOnly(file("com/example/Existing.class"));
+	}
+
+	@Test
+	void shouldReportClassFilesOfCreatedDirectories() throws IOException {
+		detector.findChangedFiles();
+
+		writeFile("com/example/added/First.class");
+		writeFile("com/example/added/deeper/Second.class");
+
+		assertThat(awaitChangedFiles(2)).containsOnly(file("com/example/added/First.class"), file("com/example/added/deeper/Second.class"));
+	}
+
+	@Test
+	void shouldReportRemovedClassFiles() throws IOException {
+		detector.findChangedFiles();
+		writeFile("com/example/removed/Removed.class");
+		awaitChangedFiles(1);
+
+		Files.delete(file("com/example/Existing.class").toPath());
+		Files.delete(file("com/example/removed/Removed.class").toPath());
+		Files.delete(file("com/example/removed").toPath());
+
+		assertThat(awaitRemovedFiles(2)).containsOnly(file("com/example/Existing.class"), file("com/example/removed/Removed.class"));
+		assertThat(detector.findRemovedFiles()).isEmpty();
+	}
+
+	@Test
+	void shouldReportTheClassFilesOfDirectoriesMovedAway() throws IOException {
+		detector.findChangedFiles();
+		writeFile("com/example/moved/Moved.class");
+		awaitChangedFiles(1);
+
+		Files.move(file("com/example/moved").toPath(), new File(temporaryFolder, "moved").toPath());
+
+		assertThat(awaitRemovedFiles(1)).containsOnly(file("com/example/moved/Moved.class"));
+		assertThat(detector.findRemovedFiles()).isEmpty();
+	}
+
+	@Test
+	void shouldNotReportClassFilesRemovedThenWrittenAgain() throws IOException {
+		detector.findChangedFiles();
+
+		Files.delete(file("com/example/Existing.class").toPath());
+		writeFile("com/example/Existing.class");
+
+		assertThat(awaitChangedFiles(1)).containsOnly(file("com/example/Existing.class"));
+		assertThat(detector.findRemovedFiles()).isEmpty();
+	}
+
+	@Test
+	void shouldScanTheClassDirectoriesAgainWhenEventsAreLost() throws IOException {
+		detector.findChangedFiles();
+
+		detector.eventsLost();
+		Files.delete(file("com/example/Existing.class").toPath());
+		detector.findChangedFiles();
+
+		assertThat(detector.findRemovedFiles()).containsOnly(file("com/example/Existing.class"));
+	}
+
+	private Set<File> awaitChangedFiles(int count) throws IOException {
+		Set<File> changedFiles = new HashSet<>();
+		long deadline = System.currentTimeMillis() + TIMEOUT;
+		while ((changedFiles.size() < count) && (System.currentTimeMillis() < deadline)) {
+			changedFiles.addAll(detector.findChangedFiles());
+			pause();
+		}
+		return changedFiles;
+	}
+
+	private Set<File> awaitRemovedFiles(int count) throws IOException {
+		Set<File> removedFiles = new HashSet<>();
+		long deadline = System.currentTimeMillis() + TIMEOUT;
+		while ((removedFiles.size() < count) && (System.currentTimeMillis() < deadline)) {
+			// Like an update, the events are polled by looking for changed files
+			detector.findChangedFiles();
+			removedFiles.addAll(detector.findRemovedFiles());
+			pause();
+		}
+		return removedFiles;
+	}
+
+	private static void pause() {
+		try {
+			Thread.sleep(10);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private File file(String path) {
+		return new File(classDirectory, path);
+	}
+
+	private File writeFile(String path) throws IOException {
+		File file = file(path);
+		file.getParentFile().mkdirs();
+		Files.write(file.toPath(), path.getBytes(UTF_8));
+		return file;
+	}
+}
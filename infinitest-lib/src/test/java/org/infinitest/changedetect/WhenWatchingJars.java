@@ -0,0 +1,151 @@
+/*
+ * Infinitest, a Continuous Test Runner.
+ *
+ * Copyright (C) 2010-2013
+ * "Ben Rady" <benrady@gmail.com>,
+ * "Rod Coffin" <rfciii@gmail.com>,
+ * "Ryan Breidenbach" <ryan.breidenbach@gmail.com>
+ * "David Gageot" <david@gageot.net>, et al.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.infinitest.changedetect;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Arrays.asList;
+import static java.util.Collections.emptyList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.infinitest.environment.ClasspathProvider;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class WhenWatchingJars {
+	@TempDir
+	File temporaryFolder;
+
+	private File jar;
+	private ChangeDetector detector;
+
+	@BeforeEach
+	void inContext() throws IOException {
+		jar = new File(temporaryFolder, "module.jar");
+		writeJar(1000L, "com/example/Changed.class", "v1", "com/example/Unchanged.class", "v1", "com/example/Removed.class", "v1");
+
+		ClasspathProvider classpath = mock(ClasspathProvider.class);
+		when(classpath.classDirectoriesInClasspath()).thenReturn(emptyList());
+		when(classpath.jarsInClasspath()).thenReturn(asList(jar));
+		detector = new FileChangeDetector();
+		detector.setClasspathProvider(classpath);
+	}
+
+	@Test
+	void shouldNotReportClassesOfJarsSeenForTheFirstTime() throws IOException {
+		assertThat(detector.findChangedJarClasses()).isEmpty();
+	}
+
+	@Test
+	void shouldReportTheClassesWhoseChecksumChanged() throws IOException {
+		detector.findChangedJarClasses();
+
+		writeJar(2000L, "com/example/Changed.class", "v2", "com/example/Unchanged.class", "v1", "com/example/Added.class", "v1", "META-INF/MANIFEST.MF", "v2");
+
+		assertThat(detector.findChangedJarClasses()).containsOnly("com.example.Changed", "com.example.Added", "com.example.Removed");
+		assertThat(detector.findChangedJarClasses()).isEmpty();
+	}
+
+	@Test
+	void shouldNotReadJarsWhoseTimestampDidNotChange() throws IOException {
+		detector.findChangedJarClasses();
+
+		writeJar(1000L, "com/example/Changed.class", "v2", "com/example/Unchanged.class", "v1", "com/example/Removed.class", "v1");
+
+		assertThat(detector.findChangedJarClasses()).isEmpty();
+	}
+
+	@Test
+	void shouldReportEveryClassOfARemovedJar() throws IOException {
+		detector.findChangedJarClasses();
+
+		jar.delete();
+
+		assertThat(detector.findChangedJarClasses()).containsOnly("com.example.Changed", "com.example.Unchanged", "com.example.Removed");
+	}
+
+	@Test
+	void shouldReportEveryClassOfAJarRewrittenAfterItWasRemoved() throws IOException {
+		detector.findChangedJarClasses();
+		jar.delete();
+		detector.findChangedJarClasses();
+
+		writeJar(2000L, "com/example/Changed.class", "v2", "com/example/Unchanged.class", "v1");
+
+		assertThat(detector.findChangedJarClasses()).containsOnly("com.example.Changed", "com.example.Unchanged");
+		assertThat(detector.findChangedJarClasses()).isEmpty();
+	}
+
+	@Test
+	void shouldForgetJarsWhenCleared() throws IOException {
+		detector.findChangedJarClasses();
+		detector.clear();
+
+		writeJar(2000L, "com/example/Changed.class", "v2");
+
+		assertThat(detector.findChangedJarClasses()).isEmpty();
+	}
+
+	@Test
+	void shouldReportTheClassesOfJarsAddedToOrRemovedFromTheClasspath() throws IOException {
+		detector.findChangedJarClasses();
+		File otherJar = new File(temporaryFolder, "other.jar");
+		writeJar(otherJar, 1000L, "com/example/Other.class", "v1");
+
+		ClasspathProvider classpath = mock(ClasspathProvider.class);
+		when(classpath.classDirectoriesInClasspath()).thenReturn(emptyList());
+		when(classpath.jarsInClasspath()).thenReturn(asList(otherJar));
+		detector.updateClasspathProvider(classpath);
+
+		assertThat(detector.findChangedJarClasses()).containsOnly("com.example.Changed", "com.example.Unchanged", "com.example.Removed", "com.example.Other");
+		assertThat(detector.findChangedJarClasses()).isEmpty();
+	}
+
+	private void writeJar(long lastModified, String... namesAndContents) throws IOException {
+		writeJar(jar, lastModified, namesAndContents);
+	}
+
+	private static void writeJar(File jar, long lastModified, String... namesAndContents) throws IOException {
+		try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(jar))) {
+			for (int i = 0; i < namesAndContents.length; i += 2) {
+				out.putNextEntry(new ZipEntry(namesAndContents[i]));
+				out.write(namesAndContents[i + 1].getBytes(UTF_8));
+				out.closeEntry();
+			}
+		}
+		jar.setLastModified(lastModified);
+	}
+}
@@ -35,6 +35,7 @@ import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.infinitest.environment.FakeEnvironments.currentJavaHome;
 import static org.infinitest.environment.FakeEnvironments.emptyRuntimeEnvironment;
+import static org.infinitest.environment.FakeEnvironments.fakeClassDirectory;
 import static org.infinitest.environment.FakeEnvironments.fakeBuildPaths;
 import static org.infinitest.environment.FakeEnvironments.fakeEnvironment;
 import static org.infinitest.environment.FakeEnvironments.fakeWorkingDirectory;
@@ -47,21 +48,30 @@ import static org.junit.jupiter.api.Assertions.assertNotEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
 
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
 
 import org.infinitest.environment.RuntimeEnvironment.JavaHomeException;
+import org.infinitest.testrunner.ClassListLoader;
+import org.infinitest.testrunner.TestRunnerProcess;
+import org.infinitest.util.InfinitestGlobalSettings;
 import org.infinitest.util.LoggingAdapter;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
 
+import com.google.common.io.ByteStreams;
 import com.google.common.io.Files;
 
 class RuntimeEnvironmentTest {
@@ -112,6 +122,24 @@ class RuntimeEnvironmentTest {
 		assertThat(createEqualInstance()).isNotEqualTo(env);
 	}
 
+	@Test
+	void shouldKeepTheClasspathWhenOnlyTheArgumentsChange() {
+		RuntimeEnvironment env = createEqualInstance();
+		env.addVMArgs(Arrays.asList("additionalArg"));
+		assertTrue(env.hasSameClasspathAs(createEqualInstance()));
+		assertFalse(createEnv("outputDir", "workingDir", "notTheSameClasspath", "javahome").hasSameClasspathAs(createEqualInstance()));
+	}
+
+	@Test
+	void shouldOnlyDifferByJarsWhenTheClassDirectoriesAreTheSame() {
+		RuntimeEnvironment env = createEnv("outputDir", "workingDir", classpath("classes", "a.jar", "b.jar"), "javahome");
+		assertTrue(createEnv("outputDir", "workingDir", classpath("classes", "a.jar", "c.jar", "b.jar"), "javahome").differsOnlyByJarsFrom(env));
+		assertTrue(createEnv("outputDir", "workingDir", classpath("classes", "b.jar"), "javahome").differsOnlyByJarsFrom(env));
+		assertFalse(createEnv("outputDir", "workingDir", classpath("classes", "b.jar", "a.jar"), "javahome").differsOnlyByJarsFrom(env));
+		assertFalse(createEnv("outputDir", "workingDir", classpath("classes", "other-classes", "a.jar", "b.jar"), "javahome").differsOnlyByJarsFrom(env));
+		assertFalse(createEnv("outputDir", "workingDir", classpath("classes", "a.jar", "b.jar"), "notTheSameJavahome").differsOnlyByJarsFrom(env));
+	}
+
 	@Test
 	void shouldNotBeEqualToNull() {
 		assertNotEquals(null, createEqualInstance());
@@ -213,6 +241,183 @@ class RuntimeEnvironmentTest {
 		assertTrue(actualArgs.containsAll(additionalArgs), actualArgs.toString());
 	}
 
+	@Test
+	void shouldStartTheRunnerJarAsAnAgentToRecordClassUsage() throws IOException {
+		RuntimeEnvironment environment = new RuntimeEnvironment(currentJavaHome(), fakeWorkingDirectory(),
+				systemClasspath(), createRunnerJar().getAbsolutePath(), fakeBuildPaths(), systemClasspath());
+		ClasspathArgumentBuilder classpathArgumentBuilder = mock(ClasspathArgumentBuilder.class);
+
+		assertThat(environment.createProcessArguments(classpathArgumentBuilder)).noneMatch(each -> each.startsWith("-javaagent:"));
+
+		InfinitestGlobalSettings.setClassUsageRecording(true);
+		try {
+			assertThat(environment.createProcessArguments(classpathArgumentBuilder)).contains("-javaagent:" + environment.findInfinitestRunnerJar());
+		} finally {
+			InfinitestGlobalSettings.resetToDefaults();
+		}
+	}
+
+	@Test
+	void shouldPutTheJarsFirstWhenSharingClassData(@TempDir File archiveDirectory) throws IOException {
+		File classDirectory = new File(javaHome, "classes");
+		classDirectory.mkdirs();
+		RuntimeEnvironment environment = new RuntimeEnvironment(currentJavaHome(), fakeWorkingDirectory(),
+				systemClasspath(), createRunnerJar().getAbsolutePath(), fakeBuildPaths(), classpath(classDirectory.getAbsolutePath(), "a.jar"));
+
+		InfinitestGlobalSettings.setClassDataArchiveDirectory(archiveDirectory);
+		try {
+			String content = Files.toString(environment.createClasspathArgumentFile(), StandardCharsets.UTF_8).trim();
+
+			assertThat(content).isEqualTo(environment.escapeClassPathFileContent(classpath("a.jar", environment.findInfinitestRunnerJar(), classDirectory.getAbsolutePath())));
+		} finally {
+			InfinitestGlobalSettings.resetToDefaults();
+		}
+	}
+
+	@Test
+	void shouldLeaveTheClassDirectoriesToPersistentRunnerProcesses() throws IOException {
+		File classDirectory = new File(javaHome, "classes");
+		classDirectory.mkdirs();
+		RuntimeEnvironment environment = new RuntimeEnvironment(currentJavaHome(), fakeWorkingDirectory(),
+				systemClasspath(), systemClasspath(), fakeBuildPaths(), classpath(classDirectory.getAbsolutePath(), "a.jar"));
+
+		InfinitestGlobalSettings.setPersistentRunnerProcesses(true);
+		try {
+			String content = Files.toString(environment.createClasspathArgumentFile(), StandardCharsets.UTF_8).trim();
+
+			assertThat(content).isEqualTo(environment.escapeClassPathFileContent(classpath("a.jar", environment.findInfinitestRunnerJar())));
+			assertThat(environment.createProcessArguments(mock(ClasspathArgumentBuilder.class))).contains("-D" + TestRunnerProcess.CLASS_DIRECTORIES_PROPERTY + "=" + classDirectory.getAbsolutePath());
+		} finally {
+			InfinitestGlobalSettings.resetToDefaults();
+		}
+	}
+
+	@Test
+	void shouldRecordTheLoadedClassesBeforeSharingTheirArchive(@TempDir File archiveDirectory) throws IOException {
+		RuntimeEnvironment environment = new RuntimeEnvironment(currentJavaHome(), fakeWorkingDirectory(),
+				systemClasspath(), createRunnerJar().getAbsolutePath(), fakeBuildPaths(), classpath("a.jar"));
+		ClasspathArgumentBuilder classpathArgumentBuilder = mock(ClasspathArgumentBuilder.class);
+
+		InfinitestGlobalSettings.setClassDataArchiveDirectory(archiveDirectory);
+		try {
+			ClassDataArchive archive = environment.getClassDataArchive();
+			assertThat(environment.createProcessArguments(classpathArgumentBuilder)).contains("-XX:DumpLoadedClassList=" + archive.getClassListFile().getAbsolutePath());
+
+			touch(archive.getClassListFile());
+			touch(archive.getArchiveFile());
+			assertThat(environment.createProcessArguments(classpathArgumentBuilder))
+					.contains("-XX:SharedArchiveFile=" + archive.getArchiveFile().getAbsolutePath())
+					.noneMatch(each -> each.startsWith("-XX:DumpLoadedClassList="));
+		} finally {
+			InfinitestGlobalSettings.resetToDefaults();
+		}
+	}
+
+	@Test
+	void shouldOnlyArchiveTheRecordedClassesOnceTheRecordingProcessExited(@TempDir File archiveDirectory) throws Exception {
+		RuntimeEnvironment environment = new RuntimeEnvironment(currentJavaHome(), fakeWorkingDirectory(),
+				systemClasspath(), createRunnerJar().getAbsolutePath(), fakeBuildPaths(), classpath("a.jar"));
+		CountDownLatch processExited = new CountDownLatch(1);
+		Process process = mock(Process.class);
+		when(process.waitFor()).then(invocation -> {
+			processExited.await();
+			return 0;
+		});
+
+		InfinitestGlobalSettings.setClassDataArchiveDirectory(archiveDirectory);
+		try {
+			ClassDataArchive archive = environment.getClassDataArchive();
+			List<String> arguments = environment.createProcessArguments(mock(ClasspathArgumentBuilder.class));
+			environment.runnerProcessStarted(arguments, process);
+			touch(archive.getClassListFile());
+
+			assertThat(archive.processArguments()).isEmpty();
+			assertTrue(archive.isRecording());
+
+			processExited.countDown();
+			long deadline = System.currentTimeMillis() + 5000;
+			while (archive.isRecording() && (System.currentTimeMillis() < deadline)) {
+				Thread.sleep(10);
+			}
+			assertFalse(archive.isRecording());
+		} finally {
+			InfinitestGlobalSettings.resetToDefaults();
+		}
+	}
+
+	@Test
+	void shouldRecordTheClassesAgainWhenTheRecordingProcessDidNotStart(@TempDir File archiveDirectory) throws IOException {
+		RuntimeEnvironment environment = new RuntimeEnvironment(currentJavaHome(), fakeWorkingDirectory(),
+				systemClasspath(), createRunnerJar().getAbsolutePath(), fakeBuildPaths(), classpath("a.jar"));
+
+		InfinitestGlobalSettings.setClassDataArchiveDirectory(archiveDirectory);
+		try {
+			ClassDataArchive archive = environment.getClassDataArchive();
+			environment.runnerProcessNotStarted(environment.createProcessArguments(mock(ClasspathArgumentBuilder.class)));
+
+			assertThat(archive.processArguments()).containsExactly("-XX:DumpLoadedClassList=" + archive.getClassListFile().getAbsolutePath());
+		} finally {
+			InfinitestGlobalSettings.resetToDefaults();
+		}
+	}
+
+	@Test
+	void shouldReplaceTheArchiveWhenAJarChanges(@TempDir File archiveDirectory) throws IOException {
+		File jar = new File(javaHome, "a.jar");
+		Files.write("a".getBytes(StandardCharsets.UTF_8), jar);
+		RuntimeEnvironment environment = new RuntimeEnvironment(currentJavaHome(), fakeWorkingDirectory(),
+				systemClasspath(), createRunnerJar().getAbsolutePath(), fakeBuildPaths(), classpath(jar.getAbsolutePath()));
+
+		InfinitestGlobalSettings.setClassDataArchiveDirectory(archiveDirectory);
+		try {
+			ClassDataArchive archive = environment.getClassDataArchive();
+			touch(archive.getClassListFile());
+			touch(archive.getArchiveFile());
+
+			Files.write("changed".getBytes(StandardCharsets.UTF_8), jar);
+			environment.createProcessArguments(mock(ClasspathArgumentBuilder.class));
+
+			assertThat(environment.getClassDataArchive().getArchiveFile()).isNotEqualTo(archive.getArchiveFile());
+			assertThat(archive.getClassListFile()).doesNotExist();
+			assertThat(archive.getArchiveFile()).doesNotExist();
+		} finally {
+			InfinitestGlobalSettings.resetToDefaults();
+		}
+	}
+
+	@Test
+	void shouldArchiveTheRecordedClassesOfTheJars(@TempDir File archiveDirectory) throws IOException {
+		RuntimeEnvironment environment = new RuntimeEnvironment(currentJavaHome(), fakeWorkingDirectory(),
+				systemClasspath(), createRunnerJar().getAbsolutePath(), fakeBuildPaths(), classpath(fakeClassDirectory().getAbsolutePath()));
+
+		InfinitestGlobalSettings.setClassDataArchiveDirectory(archiveDirectory);
+		try {
+			ClassDataArchive archive = environment.getClassDataArchive();
+			Files.write(ClassListLoader.class.getName().replace('.', '/') + "\n", archive.getClassListFile(), StandardCharsets.UTF_8);
+
+			assertTrue(archive.create());
+			assertThat(archive.getArchiveFile()).isFile();
+		} finally {
+			InfinitestGlobalSettings.resetToDefaults();
+		}
+	}
+
+	/**
+	 * A runner jar holding the classes the runner processes start with
+	 */
+	private File createRunnerJar() throws IOException {
+		File runnerJar = new File(javaHome, "infinitest-runner.jar");
+		try (JarOutputStream out = new JarOutputStream(new FileOutputStream(runnerJar))) {
+			for (Class<?> each : asList(TestRunnerProcess.class, ClassListLoader.class)) {
+				String entryName = each.getName().replace('.', '/') + ".class";
+				out.putNextEntry(new JarEntry(entryName));
+				out.write(ByteStreams.toByteArray(each.getClassLoader().getResourceAsStream(entryName)));
+				out.closeEntry();
+			}
+		}
+		return runnerJar;
+	}
+
 	@Test
 	void shouldCreateClasspathFile() {
 		File classpathFile = fakeEnvironment().createClasspathFile();
@@ -225,6 +430,10 @@ class RuntimeEnvironmentTest {
 		return env;
 	}
 
+	private static String classpath(String... entries) {
+		return String.join(File.pathSeparator, entries);
+	}
+
 	private RuntimeEnvironment createEqualInstance() {
 		return createEnv("outputDir", "workingDir", "classpath", "javahome");
 	}
@@ -28,6 +28,8 @@
 package org.infinitest.parser;
 
 import static java.util.Arrays.asList;
+import static java.util.Collections.singleton;
+import static java.util.stream.Collectors.toSet;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.infinitest.environment.FakeEnvironments.fakeClasspath;
 import static org.infinitest.util.InfinitestTestUtils.getFileForClass;
@@ -38,13 +40,18 @@ import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.io.File;
+import java.io.IOException;
 import java.util.Collections;
+import java.util.List;
 import java.util.Set;
 
+import org.infinitest.util.InfinitestGlobalSettings;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import com.fakeco.fakeproduct.FakeProduct;
+import com.fakeco.fakeproduct.TestFakeProduct;
 
 class ClassFileIndexTest {
 	private ClassFileIndex index;
@@ -56,6 +63,11 @@ class ClassFileIndexTest {
 		index = new ClassFileIndex(builder);
 	}
 
+	@AfterEach
+	void cleanup() {
+		InfinitestGlobalSettings.resetToDefaults();
+	}
+
 	@Test
 	void shouldClearClassBuilderAfterLookingForJavaFilesToReduceMemoryFootprint() {
 		when(builder.getClass("")).thenReturn(new FakeJavaClass(""));
@@ -71,9 +83,60 @@ class ClassFileIndexTest {
 		assertEquals(Collections.emptySet(), index.findClasses(Collections.singleton(new File("notAClassFile"))));
 	}
 	
+	@Test
+	void shouldIndexTheSameClassesWhenParsingInParallel() throws IOException {
+		List<File> files = WhenScanningClassFiles.classFiles();
+		ClassFileIndex sequentialIndex = new ClassFileIndex(fakeClasspath());
+		ClassFileIndex parallelIndex = new ClassFileIndex(fakeClasspath());
+
+		InfinitestGlobalSettings.setParserParallelism(1);
+		Set<JavaClass> sequentialClasses = sequentialIndex.findClasses(files);
+		InfinitestGlobalSettings.setParserParallelism(4);
+		Set<JavaClass> parallelClasses = parallelIndex.findClasses(files);
+
+		assertThat(parallelClasses).isEqualTo(sequentialClasses);
+		assertThat(parallelIndex.getIndexedClasses()).isEqualTo(sequentialIndex.getIndexedClasses());
+		JavaClass fakeProduct = sequentialIndex.findJavaClass(FakeProduct.class.getName());
+		assertThat(parallelIndex.findChangedParents(singleton(fakeProduct))).isEqualTo(sequentialIndex.findChangedParents(singleton(fakeProduct)));
+	}
+
+	@Test
+	void shouldFindTheSameTestsAsAmongChangedParents() throws IOException {
+		ClassFileIndex index = new ClassFileIndex(fakeClasspath());
+		index.findClasses(WhenScanningClassFiles.classFiles());
+
+		for (String each : index.getIndexedClasses()) {
+			Set<JavaClass> changedClass = singleton(index.findJavaClass(each));
+			Set<JavaClass> testsAmongParents = index.findChangedParents(changedClass).stream().filter(JavaClass::isATest).collect(toSet());
+
+			assertThat(index.findChangedTests(changedClass)).as(each).isEqualTo(testsAmongParents);
+		}
+	}
+
+	@Test
+	void shouldRunTheDependentsOfRemovedClassesAndLinkThemAgainWhenTheClassesComeBack() throws IOException {
+		ClassFileIndex index = new ClassFileIndex(fakeClasspath());
+		index.findClasses(WhenScanningClassFiles.classFiles());
+		JavaClass test = index.findJavaClass(TestFakeProduct.class.getName());
+		File removedFile = getFileForClass(FakeProduct.class);
+
+		Set<JavaClass> removedClasses = index.removeClasses(singleton(removedFile));
+
+		assertThat(removedClasses).extracting(JavaClass::getName).containsOnly(FakeProduct.class.getName());
+		assertThat(index.getIndexedClasses()).doesNotContain(FakeProduct.class.getName()).contains(TestFakeProduct.class.getName());
+		assertThat(index.findChangedTests(index.findClasses(Collections.<File> emptySet()))).contains(test);
+		assertThat(index.findClasses(Collections.<File> emptySet())).isEmpty();
+
+		Set<JavaClass> addedClasses = index.findClasses(singleton(removedFile));
+
+		assertThat(addedClasses).extracting(JavaClass::getName).containsOnly(FakeProduct.class.getName());
+		assertThat(index.findChangedTests(addedClasses)).contains(test);
+	}
+
 	@Test
 	void removeFiles() {
 		JavaClass javaClass = mock(JavaClass.class);
+		when(javaClass.getName()).thenReturn("RemovedClass");
 		when(builder.getClass(any(File.class))).thenReturn(javaClass);
 		
 		Set<JavaClass> removedClasses = index.removeClasses(Collections.singleton(new File("")));
@@ -0,0 +1,89 @@
+/*
+ * Infinitest, a Continuous Test Runner.
+ *
+ * Copyright (C) 2010-2013
+ * "Ben Rady" <benrady@gmail.com>,
+ * "Rod Coffin" <rfciii@gmail.com>,
+ * "Ryan Breidenbach" <ryan.breidenbach@gmail.com>
+ * "David Gageot" <david@gageot.net>, et al.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.infinitest.parser;
+
+import static org.infinitest.environment.FakeEnvironments.fakeClasspath;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Compares how many classes per second {@link JavaAssistClassParser} and
+ * {@link StreamingClassParser} can read and classify. Run {@link #main} for
+ * figures, timings are too noisy to be checked by the build.
+ */
+class ClassParserThroughputBenchmark {
+	private static final int WARMUP_ROUNDS = 3;
+	private static final int ROUNDS = 10;
+	private List<File> files;
+
+	private void inContext() throws IOException {
+		files = WhenScanningClassFiles.classFiles();
+	}
+
+	public static void main(String[] args) throws IOException {
+		ClassParserThroughputBenchmark benchmark = new ClassParserThroughputBenchmark();
+		benchmark.inContext();
+		System.out.println("File Count: " + benchmark.files.size());
+
+		System.out.println("Javassist: " + benchmark.measure(JavaAssistClassParser::new) + " classes/s");
+		System.out.println("Streaming: " + benchmark.measure(StreamingClassParser::new) + " classes/s");
+	}
+
+	private long measure(ParserFactory factory) throws IOException {
+		// Reusing the parser keeps the cost of opening the classpath out of
+		// the figures
+		ClassParser parser = factory.create(fakeClasspath().getRunnerFullClassPath());
+		for (int round = 0; round < WARMUP_ROUNDS; round++) {
+			parseAll(parser);
+		}
+
+		long start = System.nanoTime();
+		for (int round = 0; round < ROUNDS; round++) {
+			parseAll(parser);
+		}
+		long elapsed = System.nanoTime() - start;
+		return (files.size() * ROUNDS * 1000000000L) / Math.max(elapsed, 1);
+	}
+
+	/**
+	 * Calls the parsing methods directly since the cache of parsed classes is
+	 * shared by all parsers.
+	 */
+	private void parseAll(ClassParser parser) throws IOException {
+		for (File file : files) {
+			String classname = parser.readClassFile(file);
+			parser.parseClass(classname).getImports();
+		}
+	}
+
+	private interface ParserFactory {
+		ClassParser create(String classpath);
+	}
+}
@@ -0,0 +1,136 @@
+/*
+ * Infinitest, a Continuous Test Runner.
+ *
+ * Copyright (C) 2010-2013
+ * "Ben Rady" <benrady@gmail.com>,
+ * "Rod Coffin" <rfciii@gmail.com>,
+ * "Ryan Breidenbach" <ryan.breidenbach@gmail.com>
+ * "David Gageot" <david@gageot.net>, et al.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.infinitest.parser;
+
+import static org.infinitest.environment.FakeEnvironments.fakeClasspath;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+import org.jgrapht.DirectedGraph;
+import org.jgrapht.graph.DefaultDirectedGraph;
+import org.jgrapht.graph.DefaultEdge;
+
+/**
+ * Compares the heap used by the {@link DependencyGraph} of the fake classes
+ * with the JGraphT graph it replaced. Run {@link #main} for figures, heap
+ * measurements are too noisy to be checked by the build.
+ */
+class DependencyGraphMemoryReport {
+	private static final int COPIES = 50;
+	private List<JavaClass> classes;
+
+	private void inContext() throws IOException {
+		ClassFileIndex index = new ClassFileIndex(fakeClasspath());
+		index.findClasses(WhenScanningClassFiles.classFiles());
+		classes = new ArrayList<>();
+		for (String each : index.getIndexedClasses()) {
+			classes.add(index.findJavaClass(each));
+		}
+	}
+
+	public static void main(String[] args) throws IOException {
+		DependencyGraphMemoryReport report = new DependencyGraphMemoryReport();
+		report.inContext();
+		DependencyGraph graph = report.buildDependencyGraph();
+		System.out.println(graph.getVertexCount() + " classes, " + graph.getEdgeCount() + " edges");
+
+		long jgrapht = report.measure(report::buildJGraphTGraph);
+		long dependencyGraph = report.measure(report::buildDependencyGraph);
+		System.out.println("JGraphT: " + jgrapht + " bytes, " + (jgrapht / graph.getVertexCount()) + " per class, " + (jgrapht / graph.getEdgeCount()) + " per edge");
+		System.out.println("DependencyGraph: " + dependencyGraph + " bytes, " + (dependencyGraph / graph.getVertexCount()) + " per class, " + (dependencyGraph / graph.getEdgeCount()) + " per edge");
+		System.out.println("Estimated: " + graph.describeMemoryUsage());
+	}
+
+	/**
+	 * @return The average heap used by one graph, in bytes
+	 */
+	private long measure(Supplier<Object> graphFactory) {
+		List<Object> graphs = new ArrayList<>();
+		long before = usedMemory();
+		for (int i = 0; i < COPIES; i++) {
+			graphs.add(graphFactory.get());
+		}
+		long after = usedMemory();
+		// Reading the list keeps the graphs reachable until they are measured
+		return (after - before) / graphs.size();
+	}
+
+	private DependencyGraph buildDependencyGraph() {
+		DependencyGraph graph = new DependencyGraph();
+		for (JavaClass each : classes) {
+			graph.addVertex(each);
+		}
+		for (JavaClass parent : classes) {
+			List<Integer> children = new ArrayList<>();
+			for (String each : parent.getImports()) {
+				int id = graph.findId(each);
+				if ((id != -1) && !each.equals(parent.getName())) {
+					children.add(id);
+				}
+			}
+			graph.setDependencies(graph.findId(parent.getName()), children.stream().mapToInt(Integer::intValue).toArray());
+		}
+		return graph;
+	}
+
+	private DirectedGraph<JavaClass, DefaultEdge> buildJGraphTGraph() {
+		DirectedGraph<JavaClass, DefaultEdge> graph = new DefaultDirectedGraph<>(DefaultEdge.class);
+		for (JavaClass each : classes) {
+			graph.addVertex(each);
+		}
+		for (JavaClass parent : classes) {
+			for (String each : parent.getImports()) {
+				JavaClass child = new FakeJavaClass(each);
+				if (graph.containsVertex(child) && !child.equals(parent)) {
+					graph.addEdge(parent, findVertex(each));
+				}
+			}
+		}
+		return graph;
+	}
+
+	private JavaClass findVertex(String name) {
+		for (JavaClass each : classes) {
+			if (each.getName().equals(name)) {
+				return each;
+			}
+		}
+		return null;
+	}
+
+	private static long usedMemory() {
+		Runtime runtime = Runtime.getRuntime();
+		for (int i = 0; i < 3; i++) {
+			System.gc();
+		}
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+}
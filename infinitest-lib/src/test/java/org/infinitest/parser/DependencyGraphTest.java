@@ -0,0 +1,237 @@
+/*
+ * Infinitest, a Continuous Test Runner.
+ *
+ * Copyright (C) 2010-2013
+ * "Ben Rady" <benrady@gmail.com>,
+ * "Rod Coffin" <rfciii@gmail.com>,
+ * "Ryan Breidenbach" <ryan.breidenbach@gmail.com>
+ * "David Gageot" <david@gageot.net>, et al.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.infinitest.parser;
+
+import static java.util.Arrays.asList;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class DependencyGraphTest {
+	private DependencyGraph graph;
+	private JavaClass a;
+	private JavaClass b;
+	private JavaClass c;
+
+	@BeforeEach
+	void inContext() {
+		graph = new DependencyGraph();
+		a = aClass("A");
+		b = aClass("B");
+		c = aClass("C");
+		graph.addVertex(a);
+		graph.addVertex(b);
+		graph.addVertex(c);
+	}
+
+	@Test
+	void shouldAssignDenseIdsToClassNames() {
+		assertThat(graph.findId("A")).isEqualTo(0);
+		assertThat(graph.findId("C")).isEqualTo(2);
+		assertThat(graph.findId("D")).isEqualTo(-1);
+		assertThat(graph.idOf("D")).isEqualTo(3);
+		assertThat(graph.findClass("D")).isNull();
+	}
+
+	@Test
+	void shouldFindParentsAndChildren() {
+		graph.setDependencies(graph.findId("A"), new int[] { graph.findId("B"), graph.findId("C") });
+		graph.setDependencies(graph.findId("B"), new int[] { graph.findId("C") });
+
+		assertThat(graph.getParents(c)).containsExactlyInAnyOrder(a, b);
+		assertThat(graph.getChildren(a)).containsExactlyInAnyOrder(b, c);
+		assertThat(graph.getEdgeCount()).isEqualTo(3);
+	}
+
+	@Test
+	void shouldOnlyUpdateTheEdgesWhichChanged() {
+		graph.setDependencies(graph.findId("A"), new int[] { graph.findId("B") });
+
+		graph.setDependencies(graph.findId("A"), new int[] { graph.findId("C"), graph.findId("C") });
+
+		assertThat(graph.getChildren(a)).containsExactly(c);
+		assertThat(graph.getParents(b)).isEmpty();
+		assertThat(graph.getParents(c)).containsExactly(a);
+		assertThat(graph.getEdgeCount()).isEqualTo(1);
+	}
+
+	@Test
+	void shouldKeepEdgesWhenReplacingAClass() {
+		graph.setDependencies(graph.findId("A"), new int[] { graph.findId("B") });
+
+		JavaClass newB = aClass("B");
+		graph.addVertex(newB);
+
+		assertThat(graph.getParents(newB)).containsExactly(a);
+		assertThat(graph.getChildren(a).get(0)).isSameAs(newB);
+	}
+
+	@Test
+	void shouldRemoveAllEdgesOfARemovedVertex() {
+		graph.setDependencies(graph.findId("A"), new int[] { graph.findId("B") });
+		graph.setDependencies(graph.findId("B"), new int[] { graph.findId("C") });
+
+		graph.removeVertex(b);
+
+		assertThat(graph.containsVertex(b)).isFalse();
+		assertThat(graph.getChildren(a)).isEmpty();
+		assertThat(graph.getParents(c)).isEmpty();
+		assertThat(graph.getEdgeCount()).isZero();
+		assertThat(graph.findClass("B")).isNull();
+		assertThat(graph.getClassNames()).containsOnly("A", "C");
+	}
+
+	@Test
+	void shouldMatchAReferenceGraphAfterManyUpdates() {
+		int size = 500;
+		boolean[][] reference = new boolean[size][size];
+		for (int i = 0; i < size; i++) {
+			graph.addVertex(aClass("Class" + i));
+		}
+
+		Random random = new Random(42);
+		for (int update = 0; update < 2000; update++) {
+			int parent = random.nextInt(size);
+			int[] children = new int[random.nextInt(8)];
+			reference[parent] = new boolean[size];
+			for (int i = 0; i < children.length; i++) {
+				int child = random.nextInt(size);
+				children[i] = graph.findId("Class" + child);
+				reference[parent][child] = true;
+			}
+			graph.setDependencies(graph.findId("Class" + parent), children);
+		}
+
+		long edges = 0;
+		for (int parent = 0; parent < size; parent++) {
+			for (int child = 0; child < size; child++) {
+				JavaClass parentClass = graph.findClass("Class" + parent);
+				JavaClass childClass = graph.findClass("Class" + child);
+				assertThat(graph.containsEdge(parentClass, childClass)).isEqualTo(reference[parent][child]);
+				assertThat(graph.getParents(childClass).contains(parentClass)).isEqualTo(reference[parent][child]);
+				edges += reference[parent][child] ? 1 : 0;
+			}
+		}
+		assertThat(graph.getEdgeCount()).isEqualTo(edges);
+	}
+
+	@Test
+	void shouldFindTestsDependingOnAClass() {
+		JavaClass test = aTest("ATest");
+		graph.addVertex(test);
+		graph.setDependencies(graph.findId("ATest"), new int[] { graph.findId("A") });
+		graph.setDependencies(graph.findId("A"), new int[] { graph.findId("B") });
+
+		assertThat(graph.findTests(asList(b))).containsExactly(test);
+		assertThat(graph.findTests(asList(c))).isEmpty();
+		assertThat(graph.findTests(asList(test))).containsExactly(test);
+	}
+
+	@Test
+	void shouldFindTestsThroughCycles() {
+		JavaClass test = aTest("ATest");
+		graph.addVertex(test);
+		graph.setDependencies(graph.findId("ATest"), new int[] { graph.findId("A") });
+		graph.setDependencies(graph.findId("A"), new int[] { graph.findId("B") });
+		graph.setDependencies(graph.findId("B"), new int[] { graph.findId("A"), graph.findId("C") });
+
+		assertThat(graph.findTests(asList(c))).containsExactly(test);
+		assertThat(graph.findTests(asList(b))).containsExactly(test);
+	}
+
+	@Test
+	void shouldForgetTestsWhenDependenciesChange() {
+		JavaClass test = aTest("ATest");
+		graph.addVertex(test);
+		graph.setDependencies(graph.findId("ATest"), new int[] { graph.findId("A") });
+		assertThat(graph.findTests(asList(b))).isEmpty();
+
+		graph.setDependencies(graph.findId("A"), new int[] { graph.findId("B") });
+		assertThat(graph.findTests(asList(b))).containsExactly(test);
+
+		graph.setDependencies(graph.findId("A"), new int[0]);
+		assertThat(graph.findTests(asList(b))).isEmpty();
+	}
+
+	@Test
+	void shouldForgetTestsWhenAClassBecomesATest() {
+		graph.setDependencies(graph.findId("A"), new int[] { graph.findId("B") });
+		assertThat(graph.findTests(asList(b))).isEmpty();
+
+		JavaClass testA = aTest("A");
+		graph.addVertex(testA);
+
+		assertThat(graph.findTests(asList(b))).containsExactly(testA);
+	}
+
+	@Test
+	void shouldForgetTestsOfRemovedClasses() {
+		JavaClass test = aTest("ATest");
+		graph.addVertex(test);
+		graph.setDependencies(graph.findId("ATest"), new int[] { graph.findId("A") });
+		assertThat(graph.findTests(asList(a))).containsExactly(test);
+
+		graph.removeVertex(test);
+
+		assertThat(graph.findTests(asList(a))).isEmpty();
+	}
+
+	@Test
+	void shouldHandleDeepDependencyChainsWithoutRecursion() {
+		int depth = 100000;
+		JavaClass previous = aTest("Class0");
+		graph.addVertex(previous);
+		for (int i = 1; i < depth; i++) {
+			JavaClass next = aClass("Class" + i);
+			graph.addVertex(next);
+			graph.setDependencies(graph.findId(previous.getName()), new int[] { graph.findId(next.getName()) });
+			previous = next;
+		}
+
+		assertThat(graph.findParents(asList(previous))).hasSize(depth);
+		assertThat(graph.findTests(asList(previous))).extracting(JavaClass::getName).containsExactly("Class0");
+	}
+
+	@Test
+	void shouldDescribeItsMemoryUsage() {
+		graph.setDependencies(graph.findId("A"), new int[] { graph.findId("B") });
+
+		assertThat(graph.describeMemoryUsage()).startsWith("3 classes, 1 edges, ");
+	}
+
+	private static JavaClass aClass(String name) {
+		return new SimpleJavaClass(name, new String[0], false, null);
+	}
+
+	private static JavaClass aTest(String name) {
+		return new SimpleJavaClass(name, new String[0], true, null);
+	}
+}
@@ -0,0 +1,173 @@
+/*
+ * Infinitest, a Continuous Test Runner.
+ *
+ * Copyright (C) 2010-2013
+ * "Ben Rady" <benrady@gmail.com>,
+ * "Rod Coffin" <rfciii@gmail.com>,
+ * "Ryan Breidenbach" <ryan.breidenbach@gmail.com>
+ * "David Gageot" <david@gageot.net>, et al.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.infinitest.parser;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.emptyList;
+import static java.util.Collections.singletonList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.infinitest.environment.FakeEnvironments.fakeClasspath;
+import static org.infinitest.util.InfinitestTestUtils.getFileForClass;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import org.infinitest.filter.TestFilter;
+import org.infinitest.parser.ClassParser.CacheEntry;
+import org.infinitest.util.InfinitestGlobalSettings;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.fakeco.fakeproduct.FakeDependency;
+import com.fakeco.fakeproduct.FakeProduct;
+import com.fakeco.fakeproduct.TestFakeProduct;
+
+class IndexSnapshotTest {
+	@TempDir
+	File temporaryFolder;
+
+	private IndexSnapshot snapshot;
+
+	@BeforeEach
+	void inContext() {
+		snapshot = new IndexSnapshot(new File(temporaryFolder, "index.bin"));
+	}
+
+	@Test
+	void shouldNotFailWhenThereIsNoSnapshotYet() throws IOException {
+		assertThat(snapshot.read()).isNull();
+	}
+
+	@Test
+	void shouldSaveIndexedClasses() throws IOException {
+		ClassFileIndex index = new ClassFileIndex(fakeClasspath());
+		index.findClasses(asList(getFileForClass(FakeProduct.class), getFileForClass(TestFakeProduct.class)));
+
+		index.saveSnapshot(snapshot);
+
+		IndexSnapshot.Content content = snapshot.read();
+		assertThat(content.entries).extracting(entry -> entry.javaClass.getName()).contains(FakeProduct.class.getName(), TestFakeProduct.class.getName());
+		IndexSnapshot.Entry testEntry = findEntry(content, TestFakeProduct.class.getName());
+		assertThat(testEntry.javaClass.isATest()).isTrue();
+		assertThat(testEntry.javaClass.getImports()).contains(FakeProduct.class.getName());
+		assertThat(testEntry.file).isEqualTo(getFileForClass(TestFakeProduct.class).getAbsoluteFile());
+		assertThat(testEntry.cacheEntry.size).isEqualTo(testEntry.file.length());
+		assertThat(content.externalClasses).contains(Object.class.getName());
+	}
+
+	@Test
+	void shouldOnlySaveWhenIndexChanged() {
+		ClassFileIndex index = new ClassFileIndex(fakeClasspath());
+
+		index.saveSnapshot(snapshot);
+
+		assertThat(snapshot.getFile()).doesNotExist();
+	}
+
+	@Test
+	void shouldSaveTheSnapshotAfterTheTestsToRunWereFound() {
+		File directory = new File(temporaryFolder, "snapshots");
+		InfinitestGlobalSettings.setIndexSnapshotDirectory(directory);
+		try {
+			ClassFileTestDetector detector = new ClassFileTestDetector(mock(TestFilter.class));
+			detector.setClasspathProvider(fakeClasspath());
+			File snapshotFile = IndexSnapshot.forClasspath(directory, fakeClasspath()).getFile();
+
+			detector.findTestsToRun(asList(getFileForClass(TestFakeProduct.class)));
+			assertThat(snapshotFile).doesNotExist();
+
+			detector.saveScheduledSnapshot();
+			assertThat(snapshotFile).exists();
+		} finally {
+			InfinitestGlobalSettings.resetToDefaults();
+		}
+	}
+
+	@Test
+	void shouldRestoreClassesInParserCache() throws IOException {
+		File classFile = getFileForClass(FakeProduct.class).getAbsoluteFile();
+		JavaClass javaClass = new SimpleJavaClass(FakeProduct.class.getName(), new String[] { FakeDependency.class.getName() }, false, classFile);
+		CacheEntry cacheEntry = new CacheEntry(42L, FakeProduct.class.getName(), classFile.length(), classFile.lastModified());
+		snapshot.write(singletonList(new IndexSnapshot.Entry(classFile, cacheEntry, javaClass)), singletonList(String.class.getName()));
+
+		JavaClassBuilder builder = mock(JavaClassBuilder.class);
+		new ClassFileIndex(builder).restoreSnapshot(snapshot);
+
+		verify(builder).restore(eq(classFile), any(CacheEntry.class), eq(javaClass));
+		verify(builder).restoreExternalClass(String.class.getName());
+	}
+
+	@Test
+	void shouldIgnoreClassFilesWhoseSizeChanged() throws IOException {
+		File classFile = getFileForClass(FakeProduct.class).getAbsoluteFile();
+		JavaClass javaClass = new SimpleJavaClass(FakeProduct.class.getName(), new String[0], false, classFile);
+		CacheEntry cacheEntry = new CacheEntry(42L, FakeProduct.class.getName(), classFile.length() + 1, classFile.lastModified());
+		snapshot.write(singletonList(new IndexSnapshot.Entry(classFile, cacheEntry, javaClass)), emptyList());
+
+		JavaClassBuilder builder = mock(JavaClassBuilder.class);
+		new ClassFileIndex(builder).restoreSnapshot(snapshot);
+
+		verify(builder, never()).restore(any(File.class), any(CacheEntry.class), any(JavaClass.class));
+	}
+
+	@Test
+	void shouldIgnoreUnreadableSnapshots() throws IOException {
+		Files.write(snapshot.getFile().toPath(), new byte[] { 1, 2, 3, 4, 5, 6, 7, 8 });
+
+		JavaClassBuilder builder = mock(JavaClassBuilder.class);
+		new ClassFileIndex(builder).restoreSnapshot(snapshot);
+
+		verify(builder, never()).restore(any(File.class), any(CacheEntry.class), any(JavaClass.class));
+	}
+
+	@Test
+	void shouldUseOneSnapshotPerClasspath() {
+		File directory = new File(temporaryFolder, "snapshots");
+
+		File snapshotFile = IndexSnapshot.forClasspath(directory, fakeClasspath()).getFile();
+
+		assertThat(snapshotFile.getParentFile()).isEqualTo(directory);
+		assertThat(IndexSnapshot.forClasspath(directory, fakeClasspath()).getFile()).isEqualTo(snapshotFile);
+	}
+
+	private IndexSnapshot.Entry findEntry(IndexSnapshot.Content content, String className) {
+		for (IndexSnapshot.Entry each : content.entries) {
+			if (each.javaClass.getName().equals(className)) {
+				return each;
+			}
+		}
+		throw new AssertionError(className + " not found");
+	}
+}
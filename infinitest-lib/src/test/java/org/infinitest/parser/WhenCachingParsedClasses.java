@@ -0,0 +1,133 @@
+/*
+ * Infinitest, a Continuous Test Runner.
+ *
+ * Copyright (C) 2010-2013
+ * "Ben Rady" <benrady@gmail.com>,
+ * "Rod Coffin" <rfciii@gmail.com>,
+ * "Ryan Breidenbach" <ryan.breidenbach@gmail.com>
+ * "David Gageot" <david@gageot.net>, et al.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.infinitest.parser;
+
+import static java.io.File.pathSeparator;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.infinitest.environment.FakeEnvironments.fakeClasspath;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.Set;
+
+import org.infinitest.util.InfinitestGlobalSettings;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import com.fakeco.fakeproduct.FakeProduct;
+import com.google.common.cache.CacheStats;
+
+class WhenCachingParsedClasses {
+	@AfterEach
+	void cleanup() {
+		InfinitestGlobalSettings.resetToDefaults();
+	}
+
+	@Test
+	void shouldShareTheCacheBetweenParsersOfTheSameClasspath() {
+		String classpath = uniqueClasspath("shared");
+		JavaAssistClassParser parser = new JavaAssistClassParser(classpath);
+		StreamingClassParser otherParser = new StreamingClassParser(classpath);
+
+		JavaClass javaClass = parser.getClass(FakeProduct.class.getName());
+
+		assertThat(otherParser.getClass(FakeProduct.class.getName())).isSameAs(javaClass);
+		assertThat(otherParser.getCacheStats().hitCount()).isEqualTo(1);
+	}
+
+	@Test
+	void shouldNotShareTheCacheBetweenClasspaths() {
+		JavaClass javaClass = new JavaAssistClassParser(uniqueClasspath("first")).getClass(FakeProduct.class.getName());
+
+		JavaAssistClassParser otherParser = new JavaAssistClassParser(uniqueClasspath("second"));
+
+		assertThat(otherParser.getClass(FakeProduct.class.getName())).isNotSameAs(javaClass);
+		assertThat(otherParser.getCacheStats().missCount()).isEqualTo(1);
+	}
+
+	@Test
+	void shouldEvictClassesBeyondTheMemoryBudget() throws IOException {
+		InfinitestGlobalSettings.setParserCacheBudget(10 * 1024);
+		StreamingClassParser parser = new StreamingClassParser(uniqueClasspath("small"));
+
+		for (File each : WhenScanningClassFiles.classFiles()) {
+			parser.classFileChanged(each);
+		}
+		for (File each : WhenScanningClassFiles.classFiles()) {
+			parser.getClass(parser.getClassName(each));
+		}
+
+		CacheStats stats = parser.getCacheStats();
+		assertThat(stats.evictionCount()).isPositive();
+		assertThat(stats.missCount()).isPositive();
+	}
+
+	@Test
+	void shouldNotKeepTheScannedClassesOnceTheChangesAreParsed() throws IOException {
+		StreamingClassParser parser = new StreamingClassParser(uniqueClasspath("scanned"));
+
+		for (File each : WhenScanningClassFiles.classFiles()) {
+			parser.classFileChanged(each);
+		}
+		for (File each : WhenScanningClassFiles.classFiles()) {
+			parser.getClass(parser.getClassName(each));
+		}
+		parser.clear();
+
+		assertThat(parser.scannedClassCount()).isZero();
+	}
+
+	@Test
+	void shouldStillRemoveClassesEvictedFromTheCache() throws IOException {
+		InfinitestGlobalSettings.setParserCacheBudget(1);
+		StreamingClassParser parser = new StreamingClassParser(uniqueClasspath("evicted"));
+		ClassFileIndex index = new ClassFileIndex(new JavaClassBuilder(parser));
+		List<File> files = WhenScanningClassFiles.classFiles();
+		index.findClasses(files);
+		File removedFile = files.get(0);
+		assertThat(parser.getClass(removedFile)).isNull();
+		String removedClassName = parser.getClassName(removedFile);
+
+		Set<JavaClass> removedClasses = index.removeClasses(files.subList(0, 1));
+
+		assertThat(removedClasses).extracting(JavaClass::getName).containsExactly(removedClassName);
+		assertThat(parser.getClassName(removedFile)).isNull();
+	}
+
+	@Test
+	void shouldEstimateTheSizeOfParsedClasses() {
+		assertThat(ParseCache.estimateSize(new UnparsableClass("a.B"))).isEqualTo(70);
+		assertThat(ParseCache.estimateSize(new SimpleJavaClass("a.B", new String[] { "a.C", "a.D" }, false, null))).isEqualTo(86);
+	}
+
+	private static String uniqueClasspath(String name) {
+		// The cache is shared by classpath, a distinct classpath gets a new one
+		return fakeClasspath().getRunnerFullClassPath() + pathSeparator + "cacheTest-" + name + "-" + System.nanoTime();
+	}
+}
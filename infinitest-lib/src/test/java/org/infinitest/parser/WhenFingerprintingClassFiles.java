@@ -0,0 +1,124 @@
+/*
+ * Infinitest, a Continuous Test Runner.
+ *
+ * Copyright (C) 2010-2013
+ * "Ben Rady" <benrady@gmail.com>,
+ * "Rod Coffin" <rfciii@gmail.com>,
+ * "Ryan Breidenbach" <ryan.breidenbach@gmail.com>
+ * "David Gageot" <david@gageot.net>, et al.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.infinitest.parser;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.infinitest.environment.FakeEnvironments.fakeClasspath;
+import static org.infinitest.parser.ClassParser.UNKNOWN_MODIFICATION_TIME;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Random;
+import java.util.zip.CRC32;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class WhenFingerprintingClassFiles {
+	private static final long AN_HOUR_AGO = System.currentTimeMillis() - (60 * 60 * 1000);
+
+	@TempDir
+	File tempDir;
+	private File classFile;
+	private JavaAssistClassParser parser;
+
+	@BeforeEach
+	void inContext() throws IOException {
+		classFile = new File(tempDir, "Foo.class");
+		Files.write(classFile.toPath(), new byte[] { 1, 2, 3, 4 });
+		classFile.setLastModified(AN_HOUR_AGO);
+
+		// Each test gets its own cache
+		parser = spy(new JavaAssistClassParser(fakeClasspath().getRunnerFullClassPath() + File.pathSeparator + tempDir));
+		doReturn("Foo").when(parser).readClassFile(any(File.class));
+	}
+
+	@Test
+	void shouldNotReadFilesWhoseSizeAndTimestampDidNotChange() throws IOException {
+		parser.classFileChanged(classFile);
+		assertThat(parser.classFileChanged(classFile)).isEqualTo("Foo");
+
+		verify(parser, times(1)).readClassFile(classFile);
+	}
+
+	@Test
+	void shouldNotReadFilesWhichWereOnlyTouched() throws IOException {
+		parser.classFileChanged(classFile);
+		classFile.setLastModified(AN_HOUR_AGO + 1000);
+
+		assertThat(parser.classFileChanged(classFile)).isEqualTo("Foo");
+
+		verify(parser, times(1)).readClassFile(classFile);
+		assertThat(parser.getCacheEntry(classFile).lastModified).isEqualTo(classFile.lastModified());
+	}
+
+	@Test
+	void shouldReadFilesWhoseContentChanged() throws IOException {
+		parser.classFileChanged(classFile);
+		Files.write(classFile.toPath(), new byte[] { 4, 3, 2, 1 });
+		classFile.setLastModified(AN_HOUR_AGO + 1000);
+
+		parser.classFileChanged(classFile);
+
+		verify(parser, times(2)).readClassFile(classFile);
+	}
+
+	@Test
+	void shouldNotTrustTimestampsWhichMayNotChangeOnTheNextModification() throws IOException {
+		classFile.setLastModified(System.currentTimeMillis());
+		parser.classFileChanged(classFile);
+		assertThat(parser.getCacheEntry(classFile).lastModified).isEqualTo(UNKNOWN_MODIFICATION_TIME);
+
+		Files.write(classFile.toPath(), new byte[] { 4, 3, 2, 1 });
+		parser.classFileChanged(classFile);
+
+		verify(parser, times(2)).readClassFile(classFile);
+	}
+
+	@Test
+	void shouldComputeTheSameChecksumForSmallAndMappedFiles() throws IOException {
+		byte[] content = new byte[200 * 1024];
+		new Random(42).nextBytes(content);
+		File largeFile = new File(tempDir, "Large.class");
+		Files.write(largeFile.toPath(), content);
+		CRC32 crc = new CRC32();
+		crc.update(content);
+
+		assertThat(ClassParser.checksum(largeFile, content.length)).isEqualTo(crc.getValue());
+		crc.reset();
+		crc.update(new byte[] { 1, 2, 3, 4 });
+		assertThat(ClassParser.checksum(classFile, 4)).isEqualTo(crc.getValue());
+	}
+}
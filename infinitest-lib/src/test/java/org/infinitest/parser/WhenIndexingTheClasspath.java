@@ -0,0 +1,146 @@
+/*
+ * Infinitest, a Continuous Test Runner.
+ *
+ * Copyright (C) 2010-2013
+ * "Ben Rady" <benrady@gmail.com>,
+ * "Rod Coffin" <rfciii@gmail.com>,
+ * "Ryan Breidenbach" <ryan.breidenbach@gmail.com>
+ * "David Gageot" <david@gageot.net>, et al.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.infinitest.parser;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Arrays.asList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.infinitest.environment.FakeEnvironments.fakeClasspath;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.fakeco.fakeproduct.FakeProduct;
+import com.google.common.io.ByteStreams;
+
+class WhenIndexingTheClasspath {
+	@TempDir
+	File temporaryFolder;
+
+	@Test
+	void shouldFindClassesInJars() throws Exception {
+		File jar = writeJar("library.jar", "com/example/Library.class", "library");
+
+		IndexedClassPath classPath = new IndexedClassPath(asList(jar.getPath()));
+
+		assertThat(classPath.find("com.example.Library").toString()).startsWith("jar:file:").endsWith("library.jar!/com/example/Library.class");
+		assertThat(read(classPath, "com.example.Library")).isEqualTo("library");
+		assertThat(classPath.find("com.example.Missing")).isNull();
+		assertThat(classPath.openClassfile("com.example.Missing")).isNull();
+	}
+
+	@Test
+	void shouldFindClassesInDirectories() throws Exception {
+		File directory = writeClass("classes", "com/example/Product.class", "product");
+
+		IndexedClassPath classPath = new IndexedClassPath(asList(directory.getPath()));
+
+		assertThat(classPath.find("com.example.Product").getProtocol()).isEqualTo("file");
+		assertThat(read(classPath, "com.example.Product")).isEqualTo("product");
+	}
+
+	@Test
+	void shouldFindClassesInTheFirstEntryOfTheClasspath() throws Exception {
+		File directory = writeClass("classes", "com/example/Product.class", "from directory");
+		File firstJar = writeJar("first.jar", "com/example/Product.class", "from first jar");
+		File secondJar = writeJar("second.jar", "com/example/Product.class", "from second jar");
+
+		assertThat(read(new IndexedClassPath(asList(directory.getPath(), firstJar.getPath())), "com.example.Product")).isEqualTo("from directory");
+		assertThat(read(new IndexedClassPath(asList(firstJar.getPath(), directory.getPath())), "com.example.Product")).isEqualTo("from first jar");
+		assertThat(read(new IndexedClassPath(asList(secondJar.getPath(), firstJar.getPath())), "com.example.Product")).isEqualTo("from second jar");
+	}
+
+	@Test
+	void shouldIndexJarsAgainWhenTheyChange() throws Exception {
+		File jar = writeJar("library.jar", "com/example/Library.class", "library");
+		IndexedClassPath classPath = new IndexedClassPath(asList(jar.getPath()));
+
+		writeJar("library.jar", "com/example/Added.class", "added");
+		jar.setLastModified(jar.lastModified() - 10000);
+		classPath.refresh();
+
+		assertThat(classPath.find("com.example.Library")).isNull();
+		assertThat(read(classPath, "com.example.Added")).isEqualTo("added");
+	}
+
+	@Test
+	void shouldFindClassesInJarsBuiltAfterwards() throws Exception {
+		File jar = new File(temporaryFolder, "module.jar");
+		IndexedClassPath classPath = new IndexedClassPath(asList(jar.getPath()));
+
+		writeJar("module.jar", "com/example/Module.class", "module");
+		classPath.refresh();
+
+		assertThat(read(classPath, "com.example.Module")).isEqualTo("module");
+	}
+
+	@Test
+	void shouldPruneTheClassPoolWhenItHoldsTooManyClasses() {
+		JavaAssistClassParser parser = new JavaAssistClassParser(fakeClasspath().getRunnerFullClassPath());
+		parser.getClass(FakeProduct.class.getName());
+		Object classPool = parser.getClassPool();
+
+		parser.pruneClassPool(Integer.MAX_VALUE);
+		assertThat(parser.getClassPool()).isSameAs(classPool);
+
+		parser.pruneClassPool(0);
+		assertThat(parser.getClassPool()).isNotSameAs(classPool);
+	}
+
+	private File writeClass(String directoryName, String classFile, String content) throws IOException {
+		File directory = new File(temporaryFolder, directoryName);
+		File file = new File(directory, classFile);
+		file.getParentFile().mkdirs();
+		Files.write(file.toPath(), content.getBytes(UTF_8));
+		return directory;
+	}
+
+	private File writeJar(String name, String classFile, String content) throws IOException {
+		File jar = new File(temporaryFolder, name);
+		try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(jar))) {
+			out.putNextEntry(new ZipEntry(classFile));
+			out.write(content.getBytes(UTF_8));
+			out.closeEntry();
+		}
+		return jar;
+	}
+
+	private static String read(IndexedClassPath classPath, String className) throws Exception {
+		try (InputStream in = classPath.openClassfile(className)) {
+			return new String(ByteStreams.toByteArray(in), UTF_8);
+		}
+	}
+}
@@ -0,0 +1,146 @@
+/*
+ * Infinitest, a Continuous Test Runner.
+ *
+ * Copyright (C) 2010-2013
+ * "Ben Rady" <benrady@gmail.com>,
+ * "Rod Coffin" <rfciii@gmail.com>,
+ * "Ryan Breidenbach" <ryan.breidenbach@gmail.com>
+ * "David Gageot" <david@gageot.net>, et al.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.infinitest.parser;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.emptySet;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.infinitest.environment.FakeEnvironments.systemClasspath;
+import static org.mockito.Mockito.mock;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Set;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import javassist.CannotCompileException;
+import javassist.ClassPool;
+import javassist.CtClass;
+import javassist.CtField;
+import javassist.CtNewConstructor;
+import javassist.CtNewMethod;
+import javassist.NotFoundException;
+
+import org.infinitest.StandaloneClasspath;
+import org.infinitest.filter.TestFilter;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * The test is in a class directory, the class it tests in a jar built by
+ * another module. Both are generated, so that the class pool cannot find them
+ * in the classpath of this test.
+ */
+class WhenJarsOnTheClasspathChange {
+	private static final String PRODUCT = "jarchange.Product";
+	private static final String PRODUCT_TEST = "jarchange.ProductTest";
+
+	@TempDir
+	File temporaryFolder;
+
+	private File classDirectory;
+	private File testClassFile;
+	private File jar;
+	private byte[] product;
+	private ClassFileTestDetector testDetector;
+
+	@BeforeEach
+	void inContext() throws Exception {
+		classDirectory = new File(temporaryFolder, "classes");
+		ClassPool classPool = new ClassPool(true);
+		CtClass productClass = classPool.makeClass(PRODUCT);
+		product = productClass.toBytecode();
+		testClassFile = writeTest(classPool, productClass, classDirectory);
+
+		jar = new File(temporaryFolder, "product.jar");
+		writeJar("jarchange/Product.class");
+
+		String classpath = classDirectory + File.pathSeparator + jar + File.pathSeparator + systemClasspath();
+		testDetector = new ClassFileTestDetector(mock(TestFilter.class));
+		testDetector.setClasspathProvider(new StandaloneClasspath(asList(classDirectory), classpath));
+		testDetector.findTestsToRun(asList(testClassFile));
+	}
+
+	@Test
+	void shouldRunTestsDependingOnAChangedJarClass() {
+		Set<JavaClass> tests = testDetector.findTestsToRun(emptySet(), asList(PRODUCT));
+
+		assertThat(tests).extracting(JavaClass::getName).containsOnly(PRODUCT_TEST);
+	}
+
+	@Test
+	void shouldRunTestsDependingOnAClassRemovedFromAJar() throws IOException {
+		writeJar("jarchange/Other.class");
+
+		Set<JavaClass> tests = testDetector.findTestsToRun(emptySet(), asList(PRODUCT));
+
+		assertThat(tests).extracting(JavaClass::getName).containsOnly(PRODUCT_TEST);
+		assertThat(testDetector.findJavaClass(PRODUCT).getImports()).isEmpty();
+	}
+
+	@Test
+	void shouldRunTestsDependingOnAClassOfAJarAddedToTheClasspath() {
+		ClassFileTestDetector detectorWithoutJar = new ClassFileTestDetector(mock(TestFilter.class));
+		detectorWithoutJar.setClasspathProvider(new StandaloneClasspath(asList(classDirectory), classDirectory + File.pathSeparator + systemClasspath()));
+		detectorWithoutJar.findTestsToRun(asList(testClassFile));
+
+		String classpath = classDirectory + File.pathSeparator + jar + File.pathSeparator + systemClasspath();
+		detectorWithoutJar.updateClasspathProvider(new StandaloneClasspath(asList(classDirectory), classpath));
+		Set<JavaClass> tests = detectorWithoutJar.findTestsToRun(emptySet(), asList(PRODUCT));
+
+		assertThat(tests).extracting(JavaClass::getName).containsOnly(PRODUCT_TEST);
+		assertThat(detectorWithoutJar.getIndexedClasses()).contains(PRODUCT);
+	}
+
+	@Test
+	void shouldIgnoreJarClassesNoClassDependsOn() {
+		Set<JavaClass> tests = testDetector.findTestsToRun(emptySet(), asList("com.example.Unused"));
+
+		assertThat(tests).isEmpty();
+	}
+
+	private static File writeTest(ClassPool classPool, CtClass productClass, File classDirectory) throws NotFoundException, CannotCompileException, IOException {
+		CtClass testClass = classPool.makeClass(PRODUCT_TEST, classPool.get("junit.framework.TestCase"));
+		testClass.addField(new CtField(productClass, "product", testClass));
+		testClass.addConstructor(CtNewConstructor.defaultConstructor(testClass));
+		testClass.addMethod(CtNewMethod.make("public void testProduct() {}", testClass));
+		testClass.writeFile(classDirectory.getPath());
+		return new File(classDirectory, "jarchange/ProductTest.class");
+	}
+
+	private void writeJar(String entryName) throws IOException {
+		try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(jar))) {
+			out.putNextEntry(new ZipEntry(entryName));
+			out.write(product);
+			out.closeEntry();
+		}
+	}
+}
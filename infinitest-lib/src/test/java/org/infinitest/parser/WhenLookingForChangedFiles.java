@@ -120,8 +120,9 @@ class WhenLookingForChangedFiles {
 
 		newFile.delete();
 
-		assertTrue(detector.filesWereRemoved());
 		assertThat(detector.findChangedFiles()).doesNotContain(newFile);
+		assertThat(detector.findRemovedFiles()).containsOnly(newFile);
+		assertThat(detector.findRemovedFiles()).isEmpty();
 	}
 
 	@Test
@@ -0,0 +1,118 @@
+/*
+ * Infinitest, a Continuous Test Runner.
+ *
+ * Copyright (C) 2010-2013
+ * "Ben Rady" <benrady@gmail.com>,
+ * "Rod Coffin" <rfciii@gmail.com>,
+ * "Ryan Breidenbach" <ryan.breidenbach@gmail.com>
+ * "David Gageot" <david@gageot.net>, et al.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.infinitest.parser;
+
+import static java.util.Collections.emptySet;
+import static java.util.Collections.singleton;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.infinitest.environment.FakeEnvironments.fakeClasspath;
+
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.fakeco.fakeproduct.FakeProduct;
+import com.fakeco.fakeproduct.TestFakeProduct;
+
+class WhenRecordingClassUsage {
+	private static final String TEST = TestFakeProduct.class.getName();
+
+	private ClassFileIndex index;
+	private Set<JavaClass> changedProduct;
+
+	@BeforeEach
+	void inContext() throws IOException {
+		index = new ClassFileIndex(fakeClasspath());
+		index.findClasses(WhenScanningClassFiles.classFiles());
+		changedProduct = singleton(index.findJavaClass(FakeProduct.class.getName()));
+	}
+
+	@Test
+	void shouldUseStaticDependenciesOfTestsWhichNeverRan() {
+		assertThat(testNames(index.findChangedTests(changedProduct))).contains(TEST);
+	}
+
+	@Test
+	void shouldNotRunTestsWhichDidNotUseTheChangedClass() {
+		index.recordClassUsage(TEST, singleton(TEST), emptySet());
+
+		Set<JavaClass> tests = index.findChangedTests(changedProduct);
+
+		assertThat(testNames(tests)).doesNotContain(TEST);
+		assertThat(tests).isNotEmpty();
+	}
+
+	@Test
+	void shouldRunTestsWhichLoadedTheChangedClass() {
+		index.recordClassUsage(TEST, singleton(FakeProduct.class.getName()), emptySet());
+
+		assertThat(testNames(index.findChangedTests(changedProduct))).contains(TEST);
+	}
+
+	@Test
+	void shouldRunTestsWhichMayHaveUsedTheChangedClassLoadedByAnotherTest() {
+		index.recordClassUsage(TEST, singleton(TEST), singleton(FakeProduct.class.getName()));
+
+		assertThat(testNames(index.findChangedTests(changedProduct))).contains(TEST);
+	}
+
+	@Test
+	void shouldAlwaysRunChangedTests() {
+		index.recordClassUsage(TEST, emptySet(), emptySet());
+
+		assertThat(testNames(index.findChangedTests(singleton(index.findJavaClass(TEST))))).contains(TEST);
+	}
+
+	@Test
+	void shouldFallBackToStaticDependenciesWhenUsageWasNotRecorded() {
+		index.recordClassUsage(TEST, singleton(TEST), emptySet());
+		index.recordClassUsage(TEST, null, null);
+
+		assertThat(testNames(index.findChangedTests(changedProduct))).contains(TEST);
+	}
+
+	@Test
+	void shouldForgetClassUsageWhenCleared() throws IOException {
+		index.recordClassUsage(TEST, singleton(TEST), emptySet());
+		index.clear();
+		index.findClasses(WhenScanningClassFiles.classFiles());
+
+		assertThat(testNames(index.findChangedTests(changedProduct))).contains(TEST);
+	}
+
+	private static Set<String> testNames(Set<JavaClass> tests) {
+		Set<String> names = new HashSet<>();
+		for (JavaClass each : tests) {
+			names.add(each.getName());
+		}
+		return names;
+	}
+}
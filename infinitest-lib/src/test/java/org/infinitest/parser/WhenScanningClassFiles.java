@@ -0,0 +1,140 @@
+/*
+ * Infinitest, a Continuous Test Runner.
+ *
+ * Copyright (C) 2010-2013
+ * "Ben Rady" <benrady@gmail.com>,
+ * "Rod Coffin" <rfciii@gmail.com>,
+ * "Ryan Breidenbach" <ryan.breidenbach@gmail.com>
+ * "David Gageot" <david@gageot.net>, et al.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.infinitest.parser;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.infinitest.environment.FakeEnvironments.fakeClasspath;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.infinitest.MissingClassException;
+import org.infinitest.changedetect.FileChangeDetector;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.fakeco.fakeproduct.FakeProduct;
+import com.fakeco.fakeproduct.JUnit5ArchUnitMethodTest;
+import com.fakeco.fakeproduct.JUnit5CompositeAnnotationTest;
+import com.fakeco.fakeproduct.JUnit5TestableSubclass;
+import com.fakeco.fakeproduct.TestJunit3TestCase;
+import com.fakeco.fakeproduct.TestNGWithClassLevelOnlyTestAnnotationFakeTest;
+import com.fakeco.fakeproduct.TestThatInheritsACustomRunner;
+
+class WhenScanningClassFiles {
+	private JavaAssistClassParser javassistParser;
+	private StreamingClassParser streamingParser;
+
+	@BeforeEach
+	void inContext() {
+		String classpath = fakeClasspath().getRunnerFullClassPath();
+		javassistParser = new JavaAssistClassParser(classpath);
+		streamingParser = new StreamingClassParser(classpath);
+	}
+
+	@Test
+	void shouldFindTheSameImportsAndTestsAsJavassist() throws IOException {
+		List<File> files = classFiles();
+		assertThat(files.size()).isGreaterThan(250);
+
+		for (File file : files) {
+			String classname = javassistParser.readClassFile(file);
+			assertThat(streamingParser.readClassFile(file)).isEqualTo(classname);
+
+			JavaClass expected = javassistParser.parseClass(classname);
+			JavaClass actual = streamingParser.parseClass(classname);
+			assertThat(actual.getImports()).as(classname).containsExactlyInAnyOrder(expected.getImports());
+			assertThat(actual.isATest()).as(classname).isEqualTo(expected.isATest());
+			assertThat(actual.getClassFile()).as(classname).isEqualTo(expected.getClassFile());
+		}
+	}
+
+	@Test
+	void shouldDetectTestsOfEveryFramework() {
+		assertThat(streamingParser.parseClass(TestJunit3TestCase.class.getName()).isATest()).isTrue();
+		assertThat(streamingParser.parseClass(TestThatInheritsACustomRunner.class.getName()).isATest()).isTrue();
+		assertThat(streamingParser.parseClass(JUnit5CompositeAnnotationTest.class.getName()).isATest()).isTrue();
+		assertThat(streamingParser.parseClass(JUnit5TestableSubclass.class.getName()).isATest()).isTrue();
+		assertThat(streamingParser.parseClass(JUnit5ArchUnitMethodTest.class.getName()).isATest()).isTrue();
+		assertThat(streamingParser.parseClass(TestNGWithClassLevelOnlyTestAnnotationFakeTest.class.getName()).isATest()).isTrue();
+		assertThat(streamingParser.parseClass(FakeProduct.class.getName()).isATest()).isFalse();
+	}
+
+	@Test
+	void shouldTreatArraysAndPrimitivesAsUnparsable() {
+		assertThat(streamingParser.parseClass("[Ljava.lang.String;")).isInstanceOf(UnparsableClass.class);
+		assertThat(streamingParser.parseClass("java.lang.String[]")).isInstanceOf(UnparsableClass.class);
+		assertThat(streamingParser.parseClass("int")).isInstanceOf(UnparsableClass.class);
+	}
+
+	@Test
+	void shouldThrowMissingClassExceptionForUnknownClasses() {
+		assertThatThrownBy(() -> streamingParser.parseClass("com.example.DoesNotExist")).isInstanceOf(MissingClassException.class);
+	}
+
+	@Test
+	void shouldRejectFilesWhichAreNotClassFiles() {
+		ByteBuffer buffer = ByteBuffer.wrap(new byte[] { 1, 2, 3, 4, 5, 6, 7, 8, 9, 10 });
+
+		assertThatThrownBy(() -> ClassFileScanner.scan(buffer, "notAClass")).isInstanceOf(MalformedClassFileException.class).hasMessageContaining("notAClass");
+	}
+
+	@Test
+	void shouldRejectTruncatedClassFiles() throws IOException {
+		byte[] bytes = Files.readAllBytes(classFileOf(FakeProduct.class).toPath());
+		ByteBuffer buffer = ByteBuffer.wrap(Arrays.copyOf(bytes, bytes.length / 2));
+
+		assertThatThrownBy(() -> ClassFileScanner.scan(buffer, "truncated")).isInstanceOf(MalformedClassFileException.class);
+	}
+
+	@Test
+	void shouldLeaveTheBufferPositionUnchanged() throws IOException {
+		ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(classFileOf(FakeProduct.class).toPath()));
+
+		ScannedClass scannedClass = ClassFileScanner.scan(buffer, "FakeProduct");
+
+		assertThat(scannedClass.getName()).isEqualTo(FakeProduct.class.getName());
+		assertThat(buffer.position()).isZero();
+	}
+
+	static List<File> classFiles() throws IOException {
+		FileChangeDetector detector = new FileChangeDetector();
+		detector.setClasspathProvider(fakeClasspath());
+		return new ArrayList<>(detector.findChangedFiles());
+	}
+
+	private File classFileOf(Class<?> clazz) {
+		return streamingParser.parseClass(clazz.getName()).getClassFile();
+	}
+}
@@ -32,13 +32,20 @@ import static org.infinitest.environment.FakeEnvironments.fakeBuildPaths;
 import static org.infinitest.environment.FakeEnvironments.fakeEnvironment;
 import static org.infinitest.environment.FakeEnvironments.fakeWorkingDirectory;
 import static org.infinitest.environment.FakeEnvironments.systemClasspath;
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.mockito.Mockito.mock;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import org.infinitest.FakeEventQueue;
 import org.infinitest.InfinitestCore;
 import org.infinitest.InfinitestCoreBuilder;
+import org.infinitest.changedetect.ChangeDetector;
+import org.infinitest.changedetect.FileChangeDetector;
+import org.infinitest.changedetect.WatchingChangeDetector;
 import org.infinitest.environment.RuntimeEnvironment;
 import org.infinitest.filter.TestFilter;
 import org.infinitest.parser.TestDetector;
@@ -70,6 +77,25 @@ class WhenConfiguringBuilder {
 		assertSame(filterUsedToCreateCore, testFilter);
 	}
 
+	@Test
+	void canWatchTheFileSystemToFindChangedFiles() {
+		List<ChangeDetector> changeDetectors = new ArrayList<>();
+		builder = new InfinitestCoreBuilder(fakeEnvironment(), new FakeEventQueue(), "myCoreName") {
+			@Override
+			protected ChangeDetector createChangeDetector() {
+				ChangeDetector changeDetector = super.createChangeDetector();
+				changeDetectors.add(changeDetector);
+				return changeDetector;
+			}
+		};
+		builder.createCore();
+		builder.setWatchFileSystem(true);
+		builder.createCore();
+
+		assertThat(changeDetectors.get(0)).isExactlyInstanceOf(FileChangeDetector.class);
+		assertThat(changeDetectors.get(1)).isExactlyInstanceOf(WatchingChangeDetector.class);
+	}
+
 	@Test
 	void canSetCoreName() {
 		InfinitestCore core = builder.createCore();
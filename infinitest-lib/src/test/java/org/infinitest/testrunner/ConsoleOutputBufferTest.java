@@ -0,0 +1,148 @@
+/*
+ * Infinitest, a Continuous Test Runner.
+ *
+ * Copyright (C) 2010-2013
+ * "Ben Rady" <benrady@gmail.com>,
+ * "Rod Coffin" <rfciii@gmail.com>,
+ * "Ryan Breidenbach" <ryan.breidenbach@gmail.com>
+ * "David Gageot" <david@gageot.net>, et al.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.infinitest.testrunner;
+
+import static java.util.Arrays.asList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.infinitest.ConsoleOutputListener.OutputType.*;
+import static org.infinitest.testrunner.ConsoleOutputBuffer.CHUNK_SIZE;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import org.infinitest.ConsoleOutputListener.OutputType;
+import org.junit.jupiter.api.*;
+
+class ConsoleOutputBufferTest {
+	private BlockingQueue<String> updates;
+	private RunnerEventSupport eventSupport;
+
+	@BeforeEach
+	void inContext() {
+		updates = new LinkedBlockingQueue<>();
+		eventSupport = new RunnerEventSupport(this);
+		eventSupport.addConsoleOutputListener((String newText, OutputType outputType) -> updates.add(outputType + ":" + newText));
+	}
+
+	@Test
+	void shouldSendConsecutiveOutputOfTheSameTypeTogether() {
+		ConsoleOutputBuffer buffer = new ConsoleOutputBuffer(eventSupport, 100);
+
+		buffer.append(STDOUT, "a");
+		buffer.append(STDOUT, "b");
+		buffer.append(STDERR, "c");
+		buffer.append(STDOUT, "d");
+		buffer.flush();
+
+		assertThat(updates).containsExactly("STDOUT:ab", "STDERR:c", "STDOUT:d");
+	}
+
+	@Test
+	void shouldSendTheOutputOnceItWaited() throws InterruptedException {
+		ConsoleOutputBuffer buffer = new ConsoleOutputBuffer(eventSupport, 100);
+
+		buffer.append(STDOUT, "hello");
+
+		assertThat(updates.poll(5, TimeUnit.SECONDS)).isEqualTo("STDOUT:hello");
+	}
+
+	@Test
+	void shouldDropTheOldestOutputBeyondHalfTheBudgetAndTellHowMuchWasDropped() {
+		ConsoleOutputBuffer buffer = new ConsoleOutputBuffer(eventSupport, 20);
+
+		buffer.append(STDOUT, "12345678");
+		buffer.append(STDOUT, "abcdef");
+		buffer.flush();
+		buffer.append(STDOUT, "abcdef");
+		buffer.flush();
+
+		assertThat(updates).containsExactly("STDERR:[Infinitest dropped 4 earlier characters of console output]\n", "STDOUT:5678abcdef", "STDOUT:abcdef");
+	}
+
+	@Test
+	void shouldDropTheOldestChunksFirst() {
+		ConsoleOutputBuffer buffer = new ConsoleOutputBuffer(eventSupport, 20);
+
+		buffer.append(STDERR, "abc");
+		buffer.append(STDOUT, "12");
+		buffer.append(STDERR, "0123456789");
+		buffer.flush();
+
+		assertThat(updates).containsExactly("STDERR:[Infinitest dropped 5 earlier characters of console output]\n", "STDERR:0123456789");
+	}
+
+	@Test
+	void shouldDropWholeChunksOfTheOldestOutput() {
+		ConsoleOutputBuffer buffer = new ConsoleOutputBuffer(eventSupport, 4 * CHUNK_SIZE);
+
+		buffer.append(STDOUT, repeat('a', CHUNK_SIZE));
+		buffer.append(STDOUT, repeat('b', CHUNK_SIZE));
+		buffer.append(STDOUT, repeat('c', CHUNK_SIZE));
+		buffer.append(STDOUT, "d");
+		buffer.flush();
+
+		assertThat(updates).containsExactly("STDERR:[Infinitest dropped " + (2 * CHUNK_SIZE) + " earlier characters of console output]\n", "STDOUT:" + repeat('c', CHUNK_SIZE) + "d");
+	}
+
+	@Test
+	void shouldKeepTheOutputOfTheLastRunOfEachTest() {
+		ConsoleOutputBuffer buffer = new ConsoleOutputBuffer(eventSupport, 100);
+
+		buffer.append(STDOUT, "before any test");
+		buffer.testStarting("Test1");
+		buffer.append(STDOUT, "hello");
+		buffer.testStarting("Test2");
+		buffer.append(STDERR, "world");
+
+		assertThat(asList(buffer.getTestOutput("Test1"), buffer.getTestOutput("Test2"))).containsExactly("hello", "world");
+		buffer.testStarting("Test1");
+		assertThat(buffer.getTestOutput("Test1")).isEmpty();
+	}
+
+	@Test
+	void shouldForgetTheOutputOfTheOldestTestsBeyondHalfTheBudget() {
+		ConsoleOutputBuffer buffer = new ConsoleOutputBuffer(eventSupport, 20);
+
+		buffer.testStarting("Test1");
+		buffer.append(STDOUT, "123456");
+		buffer.testStarting("Test2");
+		buffer.append(STDOUT, "abcdef");
+		buffer.testStarting("Test3");
+		buffer.append(STDOUT, "0123456789abc");
+
+		assertThat(buffer.getTestOutput("Test1")).isEmpty();
+		assertThat(buffer.getTestOutput("Test2")).isEmpty();
+		assertThat(buffer.getTestOutput("Test3")).isEqualTo("3456789abc");
+	}
+
+	private static String repeat(char character, int count) {
+		char[] characters = new char[count];
+		Arrays.fill(characters, character);
+		return new String(characters);
+	}
+}
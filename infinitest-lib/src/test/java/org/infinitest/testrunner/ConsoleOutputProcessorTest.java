@@ -48,4 +48,14 @@ class ConsoleOutputProcessorTest {
 		new ConsoleOutputProcessor(toInputStream("hello"), STDERR, eventSupport).run();
 		assertEquals("hello", updatedText.toString());
 	}
+
+	@Test
+	void shouldCreditTheOutputToTheRunningTestWhenBuffered() {
+		ConsoleOutputBuffer outputBuffer = new ConsoleOutputBuffer(new RunnerEventSupport(this), 100);
+		outputBuffer.testStarting("MyTest");
+
+		new ConsoleOutputProcessor(toInputStream("hello"), STDERR, new RunnerEventSupport(this), outputBuffer).run();
+
+		assertEquals("hello", outputBuffer.getTestOutput("MyTest"));
+	}
 }
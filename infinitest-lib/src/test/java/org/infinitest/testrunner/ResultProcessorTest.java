@@ -27,16 +27,20 @@
  */
 package org.infinitest.testrunner;
 
+import static java.util.concurrent.CompletableFuture.completedFuture;
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.infinitest.testrunner.TestEvent.TestState.TEST_CASE_STARTING;
 import static org.junit.jupiter.api.Assertions.fail;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.isNull;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
 
 import org.infinitest.EventSupport;
 import org.infinitest.environment.RuntimeEnvironment;
@@ -66,7 +70,7 @@ class ResultProcessorTest {
 		reader = new TestQueueProcessor(runnerEventSupport, factory, null);
 		connection.close();
 
-		when(connection.runTest("test1")).thenReturn(new TestResults());
+		when(connection.submitTest("test1")).thenReturn(completedFuture(new TestResults()));
 	}
 
 	@Test
@@ -78,12 +82,12 @@ class ResultProcessorTest {
 		eventAssert.assertTestPassed("test1");
 		eventAssert.assertRunComplete();
 
-		verify(connection).runTest("test1");
+		verify(connection).submitTest("test1");
 	}
 
 	@Test
 	void shouldOnlyOpenOneConnection() throws Exception {
-		when(connection.runTest("test2")).thenReturn(new TestResults());
+		when(connection.submitTest("test2")).thenReturn(completedFuture(new TestResults()));
 
 		reader.process("test1");
 		reader.process("test2");
@@ -93,9 +97,44 @@ class ResultProcessorTest {
 		verify(factory, times(1)).getConnection(isNull(), any(OutputStreamHandler.class));
 	}
 
+	@Test
+	void shouldRunDispatchedTestsInTheOrderTheyWereSent() throws Exception {
+		CompletableFuture<TestResults> firstResults = new CompletableFuture<>();
+		CompletableFuture<TestResults> secondResults = new CompletableFuture<>();
+		when(connection.submitTest("test1")).thenReturn(firstResults);
+		when(connection.submitTest("test2")).thenReturn(secondResults);
+
+		reader.dispatch("test1");
+		reader.dispatch("test2");
+		firstResults.complete(new TestResults());
+		secondResults.complete(new TestResults());
+		reader.process("test1");
+		reader.process("test2");
+		reader.close();
+
+		eventAssert.assertTestsStarted("test1", "test2");
+		eventAssert.assertRunComplete();
+		verify(connection).submitTest("test1");
+		verify(connection).submitTest("test2");
+	}
+
+	@Test
+	void shouldCancelDispatchedTestsWithoutClosingTheConnection() {
+		CompletableFuture<TestResults> results = new CompletableFuture<>();
+		when(connection.submitTest("test1")).thenReturn(results);
+
+		reader.dispatch("test1");
+		reader.cancel("test1");
+
+		assertThat(results.isCancelled()).isTrue();
+		verify(connection, never()).abort();
+	}
+
 	@Test
 	void shouldFireStartingEventBeforeTestStarts() throws Exception {
-		when(connection.runTest("test2")).thenThrow(new RuntimeException());
+		CompletableFuture<TestResults> failedResults = new CompletableFuture<>();
+		failedResults.completeExceptionally(new RuntimeException());
+		when(connection.submitTest("test2")).thenReturn(failedResults);
 		try {
 			reader.process("test2");
 			fail("shouldHaveThrownException");
@@ -107,6 +146,22 @@ class ResultProcessorTest {
 
 		eventAssert.assertEventsReceived(TEST_CASE_STARTING);
 		eventAssert.assertRunComplete();
-		verify(connection).runTest("test2");
+		verify(connection).submitTest("test2");
+	}
+
+	@Test
+	void shouldCancelTheTestWhenInterruptedWhileItRuns() {
+		CompletableFuture<TestResults> results = new CompletableFuture<>();
+		when(connection.submitTest("test2")).thenReturn(results);
+
+		Thread.currentThread().interrupt();
+		try {
+			reader.process("test2");
+			fail("shouldHaveThrownException");
+		} catch (InterruptedException expected) {
+			// The processor runnable stops the process
+		}
+
+		assertThat(results.isCancelled()).isTrue();
 	}
 }
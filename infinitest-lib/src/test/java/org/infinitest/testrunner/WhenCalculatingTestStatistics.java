@@ -30,10 +30,14 @@ package org.infinitest.testrunner;
 import static java.lang.System.currentTimeMillis;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.infinitest.EventSupport.testCaseFailing;
+import static java.util.Arrays.asList;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 
+import java.io.File;
+
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
 class WhenCalculatingTestStatistics {
   private RunStatistics statistics;
@@ -61,4 +65,58 @@ class WhenCalculatingTestStatistics {
 
     assertThat(currentTimeMillis() - statistics.getLastFailureTime("test1")).isLessThan(10l);
   }
+
+  @Test
+  void shouldNotKnowTheDurationOfTestsWhichNeverRan() {
+    assertEquals(RunStatistics.UNKNOWN_DURATION, statistics.getExpectedDuration("UnknownTest"));
+  }
+
+  @Test
+  void shouldExpectTheDurationMeasuredByTheRunner() {
+    statistics.testCaseComplete(testCasePassing("test1", 200));
+
+    assertEquals(200, statistics.getExpectedDuration("test1"));
+  }
+
+  @Test
+  void shouldWeighTheLastRunTheMost() {
+    statistics.testCaseComplete(testCasePassing("test1", 200));
+    statistics.testCaseComplete(testCasePassing("test1", 600));
+
+    assertEquals(500, statistics.getExpectedDuration("test1"));
+  }
+
+  @Test
+  void shouldKnowWhetherTheLastRunFailed() {
+    statistics.testCaseComplete(testCaseFailing("test1", "", new Exception()));
+    assertThat(statistics.isFailing("test1")).isTrue();
+
+    statistics.testCaseComplete(testCasePassing("test1", 10));
+    assertThat(statistics.isFailing("test1")).isFalse();
+  }
+
+  @Test
+  void shouldRestoreTheSavedStatistics(@TempDir File directory) throws Exception {
+    statistics.testCaseComplete(testCasePassing("test1", 200));
+    statistics.testCaseComplete(testCaseFailing("test2", "", new Exception()));
+    File file = new File(directory, "statistics.bin");
+    statistics.save(file);
+
+    RunStatistics restored = new RunStatistics();
+    restored.load(file);
+
+    assertEquals(200, restored.getExpectedDuration("test1"));
+    assertEquals(statistics.getLastFailureTime("test2"), restored.getLastFailureTime("test2"));
+    assertThat(restored.isFailing("test2")).isTrue();
+    assertThat(restored.isFailing("test1")).isFalse();
+  }
+
+  private TestCaseEvent testCasePassing(String testName, long duration) {
+    MethodStats methodStats = new MethodStats("method");
+    methodStats.start(0);
+    methodStats.stop(duration);
+    TestResults results = new TestResults();
+    results.addMethodStats(asList(methodStats));
+    return new TestCaseEvent(testName, this, results);
+  }
 }
@@ -34,10 +34,12 @@ import static org.infinitest.testrunner.TestEvent.testCaseStarting;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
-import java.io.ObjectOutputStream;
+import java.io.OutputStream;
 import java.net.Socket;
 import java.net.SocketTimeoutException;
 import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.concurrent.Future;
 
 import org.infinitest.testrunner.process.TcpSocketProcessCommunicator;
 import org.junit.jupiter.api.AfterEach;
@@ -76,10 +78,11 @@ class WhenCommunicatingWithTestRunnerProcess {
 			@Override
 			public void run() {
 				try (Socket clientSocket = new Socket("127.0.0.1", portNum);
-					ObjectOutputStream ooStream = new ObjectOutputStream(clientSocket.getOutputStream());
+					OutputStream outStream = clientSocket.getOutputStream();
 					BufferedReader inStream = new BufferedReader(new InputStreamReader(clientSocket.getInputStream(), StandardCharsets.UTF_8))) {
-					assertThat(inStream.readLine()).isEqualTo("hello");
-					ooStream.writeObject(new TestResults(testCaseStarting("hello")));
+					ResultsWriter writer = new ResultsWriter(outStream, 0, null);
+					assertThat(inStream.readLine()).isEqualTo("0 hello");
+					writer.writeResults(0, new TestResults(testCaseStarting("hello")));
 					assertThat(inStream.readLine()).isNull();
 				} catch (IOException e) {
 					e.printStackTrace();
@@ -91,6 +94,85 @@ class WhenCommunicatingWithTestRunnerProcess {
 		communicator.closeSocket();
 	}
 
+	@Timeout(5)
+	@Test
+	void shouldMatchResultsToTheirTestsWhenSeveralAreSent() throws Exception {
+		final int portNum = communicator.createSocket();
+		new Thread(new Runnable() {
+			@Override
+			public void run() {
+				try (Socket clientSocket = new Socket("127.0.0.1", portNum);
+					OutputStream outStream = clientSocket.getOutputStream();
+					BufferedReader inStream = new BufferedReader(new InputStreamReader(clientSocket.getInputStream(), StandardCharsets.UTF_8))) {
+					ResultsWriter writer = new ResultsWriter(outStream, 0, null);
+					assertThat(inStream.readLine()).isEqualTo("0 first");
+					assertThat(inStream.readLine()).isEqualTo("1 second");
+					assertThat(inStream.readLine()).isEqualTo(TestRunnerProcess.CANCEL + " 0");
+					// Already started, answered all the same
+					writer.writeResults(0, new TestResults(testCaseStarting("first")));
+					writer.writeResults(1, new TestResults(testCaseStarting("second")));
+					assertThat(inStream.readLine()).isEqualTo("2 third");
+					writer.writeResults(2, new TestResults(testCaseStarting("third")));
+					assertThat(inStream.readLine()).isNull();
+				} catch (IOException e) {
+					e.printStackTrace();
+				}
+			}
+		}).start();
+		communicator.openSocket();
+
+		Future<TestResults> first = communicator.submit("first");
+		Future<TestResults> second = communicator.submit("second");
+		first.cancel(false);
+
+		assertThat(first.isCancelled()).isTrue();
+		assertThat(second.get().iterator().next().getTestName()).isEqualTo("second");
+		assertThat(communicator.sendMessage("third").iterator().next().getTestName()).isEqualTo("third");
+	}
+
+	@Timeout(5)
+	@Test
+	void shouldTellWhichClassesTheProcessLoadedBeforeEachTestIncludingCancelledOnes() throws Exception {
+		final int portNum = communicator.createSocket();
+		new Thread(new Runnable() {
+			@Override
+			public void run() {
+				try (Socket clientSocket = new Socket("127.0.0.1", portNum);
+					OutputStream outStream = clientSocket.getOutputStream();
+					BufferedReader inStream = new BufferedReader(new InputStreamReader(clientSocket.getInputStream(), StandardCharsets.UTF_8))) {
+					ResultsWriter writer = new ResultsWriter(outStream, 0, null);
+					assertThat(inStream.readLine()).isEqualTo("0 first");
+					assertThat(inStream.readLine()).isEqualTo("1 second");
+					assertThat(inStream.readLine()).isEqualTo(TestRunnerProcess.CANCEL + " 0");
+					writer.writeResults(0, resultsLoading("first", "com.example.First"));
+					writer.writeResults(1, resultsLoading("second", "com.example.Second"));
+					assertThat(inStream.readLine()).isEqualTo("2 " + TestRunnerProcess.START_RUN);
+					writer.writeRunStarted(2, true);
+					assertThat(inStream.readLine()).isEqualTo("3 third");
+					writer.writeResults(3, resultsLoading("third", "com.example.Third"));
+					assertThat(inStream.readLine()).isNull();
+				} catch (IOException e) {
+					e.printStackTrace();
+				}
+			}
+		}).start();
+		communicator.openSocket();
+
+		Future<TestResults> first = communicator.submit("first");
+		Future<TestResults> second = communicator.submit("second");
+		first.cancel(false);
+
+		assertThat(second.get().getClassesLoadedBefore()).containsOnly("com.example.First");
+		assertThat(communicator.startRun()).isTrue();
+		assertThat(communicator.sendMessage("third").getClassesLoadedBefore()).isEmpty();
+	}
+
+	private static TestResults resultsLoading(String testName, String loadedClass) {
+		TestResults results = new TestResults(testCaseStarting(testName));
+		results.setLoadedClasses(Collections.singleton(loadedClass));
+		return results;
+	}
+
 	@Timeout(1)
 	@Test
 	void shouldTimeOutIfRunnerProcessFailsToStart() {
@@ -45,6 +45,7 @@ import org.infinitest.testrunner.OutputStreamHandler;
 import org.infinitest.testrunner.RunnerThatCannotBeCreated;
 import org.infinitest.testrunner.TestEvent;
 import org.infinitest.testrunner.TestRunnerProcess;
+import org.infinitest.util.InfinitestGlobalSettings;
 import org.infinitest.util.InfinitestTestUtils;
 import org.junit.jupiter.api.Test;
 
@@ -60,6 +61,28 @@ class NativeConnectionFactoryTest {
 		assertEquals(FAILING_EVENT, getOnlyElement(results));
 	}
 
+	@Test
+	void shouldRunTestsOfSeveralRunsWhenProcessesArePersistent() throws Exception {
+		InfinitestGlobalSettings.setPersistentRunnerProcesses(true);
+		try {
+			// Starting the process may take longer than the default on a busy machine
+			NativeConnectionFactory manager = new NativeConnectionFactory(FailingRunner.class) {
+				@Override
+				protected TcpSocketProcessCommunicator createCommunicator() {
+					return new TcpSocketProcessCommunicator(30000);
+				}
+			};
+			ProcessConnection connection = manager.getConnection(fakeEnvironment(), new NoOpOutputHandler());
+			connection.runTest("testName");
+			assertTrue(connection.startRun());
+			Iterable<TestEvent> results = connection.runTest("testName");
+			connection.close();
+			assertEquals(FAILING_EVENT, getOnlyElement(results));
+		} finally {
+			InfinitestGlobalSettings.resetToDefaults();
+		}
+	}
+
 	@Test
 	void canStopTestRun() throws Exception {
 		final SynchronousQueue<String> testQueue = new SynchronousQueue<String>();
@@ -0,0 +1,145 @@
+/*
+ * Infinitest, a Continuous Test Runner.
+ *
+ * Copyright (C) 2010-2013
+ * "Ben Rady" <benrady@gmail.com>,
+ * "Rod Coffin" <rfciii@gmail.com>,
+ * "Ryan Breidenbach" <ryan.breidenbach@gmail.com>
+ * "David Gageot" <david@gageot.net>, et al.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.infinitest.testrunner.process;
+
+import static com.google.common.collect.Iterables.getOnlyElement;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.infinitest.environment.FakeEnvironments.fakeEnvironment;
+import static org.infinitest.testrunner.FailingRunner.FAILING_EVENT;
+import static org.infinitest.testrunner.TestEvent.testCaseStarting;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.Future;
+
+import org.infinitest.testrunner.FailingRunner;
+import org.infinitest.testrunner.ResultsWriter;
+import org.infinitest.testrunner.TestResults;
+import org.infinitest.testrunner.UnixDomainSockets;
+import org.infinitest.util.InfinitestGlobalSettings;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+class WhenConnectingThroughUnixDomainSockets {
+	@AfterEach
+	void resetSettings() {
+		InfinitestGlobalSettings.resetToDefaults();
+	}
+
+	@Test
+	void shouldRunTestsWhenTheRunnerSupportsThem() throws Exception {
+		InfinitestGlobalSettings.setUnixDomainSockets(true);
+		assumeTrue(UnixSocketProcessCommunicator.canConnect(fakeEnvironment()));
+		NativeConnectionFactory factory = new NativeConnectionFactory(FailingRunner.class);
+		assertThat(factory.createCommunicator(fakeEnvironment())).isInstanceOf(UnixSocketProcessCommunicator.class);
+
+		ProcessConnection connection = factory.getConnection(fakeEnvironment(), new NoOpOutputHandler());
+		Future<TestResults> firstResults = connection.submitTest("first");
+		Future<TestResults> secondResults = connection.submitTest("second");
+
+		assertThat(getOnlyElement(firstResults.get())).isEqualTo(FAILING_EVENT);
+		assertThat(getOnlyElement(secondResults.get())).isEqualTo(FAILING_EVENT);
+		connection.close();
+	}
+
+	@Test
+	void shouldConnectWithTcpByDefault() {
+		assertThat(new NativeConnectionFactory(FailingRunner.class).createCommunicator(fakeEnvironment())).isInstanceOf(TcpSocketProcessCommunicator.class);
+	}
+
+	@Timeout(5)
+	@Test
+	void shouldReadMessagesLargerThanTheBuffer() throws Exception {
+		assumeTrue(UnixDomainSockets.isSupported());
+		UnixSocketProcessCommunicator communicator = new UnixSocketProcessCommunicator();
+		String path = communicator.bind();
+		Set<String> loadedClasses = new HashSet<>();
+		for (int i = 0; i < 2000; i++) {
+			loadedClasses.add("com.example.LoadedClass" + i);
+		}
+		new Thread(() -> {
+			try (SocketChannel channel = UnixDomainSockets.connect(path);
+					BufferedReader inStream = new BufferedReader(new InputStreamReader(UnixDomainSockets.newInputStream(channel), StandardCharsets.UTF_8))) {
+				ResultsWriter writer = new ResultsWriter(UnixDomainSockets.newOutputStream(channel), 0, null);
+				assertThat(inStream.readLine()).isEqualTo("0 test");
+				TestResults results = new TestResults(testCaseStarting("test"));
+				results.setLoadedClasses(loadedClasses);
+				writer.writeResults(0, results);
+				assertThat(inStream.readLine()).isNull();
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}).start();
+		communicator.openSocket();
+
+		TestResults results = communicator.sendMessage("test");
+
+		assertThat(results.getLoadedClasses()).isEqualTo(loadedClasses);
+		communicator.closeSocket();
+	}
+
+	@Timeout(5)
+	@Test
+	void shouldWaitForTheRunnerToReadRequestsLargerThanTheSocketBuffer() throws Exception {
+		assumeTrue(UnixDomainSockets.isSupported());
+		UnixSocketProcessCommunicator communicator = new UnixSocketProcessCommunicator();
+		String path = communicator.bind();
+		StringBuilder testName = new StringBuilder();
+		while (testName.length() < 4 * 1024 * 1024) {
+			testName.append("com.example.LongTestName");
+		}
+		new Thread(() -> {
+			try (SocketChannel channel = UnixDomainSockets.connect(path);
+					BufferedReader inStream = new BufferedReader(new InputStreamReader(UnixDomainSockets.newInputStream(channel), StandardCharsets.UTF_8))) {
+				ResultsWriter writer = new ResultsWriter(UnixDomainSockets.newOutputStream(channel), 0, null);
+				// Lets the request fill the socket buffer first
+				Thread.sleep(100);
+				assertThat(inStream.readLine()).isEqualTo("0 " + testName);
+				writer.writeResults(0, new TestResults(testCaseStarting("test")));
+				assertThat(inStream.readLine()).isNull();
+			} catch (IOException e) {
+				e.printStackTrace();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}).start();
+		communicator.openSocket();
+
+		TestResults results = communicator.sendMessage(testName.toString());
+
+		assertThat(getOnlyElement(results)).isEqualTo(testCaseStarting("test"));
+		communicator.closeSocket();
+	}
+}
@@ -33,7 +33,6 @@ import static org.infinitest.testrunner.TestEvent.TestState.METHOD_FAILURE;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 
 import java.io.IOException;
-import java.io.ObjectInputStream;
 import java.io.PrintStream;
 import java.net.ServerSocket;
 import java.net.Socket;
@@ -45,6 +44,7 @@ import org.infinitest.environment.ClasspathArgumentBuilder;
 import org.infinitest.environment.RuntimeEnvironment;
 import org.infinitest.testrunner.CrashingTestRunner;
 import org.infinitest.testrunner.FakeRunner;
+import org.infinitest.testrunner.ResultsReader;
 import org.infinitest.testrunner.TestEvent;
 import org.infinitest.testrunner.TestResults;
 import org.junit.jupiter.api.BeforeEach;
@@ -71,11 +71,11 @@ class WhenCreatingRunnerProcessConnection {
 		assertEquals("World", events.get(1).getTestName());
 	}
 
-	private List<TestEvent> sendMessageWithServerSocket(String input) throws UnknownHostException, IOException, ClassNotFoundException {
+	private List<TestEvent> sendMessageWithServerSocket(String input) throws UnknownHostException, IOException {
 		return sendMessageWithServerSocket(new String[] { input });
 	}
 
-	private List<TestEvent> sendMessageWithServerSocket(String... messages) throws UnknownHostException, IOException, ClassNotFoundException {
+	private List<TestEvent> sendMessageWithServerSocket(String... messages) throws UnknownHostException, IOException {
 		try (ServerSocket serverSocket = new ServerSocket(0)) {
 			RuntimeEnvironment fakeEnvironment = fakeEnvironment();
 			
@@ -83,20 +83,20 @@ class WhenCreatingRunnerProcessConnection {
 			factory.startProcess(serverSocket.getLocalPort(), fakeEnvironment, classpathArgumentBuilder);
 			serverSocket.setSoTimeout(2500);
 			Socket socket = serverSocket.accept();
-			ObjectInputStream inStream = new ObjectInputStream(socket.getInputStream());
+			ResultsReader reader = new ResultsReader(socket.getInputStream());
 			PrintStream outStream = new PrintStream(socket.getOutputStream(), true, "UTF-8");
 			List<TestEvent> results = new ArrayList<>();
 			TestResults result = null;
 			int i = 0;
 			do {
-				outStream.println(messages[i++]);
-				result = (TestResults) inStream.readObject();
+				outStream.println(i + " " + messages[i++]);
+				reader.readMessage();
+				result = reader.readResults();
 				if (result != null) {
 					addAll(results, result);
 				}
 			} while (i < messages.length);
 			
-			inStream.close();
 			outStream.close();
 			socket.close();
 			return results;
@@ -0,0 +1,161 @@
+/*
+ * Infinitest, a Continuous Test Runner.
+ *
+ * Copyright (C) 2010-2013
+ * "Ben Rady" <benrady@gmail.com>,
+ * "Rod Coffin" <rfciii@gmail.com>,
+ * "Ryan Breidenbach" <ryan.breidenbach@gmail.com>
+ * "David Gageot" <david@gageot.net>, et al.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.infinitest.testrunner.process;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.infinitest.environment.FakeEnvironments.fakeEnvironment;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+
+import org.infinitest.ConsoleOutputListener.OutputType;
+import org.infinitest.environment.RuntimeEnvironment;
+import org.infinitest.testrunner.OutputStreamHandler;
+import org.infinitest.util.InfinitestGlobalSettings;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class WhenPoolingRunnerProcesses {
+	private ProcessConnectionFactory factory;
+	private ProcessConnection connection;
+	private OutputStreamHandler outputHandler;
+	private RuntimeEnvironment environment;
+
+	@BeforeEach
+	void inContext() throws Exception {
+		connection = mock(ProcessConnection.class);
+		when(connection.isAlive()).thenReturn(true);
+		factory = mock(ProcessConnectionFactory.class);
+		when(factory.getConnection(any(), any())).thenReturn(connection);
+		outputHandler = mock(OutputStreamHandler.class);
+		environment = fakeEnvironment();
+	}
+
+	@AfterEach
+	void cleanup() {
+		PooledConnectionFactory.clear();
+		InfinitestGlobalSettings.resetToDefaults();
+	}
+
+	@Test
+	void shouldStartProcessesOnlyWhenTheyAreNeededByDefault() throws Exception {
+		PooledConnectionFactory pool = new PooledConnectionFactory(factory);
+
+		pool.prestart(environment);
+		ProcessConnection pooledConnection = pool.getConnection(environment, outputHandler);
+
+		assertThat(pooledConnection).isSameAs(connection);
+		verify(factory, times(1)).getConnection(any(), any());
+		verify(factory).getConnection(environment, outputHandler);
+	}
+
+	@Test
+	void shouldUseAProcessStartedBeforehand() throws Exception {
+		InfinitestGlobalSettings.setWarmRunnerProcesses(1);
+		PooledConnectionFactory pool = new PooledConnectionFactory(factory);
+
+		pool.prestart(environment);
+		ProcessConnection pooledConnection = pool.getConnection(environment, outputHandler);
+
+		assertThat(pooledConnection).isSameAs(connection);
+		verify(factory, never()).getConnection(environment, outputHandler);
+	}
+
+	@Test
+	void shouldGiveTheOutputOfTheProcessToTheRunUsingIt() throws Exception {
+		InputStream stream = new ByteArrayInputStream(new byte[0]);
+		when(factory.getConnection(any(), any())).then(invocation -> {
+			invocation.getArgument(1, OutputStreamHandler.class).processStream(stream, OutputType.STDOUT);
+			return connection;
+		});
+		InfinitestGlobalSettings.setWarmRunnerProcesses(1);
+		PooledConnectionFactory pool = new PooledConnectionFactory(factory);
+
+		pool.prestart(environment);
+		pool.getConnection(environment, outputHandler);
+
+		verify(outputHandler).processStream(stream, OutputType.STDOUT);
+	}
+
+	@Test
+	void shouldNotUseAProcessWhichExited() throws Exception {
+		when(connection.isAlive()).thenReturn(false);
+		InfinitestGlobalSettings.setWarmRunnerProcesses(1);
+		PooledConnectionFactory pool = new PooledConnectionFactory(factory);
+
+		pool.prestart(environment);
+		pool.getConnection(environment, outputHandler);
+
+		verify(factory).getConnection(environment, outputHandler);
+	}
+
+	@Test
+	void shouldShareProcessesBetweenEqualEnvironments() throws Exception {
+		InfinitestGlobalSettings.setWarmRunnerProcesses(1);
+
+		new PooledConnectionFactory(factory).prestart(environment);
+		new PooledConnectionFactory(factory).getConnection(fakeEnvironment(), outputHandler);
+
+		verify(factory, never()).getConnection(any(), eq(outputHandler));
+	}
+
+	@Test
+	void shouldStopTheProcessesLeftIdleTooLong() throws Exception {
+		InfinitestGlobalSettings.setWarmRunnerProcesses(1);
+		PooledConnectionFactory pool = new PooledConnectionFactory(factory);
+		pool.prestart(environment);
+
+		PooledConnectionFactory.discardProcessesStartedBefore(System.currentTimeMillis() + 1);
+
+		verify(connection, timeout(5000)).abort();
+		pool.getConnection(environment, outputHandler);
+		verify(factory).getConnection(environment, outputHandler);
+	}
+
+	@Test
+	void shouldStopTheIdleProcessesOfAnEnvironmentWhenDiscarded() throws Exception {
+		InfinitestGlobalSettings.setWarmRunnerProcesses(1);
+		PooledConnectionFactory pool = new PooledConnectionFactory(factory);
+		pool.prestart(environment);
+
+		pool.discardIdleProcesses(environment);
+
+		verify(connection, timeout(5000)).abort();
+		pool.getConnection(environment, outputHandler);
+		verify(factory).getConnection(environment, outputHandler);
+	}
+}
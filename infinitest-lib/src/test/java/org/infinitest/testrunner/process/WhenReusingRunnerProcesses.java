@@ -0,0 +1,155 @@
+/*
+ * Infinitest, a Continuous Test Runner.
+ *
+ * Copyright (C) 2010-2013
+ * "Ben Rady" <benrady@gmail.com>,
+ * "Rod Coffin" <rfciii@gmail.com>,
+ * "Ryan Breidenbach" <ryan.breidenbach@gmail.com>
+ * "David Gageot" <david@gageot.net>, et al.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.infinitest.testrunner.process;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.infinitest.environment.FakeEnvironments.emptyRuntimeEnvironment;
+import static org.infinitest.environment.FakeEnvironments.fakeEnvironment;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import org.infinitest.environment.RuntimeEnvironment;
+import org.infinitest.testrunner.OutputStreamHandler;
+import org.infinitest.util.InfinitestGlobalSettings;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class WhenReusingRunnerProcesses {
+	private ProcessConnectionFactory factory;
+	private ProcessConnection process;
+	private RuntimeEnvironment environment;
+	private PersistentConnectionFactory persistentFactory;
+
+	@BeforeEach
+	void inContext() throws Exception {
+		process = mock(ProcessConnection.class);
+		when(process.isAlive()).thenReturn(true);
+		when(process.startRun()).thenReturn(true);
+		factory = mock(ProcessConnectionFactory.class);
+		when(factory.getConnection(any(), any())).thenReturn(process);
+		environment = fakeEnvironment();
+		persistentFactory = new PersistentConnectionFactory(factory);
+		InfinitestGlobalSettings.setPersistentRunnerProcesses(true);
+	}
+
+	@AfterEach
+	void cleanup() {
+		InfinitestGlobalSettings.resetToDefaults();
+	}
+
+	@Test
+	void shouldStartAProcessForEachRunByDefault() throws Exception {
+		InfinitestGlobalSettings.setPersistentRunnerProcesses(false);
+
+		persistentFactory.getConnection(environment, mock(OutputStreamHandler.class)).close();
+		persistentFactory.getConnection(environment, mock(OutputStreamHandler.class));
+
+		verify(factory, times(2)).getConnection(any(), any());
+		verify(process).close();
+	}
+
+	@Test
+	void shouldRunTheNextRunInTheProcessOfThePreviousRun() throws Exception {
+		ProcessConnection firstRun = persistentFactory.getConnection(environment, mock(OutputStreamHandler.class));
+		firstRun.close();
+		ProcessConnection secondRun = persistentFactory.getConnection(environment, mock(OutputStreamHandler.class));
+
+		assertThat(secondRun).isSameAs(firstRun);
+		verify(factory, times(1)).getConnection(any(), any());
+		verify(process).startRun();
+		verify(process, never()).close();
+	}
+
+	@Test
+	void shouldRestartAProcessWhichCannotBeReused() throws Exception {
+		when(process.startRun()).thenReturn(false);
+
+		persistentFactory.getConnection(environment, mock(OutputStreamHandler.class)).close();
+		persistentFactory.getConnection(environment, mock(OutputStreamHandler.class));
+
+		verify(factory, times(2)).getConnection(any(), any());
+		verify(process).abort();
+	}
+
+	@Test
+	void shouldNotReuseAnAbortedProcess() throws Exception {
+		ProcessConnection firstRun = persistentFactory.getConnection(environment, mock(OutputStreamHandler.class));
+		firstRun.abort();
+		firstRun.close();
+		persistentFactory.getConnection(environment, mock(OutputStreamHandler.class));
+
+		verify(factory, times(2)).getConnection(any(), any());
+		verify(process, never()).startRun();
+	}
+
+	@Test
+	void shouldNotReuseAProcessOfAnotherEnvironment() throws Exception {
+		persistentFactory.getConnection(environment, mock(OutputStreamHandler.class)).close();
+		persistentFactory.getConnection(emptyRuntimeEnvironment(), mock(OutputStreamHandler.class));
+
+		verify(factory, times(2)).getConnection(any(), any());
+		verify(process, never()).startRun();
+	}
+
+	@Test
+	void shouldStopAProcessLeftIdleTooLong() throws Exception {
+		persistentFactory = new PersistentConnectionFactory(factory, 10);
+
+		persistentFactory.getConnection(environment, mock(OutputStreamHandler.class)).close();
+
+		verify(process, timeout(5000)).abort();
+		persistentFactory.getConnection(environment, mock(OutputStreamHandler.class));
+		verify(factory, times(2)).getConnection(any(), any());
+	}
+
+	@Test
+	void shouldStopTheIdleProcessesWhenClosed() throws Exception {
+		persistentFactory.getConnection(environment, mock(OutputStreamHandler.class)).close();
+
+		persistentFactory.close();
+
+		verify(process).close();
+		verify(process).abort();
+	}
+
+	@Test
+	void shouldStopTheProcessesReleasedOnceClosed() throws Exception {
+		ProcessConnection connection = persistentFactory.getConnection(environment, mock(OutputStreamHandler.class));
+		persistentFactory.close();
+
+		connection.close();
+
+		verify(process).abort();
+	}
+}
@@ -31,19 +31,27 @@ import static com.google.common.collect.Iterables.get;
 import static java.util.Arrays.asList;
 import static java.util.Collections.emptyList;
 import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 
+import java.io.IOException;
 import java.util.ArrayList;
-import java.util.LinkedList;
+import java.util.Comparator;
 import java.util.List;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.infinitest.TestQueueAdapter;
 import org.infinitest.TestQueueEvent;
 import org.infinitest.TestRunAborted;
 import org.infinitest.testrunner.RunnerEventSupport;
+import org.infinitest.util.InfinitestGlobalSettings;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
@@ -54,13 +62,18 @@ class QueueConsumerTest {
 	protected List<TestQueueEvent> queueUpdates;
 	private Semaphore processSemaphore;
 
+	@AfterEach
+	void cleanup() {
+		InfinitestGlobalSettings.resetToDefaults();
+	}
+
 	@BeforeEach
 	void inContext() {
 		processSemaphore = null;
 		events = new SynchronousQueue<String>(true);
 		runnerEvents = new RunnerEventSupport(this);
 		queueUpdates = new ArrayList<>();
-		queue = new QueueConsumer(runnerEvents, new LinkedList<String>()) {
+		queue = new QueueConsumer(runnerEvents, new TestQueue(Comparator.<String> naturalOrder())) {
 			@Override
 			protected QueueProcessor createQueueProcessor() {
 				return new FakeQueueProcessor();
@@ -94,24 +107,95 @@ class QueueConsumerTest {
 	}
 
 	@Test
-	void shouldThrowProcessorCreationErrorsWhenPushIsCalled() {
-		queue = new QueueConsumer(runnerEvents, new LinkedList<String>(), 50) {
+	void shouldStartTheProcessesInTheBackground() throws Exception {
+		CountDownLatch processesCanStart = new CountDownLatch(1);
+		queue = new QueueConsumer(runnerEvents, new TestQueue(Comparator.<String> naturalOrder()), 50) {
+			@Override
+			protected QueueProcessor createQueueProcessor() throws IOException {
+				try {
+					processesCanStart.await();
+				} catch (InterruptedException e) {
+					throw new IOException(e);
+				}
+				return new FakeQueueProcessor();
+			}
+		};
+
+		queue.push(asList("test1"));
+		queue.push(asList("test2"));
+		processesCanStart.countDown();
+
+		assertEquals("Starting test2", poll());
+		assertEquals("Finished test2", poll());
+		assertEquals("Starting test1", poll());
+		assertEquals("Finished test1", poll());
+		assertEquals("Closed", poll());
+	}
+
+	@Test
+	void shouldStartTheProcessesOfARunAtTheSameTime() throws Exception {
+		InfinitestGlobalSettings.setRunnerProcessesPerCore(2);
+		CountDownLatch bothStarting = new CountDownLatch(2);
+		queue = new QueueConsumer(runnerEvents, new TestQueue(Comparator.<String> naturalOrder()), 50) {
+			@Override
+			protected QueueProcessor createQueueProcessor() throws IOException {
+				bothStarting.countDown();
+				try {
+					if (!bothStarting.await(1000, MILLISECONDS)) {
+						throw new IOException("Started one after the other");
+					}
+				} catch (InterruptedException e) {
+					throw new IOException(e);
+				}
+				return new FakeQueueProcessor();
+			}
+		};
+
+		queue.push(asList("test1", "test2"));
+
+		assertThat(asList(poll(), poll(), poll(), poll())).contains("Finished test1", "Finished test2");
+		assertEquals("Closed", poll());
+		assertEquals("Closed", poll());
+	}
+
+	@Test
+	void shouldRunTheTestsInTheProcessesWhichStarted() throws Exception {
+		InfinitestGlobalSettings.setRunnerProcessesPerCore(2);
+		AtomicBoolean failed = new AtomicBoolean();
+		queue = new QueueConsumer(runnerEvents, new TestQueue(Comparator.<String> naturalOrder()), 50) {
+			@Override
+			protected QueueProcessor createQueueProcessor() throws IOException {
+				if (failed.compareAndSet(false, true)) {
+					throw new IOException("Could not create");
+				}
+				return new FakeQueueProcessor();
+			}
+		};
+
+		queue.push(asList("test1", "test2"));
+
+		assertEquals("Starting test1", poll());
+		assertEquals("Finished test1", poll());
+		assertEquals("Starting test2", poll());
+		assertEquals("Finished test2", poll());
+		assertEquals("Closed", poll());
+	}
+
+	@Test
+	void shouldNotThrowProcessorCreationErrorsWhenPushIsCalled() {
+		queue = new QueueConsumer(runnerEvents, new TestQueue(Comparator.<String> naturalOrder()), 50) {
 			@Override
 			protected QueueProcessor createQueueProcessor() {
 				throw new RuntimeException("Could not create");
 			}
 		};
 
-		try {
-			queue.push(asList("test1"));
-		} catch (RuntimeException e) {
-			assertEquals("Could not create", e.getMessage());
-		}
+		assertDoesNotThrow(() -> queue.push(asList("test1")));
 	}
 
 	@Test
 	void shouldForceCleanIfInterruptFails() throws Exception {
-		queue = new QueueConsumer(runnerEvents, new LinkedList<String>(), 50) {
+		queue = new QueueConsumer(runnerEvents, new TestQueue(Comparator.<String> naturalOrder()), 50) {
 			@Override
 			protected QueueProcessor createQueueProcessor() {
 				return new ProcessorThatHangsUntilCleaned();
@@ -121,28 +205,173 @@ class QueueConsumerTest {
 		queue.push(asList("test1"));
 		assertEquals("Starting test1", poll());
 
-		queue.push(asList("test2"));
+		queue.push(asList("test1"));
 		assertEquals("Cleaned", poll());
 
-		assertEquals("Starting test2", poll());
+		assertEquals("Starting test1", poll());
 	}
 
 	@Test
-	void shouldInterruptProcessorWhenAddingToQueue() throws Exception {
+	void shouldInterruptProcessorWhenTheRunningTestIsAddedToQueue() throws Exception {
 		processSemaphore = new Semaphore(1);
 		processSemaphore.acquire();
 		queue.push(asList("test1"));
 		assertEquals("Starting test1", poll());
 
-		queue.push(asList("test2"));
+		queue.push(asList("test2", "test1"));
 		assertEquals("Cleaned", poll());
-		assertEquals("Closed", poll());
+		assertEquals("Starting test1", poll());
+		processSemaphore.release();
+		assertEquals("Finished test1", poll());
 		assertEquals("Starting test2", poll());
+		assertEquals("Finished test2", poll());
+
+		assertEquals("Closed", poll());
+		assertEquals("Closed", poll());
+	}
+
+	@Test
+	void shouldAddTestsToTheRunningRunWithoutInterruptingIt() throws Exception {
+		processSemaphore = new Semaphore(1);
+		processSemaphore.acquire();
+		queue.push(asList("test1", "test3"));
+		assertEquals("Starting test1", poll());
+
+		queue.push(asList("test4", "test2"));
 		processSemaphore.release();
+		assertEquals("Finished test1", poll());
+		assertEquals("Starting test2", poll());
+		assertEquals("Finished test2", poll());
+		assertEquals("Starting test4", poll());
+		assertEquals("Finished test4", poll());
+		assertEquals("Starting test3", poll());
+		assertEquals("Finished test3", poll());
+
+		assertEquals("Closed", poll());
+		assertEquals(4, get(queueUpdates, queueUpdates.size() - 1).getInitialSize());
+	}
+
+	@Test
+	void shouldDispatchTheNextTestBeforeTheRunningTestIsDone() throws Exception {
+		List<String> dispatchedTests = new CopyOnWriteArrayList<>();
+		queue = new QueueConsumer(runnerEvents, new TestQueue(Comparator.<String> naturalOrder())) {
+			@Override
+			protected QueueProcessor createQueueProcessor() {
+				return new FakeQueueProcessor() {
+					@Override
+					public void dispatch(String test) {
+						dispatchedTests.add(test);
+					}
+				};
+			}
+		};
+
+		queue.push(asList("test1", "test2"));
+		assertEquals("Starting test1", poll());
+		assertEquals(asList("test1", "test2"), dispatchedTests);
+		assertEquals("Finished test1", poll());
+		assertEquals("Starting test2", poll());
+		assertEquals("Finished test2", poll());
+		assertEquals("Closed", poll());
+	}
+
+	@Test
+	void shouldAddStreamedTestsToTheRunningRun() throws Exception {
+		queue.openStream();
+		queue.stream(asList("test1"));
+		assertEquals("Starting test1", poll());
+		assertEquals("Finished test1", poll());
+
+		queue.stream(asList("test2"));
+		assertEquals("Starting test2", poll());
 		assertEquals("Finished test2", poll());
+
+		queue.closeStream();
+		assertEquals("Closed", poll());
+		assertEquals(2, get(queueUpdates, queueUpdates.size() - 1).getInitialSize());
+	}
+
+	@Test
+	void shouldNotWaitForTheProcessesToStartWhenStreaming() throws Exception {
+		CountDownLatch processesCanStart = new CountDownLatch(1);
+		queue = new QueueConsumer(runnerEvents, new TestQueue(Comparator.<String> naturalOrder()), 50) {
+			@Override
+			protected QueueProcessor createQueueProcessor() throws IOException {
+				try {
+					processesCanStart.await();
+				} catch (InterruptedException e) {
+					throw new IOException(e);
+				}
+				return new FakeQueueProcessor();
+			}
+		};
+
+		queue.openStream();
+		queue.stream(asList("test1"));
+		queue.stream(asList("test2"));
+		queue.closeStream();
+		processesCanStart.countDown();
+
 		assertEquals("Starting test1", poll());
 		assertEquals("Finished test1", poll());
+		assertEquals("Starting test2", poll());
+		assertEquals("Finished test2", poll());
+		assertEquals("Closed", poll());
+	}
+
+	@Test
+	void shouldRunTestsInSeveralProcessesAtTheSameTime() throws Exception {
+		InfinitestGlobalSettings.setRunnerProcessesPerCore(2);
+		CountDownLatch bothRunning = new CountDownLatch(2);
+		queue = new QueueConsumer(runnerEvents, new TestQueue(Comparator.<String> naturalOrder()), 50) {
+			@Override
+			protected QueueProcessor createQueueProcessor() {
+				return new FakeQueueProcessor() {
+					@Override
+					public void process(String test) throws InterruptedException {
+						bothRunning.countDown();
+						if (bothRunning.await(1000, MILLISECONDS)) {
+							events.put("Ran " + test + " with another test");
+						}
+					}
+				};
+			}
+		};
+
+		queue.push(asList("test1", "test2"));
+
+		assertThat(asList(poll(), poll())).containsOnly("Ran test1 with another test", "Ran test2 with another test");
+		assertEquals("Closed", poll());
+		assertEquals("Closed", poll());
+	}
+
+	@Test
+	void shouldRunTheTestOfADeadProcessInAnotherProcess() throws Exception {
+		InfinitestGlobalSettings.setRunnerProcessesPerCore(2);
+		AtomicBoolean aborted = new AtomicBoolean();
+		queue = new QueueConsumer(runnerEvents, new TestQueue(Comparator.<String> naturalOrder()), 50) {
+			@Override
+			protected QueueProcessor createQueueProcessor() {
+				return new FakeQueueProcessor() {
+					@Override
+					public void process(String test) throws InterruptedException {
+						if (test.equals("test1") && aborted.compareAndSet(false, true)) {
+							throw new TestRunAborted(test, new NullPointerException());
+						}
+						if (test.equals("test2")) {
+							// Still running once test1 is queued again
+							Thread.sleep(200);
+						}
+						events.put("Ran " + test);
+					}
+				};
+			}
+		};
+
+		queue.push(asList("test1", "test2"));
 
+		assertThat(asList(poll(), poll())).containsOnly("Ran test1", "Ran test2");
+		assertEquals("Closed", poll());
 		assertEquals("Closed", poll());
 	}
 
@@ -204,6 +433,16 @@ class QueueConsumerTest {
 			}
 			throw new TestRunAborted(test, new NullPointerException());
 		}
+
+		@Override
+		public void dispatch(String test) {
+			// The test is only run when processed
+		}
+
+		@Override
+		public void cancel(String test) {
+			// The test is only run when processed
+		}
 	}
 
 	private class FakeQueueProcessor implements QueueProcessor {
@@ -219,6 +458,16 @@ class QueueConsumerTest {
 			}
 		}
 
+		@Override
+		public void dispatch(String test) {
+			// The test is only run when processed
+		}
+
+		@Override
+		public void cancel(String test) {
+			// The test is only run when processed
+		}
+
 		@Override
 		public void close() {
 			try {
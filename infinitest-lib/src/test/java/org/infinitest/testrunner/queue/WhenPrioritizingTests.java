@@ -30,9 +30,18 @@ package org.infinitest.testrunner.queue;
 import static java.lang.Thread.sleep;
 import static java.util.Arrays.asList;
 import static org.infinitest.EventSupport.testCaseFailing;
+import static org.infinitest.testrunner.TestEvent.methodFailed;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 
+import java.util.ArrayList;
+import java.util.List;
+
+import org.infinitest.testrunner.MethodStats;
 import org.infinitest.testrunner.RunStatistics;
+import org.infinitest.testrunner.TestCaseEvent;
+import org.infinitest.testrunner.TestResults;
+import org.infinitest.util.InfinitestGlobalSettings;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
@@ -46,6 +55,11 @@ class WhenPrioritizingTests {
 		queue = new TestQueue(new TestComparator(stats));
 	}
 
+	@AfterEach
+	void resetSettings() {
+		InfinitestGlobalSettings.resetToDefaults();
+	}
+
 	@Test
 	void shouldPreferRecentlyFailedTests() throws Exception {
 		stats.testCaseComplete(testCaseFailing("test2", "", new Exception()));
@@ -63,4 +77,65 @@ class WhenPrioritizingTests {
 		queue.addAll(asList("test1", "test2", "test1"));
 		assertEquals(2, queue.size());
 	}
+
+	@Test
+	void shouldRunTheFastestTestsFirst() throws Exception {
+		ran("slowTest", 500, false);
+		ran("fastTest", 5, false);
+
+		queue.addAll(asList("slowTest", "fastTest"));
+
+		assertEquals(asList("fastTest", "slowTest"), takeAll());
+	}
+
+	@Test
+	void shouldRunTheLongestTestsFirstWhenSeveralProcessesShareTheQueue() throws Exception {
+		InfinitestGlobalSettings.setRunnerProcessesPerCore(2);
+		ran("slowTest", 500, false);
+		ran("fastTest", 5, false);
+
+		queue.addAll(asList("fastTest", "slowTest"));
+
+		assertEquals(asList("slowTest", "fastTest"), takeAll());
+	}
+
+	@Test
+	void shouldRunTheFailingTestsFirstTheFastestFirst() throws Exception {
+		InfinitestGlobalSettings.setRunnerProcessesPerCore(2);
+		ran("passingTest", 5, false);
+		ran("slowFailingTest", 500, true);
+		ran("fastFailingTest", 50, true);
+
+		queue.addAll(asList("passingTest", "slowFailingTest", "fastFailingTest"));
+
+		assertEquals(asList("fastFailingTest", "slowFailingTest", "passingTest"), takeAll());
+	}
+
+	@Test
+	void shouldRunTheTestsWhichNeverRanBeforeThePassingOnes() throws Exception {
+		ran("passingTest", 5, false);
+		ran("fixedTest", 5, true);
+		ran("fixedTest", 5, false);
+
+		queue.addAll(asList("passingTest", "fixedTest", "newTest"));
+
+		assertEquals("newTest", queue.take());
+	}
+
+	private void ran(String testName, long duration, boolean failed) {
+		MethodStats methodStats = new MethodStats("method");
+		methodStats.start(1000);
+		methodStats.stop(1000 + duration);
+		TestResults results = failed ? new TestResults(methodFailed(testName, "method", new AssertionError())) : new TestResults();
+		results.addMethodStats(asList(methodStats));
+		stats.testCaseComplete(new TestCaseEvent(testName, this, results));
+	}
+
+	private List<String> takeAll() throws InterruptedException {
+		List<String> tests = new ArrayList<>();
+		while (!queue.isEmpty()) {
+			tests.add(queue.take());
+		}
+		return tests;
+	}
 }
@@ -33,6 +33,11 @@ import static org.infinitest.util.InfinitestGlobalSettings.getLogLevel;
 import static org.infinitest.util.InfinitestGlobalSettings.resetToDefaults;
 import static org.infinitest.util.InfinitestGlobalSettings.setLogLevel;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
 
 import org.junit.jupiter.api.Test;
 
@@ -41,8 +46,38 @@ class WhenConfiguringGlobalSettings {
 	void canResetToDefaults() {
 		InfinitestGlobalSettings.setSlowTestTimeLimit(100);
 		setLogLevel(CONFIG);
+		InfinitestGlobalSettings.setIndexSnapshotDirectory(new File("index"));
+		InfinitestGlobalSettings.setStreamingClassParser(true);
+		InfinitestGlobalSettings.setParserParallelism(42);
+		InfinitestGlobalSettings.setParserCacheBudget(42);
+		InfinitestGlobalSettings.setClassUsageRecording(true);
+		InfinitestGlobalSettings.setTestsRunWhileIndexing(true);
+		InfinitestGlobalSettings.setRunnerProcessesPerCore(4);
+		InfinitestGlobalSettings.setWarmRunnerProcesses(2);
+		InfinitestGlobalSettings.setPersistentRunnerProcesses(true);
+		InfinitestGlobalSettings.setStackTraceDepth(10);
+		InfinitestGlobalSettings.setStackFrameFilter("org\\.junit\\..*");
+		InfinitestGlobalSettings.setTestsDispatchedAhead(3);
+		InfinitestGlobalSettings.setUnixDomainSockets(true);
+		InfinitestGlobalSettings.setConsoleOutputBudget(100);
+		InfinitestGlobalSettings.setClassDataArchiveDirectory(new File("archives"));
 		resetToDefaults();
 		assertEquals(INFO, getLogLevel());
 		assertEquals(500, InfinitestGlobalSettings.getSlowTestTimeLimit());
+		assertNull(InfinitestGlobalSettings.getIndexSnapshotDirectory());
+		assertFalse(InfinitestGlobalSettings.isStreamingClassParser());
+		assertEquals(Runtime.getRuntime().availableProcessors(), InfinitestGlobalSettings.getParserParallelism());
+		assertEquals(64 * 1024 * 1024, InfinitestGlobalSettings.getParserCacheBudget());
+		assertFalse(InfinitestGlobalSettings.isClassUsageRecording());
+		assertFalse(InfinitestGlobalSettings.isTestsRunWhileIndexing());
+		assertEquals(1, InfinitestGlobalSettings.getRunnerProcessesPerCore());
+		assertEquals(0, InfinitestGlobalSettings.getWarmRunnerProcesses());
+		assertFalse(InfinitestGlobalSettings.isPersistentRunnerProcesses());
+		assertEquals(0, InfinitestGlobalSettings.getStackTraceDepth());
+		assertNull(InfinitestGlobalSettings.getStackFrameFilter());
+		assertEquals(1, InfinitestGlobalSettings.getTestsDispatchedAhead());
+		assertFalse(InfinitestGlobalSettings.isUnixDomainSockets());
+		assertEquals(1024 * 1024, InfinitestGlobalSettings.getConsoleOutputBudget());
+		assertNull(InfinitestGlobalSettings.getClassDataArchiveDirectory());
 	}
 }
@@ -0,0 +1,77 @@
+/*
+ * Infinitest, a Continuous Test Runner.
+ *
+ * Copyright (C) 2010-2013
+ * "Ben Rady" <benrady@gmail.com>,
+ * "Rod Coffin" <rfciii@gmail.com>,
+ * "Ryan Breidenbach" <ryan.breidenbach@gmail.com>
+ * "David Gageot" <david@gageot.net>, et al.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.infinitest.testrunner;
+
+import java.net.URL;
+import java.net.URLClassLoader;
+
+/**
+ * Loads the classes of the project output directories itself rather than from
+ * its parent, so that a new loader sees the classes changed since the previous
+ * one was created. The other classes, libraries and test frameworks, are
+ * loaded once by the parent.
+ */
+class ChildFirstClassLoader extends URLClassLoader {
+	static {
+		registerAsParallelCapable();
+	}
+
+	ChildFirstClassLoader(URL[] classDirectories, ClassLoader parent) {
+		super(classDirectories, parent);
+	}
+
+	@Override
+	protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+		synchronized (getClassLoadingLock(name)) {
+			Class<?> loadedClass = findLoadedClass(name);
+			if ((loadedClass == null) && !name.startsWith("java.")) {
+				try {
+					loadedClass = findClass(name);
+				} catch (ClassNotFoundException e) {
+					// Not a class of the project
+				}
+			}
+			if (loadedClass == null) {
+				return super.loadClass(name, resolve);
+			}
+			if (resolve) {
+				resolveClass(loadedClass);
+			}
+			return loadedClass;
+		}
+	}
+
+	@Override
+	public URL getResource(String name) {
+		URL resource = findResource(name);
+		if (resource != null) {
+			return resource;
+		}
+		return super.getResource(name);
+	}
+}
@@ -0,0 +1,57 @@
+/*
+ * Infinitest, a Continuous Test Runner.
+ *
+ * Copyright (C) 2010-2013
+ * "Ben Rady" <benrady@gmail.com>,
+ * "Rod Coffin" <rfciii@gmail.com>,
+ * "Ryan Breidenbach" <ryan.breidenbach@gmail.com>
+ * "David Gageot" <david@gageot.net>, et al.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.infinitest.testrunner;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.*;
+import java.nio.file.*;
+
+/**
+ * Loads, without initializing them, the classes of a list written by
+ * <code>-XX:DumpLoadedClassList</code>, so that a JVM started with
+ * <code>-XX:ArchiveClassesAtExit</code> archives them. The classes which
+ * cannot be found, such as those of the class directories, are skipped.
+ */
+public class ClassListLoader {
+	public static void main(String[] args) throws IOException {
+		ClassLoader classLoader = ClassListLoader.class.getClassLoader();
+		for (String line : Files.readAllLines(Paths.get(args[0]), UTF_8)) {
+			// Comments and the lambda forms the JVM generates itself
+			if (line.isEmpty() || line.startsWith("#") || line.startsWith("@")) {
+				continue;
+			}
+			String className = line.split(" ")[0].replace('/', '.');
+			try {
+				Class.forName(className, false, classLoader);
+			} catch (ClassNotFoundException | LinkageError e) {
+				// Not archived
+			}
+		}
+	}
+}
@@ -0,0 +1,100 @@
+/*
+ * Infinitest, a Continuous Test Runner.
+ *
+ * Copyright (C) 2010-2013
+ * "Ben Rady" <benrady@gmail.com>,
+ * "Rod Coffin" <rfciii@gmail.com>,
+ * "Ryan Breidenbach" <ryan.breidenbach@gmail.com>
+ * "David Gageot" <david@gageot.net>, et al.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.infinitest.testrunner;
+
+import java.lang.instrument.ClassFileTransformer;
+import java.lang.instrument.Instrumentation;
+import java.net.URL;
+import java.security.CodeSource;
+import java.security.ProtectionDomain;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Records the classes loaded from class directories, that is the classes of
+ * the project rather than of its libraries or of the JDK. Classes are only
+ * loaded once per JVM, so a test which uses a class already loaded by a
+ * previous test does not record it.
+ * <p>
+ * Started with <code>-javaagent</code> on the runner jar, it only observes
+ * class loading and never changes the loaded classes.
+ */
+public class ClassUsageAgent implements ClassFileTransformer {
+	private static volatile ClassUsageAgent instance;
+
+	private Set<String> loadedClasses = new HashSet<>();
+
+	public static void premain(String arguments, Instrumentation instrumentation) {
+		ClassUsageAgent agent = new ClassUsageAgent();
+		instrumentation.addTransformer(agent);
+		instance = agent;
+	}
+
+	/**
+	 * @return The agent of this JVM or null if it was not started with the
+	 *         agent
+	 */
+	public static ClassUsageAgent getInstance() {
+		return instance;
+	}
+
+	@Override
+	public byte[] transform(ClassLoader loader, String className, Class<?> classBeingRedefined, ProtectionDomain protectionDomain, byte[] classfileBuffer) {
+		if ((className != null) && (classBeingRedefined == null) && loadedFromDirectory(protectionDomain)) {
+			recordLoadedClass(className.replace('/', '.'));
+		}
+		// Never change the class
+		return null;
+	}
+
+	private static boolean loadedFromDirectory(ProtectionDomain protectionDomain) {
+		if (protectionDomain == null) {
+			return false;
+		}
+		CodeSource codeSource = protectionDomain.getCodeSource();
+		if (codeSource == null) {
+			return false;
+		}
+		URL location = codeSource.getLocation();
+		return (location != null) && "file".equals(location.getProtocol()) && location.getPath().endsWith("/");
+	}
+
+	synchronized void recordLoadedClass(String className) {
+		loadedClasses.add(className);
+	}
+
+	/**
+	 * @return The classes loaded since the last call
+	 */
+	public synchronized Set<String> takeLoadedClasses() {
+		Set<String> classes = Collections.unmodifiableSet(loadedClasses);
+		loadedClasses = new HashSet<>();
+		return classes;
+	}
+}
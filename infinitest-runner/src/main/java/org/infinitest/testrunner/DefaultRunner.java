@@ -51,7 +51,7 @@ public class DefaultRunner implements NativeRunner {
 	public TestResults runTest(String testClassName) {
 		Class<?> testClass;
 		try {
-			testClass = Class.forName(testClassName);
+			testClass = Class.forName(testClassName, true, Thread.currentThread().getContextClassLoader());
 		} catch (ClassNotFoundException e) {
 			throw new MissingClassException(testClassName);
 		}
@@ -0,0 +1,126 @@
+/*
+ * Infinitest, a Continuous Test Runner.
+ *
+ * Copyright (C) 2010-2013
+ * "Ben Rady" <benrady@gmail.com>,
+ * "Rod Coffin" <rfciii@gmail.com>,
+ * "Ryan Breidenbach" <ryan.breidenbach@gmail.com>
+ * "David Gageot" <david@gageot.net>, et al.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.infinitest.testrunner;
+
+import java.io.File;
+import java.lang.ref.WeakReference;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * The class loaders of a runner process which runs the tests of several runs.
+ * Each run loads the project classes with a new {@link ChildFirstClassLoader}.
+ * <p>
+ * A loader still referenced once its run is over, by a static field of a
+ * library or a thread for instance, keeps all the classes of its run in
+ * memory. When too many of them are not collected, or when a test left a
+ * thread running, the process should not be used for another run.
+ */
+class ProjectClassLoaders {
+	/**
+	 * The loaders of the previous runs which may remain until the next garbage
+	 * collection
+	 */
+	static final int MAX_RETAINED_LOADERS = 2;
+
+	private final URL[] classDirectories;
+	private final ClassLoader parent;
+	private final List<WeakReference<ClassLoader>> retiredLoaders = new ArrayList<>();
+	private ClassLoader currentLoader;
+
+	ProjectClassLoaders(String classDirectories, ClassLoader parent) {
+		this.classDirectories = toUrls(classDirectories);
+		this.parent = parent;
+	}
+
+	/**
+	 * @return The loader of the current run, created by the first test of the
+	 *         run
+	 */
+	ClassLoader currentLoader() {
+		if (currentLoader == null) {
+			currentLoader = new ChildFirstClassLoader(classDirectories, parent);
+		}
+		return currentLoader;
+	}
+
+	/**
+	 * Ends the current run, the next test loads the project classes again.
+	 * 
+	 * @return <code>false</code> if the previous runs leaked their classes or
+	 *         threads
+	 */
+	boolean startNewRun() {
+		if (currentLoader != null) {
+			retiredLoaders.add(new WeakReference<>(currentLoader));
+			currentLoader = null;
+		}
+		return !hasRunningThreads() && (countRetainedLoaders() <= MAX_RETAINED_LOADERS);
+	}
+
+	private int countRetainedLoaders() {
+		System.gc();
+		Iterator<WeakReference<ClassLoader>> loaders = retiredLoaders.iterator();
+		while (loaders.hasNext()) {
+			if (loaders.next().get() == null) {
+				loaders.remove();
+			}
+		}
+		return retiredLoaders.size();
+	}
+
+	/**
+	 * @return <code>true</code> if a test started a thread which is still
+	 *         running and would keep the process alive
+	 */
+	private static boolean hasRunningThreads() {
+		for (Thread each : Thread.getAllStackTraces().keySet()) {
+			if (each.isAlive() && !each.isDaemon() && (each != Thread.currentThread()) && !"DestroyJavaVM".equals(each.getName())) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static URL[] toUrls(String classDirectories) {
+		List<URL> urls = new ArrayList<>();
+		for (String each : classDirectories.split(File.pathSeparator)) {
+			if (!each.isEmpty()) {
+				try {
+					urls.add(new File(each).toURI().toURL());
+				} catch (MalformedURLException e) {
+					throw new IllegalArgumentException(each, e);
+				}
+			}
+		}
+		return urls.toArray(new URL[urls.size()]);
+	}
+}
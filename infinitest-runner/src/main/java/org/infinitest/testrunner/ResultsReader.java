@@ -0,0 +1,222 @@
+/*
+ * Infinitest, a Continuous Test Runner.
+ *
+ * Copyright (C) 2010-2013
+ * "Ben Rady" <benrady@gmail.com>,
+ * "Rod Coffin" <rfciii@gmail.com>,
+ * "Ryan Breidenbach" <ryan.breidenbach@gmail.com>
+ * "David Gageot" <david@gageot.net>, et al.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.infinitest.testrunner;
+
+import static org.infinitest.testrunner.ResultsWriter.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.infinitest.testrunner.TestEvent.TestState;
+
+/**
+ * Reads the messages written by a {@link ResultsWriter}.
+ */
+public class ResultsReader {
+	/**
+	 * The length of the header starting the stream, each message is then
+	 * prefixed by its length as an int
+	 */
+	public static final int HEADER_LENGTH = 8;
+
+	private final DataInputStream in;
+	private final List<String> internedStrings = new ArrayList<>();
+	private DataInputStream message;
+	private int messageType;
+
+	/**
+	 * Reads the header of the stream.
+	 * 
+	 * @throws IOException
+	 *             If the stream was not written by a writer of the same
+	 *             version
+	 */
+	public ResultsReader(InputStream in) throws IOException {
+		this.in = new DataInputStream(in);
+		readHeader(this.in);
+	}
+
+	/**
+	 * Reads the messages given to {@link #readMessage(byte[])}, whose caller
+	 * reads the stream itself.
+	 */
+	public ResultsReader() {
+		in = null;
+	}
+
+	/**
+	 * Reads the {@link #HEADER_LENGTH} bytes starting the stream.
+	 * 
+	 * @throws IOException
+	 *             If the stream was not written by a writer of the same
+	 *             version
+	 */
+	public static void readHeader(DataInput in) throws IOException {
+		int magic = in.readInt();
+		int version = in.readInt();
+		if ((magic != MAGIC) || (version != PROTOCOL_VERSION)) {
+			throw new IOException("Unsupported test runner protocol " + Integer.toHexString(magic) + " version " + version);
+		}
+	}
+
+	/**
+	 * Reads the next message, whose content is then read by
+	 * {@link #readResults()} or {@link #readRunStarted()} depending on its
+	 * type. Each message must be read, even when its request was cancelled,
+	 * since it may define names used by the next ones.
+	 * 
+	 * @return The id of the request the message answers
+	 */
+	public int readMessage() throws IOException {
+		byte[] bytes = new byte[in.readInt()];
+		in.readFully(bytes);
+		return readMessage(bytes);
+	}
+
+	/**
+	 * Reads a message whose length prefix was already read.
+	 * 
+	 * @see #readMessage()
+	 */
+	public int readMessage(byte[] bytes) throws IOException {
+		message = new DataInputStream(new ByteArrayInputStream(bytes));
+		messageType = message.readByte();
+		return readVarInt();
+	}
+
+	/**
+	 * @return <code>true</code> if the message read answers a test, and holds
+	 *         its results
+	 */
+	public boolean isResults() {
+		return messageType == RESULTS;
+	}
+
+	public TestResults readResults() throws IOException {
+		checkMessageType(RESULTS);
+		int eventCount = readVarInt();
+		List<TestEvent> events = new ArrayList<>(eventCount);
+		for (int i = 0; i < eventCount; i++) {
+			events.add(readEvent());
+		}
+		TestResults results = new TestResults(events);
+
+		int methodCount = readVarInt();
+		List<MethodStats> methodStats = new ArrayList<>(methodCount);
+		for (int i = 0; i < methodCount; i++) {
+			MethodStats stats = new MethodStats(readString());
+			stats.start(message.readLong());
+			stats.stop(message.readLong());
+			methodStats.add(stats);
+		}
+		results.addMethodStats(methodStats);
+
+		if (message.readBoolean()) {
+			int classCount = readVarInt();
+			Set<String> loadedClasses = new HashSet<>();
+			for (int i = 0; i < classCount; i++) {
+				loadedClasses.add(readString());
+			}
+			results.setLoadedClasses(loadedClasses);
+		}
+		return results;
+	}
+
+	/**
+	 * @return <code>true</code> if the process started a new run
+	 */
+	public boolean readRunStarted() throws IOException {
+		checkMessageType(RUN_STARTED);
+		return message.readBoolean();
+	}
+
+	private void checkMessageType(int expectedType) throws IOException {
+		if (messageType != expectedType) {
+			throw new IOException("Unexpected message " + messageType + " from the test runner, expected " + expectedType);
+		}
+	}
+
+	private TestEvent readEvent() throws IOException {
+		TestState state = TestState.values()[message.readByte()];
+		String eventMessage = readString();
+		String testName = readString();
+		String testMethod = readString();
+		if (!message.readBoolean()) {
+			return new TestEvent(state, eventMessage, testName, testMethod, null);
+		}
+
+		boolean isAssertionFailure = message.readBoolean();
+		String simpleErrorClassName = readString();
+		String fullErrorClassName = readString();
+		StackTraceElement[] stackTrace = new StackTraceElement[readVarInt()];
+		for (int i = 0; i < stackTrace.length; i++) {
+			String className = readString();
+			String methodName = readString();
+			String fileName = readString();
+			stackTrace[i] = new StackTraceElement(className, methodName, fileName, message.readInt());
+		}
+		return new TestEvent(state, eventMessage, testName, testMethod, isAssertionFailure, stackTrace, simpleErrorClassName, fullErrorClassName);
+	}
+
+	private String readString() throws IOException {
+		int code = readVarInt();
+		if (code == NULL_STRING) {
+			return null;
+		}
+		if (code >= FIRST_STRING_REFERENCE) {
+			return internedStrings.get(code - FIRST_STRING_REFERENCE);
+		}
+		byte[] bytes = new byte[readVarInt()];
+		message.readFully(bytes);
+		String string = new String(bytes, StandardCharsets.UTF_8);
+		if (code == NEW_STRING) {
+			internedStrings.add(string);
+		}
+		return string;
+	}
+
+	private int readVarInt() throws IOException {
+		int value = 0;
+		int shift = 0;
+		int b;
+		do {
+			b = message.readUnsignedByte();
+			value |= (b & 0x7F) << shift;
+			shift += 7;
+		} while ((b & 0x80) != 0);
+		return value;
+	}
+}
@@ -0,0 +1,216 @@
+/*
+ * Infinitest, a Continuous Test Runner.
+ *
+ * Copyright (C) 2010-2013
+ * "Ben Rady" <benrady@gmail.com>,
+ * "Rod Coffin" <rfciii@gmail.com>,
+ * "Ryan Breidenbach" <ryan.breidenbach@gmail.com>
+ * "David Gageot" <david@gageot.net>, et al.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.infinitest.testrunner;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Writes the results of the tests to the process which started the runner,
+ * read by {@link ResultsReader}.
+ * <p>
+ * The stream starts with a header giving the version of the protocol. Each
+ * message is then prefixed by its length, and gives the id of the request it
+ * answers. Names of classes, methods and files
+ * are sent once per connection, and referenced by their index afterwards.
+ * <p>
+ * Stack traces are trimmed before they are sent: the frames of the classes
+ * matching the frame filter are dropped, and at most the given number of
+ * frames are kept. The first frame and the frame of the test method, which
+ * locate the failure, are always kept.
+ */
+public class ResultsWriter {
+	static final int MAGIC = 0x494E5254;
+	static final int PROTOCOL_VERSION = 2;
+
+	static final int RESULTS = 1;
+	static final int RUN_STARTED = 2;
+
+	static final int NULL_STRING = 0;
+	static final int NEW_STRING = 1;
+	static final int LITERAL_STRING = 2;
+	static final int FIRST_STRING_REFERENCE = 3;
+	/**
+	 * Limits the memory used by the strings of a connection, the process may
+	 * run tests for a long time
+	 */
+	static final int MAX_INTERNED_STRINGS = 1 << 16;
+
+	private final DataOutputStream out;
+	private final int maxStackTraceDepth;
+	private final Pattern frameFilter;
+	private final Map<String, Integer> internedStrings = new HashMap<>();
+	private final ByteArrayOutputStream messageBytes = new ByteArrayOutputStream();
+	private final DataOutputStream message = new DataOutputStream(messageBytes);
+
+	/**
+	 * @param maxStackTraceDepth
+	 *            The number of frames kept, 0 to keep them all
+	 * @param frameFilter
+	 *            The regular expression of the classes whose frames are
+	 *            dropped, or null to keep them all
+	 */
+	public ResultsWriter(OutputStream out, int maxStackTraceDepth, String frameFilter) throws IOException {
+		this.out = new DataOutputStream(out);
+		this.maxStackTraceDepth = maxStackTraceDepth;
+		this.frameFilter = frameFilter == null ? null : Pattern.compile(frameFilter);
+		this.out.writeInt(MAGIC);
+		this.out.writeInt(PROTOCOL_VERSION);
+		this.out.flush();
+	}
+
+	public void writeResults(int requestId, TestResults results) throws IOException {
+		startMessage(RESULTS, requestId);
+		List<TestEvent> events = new ArrayList<>();
+		for (TestEvent each : results) {
+			events.add(each);
+		}
+		writeVarInt(events.size());
+		for (TestEvent each : events) {
+			writeEvent(each);
+		}
+
+		List<MethodStats> methodStats = new ArrayList<>();
+		for (MethodStats each : results.getMethodStats()) {
+			methodStats.add(each);
+		}
+		writeVarInt(methodStats.size());
+		for (MethodStats each : methodStats) {
+			writeString(each.methodName, true);
+			message.writeLong(each.startTime());
+			message.writeLong(each.stopTime());
+		}
+
+		Set<String> loadedClasses = results.getLoadedClasses();
+		message.writeBoolean(loadedClasses != null);
+		if (loadedClasses != null) {
+			writeVarInt(loadedClasses.size());
+			for (String each : loadedClasses) {
+				writeString(each, true);
+			}
+		}
+		sendMessage();
+	}
+
+	public void writeRunStarted(int requestId, boolean started) throws IOException {
+		startMessage(RUN_STARTED, requestId);
+		message.writeBoolean(started);
+		sendMessage();
+	}
+
+	private void startMessage(int type, int requestId) throws IOException {
+		message.writeByte(type);
+		writeVarInt(requestId);
+	}
+
+	private void writeEvent(TestEvent event) throws IOException {
+		message.writeByte(event.getType().ordinal());
+		writeString(event.getMessage(), false);
+		writeString(event.getTestName(), true);
+		writeString(event.getTestMethod(), true);
+		message.writeBoolean(event.getFullErrorClassName() != null);
+		if (event.getFullErrorClassName() != null) {
+			message.writeBoolean(event.isFailure());
+			writeString(event.getErrorClassName(), true);
+			writeString(event.getFullErrorClassName(), true);
+			List<StackTraceElement> frames = trim(event.getStackTrace(), event.getTestName(), event.getTestMethod());
+			writeVarInt(frames.size());
+			for (StackTraceElement each : frames) {
+				writeString(each.getClassName(), true);
+				writeString(each.getMethodName(), true);
+				writeString(each.getFileName(), true);
+				message.writeInt(each.getLineNumber());
+			}
+		}
+	}
+
+	List<StackTraceElement> trim(StackTraceElement[] stackTrace, String testName, String testMethod) {
+		List<StackTraceElement> frames = new ArrayList<>();
+		for (int i = 0; i < stackTrace.length; i++) {
+			StackTraceElement frame = stackTrace[i];
+			boolean testFrame = frame.getClassName().equals(testName) && frame.getMethodName().equals(testMethod);
+			boolean filtered = (frameFilter != null) && frameFilter.matcher(frame.getClassName()).matches();
+			boolean tooDeep = (maxStackTraceDepth > 0) && (frames.size() >= maxStackTraceDepth);
+			if ((i == 0) || testFrame || (!filtered && !tooDeep)) {
+				frames.add(frame);
+			}
+		}
+		return frames;
+	}
+
+	/**
+	 * @param intern
+	 *            false for strings unlikely to be sent again, like messages
+	 */
+	private void writeString(String string, boolean intern) throws IOException {
+		if (string == null) {
+			writeVarInt(NULL_STRING);
+			return;
+		}
+		Integer index = internedStrings.get(string);
+		if (index != null) {
+			writeVarInt(FIRST_STRING_REFERENCE + index);
+			return;
+		}
+		if (intern && (internedStrings.size() < MAX_INTERNED_STRINGS)) {
+			internedStrings.put(string, internedStrings.size());
+			writeVarInt(NEW_STRING);
+		} else {
+			writeVarInt(LITERAL_STRING);
+		}
+		byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+		writeVarInt(bytes.length);
+		message.write(bytes);
+	}
+
+	private void writeVarInt(int value) throws IOException {
+		int remaining = value;
+		while ((remaining & ~0x7F) != 0) {
+			message.writeByte((remaining & 0x7F) | 0x80);
+			remaining >>>= 7;
+		}
+		message.writeByte(remaining);
+	}
+
+	private void sendMessage() throws IOException {
+		message.flush();
+		out.writeInt(messageBytes.size());
+		messageBytes.writeTo(out);
+		out.flush();
+		messageBytes.reset();
+	}
+}
@@ -66,6 +66,17 @@ public class TestEvent implements Serializable {
 		}
 	}
 
+	/**
+	 * Creates an event received from a runner process.
+	 */
+	TestEvent(TestState eventType, String message, String testName, String testMethod, boolean isAssertionFailure, StackTraceElement[] stackTrace, String simpleErrorClassName, String fullErrorClassName) {
+		this(eventType, message, testName, testMethod, null);
+		this.isAssertionFailure = isAssertionFailure;
+		this.stackTrace = stackTrace;
+		this.simpleErrorClassName = simpleErrorClassName;
+		this.fullErrorClassName = fullErrorClassName;
+	}
+
 	public static TestEvent methodFailed(String message, String testName, String methodName, Throwable throwable) {
 		return new TestEvent(METHOD_FAILURE, message, testName, methodName, throwable);
 	}
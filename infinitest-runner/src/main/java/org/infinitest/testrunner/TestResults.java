@@ -37,6 +37,8 @@ public class TestResults implements Iterable<TestEvent>, Serializable {
 
 	private final List<TestEvent> eventsCollected;
 	private final List<MethodStats> methodStats = new LinkedList<>();
+	private Set<String> loadedClasses;
+	private transient Set<String> classesLoadedBefore;
 
 	public TestResults(List<TestEvent> eventsCollected) {
 		this.eventsCollected = eventsCollected;
@@ -59,6 +61,31 @@ public class TestResults implements Iterable<TestEvent>, Serializable {
 		methodStats.addAll(methodStatistics);
 	}
 
+	/**
+	 * @return The project classes loaded while the test was running, or null
+	 *         if they were not recorded
+	 */
+	public Set<String> getLoadedClasses() {
+		return loadedClasses;
+	}
+
+	public void setLoadedClasses(Set<String> loadedClasses) {
+		this.loadedClasses = loadedClasses;
+	}
+
+	/**
+	 * @return The project classes loaded by the process before the test was
+	 *         run, the test may use them without loading them again. Only
+	 *         known by the process which started the test runner.
+	 */
+	public Set<String> getClassesLoadedBefore() {
+		return classesLoadedBefore;
+	}
+
+	public void setClassesLoadedBefore(Set<String> classesLoadedBefore) {
+		this.classesLoadedBefore = classesLoadedBefore;
+	}
+
 	@Override
 	public String toString() {
 		final StringBuilder sb = new StringBuilder("TestResults{");
@@ -29,20 +29,56 @@ package org.infinitest.testrunner;
 
 import static org.infinitest.testrunner.TestEvent.methodFailed;
 
+import java.io.BufferedOutputStream;
 import java.io.BufferedReader;
+import java.io.Closeable;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.io.ObjectOutputStream;
+import java.io.OutputStream;
 import java.net.Socket;
+import java.nio.channels.SocketChannel;
 import java.nio.charset.StandardCharsets;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
 
 // RISK This class is only tested by running it, which is slow and throws off coverage
 public class TestRunnerProcess {
 	public static final String TEST_RUN_ERROR = "Error occurred during test run";
+	/**
+	 * Sent instead of a test name when the process is reused for another run.
+	 * The process answers whether it can be reused.
+	 */
+	public static final String START_RUN = "#startRun";
+	/**
+	 * Sent with the id of a request which is not needed anymore. The request
+	 * is dropped if it did not start yet, otherwise it is answered as usual.
+	 */
+	public static final String CANCEL = "#cancel";
+	/**
+	 * The class directories of the project, set when the process runs the
+	 * tests of several runs
+	 */
+	public static final String CLASS_DIRECTORIES_PROPERTY = "infinitest.classDirectories";
+	/**
+	 * The number of frames of the stack traces sent, all of them if not set
+	 */
+	public static final String STACK_TRACE_DEPTH_PROPERTY = "infinitest.stackTraceDepth";
+	/**
+	 * The regular expression of the classes whose frames are not sent
+	 */
+	public static final String STACK_FRAME_FILTER_PROPERTY = "infinitest.stackFrameFilter";
+	private static final String[] TEST_FRAMEWORK_CLASSES = { "org.junit.runner.JUnitCore", "org.junit.platform.launcher.core.LauncherFactory", "org.testng.TestNG" };
 	
+	private final String runnerClassName;
+	private final ProjectClassLoaders classLoaders;
+	private final ClassLoader initialContextClassLoader = Thread.currentThread().getContextClassLoader();
 	private NativeRunner runner;
 
 	private TestRunnerProcess(String runnerClass) {
+		runnerClassName = runnerClass;
+		String classDirectories = System.getProperty(CLASS_DIRECTORIES_PROPERTY);
+		classLoaders = classDirectories == null ? null : new ProjectClassLoaders(classDirectories, initialContextClassLoader);
 		createRunner(runnerClass);
 	}
 
@@ -60,7 +96,10 @@ public class TestRunnerProcess {
 
 	private NativeRunner instantiateTestRunner(String runnerClassName) {
 		try {
-			Class<?> runnerClass = Class.forName(runnerClassName);
+			// The class directories are only on the classpath of the process
+			// when it runs a single run
+			ClassLoader loader = classLoaders == null ? TestRunnerProcess.class.getClassLoader() : classLoaders.currentLoader();
+			Class<?> runnerClass = Class.forName(runnerClassName, true, loader);
 			return (NativeRunner) runnerClass.newInstance();
 		} catch (ClassNotFoundException | InstantiationException | IllegalAccessException e) {
 			throw new RuntimeException(e);
@@ -68,34 +107,66 @@ public class TestRunnerProcess {
 	}
 
 	private TestResults runTest(String testName) {
+		if (classLoaders != null) {
+			// The runners load the tests with the context class loader
+			Thread.currentThread().setContextClassLoader(classLoaders.currentLoader());
+		}
 		return runner.runTest(testName);
 	}
 
+	/**
+	 * @return <code>false</code> if the process cannot run another run
+	 */
+	private boolean startNewRun() {
+		if (classLoaders == null) {
+			return false;
+		}
+		Thread.currentThread().setContextClassLoader(initialContextClassLoader);
+		// The runner may have been loaded by the loader of the previous run
+		runner = null;
+		boolean reusable = classLoaders.startNewRun();
+		// Reads the configuration again
+		createRunner(runnerClassName);
+		return reusable;
+	}
+
 	public static void main(String[] args) {
 		try {
 			checkForJUnit4();			
 			if (args.length != 2) {
-				throw new IllegalArgumentException("runner expects two parameters: runnerClass and port");
+				throw new IllegalArgumentException("runner expects two parameters: runnerClass and port, or the path of a Unix domain socket");
 			}
 			String runnerClass = args[0];
+			loadTestFrameworksInBackground();
 			TestRunnerProcess process = new TestRunnerProcess(runnerClass);
-			int portNum = Integer.parseInt(args[1]);
-			Socket clientSocket = new Socket("127.0.0.1", portNum);
-			// DEBT Extract this to a reader class
-			ObjectOutputStream outputStream = new ObjectOutputStream(clientSocket.getOutputStream());
-			BufferedReader inputStream = new BufferedReader(new InputStreamReader(clientSocket.getInputStream(), StandardCharsets.UTF_8));
-
-			String testName;
-			do {
-				testName = inputStream.readLine();
-
-				if (testName != null) {
-					writeTestResultToOutputStream(process, outputStream, testName);
-				}
+			Closeable clientSocket;
+			InputStream socketInput;
+			OutputStream socketOutput;
+			if (isPort(args[1])) {
+				Socket socket = new Socket("127.0.0.1", Integer.parseInt(args[1]));
+				socketInput = socket.getInputStream();
+				socketOutput = socket.getOutputStream();
+				clientSocket = socket;
+			} else {
+				SocketChannel channel = UnixDomainSockets.connect(args[1]);
+				socketInput = UnixDomainSockets.newInputStream(channel);
+				socketOutput = UnixDomainSockets.newOutputStream(channel);
+				clientSocket = channel;
+			}
+			ResultsWriter outputStream = new ResultsWriter(new BufferedOutputStream(socketOutput), Integer.getInteger(STACK_TRACE_DEPTH_PROPERTY, 0), System.getProperty(STACK_FRAME_FILTER_PROPERTY));
+			BufferedReader inputStream = new BufferedReader(new InputStreamReader(socketInput, StandardCharsets.UTF_8));
+			BlockingQueue<Request> requests = new LinkedBlockingQueue<>();
+			readRequestsInBackground(inputStream, requests);
 
-			} while (testName != null);
+			Request request;
+			while ((request = requests.take()) != Request.END) {
+				if (START_RUN.equals(request.name)) {
+					outputStream.writeRunStarted(request.id, process.startNewRun());
+				} else {
+					writeTestResultToOutputStream(process, outputStream, request);
+				}
+			}
 
-			outputStream.close();
 			clientSocket.close();
 		}
 		// CHECKSTYLE:OFF
@@ -110,17 +181,98 @@ public class TestRunnerProcess {
 
 	}
 
-	private static void writeTestResultToOutputStream(TestRunnerProcess process, ObjectOutputStream outputStream, String testName) throws IOException {
+	private static boolean isPort(String address) {
+		for (char each : address.toCharArray()) {
+			if (!Character.isDigit(each)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Reads the requests while the tests run, so that the next test is known
+	 * as soon as one is done, and a request can be cancelled before it
+	 * starts.
+	 */
+	private static void readRequestsInBackground(BufferedReader inputStream, BlockingQueue<Request> requests) {
+		Thread thread = new Thread(() -> {
+			try {
+				String line;
+				while ((line = inputStream.readLine()) != null) {
+					int separator = line.indexOf(' ');
+					String name = line.substring(separator + 1);
+					if (line.startsWith(CANCEL)) {
+						int cancelledId = Integer.parseInt(name);
+						requests.removeIf(each -> each.id == cancelledId);
+					} else {
+						requests.add(new Request(Integer.parseInt(line.substring(0, separator)), name));
+					}
+				}
+			} catch (IOException e) {
+				// The connection is lost, the process stops
+			} finally {
+				requests.add(Request.END);
+			}
+		}, "Infinitest request reader");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * Loads the test frameworks while the process waits for its first test,
+	 * which matters when the process was started before it is needed.
+	 */
+	private static void loadTestFrameworksInBackground() {
+		Thread thread = new Thread(() -> {
+			for (String each : TEST_FRAMEWORK_CLASSES) {
+				try {
+					Class.forName(each);
+				}
+				// CHECKSTYLE:OFF
+				catch (Throwable e)
+				// CHECKSTYLE:ON
+				{
+					// This framework is not used by the project
+				}
+			}
+		}, "Infinitest test framework loader");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	private static void writeTestResultToOutputStream(TestRunnerProcess process, ResultsWriter outputStream, Request request) throws IOException {
+		ClassUsageAgent agent = ClassUsageAgent.getInstance();
 		TestResults results;
 		try {
-			results = process.runTest(testName);
+			results = process.runTest(request.name);
+			if (agent != null) {
+				// Includes the classes loaded between two tests, if any
+				results.setLoadedClasses(agent.takeLoadedClasses());
+			}
 		}
 		// CHECKSTYLE:OFF
 		catch (Throwable e)
 		// CHECKSTYLE:ON
 		{
-			results = new TestResults(methodFailed(testName, "", e));
+			results = new TestResults(methodFailed(request.name, "", e));
+		}
+		outputStream.writeResults(request.id, results);
+	}
+
+	/**
+	 * A test to run, or {@link #START_RUN}, sent as a line made of the id of
+	 * the request and the name
+	 */
+	private static class Request {
+		static final Request END = new Request(-1, null);
+
+		final int id;
+		final String name;
+
+		Request(int id, String name) {
+			this.id = id;
+			this.name = name;
 		}
-		outputStream.writeObject(results);
 	}
 }
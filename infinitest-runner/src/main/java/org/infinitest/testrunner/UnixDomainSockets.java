@@ -0,0 +1,156 @@
+/*
+ * Infinitest, a Continuous Test Runner.
+ *
+ * Copyright (C) 2010-2013
+ * "Ben Rady" <benrady@gmail.com>,
+ * "Rod Coffin" <rfciii@gmail.com>,
+ * "Ryan Breidenbach" <ryan.breidenbach@gmail.com>
+ * "David Gageot" <david@gageot.net>, et al.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.infinitest.testrunner;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.ProtocolFamily;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+
+/**
+ * Unix domain sockets, which are only available from Java 16. They are used
+ * through reflection so that the runner still runs on older versions, which
+ * connect with TCP.
+ */
+public final class UnixDomainSockets {
+	private static final Method ADDRESS_FACTORY = findMethod("java.net.UnixDomainSocketAddress", "of", String.class);
+	private static final Method SERVER_CHANNEL_FACTORY = findMethod(ServerSocketChannel.class.getName(), "open", ProtocolFamily.class);
+	private static final Method CHANNEL_FACTORY = findMethod(SocketChannel.class.getName(), "open", ProtocolFamily.class);
+
+	private UnixDomainSockets() {
+	}
+
+	/**
+	 * @return <code>true</code> if this JVM supports Unix domain sockets
+	 */
+	public static boolean isSupported() {
+		return (ADDRESS_FACTORY != null) && (SERVER_CHANNEL_FACTORY != null) && (CHANNEL_FACTORY != null);
+	}
+
+	public static SocketAddress address(String path) throws IOException {
+		return (SocketAddress) invoke(ADDRESS_FACTORY, path);
+	}
+
+	public static ServerSocketChannel openServerChannel() throws IOException {
+		return (ServerSocketChannel) invoke(SERVER_CHANNEL_FACTORY, unixProtocolFamily());
+	}
+
+	public static SocketChannel connect(String path) throws IOException {
+		SocketChannel channel = (SocketChannel) invoke(CHANNEL_FACTORY, unixProtocolFamily());
+		channel.connect(address(path));
+		return channel;
+	}
+
+	/**
+	 * Unlike {@link java.nio.channels.Channels#newInputStream}, the stream
+	 * does not lock the channel while it waits for bytes, so that another
+	 * thread can write to the channel at the same time.
+	 */
+	public static InputStream newInputStream(SocketChannel channel) {
+		return new InputStream() {
+			@Override
+			public int read() throws IOException {
+				byte[] singleByte = new byte[1];
+				return read(singleByte, 0, 1) == -1 ? -1 : singleByte[0] & 0xFF;
+			}
+
+			@Override
+			public int read(byte[] bytes, int offset, int length) throws IOException {
+				if (length == 0) {
+					return 0;
+				}
+				return channel.read(ByteBuffer.wrap(bytes, offset, length));
+			}
+
+			@Override
+			public void close() throws IOException {
+				channel.close();
+			}
+		};
+	}
+
+	/**
+	 * @see #newInputStream(SocketChannel)
+	 */
+	public static OutputStream newOutputStream(SocketChannel channel) {
+		return new OutputStream() {
+			@Override
+			public void write(int oneByte) throws IOException {
+				write(new byte[] { (byte) oneByte }, 0, 1);
+			}
+
+			@Override
+			public void write(byte[] bytes, int offset, int length) throws IOException {
+				ByteBuffer buffer = ByteBuffer.wrap(bytes, offset, length);
+				while (buffer.hasRemaining()) {
+					channel.write(buffer);
+				}
+			}
+
+			@Override
+			public void close() throws IOException {
+				channel.close();
+			}
+		};
+	}
+
+	private static ProtocolFamily unixProtocolFamily() {
+		return StandardProtocolFamily.valueOf("UNIX");
+	}
+
+	private static Object invoke(Method method, Object argument) throws IOException {
+		if (method == null) {
+			throw new IOException("Unix domain sockets are not supported by this JVM");
+		}
+		try {
+			return method.invoke(null, argument);
+		} catch (InvocationTargetException e) {
+			if (e.getCause() instanceof IOException) {
+				throw (IOException) e.getCause();
+			}
+			throw new IOException(e.getCause());
+		} catch (IllegalAccessException e) {
+			throw new IOException(e);
+		}
+	}
+
+	private static Method findMethod(String className, String methodName, Class<?> parameterType) {
+		try {
+			return Class.forName(className).getMethod(methodName, parameterType);
+		} catch (ClassNotFoundException | NoSuchMethodException e) {
+			return null;
+		}
+	}
+}
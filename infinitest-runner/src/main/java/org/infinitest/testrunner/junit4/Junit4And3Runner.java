@@ -106,7 +106,7 @@ public class Junit4And3Runner {
 		List<Class<?>> categoriesToExclude = new ArrayList<>();
 		for (String excludedGroup : configuration.excludedGroups()) {
 			try {
-				categoriesToExclude.add(Class.forName(excludedGroup));
+				categoriesToExclude.add(Class.forName(excludedGroup, true, Thread.currentThread().getContextClassLoader()));
 			} catch (ClassNotFoundException e) {
 				// can't find the specified class so log it and keep looking for
 				// the others
@@ -0,0 +1,75 @@
+/*
+ * Infinitest, a Continuous Test Runner.
+ *
+ * Copyright (C) 2010-2013
+ * "Ben Rady" <benrady@gmail.com>,
+ * "Rod Coffin" <rfciii@gmail.com>,
+ * "Ryan Breidenbach" <ryan.breidenbach@gmail.com>
+ * "David Gageot" <david@gageot.net>, et al.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.infinitest.testrunner;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.security.CodeSource;
+import java.security.ProtectionDomain;
+import java.security.cert.Certificate;
+
+import org.junit.jupiter.api.Test;
+
+class ClassUsageAgentTest {
+	private final ClassUsageAgent agent = new ClassUsageAgent();
+
+	@Test
+	void shouldRecordClassesLoadedFromDirectories() throws MalformedURLException {
+		agent.transform(null, "com/example/Product", null, loadedFrom("file:/project/target/classes/"), new byte[0]);
+
+		assertThat(agent.takeLoadedClasses()).containsOnly("com.example.Product");
+	}
+
+	@Test
+	void shouldIgnoreClassesOfJarsAndOfTheJdk() throws MalformedURLException {
+		agent.transform(null, "com/example/Library", null, loadedFrom("file:/repository/library.jar"), new byte[0]);
+		agent.transform(null, "java/lang/String", null, null, new byte[0]);
+
+		assertThat(agent.takeLoadedClasses()).isEmpty();
+	}
+
+	@Test
+	void shouldNeverChangeClasses() throws MalformedURLException {
+		assertThat(agent.transform(null, "com/example/Product", null, loadedFrom("file:/project/target/classes/"), new byte[0])).isNull();
+	}
+
+	@Test
+	void shouldOnlyReturnTheClassesLoadedSinceTheLastCall() throws MalformedURLException {
+		agent.transform(null, "com/example/First", null, loadedFrom("file:/project/target/classes/"), new byte[0]);
+		agent.takeLoadedClasses();
+		agent.transform(null, "com/example/Second", null, loadedFrom("file:/project/target/classes/"), new byte[0]);
+
+		assertThat(agent.takeLoadedClasses()).containsOnly("com.example.Second");
+	}
+
+	private static ProtectionDomain loadedFrom(String location) throws MalformedURLException {
+		return new ProtectionDomain(new CodeSource(new URL(location), (Certificate[]) null), null);
+	}
+}
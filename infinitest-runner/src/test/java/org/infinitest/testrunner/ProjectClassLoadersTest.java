@@ -0,0 +1,105 @@
+/*
+ * Infinitest, a Continuous Test Runner.
+ *
+ * Copyright (C) 2010-2013
+ * "Ben Rady" <benrady@gmail.com>,
+ * "Rod Coffin" <rfciii@gmail.com>,
+ * "Ryan Breidenbach" <ryan.breidenbach@gmail.com>
+ * "David Gageot" <david@gageot.net>, et al.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.infinitest.testrunner;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class ProjectClassLoadersTest {
+	private ProjectClassLoaders classLoaders;
+
+	@BeforeEach
+	void inContext() throws Exception {
+		String classDirectory = new File(StubClock.class.getProtectionDomain().getCodeSource().getLocation().toURI()).getPath();
+		classLoaders = new ProjectClassLoaders(classDirectory, getClass().getClassLoader());
+	}
+
+	@Test
+	void shouldLoadTheProjectClassesAgainForEachRun() throws Exception {
+		Class<?> firstRunClass = classLoaders.currentLoader().loadClass(StubClock.class.getName());
+		classLoaders.startNewRun();
+		Class<?> secondRunClass = classLoaders.currentLoader().loadClass(StubClock.class.getName());
+
+		assertThat(firstRunClass).isNotSameAs(StubClock.class);
+		assertThat(secondRunClass).isNotSameAs(firstRunClass);
+	}
+
+	@Test
+	void shouldLoadTheLibrariesOnlyOnce() throws Exception {
+		Class<?> libraryClass = classLoaders.currentLoader().loadClass(Test.class.getName());
+
+		assertThat(libraryClass).isSameAs(Test.class);
+	}
+
+	@Test
+	void shouldBeReusedWhenThePreviousRunsLeftNothingBehind() {
+		for (int i = 0; i <= ProjectClassLoaders.MAX_RETAINED_LOADERS; i++) {
+			classLoaders.currentLoader();
+			assertThat(classLoaders.startNewRun()).isTrue();
+		}
+	}
+
+	@Test
+	void shouldNotBeReusedWhenTheLoadersOfThePreviousRunsAreRetained() {
+		List<ClassLoader> leakedLoaders = new ArrayList<>();
+		boolean reusable = true;
+		for (int i = 0; i <= ProjectClassLoaders.MAX_RETAINED_LOADERS; i++) {
+			leakedLoaders.add(classLoaders.currentLoader());
+			reusable = classLoaders.startNewRun();
+		}
+
+		assertThat(reusable).isFalse();
+		assertThat(leakedLoaders).doesNotContainNull();
+	}
+
+	@Test
+	void shouldNotBeReusedWhenATestLeftAThreadRunning() throws Exception {
+		CountDownLatch testDone = new CountDownLatch(1);
+		Thread thread = new Thread(() -> {
+			try {
+				testDone.await();
+			} catch (InterruptedException e) {
+				// Stopped
+			}
+		});
+		thread.start();
+		try {
+			assertThat(classLoaders.startNewRun()).isFalse();
+		} finally {
+			testDone.countDown();
+			thread.join();
+		}
+	}
+}
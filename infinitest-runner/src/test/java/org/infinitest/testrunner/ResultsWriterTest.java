@@ -0,0 +1,143 @@
+/*
+ * Infinitest, a Continuous Test Runner.
+ *
+ * Copyright (C) 2010-2013
+ * "Ben Rady" <benrady@gmail.com>,
+ * "Rod Coffin" <rfciii@gmail.com>,
+ * "Ryan Breidenbach" <ryan.breidenbach@gmail.com>
+ * "David Gageot" <david@gageot.net>, et al.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.infinitest.testrunner;
+
+import static java.util.Arrays.asList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.infinitest.testrunner.TestEvent.methodFailed;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.util.HashSet;
+
+import org.assertj.core.groups.Tuple;
+import org.junit.jupiter.api.Test;
+
+class ResultsWriterTest {
+	private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+	@Test
+	void shouldReadTheResultsWritten() throws IOException {
+		ResultsWriter writer = new ResultsWriter(bytes, 0, null);
+		TestResults results = failingResults();
+		results.setLoadedClasses(new HashSet<>(asList("com.example.Product")));
+		writer.writeResults(7, results);
+		writer.writeRunStarted(8, true);
+
+		ResultsReader reader = new ResultsReader(new ByteArrayInputStream(bytes.toByteArray()));
+		assertThat(reader.readMessage()).isEqualTo(7);
+		assertThat(reader.isResults()).isTrue();
+		TestResults readResults = reader.readResults();
+
+		TestEvent event = readResults.iterator().next();
+		TestEvent expectedEvent = results.iterator().next();
+		assertThat(event).isEqualTo(expectedEvent);
+		assertThat(event.getMessage()).isEqualTo(expectedEvent.getMessage());
+		assertThat(event.isFailure()).isTrue();
+		assertThat(event.getFullErrorClassName()).isEqualTo(AssertionError.class.getName());
+		assertThat(event.getStackTrace()).extracting(StackTraceElement::getClassName, StackTraceElement::getMethodName, StackTraceElement::getLineNumber) //
+				.containsExactly(asList(expectedEvent.getStackTrace()).stream() //
+						.map(frame -> tuple(frame.getClassName(), frame.getMethodName(), frame.getLineNumber())) //
+						.toArray(Tuple[]::new));
+		assertThat(event.getPointOfFailure()).isEqualTo(expectedEvent.getPointOfFailure());
+		MethodStats methodStats = readResults.getMethodStats().iterator().next();
+		assertThat(methodStats.methodName).isEqualTo("shouldWork");
+		assertThat(methodStats.duration()).isEqualTo(25);
+		assertThat(readResults.getLoadedClasses()).containsOnly("com.example.Product");
+		assertThat(reader.readMessage()).isEqualTo(8);
+		assertThat(reader.isResults()).isFalse();
+		assertThat(reader.readRunStarted()).isTrue();
+	}
+
+	@Test
+	void shouldSendTheNamesOnlyOnce() throws IOException {
+		ResultsWriter writer = new ResultsWriter(bytes, 0, null);
+		writer.writeResults(1, failingResults());
+		int firstSize = bytes.size();
+		writer.writeResults(1, failingResults());
+
+		assertThat(bytes.size() - firstSize).isLessThan(firstSize / 2);
+	}
+
+	@Test
+	void shouldBeSmallerThanJavaSerialization() throws IOException {
+		ResultsWriter writer = new ResultsWriter(bytes, 0, null);
+		writer.writeResults(1, failingResults());
+		int firstSize = bytes.size();
+		writer.writeResults(1, failingResults());
+
+		ByteArrayOutputStream serializedBytes = new ByteArrayOutputStream();
+		int firstSerializedSize;
+		try (ObjectOutputStream out = new ObjectOutputStream(serializedBytes)) {
+			out.writeObject(failingResults());
+			out.flush();
+			firstSerializedSize = serializedBytes.size();
+			out.writeObject(failingResults());
+		}
+
+		assertThat(firstSize).isLessThan(firstSerializedSize);
+		assertThat(bytes.size() - firstSize).isLessThan((serializedBytes.size() - firstSerializedSize) / 2);
+	}
+
+	@Test
+	void shouldKeepTheFramesLocatingTheFailure() throws IOException {
+		ResultsWriter writer = new ResultsWriter(bytes, 2, "org\\.junit\\..*");
+		StackTraceElement[] stackTrace = { //
+				new StackTraceElement("org.junit.Assert", "fail", "Assert.java", 88), //
+				new StackTraceElement("com.example.Helper", "check", "Helper.java", 12), //
+				new StackTraceElement("org.junit.Assert", "assertTrue", "Assert.java", 41), //
+				new StackTraceElement("com.example.ProductTest", "shouldWork", "ProductTest.java", 30), //
+				new StackTraceElement("com.example.Runner", "run", "Runner.java", 3) };
+
+		assertThat(writer.trim(stackTrace, "com.example.ProductTest", "shouldWork")).containsExactly(stackTrace[0], stackTrace[1], stackTrace[3]);
+	}
+
+	@Test
+	void shouldRejectAnotherProtocol() throws IOException {
+		DataOutputStream out = new DataOutputStream(bytes);
+		out.writeInt(ResultsWriter.MAGIC);
+		out.writeInt(ResultsWriter.PROTOCOL_VERSION + 1);
+
+		assertThatThrownBy(() -> new ResultsReader(new ByteArrayInputStream(bytes.toByteArray()))).isInstanceOf(IOException.class);
+	}
+
+	private TestResults failingResults() {
+		AssertionError error = new AssertionError("expected:<1> but was:<2>");
+		TestResults results = new TestResults(methodFailed(getClass().getName(), "shouldWork", error));
+		MethodStats methodStats = new MethodStats("shouldWork");
+		methodStats.start(100);
+		methodStats.stop(125);
+		results.addMethodStats(asList(methodStats));
+		return results;
+	}
+}